@@ -0,0 +1,375 @@
+/**
+ *  Archivo binario de jugadores que se lee con memoria mapeada.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Foto de todos los jugadores en un formato fijo y versionado:
+ *
+ * <pre>
+ *   encabezado (64 bytes): magia, formato, primer segmento de bitácora,
+ *                          capacidad del índice, cantidad de registros
+ *   índice: capacidad × int, número de registro + 1 (0 = vacío)
+ *   registros: cantidad × 64 bytes
+ *     short  longitud del nombre en UTF-8
+ *     46 B   nombre
+ *     long   estado de créditos (versión y valor, ver {@link Feria.Jugador})
+ *     long   estado de puntos
+ * </pre>
+ *
+ * El archivo se mapea a memoria y después de escribirse solo cambian los
+ * estados de los registros que ya tiene, en su lugar ({@link #actualizar}, con
+ * el que {@link CacheJugadores} devuelve a quien saca de memoria), así que
+ * abrirlo cuesta lo mismo con mil o con un millón de jugadores y las
+ * búsquedas no necesitan candados: el sistema operativo trae del disco solo
+ * las páginas que se tocan. Un jugador se convierte en objeto hasta que
+ * alguien lo busca por primera vez.
+ */
+class AlmacenJugadores {
+    static final int MAGIA = 0x4645524D;
+    static final int FORMATO = 1;
+
+    // Longitud máxima de un nombre en bytes UTF-8
+    static final int MAXIMO_NOMBRE = 46;
+
+    private static final int ENCABEZADO = 64;
+    private static final int TAMANO_REGISTRO = 64;
+
+    // Un MappedByteBuffer llega a 2 GB, así que el archivo se mapea por trozos de 1 GB
+    private static final int BITS_TROZO = 30;
+    private static final long TAMANO_TROZO = 1L << BITS_TROZO;
+
+    private final MappedByteBuffer[] trozos;
+    private final int primerSegmento;
+    private final int capacidad;
+    private final int cantidad;
+    private final long inicioRegistros;
+
+    private AlmacenJugadores(MappedByteBuffer[] trozos) {
+        this.trozos = trozos;
+        this.primerSegmento = leerInt(8);
+        this.capacidad = leerInt(12);
+        this.cantidad = leerInt(16);
+        this.inicioRegistros = ENCABEZADO + 4L * capacidad;
+    }
+
+    /**
+     * Indica si un archivo tiene este formato.
+     *
+     * @param archivo El archivo a revisar.
+     * @return `true` si existe y empieza con la magia y el formato de esta clase.
+     */
+    static boolean esAlmacen(Path archivo) throws IOException {
+        if (!Files.exists(archivo) || Files.size(archivo) < ENCABEZADO) {
+            return false;
+        }
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            ByteBuffer encabezado = ByteBuffer.allocate(8);
+            canal.read(encabezado, 0);
+            return encabezado.getInt(0) == MAGIA && encabezado.getInt(4) == FORMATO;
+        }
+    }
+
+    /**
+     * Mapea un archivo de jugadores. No lee ningún registro.
+     *
+     * @param archivo El archivo a abrir; debe cumplir {@link #esAlmacen(Path)}.
+     * @return El almacén abierto.
+     */
+    static AlmacenJugadores abrir(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new AlmacenJugadores(mapear(canal, FileChannel.MapMode.READ_WRITE, canal.size()));
+        }
+    }
+
+    /**
+     * @param nombre Un nombre de jugador.
+     * @return `true` si el nombre cabe en un registro.
+     */
+    static boolean nombreValido(String nombre) {
+        return nombre.getBytes(StandardCharsets.UTF_8).length <= MAXIMO_NOMBRE;
+    }
+
+    /**
+     * @return El primer segmento de la bitácora que esta foto no incluye.
+     */
+    int primerSegmento() {
+        return primerSegmento;
+    }
+
+    /**
+     * @return Cuántos jugadores hay en el archivo.
+     */
+    int cantidad() {
+        return cantidad;
+    }
+
+    /**
+     * Busca un jugador por nombre en el índice y lo convierte en objeto.
+     *
+     * @param nombre El nombre del jugador.
+     * @return Un jugador nuevo con los datos guardados, o null si no está.
+     */
+    Feria.Jugador buscar(String nombre) {
+        int registro = buscarRegistro(nombre.getBytes(StandardCharsets.UTF_8));
+        if (registro < 0) {
+            return null;
+        }
+        long posicion = posicionRegistro(registro);
+        Feria.Jugador jugador = new Feria.Jugador(nombre, 0);
+        jugador.restaurar(leerLong(posicion + 48), leerLong(posicion + 56));
+        return jugador;
+    }
+
+    /**
+     * Cambia en su lugar los estados guardados de un jugador, cada uno solo si
+     * el nuevo tiene una versión más alta. Cada estado es un long alineado, así
+     * que quien lo lee al mismo tiempo ve el anterior o el nuevo. Quien escribe
+     * debe ser uno a la vez (el candado de {@link CacheJugadores}).
+     *
+     * @param nombre El nombre del jugador.
+     * @param estadoCreditos El estado de créditos más reciente.
+     * @param estadoPuntos El estado de puntos más reciente.
+     * @return 1 si se escribió algo, 0 si lo guardado ya era igual o más nuevo
+     *         y -1 si el jugador no está en el archivo.
+     */
+    int actualizar(String nombre, long estadoCreditos, long estadoPuntos) {
+        int registro = buscarRegistro(nombre.getBytes(StandardCharsets.UTF_8));
+        if (registro < 0) {
+            return -1;
+        }
+        long posicion = posicionRegistro(registro);
+        int escrito = 0;
+        if ((estadoCreditos >>> 32) > (leerLong(posicion + 48) >>> 32)) {
+            escribirLong(posicion + 48, estadoCreditos);
+            escrito = 1;
+        }
+        if ((estadoPuntos >>> 32) > (leerLong(posicion + 56) >>> 32)) {
+            escribirLong(posicion + 56, estadoPuntos);
+            escrito = 1;
+        }
+        return escrito;
+    }
+
+    /**
+     * Recibe cada registro del archivo al recorrerlo.
+     */
+    interface Visitante {
+        void visitar(String nombre, long estadoCreditos, long estadoPuntos);
+    }
+
+    /**
+     * Recorre todos los registros en el orden del archivo.
+     *
+     * @param visitante Quien recibe cada registro.
+     */
+    void recorrer(Visitante visitante) {
+        recorrer(0, cantidad, visitante);
+    }
+
+    /**
+     * Recorre una parte de los registros, para repartir el archivo entre hilos.
+     *
+     * @param desde El primer registro.
+     * @param hasta El registro siguiente al último.
+     * @param visitante Quien recibe cada registro.
+     */
+    void recorrer(int desde, int hasta, Visitante visitante) {
+        for (int i = desde; i < hasta; i++) {
+            long posicion = posicionRegistro(i);
+            visitante.visitar(leerNombre(posicion), leerLong(posicion + 48), leerLong(posicion + 56));
+        }
+    }
+
+    /**
+     * @param nombre El nombre de un jugador.
+     * @return `true` si el jugador está en el archivo; no crea ningún objeto jugador.
+     */
+    boolean contiene(String nombre) {
+        return buscarRegistro(nombre.getBytes(StandardCharsets.UTF_8)) >= 0;
+    }
+
+    /**
+     * Escribe una foto nueva: los jugadores en memoria con su estado actual y,
+     * del almacén anterior, los que nunca se cargaron a memoria.
+     *
+     * @param archivo Archivo a crear (se reemplaza si existe).
+     * @param primerSegmento El primer segmento de bitácora que la foto no incluye.
+     * @param anterior El almacén anterior, o null.
+     * @param memoria Los jugadores cargados en memoria.
+     */
+    static void escribir(Path archivo, int primerSegmento, AlmacenJugadores anterior,
+                         Map<String, Feria.Jugador> memoria) throws IOException {
+        // Primero se apartan los que no están en el almacén anterior, para conocer el tamaño
+        // final del archivo y escribir exactamente a esos: un mapa concurrente se recorre en
+        // el orden de su tabla y un jugador que se registra mientras tanto puede quedar antes
+        // que otro ya contado. Los que se registran después quedan en la bitácora.
+        List<Feria.Jugador> nuevos = new ArrayList<>();
+        for (Feria.Jugador jugador : memoria.values()) {
+            if (anterior == null || anterior.buscarRegistro(jugador.getNombre().getBytes(StandardCharsets.UTF_8)) < 0) {
+                nuevos.add(jugador);
+            }
+        }
+        long cantidad = (anterior == null ? 0L : anterior.cantidad) + nuevos.size();
+        if (cantidad > 1 << 29) {
+            throw new IOException("Demasiados jugadores para un archivo: " + cantidad);
+        }
+        int capacidad = Integer.highestOneBit((int) Math.max(16, cantidad * 2 - 1)) << 1;
+        long inicio = ENCABEZADO + 4L * capacidad;
+        long tamano = inicio + cantidad * TAMANO_REGISTRO;
+
+        Files.deleteIfExists(archivo);
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer[] trozos = mapear(canal, FileChannel.MapMode.READ_WRITE, tamano);
+            trozos[0].putInt(0, MAGIA);
+            trozos[0].putInt(4, FORMATO);
+            trozos[0].putInt(8, primerSegmento);
+            trozos[0].putInt(12, capacidad);
+            AlmacenJugadores nuevo = new AlmacenJugadores(trozos);
+            int registro = 0;
+            if (anterior != null) {
+                for (int i = 0; i < anterior.cantidad; i++) {
+                    long posicion = anterior.posicionRegistro(i);
+                    String nombre = anterior.leerNombre(posicion);
+                    Feria.Jugador jugador = memoria.get(nombre);
+                    if (jugador != null) {
+                        nuevo.escribirRegistro(registro++, nombre, jugador.estadoCreditos(), jugador.estadoPuntos());
+                    } else {
+                        nuevo.escribirRegistro(registro++, nombre,
+                                anterior.leerLong(posicion + 48), anterior.leerLong(posicion + 56));
+                    }
+                }
+            }
+            for (Feria.Jugador jugador : nuevos) {
+                nuevo.escribirRegistro(registro++, jugador.getNombre(), jugador.estadoCreditos(), jugador.estadoPuntos());
+            }
+            nuevo.escribirInt(16, registro);
+            for (MappedByteBuffer trozo : nuevo.trozos) {
+                trozo.force();
+            }
+        }
+    }
+
+    private void escribirRegistro(int registro, String nombre, long estadoCreditos, long estadoPuntos) {
+        byte[] bytes = nombre.getBytes(StandardCharsets.UTF_8);
+        long posicion = posicionRegistro(registro);
+        escribirShort(posicion, (short) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            trozo(posicion + 2 + i).put(desplazamiento(posicion + 2 + i), bytes[i]);
+        }
+        escribirLong(posicion + 48, estadoCreditos);
+        escribirLong(posicion + 56, estadoPuntos);
+
+        int ranura = hash(bytes) & (capacidad - 1);
+        while (leerInt(ENCABEZADO + 4L * ranura) != 0) {
+            ranura = (ranura + 1) & (capacidad - 1);
+        }
+        escribirInt(ENCABEZADO + 4L * ranura, registro + 1);
+    }
+
+    /**
+     * @return El número de registro del nombre, o -1 si no está.
+     */
+    private int buscarRegistro(byte[] nombre) {
+        int ranura = hash(nombre) & (capacidad - 1);
+        while (true) {
+            int registro = leerInt(ENCABEZADO + 4L * ranura) - 1;
+            if (registro < 0) {
+                return -1;
+            }
+            if (mismoNombre(posicionRegistro(registro), nombre)) {
+                return registro;
+            }
+            ranura = (ranura + 1) & (capacidad - 1);
+        }
+    }
+
+    private boolean mismoNombre(long posicion, byte[] nombre) {
+        if (leerShort(posicion) != nombre.length) {
+            return false;
+        }
+        for (int i = 0; i < nombre.length; i++) {
+            if (trozo(posicion + 2 + i).get(desplazamiento(posicion + 2 + i)) != nombre[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String leerNombre(long posicion) {
+        byte[] bytes = new byte[leerShort(posicion)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = trozo(posicion + 2 + i).get(desplazamiento(posicion + 2 + i));
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long posicionRegistro(int registro) {
+        return inicioRegistros + (long) registro * TAMANO_REGISTRO;
+    }
+
+    /**
+     * FNV-1a de 32 bits sobre los bytes del nombre.
+     */
+    private static int hash(byte[] bytes) {
+        int h = 0x811C9DC5;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // Los registros miden 64 bytes y el índice son ints, así que ningún valor cruza dos trozos
+    private MappedByteBuffer trozo(long posicion) {
+        return trozos[(int) (posicion >>> BITS_TROZO)];
+    }
+
+    private static int desplazamiento(long posicion) {
+        return (int) (posicion & (TAMANO_TROZO - 1));
+    }
+
+    private int leerInt(long posicion) {
+        return trozo(posicion).getInt(desplazamiento(posicion));
+    }
+
+    private short leerShort(long posicion) {
+        return trozo(posicion).getShort(desplazamiento(posicion));
+    }
+
+    private long leerLong(long posicion) {
+        return trozo(posicion).getLong(desplazamiento(posicion));
+    }
+
+    private void escribirInt(long posicion, int valor) {
+        trozo(posicion).putInt(desplazamiento(posicion), valor);
+    }
+
+    private void escribirShort(long posicion, short valor) {
+        trozo(posicion).putShort(desplazamiento(posicion), valor);
+    }
+
+    private void escribirLong(long posicion, long valor) {
+        trozo(posicion).putLong(desplazamiento(posicion), valor);
+    }
+
+    private static MappedByteBuffer[] mapear(FileChannel canal, FileChannel.MapMode modo, long tamano)
+            throws IOException {
+        MappedByteBuffer[] trozos = new MappedByteBuffer[(int) ((tamano + TAMANO_TROZO - 1) >>> BITS_TROZO)];
+        for (int i = 0; i < trozos.length; i++) {
+            long inicio = (long) i << BITS_TROZO;
+            trozos[i] = canal.map(modo, inicio, Math.min(TAMANO_TROZO, tamano - inicio));
+        }
+        return trozos;
+    }
+}
@@ -0,0 +1,426 @@
+/**
+ *  Análisis de las partidas archivadas.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Lee los segmentos de {@link ArchivoPartidas} y saca estadísticas de todas
+ * las partidas: por juego, por primera columna en Conecta 4, movimientos
+ * contra el mínimo en Hanoi, la jugada en que el Cuadrado Mágico deja de
+ * tener solución y por jugador.
+ *
+ * Cada segmento se mapea a memoria y se recorre en un parallel stream, uno
+ * por tarea, con sus propias cuentas que al final se suman. Para cada
+ * registro solo se leen la cabecera fija y los primeros bits del
+ * encabezado; las jugadas se saltan con el largo del registro. Los
+ * jugadores se cuentan por la huella de su nombre en una tabla de
+ * direccionamiento abierto en un arreglo de long, sin crear objetos por
+ * registro; los nombres se leen solo para los que se muestran.
+ *
+ * Se usa con `java Feria --analizar [carpeta] [--mejores N]`.
+ */
+final class AnalizadorPartidas {
+    private static final MetricasFeria.Juego[] JUEGOS = MetricasFeria.Juego.values();
+
+    // Desde el inicio de un registro: el largo, el juego, el desenlace, las jugadas, la huella y el nombre
+    private static final int JUEGO = 4;
+    private static final int DESENLACE = 5;
+    private static final int JUGADAS = 6;
+    private static final int HUELLA = 10;
+    private static final int NOMBRE = 18;
+
+    private final Path directorio;
+    private final int mejores;
+
+    /**
+     * @param directorio La carpeta con los segmentos.
+     * @param mejores Cuántos jugadores mostrar.
+     */
+    AnalizadorPartidas(Path directorio, int mejores) {
+        this.directorio = directorio;
+        this.mejores = mejores;
+    }
+
+    /**
+     * Lee las opciones de la línea de comandos: `[carpeta] [--mejores N]`.
+     *
+     * @param args Los argumentos del programa.
+     * @param desde Dónde empiezan las opciones del análisis.
+     * @return El análisis configurado.
+     */
+    static AnalizadorPartidas desdeArgumentos(String[] args, int desde) {
+        Path directorio = Paths.get(Feria.directorioDatos);
+        int mejores = 10;
+        for (int i = desde; i < args.length; i++) {
+            if (args[i].equals("--mejores") && i + 1 < args.length) {
+                mejores = Integer.parseInt(args[++i]);
+            } else if (!args[i].startsWith("--")) {
+                directorio = Paths.get(args[i]);
+            } else {
+                throw new IllegalArgumentException("Uso: java Feria --analizar [carpeta] [--mejores N]");
+            }
+        }
+        return new AnalizadorPartidas(directorio, mejores);
+    }
+
+    /**
+     * Cuentas de un segmento, o de varios ya sumados.
+     */
+    private static final class Estadisticas {
+        long registros;
+        long bytes;
+        long incompletos;
+        final long[] partidas = new long[JUEGOS.length];
+        final long[] ganadas = new long[JUEGOS.length];
+        final long[] jugadas = new long[JUEGOS.length];
+
+        // Conecta 4: por dificultad (0 si juegan dos personas), primera columna y desenlace
+        final long[][][] conecta4 = new long[4][TableroConecta4.COLUMNAS][3];
+
+        // Hanoi terminadas por discos y postes: cuántas, sus movimientos y cuántas en el mínimo
+        final long[][] hanoi = new long[FrameStewart.MAXIMO_DISCOS + 1][FrameStewart.MAXIMO_POSTES + 1];
+        final long[][] movimientosHanoi = new long[FrameStewart.MAXIMO_DISCOS + 1][FrameStewart.MAXIMO_POSTES + 1];
+        final long[][] minimasHanoi = new long[FrameStewart.MAXIMO_DISCOS + 1][FrameStewart.MAXIMO_POSTES + 1];
+
+        // Cuadrado Mágico por tamaño: partidas y la jugada en que dejó de tener solución
+        final long[] magicos = new long[GeneradorMagico.TAMANO_MAXIMO + 1];
+        final long[][] fallos = new long[GeneradorMagico.TAMANO_MAXIMO + 1][GeneradorMagico.TAMANO_MAXIMO
+                * GeneradorMagico.TAMANO_MAXIMO + 1];
+
+        final Jugadores jugadores = new Jugadores();
+
+        /**
+         * Suma las cuentas de otro análisis a estas.
+         *
+         * @return Estas cuentas.
+         */
+        Estadisticas unir(Estadisticas otras) {
+            registros += otras.registros;
+            bytes += otras.bytes;
+            incompletos += otras.incompletos;
+            sumar(partidas, otras.partidas);
+            sumar(ganadas, otras.ganadas);
+            sumar(jugadas, otras.jugadas);
+            for (int dificultad = 0; dificultad < conecta4.length; dificultad++) {
+                for (int columna = 0; columna < TableroConecta4.COLUMNAS; columna++) {
+                    sumar(conecta4[dificultad][columna], otras.conecta4[dificultad][columna]);
+                }
+            }
+            for (int discos = 0; discos < hanoi.length; discos++) {
+                sumar(hanoi[discos], otras.hanoi[discos]);
+                sumar(movimientosHanoi[discos], otras.movimientosHanoi[discos]);
+                sumar(minimasHanoi[discos], otras.minimasHanoi[discos]);
+            }
+            sumar(magicos, otras.magicos);
+            for (int tamano = 0; tamano < fallos.length; tamano++) {
+                sumar(fallos[tamano], otras.fallos[tamano]);
+            }
+            jugadores.unir(otras.jugadores);
+            return this;
+        }
+
+        private static void sumar(long[] a, long[] b) {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+        }
+    }
+
+    /**
+     * Partidas y victorias por huella de nombre, con direccionamiento abierto
+     * y sondeo lineal. Cada jugador ocupa {@link #CAMPOS} longs seguidos en un
+     * solo arreglo (la huella, sus partidas, sus victorias y dónde está uno de
+     * sus registros), así contar a un jugador toca una sola línea de caché.
+     * La huella 0 marca una casilla vacía.
+     */
+    private static final class Jugadores {
+        static final int CAMPOS = 4;
+        static final int PARTIDAS = 1;
+        static final int GANADAS = 2;
+        // El segmento en los 32 bits altos y la posición del registro en los bajos
+        static final int REGISTRO = 3;
+
+        long[] casillas = new long[CAMPOS << 10];
+        int cantidad;
+
+        void contar(long huella, long partidas, long ganadas, long registro) {
+            if (huella == 0) {
+                huella = 1;
+            }
+            // Los bits altos de la huella revuelta; los bajos de FNV varían poco entre nombres parecidos
+            int bits = Integer.numberOfTrailingZeros(casillas.length / CAMPOS);
+            int casilla = (int) ((huella * 0x9E3779B97F4A7C15L) >>> (64 - bits)) * CAMPOS;
+            while (casillas[casilla] != 0 && casillas[casilla] != huella) {
+                casilla = (casilla + CAMPOS) & (casillas.length - 1);
+            }
+            if (casillas[casilla] == 0) {
+                casillas[casilla] = huella;
+                casillas[casilla + PARTIDAS] = partidas;
+                casillas[casilla + GANADAS] = ganadas;
+                casillas[casilla + REGISTRO] = registro;
+                if (++cantidad * 2 * CAMPOS > casillas.length) {
+                    crecer();
+                }
+                return;
+            }
+            casillas[casilla + PARTIDAS] += partidas;
+            casillas[casilla + GANADAS] += ganadas;
+        }
+
+        void unir(Jugadores otros) {
+            long[] suyas = otros.casillas;
+            for (int i = 0; i < suyas.length; i += CAMPOS) {
+                if (suyas[i] != 0) {
+                    contar(suyas[i], suyas[i + PARTIDAS], suyas[i + GANADAS], suyas[i + REGISTRO]);
+                }
+            }
+        }
+
+        private void crecer() {
+            Jugadores mayor = new Jugadores();
+            mayor.casillas = new long[casillas.length * 2];
+            mayor.unir(this);
+            casillas = mayor.casillas;
+        }
+    }
+
+    /**
+     * Analiza todos los segmentos e imprime el reporte.
+     *
+     * @throws IOException Si no se pudo leer la carpeta o un segmento.
+     */
+    void ejecutar() throws IOException {
+        List<Path> segmentos = ArchivoPartidas.segmentos(directorio);
+        if (segmentos.isEmpty()) {
+            System.out.println("No hay partidas archivadas en " + directorio.toAbsolutePath());
+            return;
+        }
+        long inicio = System.nanoTime();
+        Estadisticas total = IntStream.range(0, segmentos.size()).boxed().toList().parallelStream()
+                .map(indice -> analizar(indice, segmentos.get(indice)))
+                .reduce(Estadisticas::unir)
+                .orElseThrow();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        reportar(total, segmentos, segundos);
+    }
+
+    /**
+     * Recorre un segmento mapeado a memoria.
+     */
+    private static Estadisticas analizar(int indice, Path segmento) {
+        Estadisticas cuentas = new Estadisticas();
+        ByteBuffer datos = mapear(segmento);
+        if (datos.limit() < ArchivoPartidas.CABECERA_SEGMENTO || datos.getInt(0) != ArchivoPartidas.MAGIA
+                || datos.getInt(4) != ArchivoPartidas.FORMATO) {
+            System.out.println("Se ignora " + segmento.getFileName() + ": no es un segmento de partidas");
+            return cuentas;
+        }
+        int fin = datos.limit();
+        int posicion = ArchivoPartidas.CABECERA_SEGMENTO;
+        while (posicion + 4 <= fin) {
+            int largo = datos.getInt(posicion);
+            if (largo < ArchivoPartidas.CABECERA_REGISTRO || largo > fin - posicion - 4) {
+                // Un registro que quedó a medias al caerse la feria
+                cuentas.incompletos++;
+                break;
+            }
+            int juego = datos.get(posicion + JUEGO);
+            int desenlace = datos.get(posicion + DESENLACE);
+            int jugadas = datos.getInt(posicion + JUGADAS);
+            int historial = posicion + NOMBRE + 1 + (datos.get(posicion + NOMBRE) & 0xFF);
+            boolean gano = switch (JUEGOS[juego]) {
+                case CONECTA_4 -> {
+                    if (jugadas > 0) {
+                        int dificultad = (int) bits(datos, historial, 0, 2);
+                        int primera = (int) bits(datos, historial, 2, 3);
+                        cuentas.conecta4[dificultad][primera][desenlace]++;
+                    }
+                    yield desenlace == 1;
+                }
+                case TORRES_DE_HANOI -> {
+                    if (desenlace == 1) {
+                        int discos = (int) bits(datos, historial, 0, 7);
+                        int postes = (int) bits(datos, historial, 7, 4);
+                        cuentas.hanoi[discos][postes]++;
+                        cuentas.movimientosHanoi[discos][postes] += jugadas;
+                        if (jugadas == FrameStewart.minimo(discos, postes)) {
+                            cuentas.minimasHanoi[discos][postes]++;
+                        }
+                    }
+                    yield desenlace == 1;
+                }
+                case CUADRADO_MAGICO -> {
+                    int tamano = (int) bits(datos, historial, 0, 4);
+                    cuentas.magicos[tamano]++;
+                    if (desenlace == 0) {
+                        cuentas.fallos[tamano][jugadas]++;
+                    }
+                    yield desenlace == 2;
+                }
+                case SALVADO -> desenlace == 1;
+            };
+            cuentas.registros++;
+            cuentas.partidas[juego]++;
+            cuentas.jugadas[juego] += jugadas;
+            if (gano) {
+                cuentas.ganadas[juego]++;
+            }
+            cuentas.jugadores.contar(datos.getLong(posicion + HUELLA), 1, gano ? 1 : 0,
+                    (long) indice << 32 | posicion);
+            posicion += 4 + largo;
+        }
+        cuentas.bytes = posicion;
+        return cuentas;
+    }
+
+    /**
+     * Lee hasta 57 bits escritos con {@link Bits} desde el inicio del encabezado de un registro.
+     *
+     * @param datos El segmento.
+     * @param inicio Dónde empiezan los bits del registro.
+     * @param desde El primer bit.
+     * @param cuantos Cuántos bits.
+     */
+    private static long bits(ByteBuffer datos, int inicio, int desde, int cuantos) {
+        long valor = 0;
+        for (int i = inicio + ((desde + cuantos - 1) >>> 3); i >= inicio + (desde >>> 3); i--) {
+            valor = valor << 8 | (datos.get(i) & 0xFF);
+        }
+        return valor >>> (desde & 7) & ((1L << cuantos) - 1);
+    }
+
+    private static MappedByteBuffer mapear(Path segmento) {
+        try (FileChannel canal = FileChannel.open(segmento, StandardOpenOption.READ)) {
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo leer " + segmento, e);
+        }
+    }
+
+    private void reportar(Estadisticas total, List<Path> segmentos, double segundos) {
+        System.out.printf("Analizadas %d partidas (%d MB en %d segmentos) en %.2f s: %.0f partidas/s, %.0f MB/s%s%n",
+                total.registros, total.bytes >> 20, segmentos.size(), segundos, total.registros / segundos,
+                total.bytes / 1e6 / segundos,
+                total.incompletos > 0 ? "; " + total.incompletos + " registros a medias" : "");
+        for (MetricasFeria.Juego juego : JUEGOS) {
+            int i = juego.ordinal();
+            System.out.printf("  %s: %d partidas, %.1f%% ganadas, %.1f jugadas en promedio%n", juego.clave,
+                    total.partidas[i], porcentaje(total.ganadas[i], total.partidas[i]),
+                    total.jugadas[i] / (double) Math.max(1, total.partidas[i]));
+        }
+
+        String[] modos = {"dos personas", "contra la computadora fácil", "contra la computadora media",
+                "contra la computadora difícil"};
+        for (int dificultad = 0; dificultad < modos.length; dificultad++) {
+            long[][] porColumna = total.conecta4[dificultad];
+            long partidas = 0;
+            for (long[] desenlaces : porColumna) {
+                partidas += desenlaces[0] + desenlaces[1] + desenlaces[2];
+            }
+            if (partidas == 0) {
+                continue;
+            }
+            System.out.printf("  conecta4 %s, por primera columna (gana el 1 / gana el 2 / empate):%n",
+                    modos[dificultad]);
+            for (int columna = 0; columna < TableroConecta4.COLUMNAS; columna++) {
+                long[] desenlaces = porColumna[columna];
+                long suma = desenlaces[0] + desenlaces[1] + desenlaces[2];
+                System.out.printf("    %d: %d partidas, %.1f%% / %.1f%% / %.1f%%%n", columna, suma,
+                        porcentaje(desenlaces[1], suma), porcentaje(desenlaces[2], suma),
+                        porcentaje(desenlaces[0], suma));
+            }
+        }
+
+        System.out.println("  torresDeHanoi terminadas (discos x postes: partidas, movimientos en promedio"
+                + " contra el mínimo):");
+        for (int discos = 0; discos < total.hanoi.length; discos++) {
+            for (int postes = 0; postes < total.hanoi[discos].length; postes++) {
+                long terminadas = total.hanoi[discos][postes];
+                if (terminadas == 0) {
+                    continue;
+                }
+                long minimo = FrameStewart.minimo(discos, postes);
+                double promedio = total.movimientosHanoi[discos][postes] / (double) terminadas;
+                System.out.printf("    %dx%d: %d, %.2f contra %d (%+.2f%%), %.1f%% en el mínimo%n", discos, postes,
+                        terminadas, promedio, minimo, (promedio / minimo - 1) * 100,
+                        porcentaje(total.minimasHanoi[discos][postes], terminadas));
+            }
+        }
+
+        System.out.println("  cuadradoMagico, jugada en que el tablero deja de tener solución:");
+        for (int tamano = 0; tamano < total.magicos.length; tamano++) {
+            if (total.magicos[tamano] == 0) {
+                continue;
+            }
+            long[] porJugada = total.fallos[tamano];
+            long perdidas = 0;
+            long suma = 0;
+            int comun = 0;
+            for (int jugada = 0; jugada < porJugada.length; jugada++) {
+                perdidas += porJugada[jugada];
+                suma += porJugada[jugada] * jugada;
+                if (porJugada[jugada] > porJugada[comun]) {
+                    comun = jugada;
+                }
+            }
+            System.out.printf("    %dx%d: %d partidas, %.1f%% sin solución, en la jugada %.2f en promedio;"
+                            + " la más común es la %d (%.1f%%)%n", tamano, tamano, total.magicos[tamano],
+                    porcentaje(perdidas, total.magicos[tamano]), suma / (double) Math.max(1, perdidas), comun,
+                    porcentaje(porJugada[comun], perdidas));
+        }
+
+        reportarJugadores(total.jugadores, segmentos);
+    }
+
+    /**
+     * Muestra los jugadores con más partidas; sus nombres se leen del registro que se guardó de cada uno.
+     */
+    private void reportarJugadores(Jugadores jugadores, List<Path> segmentos) {
+        long[] casillas = jugadores.casillas;
+        int[] primeros = new int[Math.min(mejores, jugadores.cantidad)];
+        int cuantos = 0;
+        for (int i = 0; i < casillas.length; i += Jugadores.CAMPOS) {
+            if (casillas[i] == 0) {
+                continue;
+            }
+            // Inserción en los primeros, de más a menos partidas
+            int lugar = cuantos;
+            while (lugar > 0 && casillas[primeros[lugar - 1] + Jugadores.PARTIDAS] < casillas[i + Jugadores.PARTIDAS]) {
+                lugar--;
+            }
+            if (lugar < primeros.length) {
+                int hasta = Math.min(cuantos, primeros.length - 1);
+                System.arraycopy(primeros, lugar, primeros, lugar + 1, hasta - lugar);
+                primeros[lugar] = i;
+                cuantos = Math.min(cuantos + 1, primeros.length);
+            }
+        }
+        System.out.printf("  jugadores: %d distintos; con más partidas:%n", jugadores.cantidad);
+        for (int j = 0; j < cuantos; j++) {
+            int i = primeros[j];
+            long registro = casillas[i + Jugadores.REGISTRO];
+            ByteBuffer datos = mapear(segmentos.get((int) (registro >>> 32)));
+            int posicion = (int) registro;
+            byte[] nombre = new byte[datos.get(posicion + NOMBRE) & 0xFF];
+            datos.get(posicion + NOMBRE + 1, nombre);
+            System.out.printf("    %s: %d partidas, %.1f%% ganadas%n", new String(nombre, StandardCharsets.UTF_8),
+                    casillas[i + Jugadores.PARTIDAS],
+                    porcentaje(casillas[i + Jugadores.GANADAS], casillas[i + Jugadores.PARTIDAS]));
+        }
+    }
+
+    private static double porcentaje(long parte, long total) {
+        return parte * 100.0 / Math.max(1, total);
+    }
+}
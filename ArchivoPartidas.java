@@ -0,0 +1,267 @@
+/**
+ *  Archivo de las jugadas de las partidas terminadas.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Guarda cada partida terminada con todas sus jugadas en archivos de segmento
+ * (partidas-000001.seg, partidas-000002.seg...) en la carpeta de datos, para
+ * analizarlas después con {@link AnalizadorPartidas}. Las jugadas se anotan
+ * con {@link Bits} en los bits justos: 3 por columna de Conecta 4, 4 por cada
+ * par origen y destino de Hanoi con 3 o 4 postes. Una partida de Conecta 4
+ * ocupa unos 30 bytes y una de Hanoi con 6 discos unos 50.
+ *
+ * Cada segmento empieza con {@link #MAGIA} y {@link #FORMATO} y sigue con los
+ * registros, uno tras otro:
+ * - int: cuántos bytes siguen en el registro
+ * - byte: el juego (ordinal de {@link MetricasFeria.Juego})
+ * - byte: el desenlace, según el juego
+ * - int: cuántas jugadas hay
+ * - long: la huella del nombre del jugador ({@link #huella(byte[])})
+ * - byte y bytes: el largo del nombre y el nombre en UTF-8
+ * - el encabezado y las jugadas, en bits
+ * El encabezado y el desenlace de cada juego se describen en su partida.
+ *
+ * Anota el hilo de {@link TuberiaResultados}, no la sesión. Cada vez que la
+ * feria arranca empieza un segmento nuevo y cada segmento llega a lo más a
+ * {@link #TAMANO_SEGMENTO} bytes. Lo escrito se manda al archivo cuando la
+ * tubería no tiene resultados pendientes; si la feria se cae, el último
+ * registro puede quedar a medias y el analizador lo ignora. Con
+ * -Dferia.archivarPartidas=false no se anota nada.
+ */
+final class ArchivoPartidas {
+    static final boolean ACTIVO = Boolean.parseBoolean(System.getProperty("feria.archivarPartidas", "true"));
+
+    // "FPAR" y la versión del formato al inicio de cada segmento
+    static final int MAGIA = 0x46504152;
+    static final int FORMATO = 1;
+    static final int CABECERA_SEGMENTO = 8;
+
+    // Tamaño máximo de un segmento
+    static final long TAMANO_SEGMENTO = 64L << 20;
+
+    // Bytes fijos de un registro antes del nombre, sin contar el largo
+    static final int CABECERA_REGISTRO = 1 + 1 + 4 + 8 + 1;
+
+    private static final String PREFIJO = "partidas-";
+    private static final String SUFIJO = ".seg";
+
+    // Partidas y bytes anotados
+    static final LongAdder anotadas = new LongAdder();
+    static final LongAdder bytesAnotados = new LongAdder();
+
+    // El segmento abierto (null si no hay), su número y lo escrito en él
+    private static OutputStream salida;
+    private static int numero;
+    private static long escritos;
+
+    private ArchivoPartidas() {
+    }
+
+    /**
+     * Las jugadas de una partida mientras se juega. La partida escribe primero
+     * su encabezado (el modo, el tamaño...) y luego cada jugada; al terminar,
+     * {@link #registro} arma lo que se anota.
+     */
+    static final class Historial {
+        // Más de esto (1 MB) no se guarda: la partida no se archiva
+        private static final long MAXIMO_BITS = 1L << 23;
+
+        private final Bits bits = new Bits();
+        private long escritos;
+        private int jugadas;
+        private int desenlace;
+        private boolean iniciado;
+        private boolean descartado = !ACTIVO;
+
+        /**
+         * Escribe parte del encabezado; la partida cuenta como empezada.
+         */
+        void encabezado(long valor, int cuantos) {
+            iniciado = true;
+            escribir(valor, cuantos);
+        }
+
+        /**
+         * Escribe una jugada.
+         */
+        void jugada(long valor, int cuantos) {
+            jugadas++;
+            escribir(valor, cuantos);
+        }
+
+        /**
+         * @param desenlace Cómo terminó, según el juego.
+         */
+        void desenlace(int desenlace) {
+            this.desenlace = desenlace;
+        }
+
+        /**
+         * La partida no se archiva; por ejemplo, si se retomó y ya no se
+         * tienen las jugadas de antes de la pausa.
+         */
+        void descartar() {
+            descartado = true;
+        }
+
+        private void escribir(long valor, int cuantos) {
+            if (descartado) {
+                return;
+            }
+            escritos += cuantos;
+            if (escritos > MAXIMO_BITS) {
+                descartado = true;
+                return;
+            }
+            bits.escribir(valor, cuantos);
+        }
+
+        /**
+         * @param juego El juego.
+         * @param jugador El nombre de quien pagó la partida.
+         * @return El registro para {@link ArchivoPartidas#anotar(byte[])}, o null
+         *         si la partida no empezó o no se archiva.
+         */
+        byte[] registro(MetricasFeria.Juego juego, String jugador) {
+            if (!iniciado || descartado || juego == null) {
+                return null;
+            }
+            byte[] nombre = jugador.getBytes(StandardCharsets.UTF_8);
+            byte[] datos = bits.bytes();
+            ByteBuffer registro = ByteBuffer.allocate(4 + CABECERA_REGISTRO + nombre.length + datos.length);
+            registro.putInt(CABECERA_REGISTRO + nombre.length + datos.length)
+                    .put((byte) juego.ordinal())
+                    .put((byte) desenlace)
+                    .putInt(jugadas)
+                    .putLong(huella(nombre))
+                    .put((byte) nombre.length)
+                    .put(nombre)
+                    .put(datos);
+            return registro.array();
+        }
+    }
+
+    /**
+     * Agrega un registro al segmento abierto; abre uno nuevo si no hay o si ya
+     * no cabe.
+     *
+     * @param registro Lo que devolvió {@link Historial#registro}.
+     * @throws UncheckedIOException Si no se pudo escribir.
+     */
+    static synchronized void anotar(byte[] registro) {
+        try {
+            if (salida != null && escritos + registro.length > TAMANO_SEGMENTO) {
+                salida.close();
+                salida = null;
+            }
+            if (salida == null) {
+                abrir();
+            }
+            salida.write(registro);
+            escritos += registro.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        anotadas.increment();
+        bytesAnotados.add(registro.length);
+    }
+
+    /**
+     * Manda al archivo lo que se ha anotado.
+     */
+    static synchronized void vaciar() {
+        if (salida == null) {
+            return;
+        }
+        try {
+            salida.flush();
+        } catch (IOException e) {
+            System.err.println("No se pudo escribir el archivo de partidas: " + e);
+        }
+    }
+
+    /**
+     * Cierra el segmento abierto; si se anota otra partida, va en uno nuevo.
+     */
+    static synchronized void cerrar() {
+        if (salida == null) {
+            return;
+        }
+        try {
+            salida.close();
+        } catch (IOException e) {
+            System.err.println("No se pudo cerrar el archivo de partidas: " + e);
+        }
+        salida = null;
+    }
+
+    /**
+     * @param directorio La carpeta de datos.
+     * @return Los segmentos de la carpeta, en orden.
+     * @throws IOException Si no se pudo leer la carpeta.
+     */
+    static List<Path> segmentos(Path directorio) throws IOException {
+        List<Path> segmentos = new ArrayList<>();
+        if (!Files.isDirectory(directorio)) {
+            return segmentos;
+        }
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, PREFIJO + "*" + SUFIJO)) {
+            for (Path archivo : archivos) {
+                segmentos.add(archivo);
+            }
+        }
+        segmentos.sort(null);
+        return segmentos;
+    }
+
+    /**
+     * FNV-1a de 64 bits de un nombre, para contar por jugador sin leer los nombres.
+     *
+     * @param nombre El nombre en UTF-8.
+     * @return La huella.
+     */
+    static long huella(byte[] nombre) {
+        long huella = 0xcbf29ce484222325L;
+        for (byte letra : nombre) {
+            huella = (huella ^ (letra & 0xFF)) * 0x100000001b3L;
+        }
+        return huella;
+    }
+
+    /**
+     * Abre el segmento siguiente al último que hay en la carpeta de datos.
+     */
+    private static void abrir() throws IOException {
+        Path directorio = Paths.get(Feria.directorioDatos);
+        if (numero == 0) {
+            for (Path segmento : segmentos(directorio)) {
+                String nombre = segmento.getFileName().toString();
+                try {
+                    numero = Math.max(numero, Integer.parseInt(
+                            nombre.substring(PREFIJO.length(), nombre.length() - SUFIJO.length())));
+                } catch (NumberFormatException e) {
+                    // No es un segmento de este archivo
+                }
+            }
+        }
+        numero++;
+        Files.createDirectories(directorio);
+        Path archivo = directorio.resolve(String.format("%s%06d%s", PREFIJO, numero, SUFIJO));
+        salida = new BufferedOutputStream(Files.newOutputStream(archivo,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 1 << 16);
+        salida.write(ByteBuffer.allocate(CABECERA_SEGMENTO).putInt(MAGIA).putInt(FORMATO).array());
+        escritos = CABECERA_SEGMENTO;
+    }
+}
@@ -0,0 +1,518 @@
+/**
+ *  Bitácora (write-ahead log) de los cambios de los jugadores.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Guarda cada registro, cambio de créditos y cambio de puntos en un archivo
+ * de solo anexar, para que un fallo del proceso no pierda nada.
+ *
+ * Las sesiones solo copian el evento a un búfer en memoria; un hilo escritor
+ * escribe todo lo acumulado y hace un solo fsync por lote (group commit).
+ * Cuando un segmento crece demasiado se abre otro y, en segundo plano, se
+ * escribe una foto de todos los jugadores ({@link AlmacenJugadores}); los
+ * segmentos que la foto ya incluye se borran.
+ *
+ * Cada evento lleva el valor final y la versión del jugador (ver
+ * {@link Feria.Jugador}), no una diferencia. Así aplicar un evento dos veces,
+ * o en otro orden, da el mismo resultado: la versión más alta gana. Gracias a
+ * eso la foto se toma sin detener a nadie y al recuperar se puede repetir la
+ * cola de la bitácora sobre una foto que ya incluye parte de ella.
+ *
+ * Si el registro es un {@link CacheJugadores}, la foto se escribe con lo que
+ * él tiene fuera de ella y el registro puede pedir una antes de que el
+ * segmento se llene.
+ */
+class BitacoraJugadores implements Closeable {
+    // Tipos de evento
+    static final byte REGISTRO = 1;
+    static final byte CREDITOS = 2;
+    static final byte PUNTOS = 3;
+
+    // Primeros bytes de la foto en el formato de flujo de la versión anterior
+    private static final int MAGIA_FOTO_ANTERIOR = 0x46455231;
+
+    // Tamaño a partir del cual se cambia de segmento y se toma una foto
+    private static final long TAMANO_SEGMENTO = 64L << 20;
+
+    // Si el escritor se atrasa tanto, las sesiones esperan a que libere espacio
+    private static final int MAXIMO_PENDIENTE = 16 << 20;
+
+    private final Path directorio;
+    private final Path foto;
+    private final Map<String, Feria.Jugador> jugadores;
+
+    // El registro si guarda solo parte de los jugadores en memoria, o null
+    private final CacheJugadores cache;
+
+    // Última foto; se reemplaza al terminar cada compactación
+    private volatile AlmacenJugadores almacen;
+
+    // Todo lo que sigue se protege con `candado`
+    private final ReentrantLock candado = new ReentrantLock();
+    private final Condition hayDatos = candado.newCondition();
+    private final Condition hayAvance = candado.newCondition();
+    private ByteArrayOutputStream pendiente = new ByteArrayOutputStream(1 << 16);
+    private ByteArrayOutputStream enEscritura = new ByteArrayOutputStream(1 << 16);
+    private long posicionAnotada;
+    private long posicionDurable;
+    private boolean cerrando;
+    private boolean fotoPedida;
+
+    // Lo que hizo fallar al escritor; se lee sin candado para rechazar cambios antes de hacerlos
+    private volatile IOException falla;
+
+    // Solo los usa el hilo escritor
+    private FileChannel segmento;
+    private int numeroSegmento;
+    private long tamanoSegmento;
+
+    private final Thread escritor;
+    private final ExecutorService compactador = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "compactador-bitacora");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    /**
+     * Abre la última foto y repite encima los segmentos que le siguen; solo los
+     * jugadores que aparecen en esos segmentos se cargan a memoria.
+     * Deja la bitácora lista para anotar en un segmento nuevo.
+     *
+     * @param directorio Directorio donde viven la foto y los segmentos.
+     * @param nombreFoto Nombre del archivo de la foto.
+     * @param jugadores Mapa que se llena con los jugadores que se cargan.
+     * @return La bitácora abierta.
+     * @throws IOException Si no se puede leer o crear ningún archivo.
+     */
+    static BitacoraJugadores abrir(Path directorio, String nombreFoto, Map<String, Feria.Jugador> jugadores)
+            throws IOException {
+        Files.createDirectories(directorio);
+        Path foto = directorio.resolve(nombreFoto);
+        long inicio = System.nanoTime();
+
+        AlmacenJugadores almacen = null;
+        int primerSegmento;
+        if (AlmacenJugadores.esAlmacen(foto)) {
+            almacen = AlmacenJugadores.abrir(foto);
+            primerSegmento = almacen.primerSegmento();
+        } else {
+            primerSegmento = leerFotoAnterior(foto, jugadores);
+        }
+        // Quien sale de memoria mientras se repite la bitácora vuelve a esta foto
+        if (jugadores instanceof CacheJugadores cache) {
+            cache.usarAlmacen(almacen);
+        }
+
+        long eventos = 0;
+        int ultimoSegmento = primerSegmento - 1;
+        for (int numero : segmentosExistentes(directorio)) {
+            if (numero >= primerSegmento) {
+                eventos += repetir(rutaSegmento(directorio, numero), jugadores, almacen);
+            }
+            ultimoSegmento = Math.max(ultimoSegmento, numero);
+        }
+
+        System.out.printf("Abierto el archivo con %d jugadores y repetidos %d eventos en %d ms.%n",
+                almacen == null ? jugadores.size() : almacen.cantidad(), eventos,
+                (System.nanoTime() - inicio) / 1_000_000);
+        // Nunca se anexa a un segmento viejo: su final pudo quedar a medias
+        return new BitacoraJugadores(directorio, foto, jugadores, almacen, ultimoSegmento + 1);
+    }
+
+    private BitacoraJugadores(Path directorio, Path foto, Map<String, Feria.Jugador> jugadores,
+                              AlmacenJugadores almacen, int numeroSegmento) throws IOException {
+        this.directorio = directorio;
+        this.foto = foto;
+        this.jugadores = jugadores;
+        this.cache = jugadores instanceof CacheJugadores registro ? registro : null;
+        this.almacen = almacen;
+        if (cache != null) {
+            cache.alPedirFoto(this::pedirFoto);
+        }
+        abrirSegmento(numeroSegmento);
+        escritor = new Thread(this::escribir, "escritor-bitacora");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * @return La última foto de los jugadores, o null si todavía no hay ninguna.
+     */
+    AlmacenJugadores almacen() {
+        return almacen;
+    }
+
+    /**
+     * Anota el registro de un jugador nuevo.
+     *
+     * @param nombre El nombre del jugador.
+     * @param creditos Sus créditos iniciales.
+     */
+    void anotarRegistro(String nombre, int creditos) {
+        anotar(REGISTRO, nombre, 0, creditos);
+    }
+
+    /**
+     * Anota un cambio en los créditos o puntos de un jugador.
+     *
+     * @param tipo {@link #CREDITOS} o {@link #PUNTOS}.
+     * @param nombre El nombre del jugador.
+     * @param version La versión del valor después del cambio.
+     * @param valor El valor después del cambio.
+     */
+    void anotar(byte tipo, String nombre, int version, int valor) {
+        revisar();
+        byte[] registro = codificar(tipo, nombre, version, valor);
+        candado.lock();
+        try {
+            while (pendiente.size() >= MAXIMO_PENDIENTE && !cerrando && falla == null) {
+                hayAvance.awaitUninterruptibly();
+            }
+            revisar();
+            pendiente.write(registro, 0, registro.length);
+            posicionAnotada += registro.length;
+            hayDatos.signal();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    /**
+     * Falla si el escritor ya no puede escribir: desde entonces nada de lo
+     * que se anote llegaría a disco, así que los cambios se rechazan antes de
+     * hacerse, como {@link #sincronizar()} rechaza guardar. Si el escritor
+     * falla entre esta revisión y {@link #anotar}, quien ya hizo el cambio en
+     * memoria lo deshace.
+     *
+     * @throws UncheckedIOException Con el error del escritor como causa.
+     */
+    void revisar() {
+        IOException error = falla;
+        if (error != null) {
+            throw new UncheckedIOException("La bitácora no puede escribir; no se aceptan cambios", error);
+        }
+    }
+
+    /**
+     * Espera a que todo lo anotado hasta ahora esté en disco.
+     *
+     * @throws IOException Si el escritor no pudo escribir.
+     */
+    void sincronizar() throws IOException {
+        candado.lock();
+        try {
+            long objetivo = posicionAnotada;
+            while (posicionDurable < objetivo && falla == null) {
+                hayAvance.awaitUninterruptibly();
+            }
+            if (falla != null) {
+                throw falla;
+            }
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    /**
+     * Pide al escritor que cambie de segmento y tome una foto aunque el
+     * segmento no esté lleno.
+     */
+    void pedirFoto() {
+        candado.lock();
+        try {
+            fotoPedida = true;
+            hayDatos.signal();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    /**
+     * Escribe lo pendiente, toma una foto final y borra los segmentos. Si lo
+     * interrumpen antes de que termine la compactación en segundo plano, no
+     * toma la foto (las dos escribirían el mismo archivo temporal); los
+     * segmentos se quedan y se repiten al abrir la bitácora otra vez.
+     */
+    @Override
+    public void close() throws IOException {
+        sincronizar();
+        candado.lock();
+        try {
+            cerrando = true;
+            hayDatos.signal();
+        } finally {
+            candado.unlock();
+        }
+        boolean compactadorTermino = false;
+        try {
+            escritor.join();
+            compactador.shutdown();
+            while (!compactador.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.out.println("Esperando a que termine de compactarse la bitácora...");
+            }
+            compactadorTermino = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segmento.close();
+        if (compactadorTermino) {
+            compactar(numeroSegmento + 1);
+        }
+    }
+
+    /**
+     * Bucle del hilo escritor: toma todo lo acumulado, lo escribe y hace un solo fsync.
+     */
+    private void escribir() {
+        while (true) {
+            long hasta;
+            boolean foto;
+            candado.lock();
+            try {
+                while (pendiente.size() == 0 && !cerrando && !fotoPedida) {
+                    hayDatos.awaitUninterruptibly();
+                }
+                if (pendiente.size() == 0 && cerrando) {
+                    return;
+                }
+                ByteArrayOutputStream lote = pendiente;
+                pendiente = enEscritura;
+                enEscritura = lote;
+                hasta = posicionAnotada;
+                foto = fotoPedida;
+                fotoPedida = false;
+            } finally {
+                candado.unlock();
+            }
+
+            try {
+                enEscritura.writeTo(Channels.newOutputStream(segmento));
+                segmento.force(false);
+                tamanoSegmento += enEscritura.size();
+                enEscritura.reset();
+                if (tamanoSegmento >= TAMANO_SEGMENTO || foto) {
+                    rotar();
+                }
+            } catch (IOException e) {
+                candado.lock();
+                try {
+                    falla = e;
+                    hayAvance.signalAll();
+                } finally {
+                    candado.unlock();
+                }
+                return;
+            }
+
+            candado.lock();
+            try {
+                posicionDurable = hasta;
+                hayAvance.signalAll();
+            } finally {
+                candado.unlock();
+            }
+        }
+    }
+
+    /**
+     * Cierra el segmento actual, abre el siguiente y pide una foto en segundo plano.
+     */
+    private void rotar() throws IOException {
+        segmento.close();
+        int siguiente = numeroSegmento + 1;
+        abrirSegmento(siguiente);
+        compactador.execute(() -> {
+            try {
+                compactar(siguiente);
+            } catch (IOException e) {
+                System.out.println("No se pudo compactar la bitácora: " + e.getMessage());
+            }
+        });
+    }
+
+    private void abrirSegmento(int numero) throws IOException {
+        segmento = FileChannel.open(rutaSegmento(directorio, numero),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        numeroSegmento = numero;
+        tamanoSegmento = segmento.size();
+    }
+
+    /**
+     * Escribe una foto de todos los jugadores y borra los segmentos anteriores
+     * a `primerSegmento`. Todos los eventos de esos segmentos ya se aplicaron en
+     * memoria antes de que se cerraran, así que la foto los incluye.
+     *
+     * @param primerSegmento El primer segmento que la foto no incluye por completo.
+     */
+    private void compactar(int primerSegmento) throws IOException {
+        Path temporal = foto.resolveSibling(foto.getFileName() + ".tmp");
+        Map<String, Feria.Jugador> memoria = cache != null ? cache.empezarFoto() : jugadores;
+        try {
+            AlmacenJugadores.escribir(temporal, primerSegmento, almacen, memoria);
+            Files.move(temporal, foto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            sincronizarDirectorio();
+            almacen = AlmacenJugadores.abrir(foto);
+        } finally {
+            // Si algo falló, el registro sigue con la foto anterior
+            if (cache != null) {
+                cache.terminarFoto(almacen);
+            }
+        }
+
+        for (int numero : segmentosExistentes(directorio)) {
+            if (numero < primerSegmento) {
+                Files.deleteIfExists(rutaSegmento(directorio, numero));
+            }
+        }
+    }
+
+    private void sincronizarDirectorio() {
+        try (FileChannel dir = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Algunos sistemas no permiten abrir directorios; el rename ya es atómico
+        }
+    }
+
+    /**
+     * Lee a memoria una foto escrita como flujo por la versión anterior, si existe.
+     * La siguiente compactación la reescribe en el formato de {@link AlmacenJugadores}.
+     *
+     * @return El primer segmento que hay que repetir encima de la foto.
+     */
+    private static int leerFotoAnterior(Path foto, Map<String, Feria.Jugador> jugadores) throws IOException {
+        if (!Files.exists(foto)) {
+            return 0;
+        }
+        try (DataInputStream entrada = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(foto), 1 << 16))) {
+            if (entrada.readInt() != MAGIA_FOTO_ANTERIOR) {
+                System.out.println("El archivo de jugadores tiene un formato anterior y se ignora.");
+                return 0;
+            }
+            int primerSegmento = entrada.readInt();
+            while (entrada.readByte() != 0) {
+                String nombre = entrada.readUTF();
+                Feria.Jugador jugador = new Feria.Jugador(nombre, 0);
+                jugador.restaurar(entrada.readLong(), entrada.readLong());
+                jugadores.put(nombre, jugador);
+            }
+            return primerSegmento;
+        } catch (EOFException e) {
+            System.out.println("El archivo de jugadores está incompleto y se ignora.");
+            return 0;
+        }
+    }
+
+    /**
+     * Aplica los eventos de un segmento. Se detiene en el primer evento
+     * incompleto o dañado, que solo puede ser el último antes de un fallo.
+     *
+     * @return Cuántos eventos se aplicaron.
+     */
+    private static long repetir(Path ruta, Map<String, Feria.Jugador> jugadores, AlmacenJugadores almacen)
+            throws IOException {
+        long eventos = 0;
+        CRC32C crc = new CRC32C();
+        try (DataInputStream entrada = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(ruta), 1 << 16))) {
+            while (true) {
+                int longitud = entrada.readInt();
+                int suma = entrada.readInt();
+                if (longitud <= 0 || longitud > 1 << 20) {
+                    break;
+                }
+                byte[] cuerpo = new byte[longitud];
+                entrada.readFully(cuerpo);
+                crc.reset();
+                crc.update(cuerpo);
+                if ((int) crc.getValue() != suma) {
+                    break;
+                }
+                aplicar(new DataInputStream(new ByteArrayInputStream(cuerpo)), jugadores, almacen);
+                eventos++;
+            }
+        } catch (EOFException e) {
+            // Fin del segmento (o evento cortado por el fallo)
+        }
+        return eventos;
+    }
+
+    private static void aplicar(DataInputStream evento, Map<String, Feria.Jugador> jugadores,
+                                AlmacenJugadores almacen) throws IOException {
+        byte tipo = evento.readByte();
+        String nombre = evento.readUTF();
+        int version = evento.readInt();
+        int valor = evento.readInt();
+        // Se sigue con el jugador que quedó en el mapa: una TablaJugadores guarda una copia
+        Feria.Jugador jugador = jugadores.computeIfAbsent(nombre, n -> {
+            Feria.Jugador guardado = almacen == null ? null : almacen.buscar(n);
+            return guardado != null ? guardado : new Feria.Jugador(n, tipo == REGISTRO ? valor : 0);
+        });
+        if (tipo == CREDITOS) {
+            jugador.restaurarCreditos(version, valor);
+        } else if (tipo == PUNTOS) {
+            jugador.restaurarPuntos(version, valor);
+        }
+    }
+
+    /**
+     * Codifica un evento como [longitud][crc32c][tipo, nombre, versión, valor].
+     */
+    private static byte[] codificar(byte tipo, String nombre, int version, int valor) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + nombre.length());
+            DataOutputStream salida = new DataOutputStream(bytes);
+            salida.writeInt(0);
+            salida.writeInt(0);
+            salida.writeByte(tipo);
+            salida.writeUTF(nombre);
+            salida.writeInt(version);
+            salida.writeInt(valor);
+            byte[] registro = bytes.toByteArray();
+            CRC32C crc = new CRC32C();
+            crc.update(registro, 8, registro.length - 8);
+            ByteBuffer encabezado = ByteBuffer.wrap(registro);
+            encabezado.putInt(registro.length - 8);
+            encabezado.putInt((int) crc.getValue());
+            return registro;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // No ocurre al escribir en memoria
+        }
+    }
+
+    private static Path rutaSegmento(Path directorio, int numero) {
+        return directorio.resolve(String.format("jugadores-%06d.log", numero));
+    }
+
+    /**
+     * @return Los números de los segmentos que hay en el directorio, en orden.
+     */
+    private static List<Integer> segmentosExistentes(Path directorio) throws IOException {
+        List<Integer> numeros = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "jugadores-*.log")) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                try {
+                    numeros.add(Integer.parseInt(nombre.substring("jugadores-".length(), nombre.length() - 4)));
+                } catch (NumberFormatException e) {
+                    // No es un segmento de la bitácora
+                }
+            }
+        }
+        Collections.sort(numeros);
+        return numeros;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ *  Escritura y lectura de valores de pocos bits.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.Arrays;
+
+/**
+ * Empaca valores de cualquier cantidad de bits (hasta 64) uno tras otro en un
+ * arreglo de bytes, sin redondear a bytes enteros: una casilla de 4x4 ocupa
+ * 4 bits y un poste de Hanoi 2. Se usa para guardar partidas en pocos bytes.
+ * Los valores se leen en el mismo orden en que se escribieron.
+ */
+final class Bits {
+    private byte[] datos;
+
+    // Bits escritos, o la posición de lectura
+    private int posicion;
+
+    /**
+     * Crea un empaque vacío para escribir.
+     */
+    Bits() {
+        this.datos = new byte[16];
+    }
+
+    /**
+     * Crea un empaque para leer bytes ya escritos.
+     *
+     * @param datos Lo que devolvió {@link #bytes()}.
+     */
+    Bits(byte[] datos) {
+        this.datos = datos;
+    }
+
+    /**
+     * Agrega los bits más bajos de un valor.
+     *
+     * @param valor El valor; solo se guardan sus `cuantos` bits más bajos.
+     * @param cuantos Cuántos bits, de 0 a 64.
+     * @return Este empaque.
+     */
+    Bits escribir(long valor, int cuantos) {
+        if (posicion + cuantos > datos.length * 8) {
+            datos = Arrays.copyOf(datos, Math.max(datos.length * 2, (posicion + cuantos + 7) / 8));
+        }
+        for (int i = 0; i < cuantos; i++) {
+            if ((valor >>> i & 1) != 0) {
+                datos[posicion >>> 3] |= (byte) (1 << (posicion & 7));
+            }
+            posicion++;
+        }
+        return this;
+    }
+
+    /**
+     * Lee el siguiente valor.
+     *
+     * @param cuantos Cuántos bits ocupa, de 0 a 64.
+     * @return El valor, sin signo.
+     */
+    long leer(int cuantos) {
+        long valor = 0;
+        for (int i = 0; i < cuantos; i++) {
+            if ((datos[posicion >>> 3] >>> (posicion & 7) & 1) != 0) {
+                valor |= 1L << i;
+            }
+            posicion++;
+        }
+        return valor;
+    }
+
+    /**
+     * @return Lo escrito, en los bytes justos.
+     */
+    byte[] bytes() {
+        return Arrays.copyOf(datos, (posicion + 7) / 8);
+    }
+
+    /**
+     * @param valores Cuántos valores distintos hay que poder guardar.
+     * @return Cuántos bits se necesitan para guardar un valor entre 0 y valores - 1.
+     */
+    static int ancho(int valores) {
+        return valores <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(valores - 1);
+    }
+}
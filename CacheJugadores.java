@@ -0,0 +1,507 @@
+/**
+ *  Registro de jugadores con un límite de jugadores en memoria.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Registro que guarda en memoria a lo más {@link #capacidad} jugadores, los
+ * que más se usan; los demás viven en la foto de {@link AlmacenJugadores}, que
+ * ya sirve de segundo nivel: {@link Feria#buscarJugador(String)} trae de ahí a
+ * quien no está en memoria.
+ *
+ * Para elegir a quién sacar se usa el algoritmo del reloj (CLOCK, una
+ * aproximación de LRU): los jugadores ocupan las casillas de un anillo y cada
+ * búsqueda que los encuentra les pone la marca de usado. Cuando hace falta una
+ * casilla, la manecilla avanza quitando marcas hasta dar con un jugador sin
+ * ella, que es el que sale. Encontrar a un jugador cuesta una búsqueda en un
+ * mapa concurrente y, si no tenía la marca, una escritura; sin candados.
+ *
+ * Al salir, su estado se devuelve a su registro de la foto, en el mismo lugar
+ * y solo si la versión es más nueva (si no cambió no se escribe nada). Quien
+ * no está en la foto (se registró después de tomarla) espera en memoria, como
+ * dos números, a la siguiente foto; si se juntan más de la mitad de
+ * {@link #capacidad}, se pide una a la bitácora.
+ *
+ * Un jugador que sale puede seguir en uso (una sesión o la tubería de
+ * resultados lo tienen todavía): se recuerda con una referencia débil y, si
+ * lo vuelven a buscar, regresa el mismo objeto, así que nunca hay dos
+ * jugadores con el mismo nombre. Si cambia después de salir, el cambio se
+ * devuelve a la foto al momento (ver {@link Feria.Jugador#desalojar}). La
+ * clasificación sigue guardando un nodo (nombre y valor) por jugador, pero no
+ * su objeto.
+ *
+ * Meter y sacar jugadores toma el candado del registro; también las
+ * búsquedas que van a la foto. Se elige con -Dferia.registro=cache y el
+ * límite con -Dferia.cacheJugadores=N (65 536 de manera predeterminada).
+ */
+final class CacheJugadores extends AbstractMap<String, Feria.Jugador>
+        implements ConcurrentMap<String, Feria.Jugador> {
+    static final int CAPACIDAD = Math.max(16, Integer.getInteger("feria.cacheJugadores", 1 << 16));
+
+    // Búsquedas que encontraron al jugador en memoria, las que no, jugadores que salieron y escrituras en la foto
+    static final LongAdder aciertos = new LongAdder();
+    static final LongAdder fallos = new LongAdder();
+    static final LongAdder desalojos = new LongAdder();
+    static final LongAdder escrituras = new LongAdder();
+
+    // Jugadores que salieron y se volvieron a buscar mientras alguien los tenía
+    static final LongAdder recuperados = new LongAdder();
+
+    private final int capacidad;
+
+    // Los jugadores en memoria; las búsquedas solo leen este mapa
+    private final ConcurrentHashMap<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    // Lo que sigue se cambia con el candado del registro
+    private final Entrada[] reloj;
+    private int ocupadas;
+    private int manecilla;
+
+    // Los que salieron y siguen vivos en algún lado
+    private final Map<String, Fantasma> fantasmas = new HashMap<>();
+    private final ReferenceQueue<Feria.Jugador> muertos = new ReferenceQueue<>();
+
+    // Los que salieron y no están en la foto: estado de créditos y de puntos
+    private final Map<String, long[]> sinFoto = new HashMap<>();
+
+    // Estados devueltos mientras se escribe una foto, para pasarlos a la nueva
+    private final Map<String, long[]> durante = new HashMap<>();
+
+    // Los que acaban de salir y todavía tienen un cambio pendiente en la clasificación
+    private final ConcurrentLinkedQueue<Feria.Jugador> porSoltar = new ConcurrentLinkedQueue<>();
+
+    private AlmacenJugadores almacen;
+    private Runnable pedirFoto;
+    private boolean tomandoFoto;
+    private boolean fotoPedida;
+
+    /**
+     * Un jugador en memoria y su marca de usado. La marca se escribe sin
+     * candado: si dos hilos se cruzan, el reloj solo pierde una vuelta.
+     */
+    private static final class Entrada {
+        final Feria.Jugador jugador;
+        boolean usado;
+
+        Entrada(Feria.Jugador jugador) {
+            this.jugador = jugador;
+        }
+    }
+
+    /**
+     * Referencia débil a un jugador que salió, con su nombre para quitarla del
+     * mapa cuando el recolector se lo lleva.
+     */
+    private static final class Fantasma extends WeakReference<Feria.Jugador> {
+        final String nombre;
+
+        Fantasma(Feria.Jugador jugador, ReferenceQueue<Feria.Jugador> cola) {
+            super(jugador, cola);
+            this.nombre = jugador.getNombre();
+        }
+    }
+
+    /**
+     * @param capacidad Cuántos jugadores se guardan en memoria como máximo.
+     */
+    CacheJugadores(int capacidad) {
+        this.capacidad = capacidad;
+        this.reloj = new Entrada[capacidad];
+    }
+
+    /**
+     * Cambia la foto donde se devuelven los jugadores que salen. Mientras no
+     * haya una, los que salen esperan en memoria como los que no están en la foto.
+     *
+     * @param almacen La foto abierta.
+     */
+    synchronized void usarAlmacen(AlmacenJugadores almacen) {
+        this.almacen = almacen;
+    }
+
+    /**
+     * @param pedirFoto Lo que se llama para pedir una foto cuando hay
+     *                  demasiados jugadores fuera de ella.
+     */
+    synchronized void alPedirFoto(Runnable pedirFoto) {
+        this.pedirFoto = pedirFoto;
+    }
+
+    /**
+     * Empieza una foto: desde ahora cada estado que se devuelve se guarda
+     * también para pasarlo a la foto nueva.
+     *
+     * @return Una copia de los jugadores que no están en la foto actual con su
+     *         estado más nuevo: los de memoria, los que salieron y siguen vivos
+     *         y los que esperan la foto.
+     */
+    synchronized Map<String, Feria.Jugador> empezarFoto() {
+        tomandoFoto = true;
+        durante.clear();
+        return copiaFueraDeLaFoto();
+    }
+
+    /**
+     * Copia, sin empezar una foto, a los jugadores cuyo estado más nuevo no
+     * está en la foto actual (ver {@link #empezarFoto()}). Son a lo más
+     * {@link #capacidad} en memoria y la mitad esperando la foto, más los que
+     * salieron y siguen vivos, sin importar cuántos haya en la foto.
+     *
+     * @return La copia; sus jugadores siguen cambiando como siempre.
+     */
+    synchronized Map<String, Feria.Jugador> copiaFueraDeLaFoto() {
+        purgar();
+        Map<String, Feria.Jugador> copia = new HashMap<>(entradas.size() + fantasmas.size() + sinFoto.size());
+        for (Map.Entry<String, long[]> espera : sinFoto.entrySet()) {
+            copia.put(espera.getKey(), restaurado(espera.getKey(), espera.getValue()));
+        }
+        for (Fantasma fantasma : fantasmas.values()) {
+            Feria.Jugador jugador = fantasma.get();
+            if (jugador != null) {
+                copia.put(fantasma.nombre, jugador);
+            }
+        }
+        for (Entrada entrada : entradas.values()) {
+            copia.put(entrada.jugador.getNombre(), entrada.jugador);
+        }
+        return copia;
+    }
+
+    /**
+     * Termina una foto: los estados devueltos mientras se escribía se pasan a
+     * la foto nueva y los que esperaban y ya quedaron en ella dejan de esperar.
+     *
+     * @param nueva La foto nueva, ya abierta (o la anterior si no se pudo escribir).
+     */
+    synchronized void terminarFoto(AlmacenJugadores nueva) {
+        almacen = nueva;
+        tomandoFoto = false;
+        fotoPedida = false;
+        if (nueva == null) {
+            durante.clear();
+            return;
+        }
+        for (Map.Entry<String, long[]> estado : durante.entrySet()) {
+            long[] valores = estado.getValue();
+            nueva.actualizar(estado.getKey(), valores[0], valores[1]);
+        }
+        durante.clear();
+        sinFoto.entrySet().removeIf(espera ->
+                nueva.actualizar(espera.getKey(), espera.getValue()[0], espera.getValue()[1]) >= 0);
+    }
+
+    /**
+     * Devuelve a la foto el estado de un jugador que salió. Se llama al
+     * sacarlo y otra vez por cada cambio que recibe mientras sigue fuera.
+     *
+     * @param jugador El jugador.
+     */
+    synchronized void devolver(Feria.Jugador jugador) {
+        if (jugador.desalojadoDe() != this) {
+            return;  // Ya volvió a memoria
+        }
+        String nombre = jugador.getNombre();
+        long creditos = jugador.estadoCreditos();
+        long puntos = jugador.estadoPuntos();
+        int escrito = almacen == null ? -1 : almacen.actualizar(nombre, creditos, puntos);
+        if (escrito > 0) {
+            escrituras.increment();
+        } else if (escrito < 0) {
+            long[] anterior = sinFoto.get(nombre);
+            if (anterior == null) {
+                sinFoto.put(nombre, new long[] {creditos, puntos});
+            } else {
+                anterior[0] = masNuevo(anterior[0], creditos);
+                anterior[1] = masNuevo(anterior[1], puntos);
+            }
+            if (sinFoto.size() > capacidad / 2 && !fotoPedida && pedirFoto != null) {
+                fotoPedida = true;
+                pedirFoto.run();
+            }
+        }
+        if (tomandoFoto) {
+            durante.put(nombre, new long[] {creditos, puntos});
+        }
+    }
+
+    @Override
+    public int size() {
+        return entradas.size();
+    }
+
+    @Override
+    public boolean containsKey(Object nombre) {
+        return get(nombre) != null;
+    }
+
+    /**
+     * @return El jugador si está en memoria, salió pero sigue vivo o espera la
+     *         siguiente foto; null si hay que buscarlo en la foto.
+     */
+    @Override
+    public Feria.Jugador get(Object nombre) {
+        if (!(nombre instanceof String texto)) {
+            return null;
+        }
+        Entrada entrada = entradas.get(texto);
+        if (entrada != null) {
+            return acertar(entrada);
+        }
+        Feria.Jugador jugador = traer(texto, null);
+        soltar();
+        return jugador;
+    }
+
+    /**
+     * Igual que en un mapa concurrente; la función (la búsqueda en la foto) se
+     * llama con el candado del registro.
+     */
+    @Override
+    public Feria.Jugador computeIfAbsent(String nombre, Function<? super String, ? extends Feria.Jugador> funcion) {
+        Entrada entrada = entradas.get(nombre);
+        if (entrada != null) {
+            return acertar(entrada);
+        }
+        Feria.Jugador jugador = traer(nombre, funcion);
+        soltar();
+        return jugador;
+    }
+
+    @Override
+    public Feria.Jugador putIfAbsent(String nombre, Feria.Jugador jugador) {
+        Feria.Jugador existente;
+        synchronized (this) {
+            existente = traer(nombre, null);
+            if (existente == null) {
+                meter(jugador);
+            }
+        }
+        soltar();
+        return existente;
+    }
+
+    /**
+     * Mete al jugador en memoria; si ya estaba, le pasa el estado del jugador dado.
+     */
+    @Override
+    public Feria.Jugador put(String nombre, Feria.Jugador jugador) {
+        Feria.Jugador existente;
+        synchronized (this) {
+            existente = traer(nombre, null);
+            if (existente == null) {
+                meter(jugador);
+            } else {
+                existente.restaurar(jugador.estadoCreditos(), jugador.estadoPuntos());
+            }
+        }
+        soltar();
+        return existente;
+    }
+
+    @Override
+    public boolean remove(Object nombre, Object jugador) {
+        throw new UnsupportedOperationException("Los jugadores no se borran");
+    }
+
+    @Override
+    public boolean replace(String nombre, Feria.Jugador anterior, Feria.Jugador nuevo) {
+        throw new UnsupportedOperationException("Los jugadores se cambian con sus propios métodos");
+    }
+
+    @Override
+    public Feria.Jugador replace(String nombre, Feria.Jugador jugador) {
+        throw new UnsupportedOperationException("Los jugadores se cambian con sus propios métodos");
+    }
+
+    /**
+     * Olvida a todos los jugadores sin devolverlos a la foto.
+     */
+    @Override
+    public synchronized void clear() {
+        for (Entrada entrada : entradas.values()) {
+            entrada.jugador.desalojar(null);
+        }
+        for (Fantasma fantasma : fantasmas.values()) {
+            Feria.Jugador jugador = fantasma.get();
+            if (jugador != null) {
+                jugador.desalojar(null);
+            }
+        }
+        entradas.clear();
+        Arrays.fill(reloj, null);
+        ocupadas = 0;
+        manecilla = 0;
+        fantasmas.clear();
+        sinFoto.clear();
+        durante.clear();
+        porSoltar.clear();
+    }
+
+    /**
+     * Recorre los jugadores en memoria; no los que salieron.
+     */
+    @Override
+    public Set<Map.Entry<String, Feria.Jugador>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return entradas.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, Feria.Jugador>> iterator() {
+                Iterator<Map.Entry<String, Entrada>> recorrido = entradas.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return recorrido.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, Feria.Jugador> next() {
+                        Map.Entry<String, Entrada> entrada = recorrido.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(entrada.getKey(), entrada.getValue().jugador);
+                    }
+                };
+            }
+        };
+    }
+
+    private static Feria.Jugador acertar(Entrada entrada) {
+        if (!entrada.usado) {
+            entrada.usado = true;
+        }
+        aciertos.increment();
+        return entrada.jugador;
+    }
+
+    /**
+     * Trae a memoria a un jugador que no estaba: el mismo objeto si salió y
+     * sigue vivo, uno nuevo si espera la foto o, si no, el que dé la función.
+     *
+     * @param funcion Dónde buscarlo al final, o null para no buscar.
+     * @return El jugador, o null si no se encontró.
+     */
+    private synchronized Feria.Jugador traer(String nombre, Function<? super String, ? extends Feria.Jugador> funcion) {
+        Entrada entrada = entradas.get(nombre);
+        if (entrada != null) {
+            return acertar(entrada);
+        }
+        purgar();
+        Fantasma fantasma = fantasmas.remove(nombre);
+        long[] espera = sinFoto.remove(nombre);
+        Feria.Jugador jugador = fantasma == null ? null : fantasma.get();
+        if (jugador != null) {
+            jugador.desalojar(null);
+            recuperados.increment();
+        } else {
+            if (espera != null) {
+                jugador = restaurado(nombre, espera);
+            } else if (funcion != null) {
+                jugador = funcion.apply(nombre);
+            }
+            if (jugador == null) {
+                return null;
+            }
+        }
+        fallos.increment();
+        meter(jugador);
+        return jugador;
+    }
+
+    /**
+     * Pone a un jugador en una casilla del reloj; si no hay libres, saca a
+     * otro. Se llama con el candado del registro.
+     */
+    private void meter(Feria.Jugador jugador) {
+        int casilla;
+        if (ocupadas < capacidad) {
+            casilla = ocupadas++;
+        } else {
+            casilla = victima();
+            sacar(reloj[casilla]);
+        }
+        Entrada entrada = new Entrada(jugador);
+        reloj[casilla] = entrada;
+        entradas.put(jugador.getNombre(), entrada);
+    }
+
+    /**
+     * Avanza la manecilla quitando marcas hasta la primera casilla sin marca.
+     */
+    private int victima() {
+        while (true) {
+            Entrada entrada = reloj[manecilla];
+            int casilla = manecilla;
+            manecilla = manecilla + 1 == capacidad ? 0 : manecilla + 1;
+            if (!entrada.usado) {
+                return casilla;
+            }
+            entrada.usado = false;
+        }
+    }
+
+    /**
+     * Saca a un jugador de memoria: primero lo marca como fuera para que sus
+     * cambios siguientes también se devuelvan, luego devuelve su estado.
+     */
+    private void sacar(Entrada entrada) {
+        Feria.Jugador jugador = entrada.jugador;
+        jugador.desalojar(this);
+        devolver(jugador);
+        porSoltar.add(jugador);
+        entradas.remove(jugador.getNombre(), entrada);
+        fantasmas.put(jugador.getNombre(), new Fantasma(jugador, muertos));
+        desalojos.increment();
+    }
+
+    /**
+     * Pide a la clasificación que aplique ya el cambio pendiente de los que
+     * salieron, para que no guarde sus objetos hasta la siguiente consulta. Se
+     * hace fuera del candado del registro: reubicarlos en el índice de la
+     * clasificación cuesta más que sacarlos.
+     */
+    private void soltar() {
+        for (Feria.Jugador jugador; (jugador = porSoltar.poll()) != null; ) {
+            Clasificacion.CREDITOS.aplicarPendiente(jugador);
+            Clasificacion.PUNTOS.aplicarPendiente(jugador);
+        }
+    }
+
+    /**
+     * Quita los fantasmas que el recolector ya se llevó.
+     */
+    private void purgar() {
+        for (Object muerto; (muerto = muertos.poll()) != null; ) {
+            Fantasma fantasma = (Fantasma) muerto;
+            fantasmas.remove(fantasma.nombre, fantasma);
+        }
+    }
+
+    private static Feria.Jugador restaurado(String nombre, long[] estado) {
+        Feria.Jugador jugador = new Feria.Jugador(nombre, 0);
+        jugador.restaurar(estado[0], estado[1]);
+        return jugador;
+    }
+
+    private static long masNuevo(long guardado, long estado) {
+        return (estado >>> 32) > (guardado >>> 32) ? estado : guardado;
+    }
+
+    /**
+     * @return La fracción de las búsquedas que encontraron al jugador en memoria.
+     */
+    static double tasaAciertos() {
+        long total = aciertos.sum() + fallos.sum();
+        return total == 0 ? 0 : (double) aciertos.sum() / total;
+    }
+}
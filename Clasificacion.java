@@ -0,0 +1,350 @@
+/**
+ *  Índice de clasificación de jugadores que se mantiene al día sin reordenar.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
+
+/**
+ * Mantiene a los jugadores ordenados de mayor a menor según un valor (créditos
+ * o puntos) en un treap con tamaños de subárbol, así que el top K cuesta
+ * O(log n + K) y la posición de un jugador cuesta O(log n).
+ *
+ * Cambiar créditos o puntos no toca el árbol: solo marca al jugador como
+ * pendiente en un mapa concurrente. Las consultas aplican los pendientes
+ * antes de responder, releyendo el valor actual de cada jugador, de modo
+ * que el resultado refleja todos los cambios terminados antes de la consulta
+ * y las sesiones que juegan casi nunca esperan a un candado del índice. Si se
+ * juntan {@link #MAXIMO_PENDIENTES}, la sesión que marca el último los aplica
+ * en ese momento (las demás siguen sin esperar), así que una consulta aplica a
+ * lo mucho esos pendientes y el mapa no guarda a más jugadores que esos.
+ */
+class Clasificacion {
+    // Clasificación por créditos, usada por "Ver top 3 jugadores"
+    static final Clasificacion CREDITOS = new Clasificacion(Feria.Jugador::getCreditos);
+
+    // Clasificación por puntos acumulados
+    static final Clasificacion PUNTOS = new Clasificacion(Feria.Jugador::getPuntos);
+
+    /**
+     * Un lugar de la clasificación.
+     *
+     * @param nombre El nombre del jugador.
+     * @param valor Los créditos o puntos con los que está clasificado.
+     */
+    record Entrada(String nombre, int valor) {
+    }
+
+    /**
+     * Nodo del treap. La clave es (valor descendente, nombre ascendente).
+     */
+    private static final class Nodo {
+        final String nombre;
+        final int valor;
+        final int prioridad;
+        int tamano = 1;
+        Nodo izquierdo, derecho;
+
+        Nodo(String nombre, int valor, int prioridad) {
+            this.nombre = nombre;
+            this.valor = valor;
+            this.prioridad = prioridad;
+        }
+    }
+
+    // Obtiene del jugador el valor por el que se clasifica, o null si los valores solo llegan con colocar
+    private final ToIntFunction<Feria.Jugador> criterio;
+
+    // Jugadores pendientes que se guardan antes de aplicarlos sin esperar a una consulta
+    private static final int MAXIMO_PENDIENTES = 1024;
+
+    // Jugadores que cambiaron desde la última consulta
+    private final ConcurrentHashMap<String, Feria.Jugador> pendientes = new ConcurrentHashMap<>();
+
+    // Si una sesión ya está aplicando los pendientes porque se juntaron demasiados
+    private final AtomicBoolean aplicando = new AtomicBoolean();
+
+    // Lo que sigue solo se usa con el candado de la instancia
+    private final Map<String, Integer> valorIndexado = new HashMap<>();
+    private Nodo raiz;
+    private int semilla = 0x2545F491;
+
+    Clasificacion(ToIntFunction<Feria.Jugador> criterio) {
+        this.criterio = Objects.requireNonNull(criterio);
+    }
+
+    /**
+     * Una clasificación por un valor que el jugador no tiene (por ejemplo, los
+     * puntos ganados en un periodo): los valores solo llegan con
+     * {@link #colocar} y marcar un cambio es un error.
+     */
+    Clasificacion() {
+        this.criterio = null;
+    }
+
+    /**
+     * Marca a un jugador cuyo valor cambió. Solo espera al candado del índice
+     * si con él se juntan {@link #MAXIMO_PENDIENTES} y nadie más los está
+     * aplicando.
+     *
+     * @param jugador El jugador que cambió o se acaba de registrar.
+     * @throws IllegalStateException Si la clasificación no tiene de dónde leer el valor.
+     */
+    void marcarCambio(Feria.Jugador jugador) {
+        revisarCriterio();
+        if (pendientes.put(jugador.getNombre(), jugador) == null
+                && pendientes.size() >= MAXIMO_PENDIENTES && aplicando.compareAndSet(false, true)) {
+            try {
+                synchronized (this) {
+                    aplicarPendientes();
+                }
+            } finally {
+                aplicando.set(false);
+            }
+        }
+    }
+
+    /**
+     * Aplica ya el cambio pendiente de un jugador, si tiene, para que la
+     * clasificación no guarde su objeto hasta la siguiente consulta; se usa
+     * cuando {@link CacheJugadores} lo saca de memoria.
+     *
+     * @param jugador El jugador.
+     */
+    synchronized void aplicarPendiente(Feria.Jugador jugador) {
+        revisarCriterio();
+        if (pendientes.remove(jugador.getNombre(), jugador)) {
+            colocar(jugador.getNombre(), criterio.applyAsInt(jugador));
+        }
+    }
+
+    private void revisarCriterio() {
+        if (criterio == null) {
+            throw new IllegalStateException("Esta clasificación solo recibe valores con colocar");
+        }
+    }
+
+    /**
+     * Coloca a un jugador con un valor conocido, sin necesidad de tener su objeto
+     * (por ejemplo, al leer jugadores guardados en disco).
+     *
+     * @param nombre El nombre del jugador.
+     * @param valor El valor con el que se clasifica.
+     */
+    synchronized void colocar(String nombre, int valor) {
+        Integer anterior = valorIndexado.put(nombre, valor);
+        if (anterior != null) {
+            if (anterior == valor) {
+                return;
+            }
+            raiz = quitar(raiz, anterior, nombre);
+        }
+        raiz = insertar(raiz, new Nodo(nombre, valor, siguientePrioridad()));
+    }
+
+    /**
+     * Quita a un jugador de la clasificación, si está.
+     *
+     * @param nombre El nombre del jugador.
+     */
+    synchronized void quitar(String nombre) {
+        Integer valor = valorIndexado.remove(nombre);
+        if (valor != null) {
+            raiz = quitar(raiz, valor, nombre);
+        }
+    }
+
+    /**
+     * Coloca a un jugador leído del disco solo si todavía no está clasificado
+     * ni pendiente; si ya está, su valor en memoria es más nuevo.
+     *
+     * @param nombre El nombre del jugador.
+     * @param valor El valor guardado.
+     */
+    synchronized void colocarSiFalta(String nombre, int valor) {
+        if (!valorIndexado.containsKey(nombre) && !pendientes.containsKey(nombre)) {
+            colocar(nombre, valor);
+        }
+    }
+
+    /**
+     * Vacía la clasificación.
+     */
+    synchronized void limpiar() {
+        pendientes.clear();
+        valorIndexado.clear();
+        raiz = null;
+    }
+
+    /**
+     * Obtiene los K primeros lugares.
+     *
+     * @param k Cuántos lugares se quieren.
+     * @return Los primeros lugares, del mejor al peor.
+     */
+    synchronized List<Entrada> mejores(int k) {
+        aplicarPendientes();
+        List<Entrada> resultado = new ArrayList<>(Math.min(k, tamano(raiz)));
+        Deque<Nodo> pila = new ArrayDeque<>();
+        Nodo actual = raiz;
+        while (resultado.size() < k && (actual != null || !pila.isEmpty())) {
+            while (actual != null) {
+                pila.push(actual);
+                actual = actual.izquierdo;
+            }
+            Nodo nodo = pila.pop();
+            resultado.add(new Entrada(nodo.nombre, nodo.valor));
+            actual = nodo.derecho;
+        }
+        return resultado;
+    }
+
+    /**
+     * Obtiene el lugar de un jugador.
+     *
+     * @param nombre El nombre del jugador.
+     * @return Su lugar empezando en 1, o -1 si no está clasificado.
+     */
+    synchronized int posicion(String nombre) {
+        aplicarPendientes();
+        Integer valor = valorIndexado.get(nombre);
+        if (valor == null) {
+            return -1;
+        }
+        int antes = 0;
+        Nodo nodo = raiz;
+        while (nodo != null) {
+            int c = comparar(valor, nombre, nodo);
+            if (c == 0) {
+                return antes + tamano(nodo.izquierdo) + 1;
+            } else if (c < 0) {
+                nodo = nodo.izquierdo;
+            } else {
+                antes += tamano(nodo.izquierdo) + 1;
+                nodo = nodo.derecho;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Cuántos jugadores están clasificados.
+     */
+    synchronized int tamano() {
+        aplicarPendientes();
+        return tamano(raiz);
+    }
+
+    /**
+     * Reubica a los jugadores pendientes leyendo su valor actual.
+     */
+    private void aplicarPendientes() {
+        for (Iterator<Map.Entry<String, Feria.Jugador>> it = pendientes.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Feria.Jugador> pendiente = it.next();
+            // Se quita antes de leer el valor: si cambia otra vez, vuelve a quedar pendiente
+            it.remove();
+            colocar(pendiente.getKey(), criterio.applyAsInt(pendiente.getValue()));
+        }
+    }
+
+    private int siguientePrioridad() {
+        // xorshift: basta con que las prioridades se vean aleatorias
+        semilla ^= semilla << 13;
+        semilla ^= semilla >>> 17;
+        semilla ^= semilla << 5;
+        return semilla;
+    }
+
+    /**
+     * Compara la clave (valor, nombre) con la de un nodo: primero el valor más alto.
+     */
+    private static int comparar(int valor, String nombre, Nodo nodo) {
+        if (valor != nodo.valor) {
+            return valor > nodo.valor ? -1 : 1;
+        }
+        return nombre.compareTo(nodo.nombre);
+    }
+
+    private static int tamano(Nodo nodo) {
+        return nodo == null ? 0 : nodo.tamano;
+    }
+
+    private static Nodo actualizar(Nodo nodo) {
+        nodo.tamano = 1 + tamano(nodo.izquierdo) + tamano(nodo.derecho);
+        return nodo;
+    }
+
+    private static Nodo insertar(Nodo nodo, Nodo nuevo) {
+        if (nodo == null) {
+            return nuevo;
+        }
+        if (nuevo.prioridad > nodo.prioridad) {
+            Nodo[] partes = dividir(nodo, nuevo.valor, nuevo.nombre);
+            nuevo.izquierdo = partes[0];
+            nuevo.derecho = partes[1];
+            return actualizar(nuevo);
+        }
+        if (comparar(nuevo.valor, nuevo.nombre, nodo) < 0) {
+            nodo.izquierdo = insertar(nodo.izquierdo, nuevo);
+        } else {
+            nodo.derecho = insertar(nodo.derecho, nuevo);
+        }
+        return actualizar(nodo);
+    }
+
+    private static Nodo quitar(Nodo nodo, int valor, String nombre) {
+        if (nodo == null) {
+            return null;
+        }
+        int c = comparar(valor, nombre, nodo);
+        if (c == 0) {
+            return unir(nodo.izquierdo, nodo.derecho);
+        }
+        if (c < 0) {
+            nodo.izquierdo = quitar(nodo.izquierdo, valor, nombre);
+        } else {
+            nodo.derecho = quitar(nodo.derecho, valor, nombre);
+        }
+        return actualizar(nodo);
+    }
+
+    /**
+     * Divide un árbol en las claves menores y las mayores a (valor, nombre).
+     */
+    private static Nodo[] dividir(Nodo nodo, int valor, String nombre) {
+        if (nodo == null) {
+            return new Nodo[2];
+        }
+        if (comparar(valor, nombre, nodo) > 0) {
+            Nodo[] partes = dividir(nodo.derecho, valor, nombre);
+            nodo.derecho = partes[0];
+            partes[0] = actualizar(nodo);
+            return partes;
+        }
+        Nodo[] partes = dividir(nodo.izquierdo, valor, nombre);
+        nodo.izquierdo = partes[1];
+        partes[1] = actualizar(nodo);
+        return partes;
+    }
+
+    /**
+     * Une dos árboles donde todas las claves de `izquierdo` van antes que las de `derecho`.
+     */
+    private static Nodo unir(Nodo izquierdo, Nodo derecho) {
+        if (izquierdo == null) {
+            return derecho;
+        }
+        if (derecho == null) {
+            return izquierdo;
+        }
+        if (izquierdo.prioridad > derecho.prioridad) {
+            izquierdo.derecho = unir(izquierdo.derecho, derecho);
+            return actualizar(izquierdo);
+        }
+        derecho.izquierdo = unir(izquierdo, derecho.izquierdo);
+        return actualizar(derecho);
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ *  Clasificación por los puntos ganados en un periodo de tiempo.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Los jugadores que más puntos ganaron hoy, esta semana o en la última hora.
+ * Cada punto que se gana con {@link Feria.Jugador#agregarPuntos(int)} se suma
+ * aquí al momento, sin recorrer a los jugadores ni la historia.
+ *
+ * El tiempo se parte en cubetas (un minuto, un día, una semana) y cada
+ * clasificación recuerda las últimas {@link #cubetas}: cuánto ganó cada
+ * jugador en cada una y el total de todas. Sumar puntos cambia la cubeta
+ * actual y el total del jugador y lo marca como cambiado. El orden es un
+ * {@link Clasificacion} y, como en la clasificación de siempre, los cambiados
+ * se reubican en la siguiente consulta, una vez por jugador aunque haya ganado
+ * muchas veces; si se juntan {@link #MAXIMO_CAMBIADOS}, se reubican en ese
+ * momento. Así el top K cuesta O(log n + K) más a lo mucho esos pendientes.
+ *
+ * Hoy y esta semana tienen una sola cubeta: cuando empieza el día o la semana
+ * siguiente se tira la clasificación completa y se empieza una vacía, en
+ * O(1). La última hora tiene 60 cubetas de un minuto y al avanzar resta lo que
+ * ganó cada jugador en las que salen; cada punto se resta una sola vez, así
+ * que cuesta lo mismo que haberlo sumado. La memoria crece con los jugadores
+ * que ganaron puntos dentro del periodo, no con la historia. Las
+ * clasificaciones no se guardan: empiezan vacías cada vez que arranca la feria.
+ */
+final class ClasificacionPeriodo {
+    private static final long MINUTO = 60_000;
+
+    // Jugadores cambiados que se guardan antes de reubicarlos sin esperar a una consulta
+    private static final int MAXIMO_CAMBIADOS = 1024;
+
+    // El 1 de enero de 1970 fue jueves; las semanas empiezan en lunes
+    private static final long DIAS_HASTA_LUNES = 3;
+
+    private static final ZoneId ZONA = ZoneId.systemDefault();
+
+    /**
+     * Un día local y dónde empieza y termina, en milisegundos, para no
+     * consultar las reglas de la zona con cada punto.
+     */
+    private record Dia(long numero, long desde, long hasta) {
+    }
+
+    private static volatile Dia ultimoDia = new Dia(0, 0, 0);
+
+    static final ClasificacionPeriodo ULTIMA_HORA =
+            new ClasificacionPeriodo("la última hora", 60, milis -> Math.floorDiv(milis, MINUTO));
+    static final ClasificacionPeriodo HOY = new ClasificacionPeriodo("hoy", 1, ClasificacionPeriodo::dia);
+    static final ClasificacionPeriodo SEMANA = new ClasificacionPeriodo("esta semana", 1,
+            milis -> Math.floorDiv(dia(milis) + DIAS_HASTA_LUNES, 7));
+
+    // En el orden en que se muestran
+    static final List<ClasificacionPeriodo> TODAS = List.of(HOY, SEMANA, ULTIMA_HORA);
+
+    // Para mostrar: "Los que más puntos ganaron hoy"
+    private final String nombre;
+
+    // Cubetas que forman el periodo y la cubeta a la que pertenece un instante (milisegundos)
+    private final int cubetas;
+    private final LongUnaryOperator cubeta;
+
+    // Todo lo que sigue se protege con el candado de la instancia
+    // Puntos de cada jugador en cada cubeta, en anillo; con una sola cubeta basta el total
+    private final List<Map<String, int[]>> ganados;
+    private Map<String, int[]> totales = new HashMap<>();
+    private Set<String> cambiados = new HashSet<>();
+    private Clasificacion orden = nuevaClasificacion();
+    private long actual = Long.MIN_VALUE;
+
+    private ClasificacionPeriodo(String nombre, int cubetas, LongUnaryOperator cubeta) {
+        this.nombre = nombre;
+        this.cubetas = cubetas;
+        this.cubeta = cubeta;
+        this.ganados = new ArrayList<>(cubetas);
+        for (int i = 0; i < cubetas; i++) {
+            ganados.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Suma los puntos de un jugador a todas las clasificaciones. Solo cuentan
+     * los puntos ganados, así un total nunca baja de cero.
+     *
+     * @param jugador El nombre del jugador.
+     * @param puntos Los puntos ganados.
+     */
+    static void sumarATodas(String jugador, int puntos) {
+        if (puntos <= 0) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        for (ClasificacionPeriodo periodo : TODAS) {
+            periodo.sumar(jugador, puntos, ahora);
+        }
+    }
+
+    /**
+     * @return El periodo, para mostrarlo ("hoy", "esta semana"...).
+     */
+    String nombre() {
+        return nombre;
+    }
+
+    /**
+     * Suma puntos a un jugador en la cubeta del instante dado. Si el instante
+     * es anterior a la cubeta actual (el reloj se atrasó), cuenta en la actual.
+     *
+     * @param jugador El nombre del jugador.
+     * @param puntos Los puntos ganados.
+     * @param ahora El instante, en milisegundos desde 1970.
+     */
+    synchronized void sumar(String jugador, int puntos, long ahora) {
+        avanzar(cubeta.applyAsLong(ahora));
+        if (cubetas > 1) {
+            ganados.get(casilla(actual)).computeIfAbsent(jugador, n -> new int[1])[0] += puntos;
+        }
+        totales.computeIfAbsent(jugador, n -> new int[1])[0] += puntos;
+        cambiar(jugador);
+    }
+
+    /**
+     * Obtiene los K primeros lugares del periodo que termina en el instante dado.
+     *
+     * @param k Cuántos lugares se quieren.
+     * @param ahora El instante, en milisegundos desde 1970.
+     * @return Los primeros lugares con los puntos ganados en el periodo, del mejor al peor.
+     */
+    synchronized List<Clasificacion.Entrada> mejores(int k, long ahora) {
+        avanzar(cubeta.applyAsLong(ahora));
+        ordenar();
+        return orden.mejores(k);
+    }
+
+    /**
+     * @return Cuántos jugadores ganaron puntos en el periodo, según la última
+     *         cubeta que se vio.
+     */
+    synchronized int jugadores() {
+        return totales.size();
+    }
+
+    /**
+     * Lleva el periodo hasta la cubeta dada: lo que ganaron los jugadores en
+     * las cubetas que salen se resta de sus totales. Si salen todas, se
+     * empieza de cero sin recorrer nada.
+     */
+    private void avanzar(long nueva) {
+        if (nueva <= actual) {
+            return;
+        }
+        if (actual == Long.MIN_VALUE || nueva - actual >= cubetas) {
+            vaciar();
+        } else {
+            for (long sale = actual + 1; sale <= nueva; sale++) {
+                int casilla = casilla(sale);
+                for (Map.Entry<String, int[]> ganado : ganados.get(casilla).entrySet()) {
+                    String jugador = ganado.getKey();
+                    int[] total = totales.get(jugador);
+                    total[0] -= ganado.getValue()[0];
+                    if (total[0] == 0) {
+                        totales.remove(jugador);
+                    }
+                    cambiar(jugador);
+                }
+                ganados.set(casilla, new HashMap<>());
+            }
+        }
+        actual = nueva;
+    }
+
+    /**
+     * Vacía la clasificación, como si la feria acabara de arrancar.
+     */
+    synchronized void limpiar() {
+        vaciar();
+        actual = Long.MIN_VALUE;
+    }
+
+    private void vaciar() {
+        for (int i = 0; i < cubetas; i++) {
+            ganados.set(i, new HashMap<>());
+        }
+        totales = new HashMap<>();
+        cambiados = new HashSet<>();
+        orden = nuevaClasificacion();
+    }
+
+    /**
+     * Marca a un jugador cuyo total cambió.
+     */
+    private void cambiar(String jugador) {
+        cambiados.add(jugador);
+        if (cambiados.size() >= MAXIMO_CAMBIADOS) {
+            ordenar();
+        }
+    }
+
+    /**
+     * Reubica a los jugadores cambiados según su total, o los quita si ya no
+     * ganaron nada en el periodo.
+     */
+    private void ordenar() {
+        if (cambiados.isEmpty()) {
+            return;
+        }
+        for (String jugador : cambiados) {
+            int[] total = totales.get(jugador);
+            if (total == null) {
+                orden.quitar(jugador);
+            } else {
+                orden.colocar(jugador, total[0]);
+            }
+        }
+        // Uno nuevo y no clear(): recorrer y vaciar un HashSet cuesta lo que su tabla, no lo que tiene
+        cambiados = new HashSet<>();
+    }
+
+    private int casilla(long cubeta) {
+        return (int) Math.floorMod(cubeta, (long) cubetas);
+    }
+
+    // Se ordena por el total del periodo, que el jugador no tiene: solo se usa colocar y quitar
+    private static Clasificacion nuevaClasificacion() {
+        return new Clasificacion();
+    }
+
+    /**
+     * @return El día local (días desde 1970 en la zona del sistema) del instante.
+     */
+    private static long dia(long milis) {
+        Dia hoy = ultimoDia;
+        if (milis >= hoy.desde() && milis < hoy.hasta()) {
+            return hoy.numero();
+        }
+        LocalDate fecha = Instant.ofEpochMilli(milis).atZone(ZONA).toLocalDate();
+        hoy = new Dia(fecha.toEpochDay(), fecha.atStartOfDay(ZONA).toInstant().toEpochMilli(),
+                fecha.plusDays(1).atStartOfDay(ZONA).toInstant().toEpochMilli());
+        ultimoDia = hoy;
+        return hoy.numero();
+    }
+}
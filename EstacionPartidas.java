@@ -0,0 +1,258 @@
+/**
+ *  Partidas en pausa guardadas fuera del heap.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Guarda las partidas de los jugadores que se quedaron inactivos a media
+ * partida, hasta que las retomen. Cada partida ya viene codificada en pocos
+ * bytes ({@link PartidaFeria#codificar(Bits)}) y se copia a memoria directa,
+ * fuera del heap, en casillas de 16 a 256 bytes según su tamaño: una partida
+ * de Conecta 4 ocupa una de 16 y una de Torres de Hanoi con 6 discos una de 32.
+ * En el heap solo queda la entrada del mapa por jugador (el nombre es el mismo
+ * objeto que ya tiene el jugador), unas decenas de bytes por partida.
+ *
+ * Un jugador puede tener varias partidas en pausa, una por cada sesión suya
+ * que se quedó inactiva a media partida; ninguna reemplaza a otra, porque
+ * todas ya se cobraron. Quien estaciona una partida recibe un {@link Boleto}
+ * para retomar esa misma; quien vuelve a conectarse retoma la más vieja. Las
+ * partidas en pausa no se guardan en disco: si la feria se cierra, se pierden
+ * como las sesiones abiertas.
+ */
+final class EstacionPartidas {
+    // Tamaños de casilla: 16, 32, 64, 128 y 256 bytes
+    private static final int CASILLA_MINIMA = 16;
+    private static final int CLASES = 5;
+
+    // Bytes de cada bloque de memoria directa
+    private static final int BLOQUE = 1 << 20;
+
+    // Cabecera de cada casilla: el juego (1 byte) y el largo de los datos (1 byte)
+    private static final int CABECERA = 2;
+
+    /**
+     * Una partida sacada de la estación.
+     *
+     * @param juego La opción del menú de juegos.
+     * @param datos Lo que escribió la partida.
+     */
+    record Estacionada(int juego, byte[] datos) {
+    }
+
+    /**
+     * Lo que recibe quien estaciona una partida, para retomar esa misma.
+     *
+     * @param nombre El nombre del jugador.
+     * @param numero El número de la partida en la estación; no se repite.
+     */
+    record Boleto(String nombre, long numero) implements Serializable {
+    }
+
+    /**
+     * Una partida en pausa: su número y la clase de casilla en los 3 bits bajos
+     * de la referencia y la casilla en el resto.
+     */
+    private record Guardada(long numero, long referencia) {
+    }
+
+    /**
+     * Casillas de un mismo tamaño en bloques de memoria directa, con una
+     * pila de casillas libres.
+     */
+    private static final class Casillas {
+        final int tamano;
+        final int porBloque;
+        final List<ByteBuffer> bloques = new ArrayList<>();
+        int[] libres = new int[64];
+        int cuantasLibres;
+        int siguiente;
+
+        Casillas(int tamano) {
+            this.tamano = tamano;
+            this.porBloque = BLOQUE / tamano;
+        }
+
+        synchronized int apartar() {
+            if (cuantasLibres > 0) {
+                return libres[--cuantasLibres];
+            }
+            if (siguiente == bloques.size() * porBloque) {
+                bloques.add(ByteBuffer.allocateDirect(BLOQUE));
+            }
+            return siguiente++;
+        }
+
+        synchronized void soltar(int casilla) {
+            if (cuantasLibres == libres.length) {
+                libres = Arrays.copyOf(libres, libres.length * 2);
+            }
+            libres[cuantasLibres++] = casilla;
+        }
+
+        synchronized void escribir(int casilla, int juego, byte[] datos) {
+            ByteBuffer bloque = bloques.get(casilla / porBloque);
+            int inicio = casilla % porBloque * tamano;
+            bloque.put(inicio, (byte) juego);
+            bloque.put(inicio + 1, (byte) (datos.length - 1));
+            bloque.put(inicio + CABECERA, datos);
+        }
+
+        synchronized Estacionada leer(int casilla) {
+            ByteBuffer bloque = bloques.get(casilla / porBloque);
+            int inicio = casilla % porBloque * tamano;
+            byte[] datos = new byte[(bloque.get(inicio + 1) & 0xFF) + 1];
+            bloque.get(inicio + CABECERA, datos);
+            return new Estacionada(bloque.get(inicio) & 0xFF, datos);
+        }
+    }
+
+    private static final Casillas[] CASILLAS = new Casillas[CLASES];
+
+    static {
+        for (int clase = 0; clase < CLASES; clase++) {
+            CASILLAS[clase] = new Casillas(CASILLA_MINIMA << clase);
+        }
+    }
+
+    // Por jugador, sus partidas en pausa de la más vieja a la más nueva
+    private static final Map<String, Guardada[]> ESTACIONADAS = new ConcurrentHashMap<>();
+
+    private static final AtomicLong numeros = new AtomicLong();
+    private static final AtomicInteger guardadas = new AtomicInteger();
+
+    private EstacionPartidas() {
+    }
+
+    /**
+     * Guarda la partida de un jugador, junto a las que ya tenga en pausa.
+     *
+     * @param nombre El nombre del jugador.
+     * @param juego La opción del menú de juegos.
+     * @param datos La partida codificada.
+     * @return El boleto para retomarla, o null si es demasiado grande para guardarse.
+     */
+    static Boleto estacionar(String nombre, int juego, byte[] datos) {
+        int clase = clase(datos.length);
+        if (clase < 0) {
+            return null;
+        }
+        // Una partida que no escribió nada se guarda como un byte vacío
+        byte[] guardados = datos.length == 0 ? new byte[1] : datos;
+        int casilla = CASILLAS[clase].apartar();
+        CASILLAS[clase].escribir(casilla, juego << 1 | (datos.length == 0 ? 1 : 0), guardados);
+        Guardada nueva = new Guardada(numeros.incrementAndGet(), (long) casilla << 3 | clase);
+        ESTACIONADAS.merge(nombre, new Guardada[] {nueva}, (anteriores, una) -> {
+            Guardada[] todas = Arrays.copyOf(anteriores, anteriores.length + 1);
+            todas[anteriores.length] = una[0];
+            return todas;
+        });
+        guardadas.incrementAndGet();
+        return new Boleto(nombre, nueva.numero());
+    }
+
+    /**
+     * Saca la partida de un boleto, que deja de estar guardada.
+     *
+     * @param boleto Lo que devolvió {@link #estacionar}.
+     * @return La partida, o null si ya se sacó (por ejemplo, al volver a conectarse).
+     */
+    static Estacionada sacar(Boleto boleto) {
+        return quitar(boleto.nombre(), boleto.numero());
+    }
+
+    /**
+     * Saca la partida en pausa más vieja de un jugador, que deja de estar guardada.
+     *
+     * @param nombre El nombre del jugador.
+     * @return La partida, o null si no tenía ninguna.
+     */
+    static Estacionada sacar(String nombre) {
+        while (true) {
+            Guardada[] todas = ESTACIONADAS.get(nombre);
+            if (todas == null) {
+                return null;
+            }
+            Estacionada sacada = quitar(nombre, todas[0].numero());
+            if (sacada != null) {
+                return sacada;
+            }
+            // Otra sesión la sacó primero; se intenta con la que siga
+        }
+    }
+
+    /**
+     * @return Cuántas partidas hay en pausa.
+     */
+    static int cantidad() {
+        return guardadas.get();
+    }
+
+    /**
+     * @return Los bytes de memoria directa apartados para las casillas.
+     */
+    static long bytesFueraDelHeap() {
+        long total = 0;
+        for (Casillas casillas : CASILLAS) {
+            synchronized (casillas) {
+                total += (long) casillas.bloques.size() * BLOQUE;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Quita una partida de las de su jugador, la lee y suelta su casilla.
+     *
+     * @return La partida, o null si ya no estaba.
+     */
+    private static Estacionada quitar(String nombre, long numero) {
+        Guardada[] quitada = new Guardada[1];
+        ESTACIONADAS.computeIfPresent(nombre, (n, todas) -> {
+            for (int i = 0; i < todas.length; i++) {
+                if (todas[i].numero() == numero) {
+                    quitada[0] = todas[i];
+                    if (todas.length == 1) {
+                        return null;
+                    }
+                    Guardada[] quedan = new Guardada[todas.length - 1];
+                    System.arraycopy(todas, 0, quedan, 0, i);
+                    System.arraycopy(todas, i + 1, quedan, i, quedan.length - i);
+                    return quedan;
+                }
+            }
+            return todas;
+        });
+        if (quitada[0] == null) {
+            return null;
+        }
+        guardadas.decrementAndGet();
+        long referencia = quitada[0].referencia();
+        Estacionada leida = CASILLAS[(int) (referencia & 7)].leer((int) (referencia >>> 3));
+        CASILLAS[(int) (referencia & 7)].soltar((int) (referencia >>> 3));
+        boolean vacia = (leida.juego() & 1) != 0;
+        return new Estacionada(leida.juego() >>> 1, vacia ? new byte[0] : leida.datos());
+    }
+
+    /**
+     * @return La clase de casilla más chica donde caben los datos, o -1 si no caben.
+     */
+    private static int clase(int largo) {
+        int necesarios = CABECERA + Math.max(1, largo);
+        for (int clase = 0; clase < CLASES; clase++) {
+            if (necesarios <= CASILLA_MINIMA << clase) {
+                return clase;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ *  Estado de las Torres de Hanoi empaquetado en bits.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Torres de Hanoi con tres postes (0, 1, 2) y hasta 60 discos. El disco d
+ * (0 es el más chico) está en el poste cuyo número forman el bit d de
+ * `bajo` y el bit d de `alto`, así que el estado completo son dos longs y
+ * los discos de un poste se obtienen con dos operaciones de bits. El disco
+ * de arriba de un poste es su bit más bajo, y validar una jugada es O(1).
+ *
+ * Desde cualquier estado válido, la distancia a tener todos los discos en
+ * un poste se calcula en O(n) bajando del disco más grande al más chico:
+ * cada disco que no está donde debe costará 2^d movimientos y obliga a los
+ * más chicos a juntarse en el tercer poste.
+ */
+class EstadoHanoi {
+    static final int MAXIMO_DISCOS = 60;
+
+    /**
+     * Un movimiento de un disco entre dos postes.
+     *
+     * @param disco El disco que se mueve, 0 es el más chico.
+     * @param origen El poste de donde sale.
+     * @param destino El poste al que llega.
+     */
+    record Movimiento(int disco, int origen, int destino) {
+    }
+
+    private final int discos;
+    private final long todos;
+
+    // Bit d de cada plano: el poste del disco d en binario (00, 01 o 10)
+    private long bajo;
+    private long alto;
+
+    /**
+     * Crea el estado inicial: todos los discos en el poste 0.
+     *
+     * @param discos Cuántos discos, de 1 a 60.
+     */
+    EstadoHanoi(int discos) {
+        if (discos < 1 || discos > MAXIMO_DISCOS) {
+            throw new IllegalArgumentException("Los discos deben estar entre 1 y " + MAXIMO_DISCOS + ": " + discos);
+        }
+        this.discos = discos;
+        this.todos = (1L << discos) - 1;
+    }
+
+    private EstadoHanoi(EstadoHanoi otro) {
+        this.discos = otro.discos;
+        this.todos = otro.todos;
+        this.bajo = otro.bajo;
+        this.alto = otro.alto;
+    }
+
+    /**
+     * @return Cuántos discos hay.
+     */
+    int discos() {
+        return discos;
+    }
+
+    /**
+     * @return Los discos que están en un poste, como máscara de bits.
+     */
+    long enPoste(int poste) {
+        switch (poste) {
+            case 0: return ~bajo & ~alto & todos;
+            case 1: return bajo;
+            default: return alto;
+        }
+    }
+
+    /**
+     * @return El poste donde está un disco.
+     */
+    int poste(int disco) {
+        return (int) (bajo >>> disco & 1) | (int) (alto >>> disco & 1) << 1;
+    }
+
+    /**
+     * @return `true` si se puede mover el disco de arriba de `origen` a `destino`.
+     */
+    boolean puedeMover(int origen, int destino) {
+        if (origen < 0 || origen > 2 || destino < 0 || destino > 2 || origen == destino) {
+            return false;
+        }
+        long desde = enPoste(origen);
+        long hacia = enPoste(destino);
+        // El disco de arriba de origen debe ser más chico que el de arriba de destino
+        return desde != 0 && (hacia == 0 || Long.lowestOneBit(desde) < Long.lowestOneBit(hacia));
+    }
+
+    /**
+     * Mueve el disco de arriba de `origen` a `destino`; antes hay que revisar
+     * {@link #puedeMover(int, int)}.
+     *
+     * @return El disco que se movió.
+     */
+    int mover(int origen, int destino) {
+        long bit = Long.lowestOneBit(enPoste(origen));
+        bajo = (bajo & ~bit) | ((destino & 1) != 0 ? bit : 0);
+        alto = (alto & ~bit) | ((destino & 2) != 0 ? bit : 0);
+        return Long.numberOfTrailingZeros(bit);
+    }
+
+    /**
+     * @return `true` si todos los discos están en el poste.
+     */
+    boolean completo(int poste) {
+        return enPoste(poste) == todos;
+    }
+
+    /**
+     * @return Los movimientos de una solución óptima desde el estado inicial: 2^n - 1.
+     */
+    long minimoDesdeInicio() {
+        return todos;
+    }
+
+    /**
+     * Calcula cuántos movimientos faltan, como mínimo, para juntar todos los
+     * discos en un poste.
+     *
+     * @param destino El poste donde deben quedar los discos.
+     * @return La distancia a la solución óptima, en movimientos.
+     */
+    long distancia(int destino) {
+        long distancia = 0;
+        int objetivo = destino;
+        for (int d = discos - 1; d >= 0; d--) {
+            int poste = poste(d);
+            if (poste != objetivo) {
+                // Este disco va a `objetivo`; los más chicos deben quedar en el tercer poste
+                distancia += 1L << d;
+                objetivo = 3 - poste - objetivo;
+            }
+        }
+        return distancia;
+    }
+
+    /**
+     * Calcula el primer movimiento de una solución óptima: el disco más chico de
+     * los que están fuera de su lugar, que siempre está libre.
+     *
+     * @param destino El poste donde deben quedar los discos.
+     * @return El movimiento, o `null` si ya están todos en `destino`.
+     */
+    Movimiento pista(int destino) {
+        Movimiento movimiento = null;
+        int objetivo = destino;
+        for (int d = discos - 1; d >= 0; d--) {
+            int poste = poste(d);
+            if (poste != objetivo) {
+                movimiento = new Movimiento(d, poste, objetivo);
+                objetivo = 3 - poste - objetivo;
+            }
+        }
+        return movimiento;
+    }
+
+    /**
+     * Recorre los movimientos de una solución óptima desde este estado sin
+     * guardarlos: cada uno se calcula al pedirlo, en O(n), sobre una copia.
+     *
+     * @param destino El poste donde deben quedar los discos.
+     * @return Los movimientos, del primero al último.
+     */
+    Iterator<Movimiento> solucion(int destino) {
+        EstadoHanoi copia = new EstadoHanoi(this);
+        return new Iterator<>() {
+            private Movimiento siguiente = copia.pista(destino);
+
+            @Override
+            public boolean hasNext() {
+                return siguiente != null;
+            }
+
+            @Override
+            public Movimiento next() {
+                if (siguiente == null) {
+                    throw new NoSuchElementException();
+                }
+                Movimiento actual = siguiente;
+                copia.mover(actual.origen(), actual.destino());
+                siguiente = copia.pista(destino);
+                return actual;
+            }
+        };
+    }
+
+    /**
+     * Escribe el estado con 2 bits por disco: el poste de cada uno.
+     *
+     * @param bits Dónde se escribe.
+     */
+    void codificar(Bits bits) {
+        bits.escribir(discos, 6).escribir(bajo, discos).escribir(alto, discos);
+    }
+
+    /**
+     * Lee un estado escrito con {@link #codificar(Bits)}.
+     *
+     * @param bits De dónde se lee.
+     * @return El estado.
+     */
+    static EstadoHanoi decodificar(Bits bits) {
+        EstadoHanoi estado = new EstadoHanoi((int) bits.leer(6));
+        estado.bajo = bits.leer(estado.discos);
+        estado.alto = bits.leer(estado.discos);
+        return estado;
+    }
+
+    /**
+     * @return Los discos de un poste de abajo hacia arriba, numerados desde 1, como "[3, 2, 1]".
+     */
+    String describir(int poste) {
+        StringBuilder texto = new StringBuilder("[");
+        long resto = enPoste(poste);
+        while (resto != 0) {
+            int disco = 63 - Long.numberOfLeadingZeros(resto);
+            resto &= ~(1L << disco);
+            texto.append(disco + 1).append(resto != 0 ? ", " : "");
+        }
+        return texto.append(']').toString();
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ *  Estado de las Torres de Hanoi con más de tres postes.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+
+/**
+ * Torres de Hanoi con p postes (de 3 a 8) y hasta 64 discos. Cada poste es
+ * una máscara con un bit por disco (0 es el más chico), así que el disco de
+ * arriba es el bit más bajo y validar una jugada es O(1). La partida se
+ * puntúa contra {@link FrameStewart#minimo(int, int)}.
+ */
+class EstadoHanoiPostes {
+    private final int discos;
+    private final long todos;
+    private final long[] postes;
+
+    /**
+     * Crea el estado inicial: todos los discos en el poste 0.
+     *
+     * @param discos De 1 a 64.
+     * @param postes De 3 a 8.
+     */
+    EstadoHanoiPostes(int discos, int postes) {
+        if (discos < 1 || discos > FrameStewart.MAXIMO_DISCOS
+                || postes < FrameStewart.MINIMO_POSTES || postes > FrameStewart.MAXIMO_POSTES) {
+            throw new IllegalArgumentException("Discos o postes fuera de rango: " + discos + ", " + postes);
+        }
+        this.discos = discos;
+        this.todos = discos == 64 ? -1L : (1L << discos) - 1;
+        this.postes = new long[postes];
+        this.postes[0] = todos;
+    }
+
+    /**
+     * @return Cuántos discos hay.
+     */
+    int discos() {
+        return discos;
+    }
+
+    /**
+     * @return Cuántos postes hay.
+     */
+    int postes() {
+        return postes.length;
+    }
+
+    /**
+     * @return `true` si se puede mover el disco de arriba de `origen` a `destino`.
+     */
+    boolean puedeMover(int origen, int destino) {
+        if (origen < 0 || origen >= postes.length || destino < 0 || destino >= postes.length || origen == destino) {
+            return false;
+        }
+        long desde = postes[origen];
+        long hacia = postes[destino];
+        // Comparación sin signo: el disco 63 es el bit de signo
+        return desde != 0 && (hacia == 0
+                || Long.compareUnsigned(Long.lowestOneBit(desde), Long.lowestOneBit(hacia)) < 0);
+    }
+
+    /**
+     * Mueve el disco de arriba de `origen` a `destino`; antes hay que revisar
+     * {@link #puedeMover(int, int)}.
+     */
+    void mover(int origen, int destino) {
+        long disco = Long.lowestOneBit(postes[origen]);
+        postes[origen] &= ~disco;
+        postes[destino] |= disco;
+    }
+
+    /**
+     * @return `true` si el poste no tiene discos.
+     */
+    boolean vacio(int poste) {
+        return postes[poste] == 0;
+    }
+
+    /**
+     * @return `true` si todos los discos están en el último poste.
+     */
+    boolean completo() {
+        return postes[postes.length - 1] == todos;
+    }
+
+    /**
+     * @return Los movimientos mínimos desde el estado inicial.
+     */
+    long minimoDesdeInicio() {
+        return FrameStewart.minimo(discos, postes.length);
+    }
+
+    /**
+     * Escribe el estado con el poste de cada disco, en 3 bits por disco con 5
+     * a 8 postes y en 2 con 3 o 4.
+     *
+     * @param bits Dónde se escribe.
+     */
+    void codificar(Bits bits) {
+        int ancho = Bits.ancho(postes.length);
+        bits.escribir(discos - 1, 6).escribir(postes.length, 4);
+        for (int disco = 0; disco < discos; disco++) {
+            int poste = 0;
+            while ((postes[poste] >>> disco & 1) == 0) {
+                poste++;
+            }
+            bits.escribir(poste, ancho);
+        }
+    }
+
+    /**
+     * Lee un estado escrito con {@link #codificar(Bits)}.
+     *
+     * @param bits De dónde se lee.
+     * @return El estado.
+     */
+    static EstadoHanoiPostes decodificar(Bits bits) {
+        int discos = (int) bits.leer(6) + 1;
+        EstadoHanoiPostes estado = new EstadoHanoiPostes(discos, (int) bits.leer(4));
+        int ancho = Bits.ancho(estado.postes.length);
+        estado.postes[0] = 0;
+        for (int disco = 0; disco < discos; disco++) {
+            estado.postes[(int) bits.leer(ancho)] |= 1L << disco;
+        }
+        return estado;
+    }
+
+    /**
+     * @return Los discos de un poste de abajo hacia arriba, numerados desde 1, como "[3, 2, 1]".
+     */
+    String describir(int poste) {
+        StringBuilder texto = new StringBuilder("[");
+        long resto = postes[poste];
+        while (resto != 0) {
+            int disco = 63 - Long.numberOfLeadingZeros(resto);
+            resto &= ~(1L << disco);
+            texto.append(disco + 1).append(resto != 0 ? ", " : "");
+        }
+        return texto.append(']').toString();
+    }
+}
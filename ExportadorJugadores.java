@@ -0,0 +1,498 @@
+/**
+ *  Exportación de los jugadores a CSV, JSON Lines o columnas.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Escribe a todos los jugadores (nombre, puntos y créditos) en archivos que
+ * se pueden leer fuera de la feria, sin juntarlos en memoria: cada hilo
+ * recorre su parte del registro y la escribe en su propio archivo,
+ * jugadores-000.csv, jugadores-001.csv..., con un búfer fijo. Los formatos:
+ *
+ * <pre>
+ *   csv       encabezado "nombre,puntos,creditos" y una línea por jugador;
+ *             el nombre va entre comillas si tiene comas, comillas o saltos
+ *   jsonl     {"nombre":"Ana","puntos":10,"creditos":90} por línea
+ *   columnas  int magia, int formato y bloques de hasta {@link #FILAS_POR_BLOQUE} filas:
+ *               int    filas del bloque (0 = fin del archivo)
+ *               int    × filas, puntos
+ *               int    × filas, créditos
+ *               short  × filas, largo del nombre en UTF-8
+ *               bytes  los nombres uno tras otro
+ * </pre>
+ *
+ * Se exporta lo mismo que escribiría la siguiente foto de la bitácora: la
+ * foto de {@link AlmacenJugadores} que hay al empezar, con el estado más
+ * nuevo de quien está en memoria, más los que se registraron después de
+ * ella. Como esa foto, se toma sin detener a nadie: cada jugador que ya
+ * existía al empezar sale exactamente una vez, con un estado de créditos y
+ * uno de puntos que de verdad tuvo durante la exportación (cada uno se lee
+ * completo, con su versión); los que se registran mientras tanto pueden salir
+ * o no. Si la bitácora cambia de foto a la mitad se sigue leyendo la
+ * anterior, que sigue mapeada. La foto se reparte por rangos de registros y
+ * el registro en memoria por partes de su tabla; con un {@link CacheJugadores}
+ * solo se copian los que están fuera de la foto, que no son más que su límite.
+ *
+ * Se usa con `java Feria --exportar [carpeta] [--formato csv|jsonl|columnas]
+ * [--hilos N]` o, con la feria corriendo, con la operación
+ * exportarJugadores de JMX ({@link MetricasFeriaMXBean}).
+ */
+final class ExportadorJugadores {
+    static final int MAGIA_COLUMNAS = 0x46455243;
+    static final int FORMATO_COLUMNAS = 1;
+
+    // Filas que junta el formato de columnas antes de escribir un bloque
+    static final int FILAS_POR_BLOQUE = 1 << 16;
+
+    // Con menos jugadores por hilo no vale la pena repartir
+    private static final int MINIMO_POR_HILO = 1 << 16;
+
+    private static final int BUFER = 1 << 16;
+
+    /**
+     * Los formatos de salida y la extensión de sus archivos.
+     */
+    enum Formato {
+        CSV("csv", "csv"),
+        JSON_LINES("jsonl", "jsonl"),
+        COLUMNAS("columnas", "col");
+
+        final String nombre;
+        final String extension;
+
+        Formato(String nombre, String extension) {
+            this.nombre = nombre;
+            this.extension = extension;
+        }
+
+        /**
+         * @param nombre "csv", "jsonl" o "columnas".
+         * @return El formato con ese nombre.
+         */
+        static Formato desdeNombre(String nombre) {
+            for (Formato formato : values()) {
+                if (formato.nombre.equals(nombre)) {
+                    return formato;
+                }
+            }
+            throw new IllegalArgumentException("Formato desconocido: " + nombre + " (csv, jsonl o columnas)");
+        }
+    }
+
+    /**
+     * Lo que dejó una exportación.
+     *
+     * @param archivos Cuántos archivos se escribieron (uno por hilo).
+     * @param filas Cuántos jugadores se escribieron.
+     * @param bytes El tamaño de todos los archivos.
+     * @param nanos Cuánto tardó.
+     * @param picoHeap El pico del heap durante la exportación, en bytes.
+     */
+    record Resultado(int archivos, long filas, long bytes, long nanos, long picoHeap) {
+        /**
+         * @return Una línea con las filas por segundo y el pico del heap.
+         */
+        String resumen() {
+            double segundos = nanos / 1e9;
+            return String.format("Exportados %d jugadores en %d archivos (%d MB) en %.2f s: %.0f filas/s,"
+                    + " pico del heap %d MB", filas, archivos, bytes >> 20, segundos,
+                    filas / Math.max(segundos, 1e-9), picoHeap >> 20);
+        }
+    }
+
+    private final Path carpeta;
+    private final Formato formato;
+    private final int hilos;
+
+    /**
+     * @param carpeta Dónde escribir los archivos.
+     * @param formato El formato de los archivos.
+     * @param hilos Cuántos hilos (y archivos) como máximo.
+     */
+    ExportadorJugadores(Path carpeta, Formato formato, int hilos) {
+        if (hilos < 1) {
+            throw new IllegalArgumentException("Se necesita al menos un hilo");
+        }
+        this.carpeta = carpeta;
+        this.formato = formato;
+        this.hilos = hilos;
+    }
+
+    /**
+     * Lee las opciones de la línea de comandos: `[carpeta] [--formato F] [--hilos N]`.
+     *
+     * @param args Los argumentos del programa.
+     * @param desde Dónde empiezan las opciones de la exportación.
+     * @return La exportación configurada.
+     */
+    static ExportadorJugadores desdeArgumentos(String[] args, int desde) {
+        Path carpeta = Paths.get("exportacion");
+        Formato formato = Formato.CSV;
+        int hilos = Runtime.getRuntime().availableProcessors();
+        for (int i = desde; i < args.length; i++) {
+            boolean hayValor = i + 1 < args.length;
+            if (args[i].equals("--formato") && hayValor) {
+                formato = Formato.desdeNombre(args[++i]);
+            } else if (args[i].equals("--hilos") && hayValor) {
+                hilos = Integer.parseInt(args[++i]);
+            } else if (!args[i].startsWith("--")) {
+                carpeta = Paths.get(args[i]);
+            } else {
+                throw new IllegalArgumentException("Uso: java Feria --exportar [carpeta]"
+                        + " [--formato csv|jsonl|columnas] [--hilos N]");
+            }
+        }
+        return new ExportadorJugadores(carpeta, formato, hilos);
+    }
+
+    /**
+     * Exporta a los jugadores de la feria e imprime el resumen.
+     */
+    void ejecutar() throws IOException {
+        Resultado resultado = exportarLaFeria();
+        System.out.println(resultado.resumen());
+        System.out.println("  en " + carpeta.toAbsolutePath());
+    }
+
+    /**
+     * Exporta a los jugadores de la feria con su foto actual; las sesiones
+     * siguen jugando mientras tanto.
+     *
+     * @return Lo que dejó la exportación.
+     */
+    Resultado exportarLaFeria() throws IOException {
+        AlmacenJugadores almacen = Feria.bitacora == null ? null : Feria.bitacora.almacen();
+        return exportar(Feria.jugadores, almacen);
+    }
+
+    /**
+     * Exporta a los jugadores de un registro y su foto. Los archivos de una
+     * exportación anterior en el mismo formato se reemplazan.
+     *
+     * @param jugadores El registro.
+     * @param almacen La foto que completa al registro, o null.
+     * @return Lo que dejó la exportación.
+     */
+    Resultado exportar(Map<String, Feria.Jugador> jugadores, AlmacenJugadores almacen) throws IOException {
+        Files.createDirectories(carpeta);
+        borrarAnteriores();
+        for (MemoryPoolMXBean memoria : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoria.getType() == MemoryType.HEAP) {
+                memoria.resetPeakUsage();
+            }
+        }
+        long inicio = System.nanoTime();
+
+        Map<String, Feria.Jugador> memoria = jugadores instanceof CacheJugadores cache
+                ? cache.copiaFueraDeLaFoto() : jugadores;
+        int enFoto = almacen == null ? 0 : almacen.cantidad();
+        long total = (long) enFoto + memoria.size();
+        int partes = (int) Math.max(1, Math.min(hilos, total / MINIMO_POR_HILO));
+        List<Consumer<AlmacenJugadores.Visitante>> enMemoria = repartir(memoria, partes);
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(partes);
+        List<Future<Long>> tareas = new ArrayList<>();
+        for (int p = 0; p < partes; p++) {
+            int desde = (int) ((long) enFoto * p / partes);
+            int hasta = (int) ((long) enFoto * (p + 1) / partes);
+            Path archivo = carpeta.resolve(String.format("jugadores-%03d.%s", p, formato.extension));
+            Consumer<AlmacenJugadores.Visitante> parte = enMemoria.get(p);
+            tareas.add(ejecutor.submit(() -> exportarParte(archivo, almacen, desde, hasta, memoria, parte)));
+        }
+        ejecutor.shutdown();
+        long filas = 0;
+        for (Future<Long> tarea : tareas) {
+            filas += esperar(tarea);
+        }
+        long nanos = System.nanoTime() - inicio;
+
+        long bytes = 0;
+        for (int p = 0; p < partes; p++) {
+            bytes += Files.size(carpeta.resolve(String.format("jugadores-%03d.%s", p, formato.extension)));
+        }
+        return new Resultado(partes, filas, bytes, nanos, SimuladorFeria.picoHeap());
+    }
+
+    /**
+     * Escribe un archivo: los registros de la foto en [desde, hasta), con el
+     * estado de memoria si es más nuevo, y la parte del registro en memoria
+     * que no está en la foto.
+     *
+     * @return Cuántos jugadores se escribieron.
+     */
+    private long exportarParte(Path archivo, AlmacenJugadores almacen, int desde, int hasta,
+                               Map<String, Feria.Jugador> memoria, Consumer<AlmacenJugadores.Visitante> parte)
+            throws IOException {
+        try (Escritor escritor = abrir(archivo)) {
+            try {
+                if (almacen != null) {
+                    almacen.recorrer(desde, hasta, (nombre, creditos, puntos) -> {
+                        Feria.Jugador jugador = memoria.get(nombre);
+                        if (jugador != null) {
+                            creditos = masNuevo(creditos, jugador.estadoCreditos());
+                            puntos = masNuevo(puntos, jugador.estadoPuntos());
+                        }
+                        escritor.escribir(nombre, Feria.Jugador.valor(puntos), Feria.Jugador.valor(creditos));
+                    });
+                }
+                parte.accept((nombre, creditos, puntos) -> {
+                    if (almacen == null || !almacen.contiene(nombre)) {
+                        escritor.escribir(nombre, Feria.Jugador.valor(puntos), Feria.Jugador.valor(creditos));
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return escritor.filas;
+        }
+    }
+
+    /**
+     * Parte el registro en memoria en recorridos independientes: una tabla
+     * por rangos de filas y cualquier otro mapa con su Spliterator (el de un
+     * mapa concurrente se parte por mitades de su tabla).
+     *
+     * @return Exactamente `partes` recorridos; algunos pueden estar vacíos.
+     */
+    private static List<Consumer<AlmacenJugadores.Visitante>> repartir(Map<String, Feria.Jugador> memoria,
+                                                                       int partes) {
+        List<Consumer<AlmacenJugadores.Visitante>> recorridos = new ArrayList<>(partes);
+        if (memoria instanceof TablaJugadores tabla) {
+            int filas = tabla.size();
+            for (int p = 0; p < partes; p++) {
+                int desde = (int) ((long) filas * p / partes);
+                int hasta = (int) ((long) filas * (p + 1) / partes);
+                recorridos.add(visitante -> tabla.recorrer(desde, hasta, visitante));
+            }
+            return recorridos;
+        }
+        List<Spliterator<Feria.Jugador>> trozos = new ArrayList<>();
+        trozos.add(memoria.values().spliterator());
+        while (trozos.size() < partes) {
+            Spliterator<Feria.Jugador> mayor = Collections.max(trozos,
+                    Comparator.comparingLong(Spliterator::estimateSize));
+            Spliterator<Feria.Jugador> mitad = mayor.trySplit();
+            if (mitad == null) {
+                break;
+            }
+            trozos.add(mitad);
+        }
+        for (Spliterator<Feria.Jugador> trozo : trozos) {
+            recorridos.add(visitante -> trozo.forEachRemaining(jugador ->
+                    visitante.visitar(jugador.getNombre(), jugador.estadoCreditos(), jugador.estadoPuntos())));
+        }
+        while (recorridos.size() < partes) {
+            recorridos.add(visitante -> { });
+        }
+        return recorridos;
+    }
+
+    private void borrarAnteriores() throws IOException {
+        String patron = "jugadores-*." + formato.extension;
+        try (DirectoryStream<Path> anteriores = Files.newDirectoryStream(carpeta, patron)) {
+            for (Path anterior : anteriores) {
+                Files.delete(anterior);
+            }
+        }
+    }
+
+    private static long esperar(Future<Long> tarea) throws IOException {
+        try {
+            return tarea.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Se interrumpió la exportación");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException falla) {
+                throw falla;
+            }
+            throw new IllegalStateException("Falló un hilo de la exportación", e.getCause());
+        }
+    }
+
+    private static long masNuevo(long guardado, long estado) {
+        return (estado >>> 32) > (guardado >>> 32) ? estado : guardado;
+    }
+
+    private Escritor abrir(Path archivo) throws IOException {
+        return switch (formato) {
+            case CSV -> new EscritorCsv(texto(archivo));
+            case JSON_LINES -> new EscritorJson(texto(archivo));
+            case COLUMNAS -> new EscritorColumnas(new BufferedOutputStream(Files.newOutputStream(archivo), BUFER));
+        };
+    }
+
+    // El búfer va antes del codificador de UTF-8 para que codifique de un trozo grande a la vez
+    private static Writer texto(Path archivo) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(archivo), StandardCharsets.UTF_8),
+                BUFER);
+    }
+
+    /**
+     * Escribe las filas de un archivo. Los errores de escritura salen como
+     * {@link UncheckedIOException} porque se escribe desde un
+     * {@link AlmacenJugadores.Visitante}.
+     */
+    private abstract static class Escritor implements Closeable {
+        long filas;
+
+        final void escribir(String nombre, int puntos, int creditos) {
+            try {
+                fila(nombre, puntos, creditos);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            filas++;
+        }
+
+        abstract void fila(String nombre, int puntos, int creditos) throws IOException;
+    }
+
+    private static final class EscritorCsv extends Escritor {
+        private final Writer salida;
+
+        EscritorCsv(Writer salida) throws IOException {
+            this.salida = salida;
+            salida.write("nombre,puntos,creditos\n");
+        }
+
+        @Override
+        void fila(String nombre, int puntos, int creditos) throws IOException {
+            if (nombre.indexOf(',') >= 0 || nombre.indexOf('"') >= 0 || nombre.indexOf('\n') >= 0
+                    || nombre.indexOf('\r') >= 0) {
+                salida.write('"');
+                salida.write(nombre.replace("\"", "\"\""));
+                salida.write('"');
+            } else {
+                salida.write(nombre);
+            }
+            salida.write(',');
+            salida.write(Integer.toString(puntos));
+            salida.write(',');
+            salida.write(Integer.toString(creditos));
+            salida.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            salida.close();
+        }
+    }
+
+    private static final class EscritorJson extends Escritor {
+        private final Writer salida;
+
+        EscritorJson(Writer salida) {
+            this.salida = salida;
+        }
+
+        @Override
+        void fila(String nombre, int puntos, int creditos) throws IOException {
+            salida.write("{\"nombre\":\"");
+            if (sinEscapar(nombre)) {
+                salida.write(nombre);
+            } else {
+                escapar(nombre);
+            }
+            salida.write("\",\"puntos\":");
+            salida.write(Integer.toString(puntos));
+            salida.write(",\"creditos\":");
+            salida.write(Integer.toString(creditos));
+            salida.write("}\n");
+        }
+
+        private static boolean sinEscapar(String nombre) {
+            for (int i = 0; i < nombre.length(); i++) {
+                char letra = nombre.charAt(i);
+                if (letra == '"' || letra == '\\' || letra < 0x20) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void escapar(String nombre) throws IOException {
+            for (int i = 0; i < nombre.length(); i++) {
+                char letra = nombre.charAt(i);
+                if (letra == '"' || letra == '\\') {
+                    salida.write('\\');
+                    salida.write(letra);
+                } else if (letra < 0x20) {
+                    salida.write(String.format("\\u%04x", (int) letra));
+                } else {
+                    salida.write(letra);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            salida.close();
+        }
+    }
+
+    /**
+     * Junta las filas de un bloque columna por columna y lo escribe completo.
+     */
+    private static final class EscritorColumnas extends Escritor {
+        private final DataOutputStream salida;
+        private final int[] puntos = new int[FILAS_POR_BLOQUE];
+        private final int[] creditos = new int[FILAS_POR_BLOQUE];
+        private final short[] largos = new short[FILAS_POR_BLOQUE];
+        private final ByteArrayOutputStream nombres = new ByteArrayOutputStream(FILAS_POR_BLOQUE * 16);
+        private int enBloque;
+
+        EscritorColumnas(OutputStream salida) throws IOException {
+            this.salida = new DataOutputStream(salida);
+            this.salida.writeInt(MAGIA_COLUMNAS);
+            this.salida.writeInt(FORMATO_COLUMNAS);
+        }
+
+        @Override
+        void fila(String nombre, int puntos, int creditos) throws IOException {
+            byte[] bytes = nombre.getBytes(StandardCharsets.UTF_8);
+            this.puntos[enBloque] = puntos;
+            this.creditos[enBloque] = creditos;
+            largos[enBloque] = (short) bytes.length;
+            nombres.write(bytes);
+            if (++enBloque == FILAS_POR_BLOQUE) {
+                vaciar();
+            }
+        }
+
+        private void vaciar() throws IOException {
+            salida.writeInt(enBloque);
+            for (int i = 0; i < enBloque; i++) {
+                salida.writeInt(puntos[i]);
+            }
+            for (int i = 0; i < enBloque; i++) {
+                salida.writeInt(creditos[i]);
+            }
+            for (int i = 0; i < enBloque; i++) {
+                salida.writeShort(largos[i]);
+            }
+            nombres.writeTo(salida);
+            nombres.reset();
+            enBloque = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (enBloque > 0) {
+                vaciar();
+            }
+            salida.writeInt(0);
+            salida.close();
+        }
+    }
+}
@@ -5,772 +5,885 @@
  *  @date 10 dic 2024
  */
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 public class Feria {
-    // Mapa que almacena a los jugadores registrados, con su nombre como clave y el objeto Jugador como valor
-    static Map<String, Jugador> jugadores = new HashMap<>();
-    
-    // Objeto Scanner para leer entradas desde la consola
-    static Scanner scanner = new Scanner(System.in);
+    // Mapa que almacena a los jugadores registrados, con su nombre como clave y el objeto Jugador como valor.
+    // Es concurrente porque varias sesiones pueden registrar y consultar jugadores al mismo tiempo.
+    // Con -Dferia.registro=columnas (o fueraDelHeap) se guardan por columnas, ver TablaJugadores.
+    static Map<String, Jugador> jugadores = TablaJugadores.crear(System.getProperty("feria.registro", "mapa"));
     
     // Credito inicial que se asigna a cada jugador al registrarse
     static final int CREDITO_INICIAL = 100;
     
     // Costo fijo para participar en un juego
     static final int COSTO_JUEGO = 15;
+
+    // Créditos que se otorgan al ganar el Cuadrado Mágico o adivinar en Salvado
+    static final int PREMIO_VICTORIA = 30;
+
+    // Tamaño máximo del círculo en Salvado y cuántas eliminaciones se muestran
+    static final int MAXIMO_SALVADO = 1_000_000;
+    static final int ELIMINACIONES_MOSTRADAS = 20;
     
     // Nombre del archivo donde se almacenan los datos de los jugadores
     static final String ARCHIVO_JUGADORES = "jugadores.dat";
+
+    // Directorio donde viven el archivo de jugadores y la bitácora (se cambia con -Dferia.datos=...)
+    static String directorioDatos = System.getProperty("feria.datos", ".");
+
+    // Bitácora donde se anota cada cambio de los jugadores; es null si no se pudo abrir
+    static BitacoraJugadores bitacora;
     
-    // Tamaño del tablero para el juego "Cuadrado Mágico"
-    static final int N = 4; 
-    
-    public static void main(String[] args) {
+    // Con -Dferia.ansi=true los tableros se quedan fijos y solo se redibuja lo que cambia
+    static final boolean ANSI = Boolean.getBoolean("feria.ansi");
+
+    // Latencia de respuesta de las opciones del menú (sin contar el tiempo dentro de un juego)
+    static final HistogramaLatencia latenciaMenu = new HistogramaLatencia();
+
+    // Con -Dferia.semilla=N el azar de los juegos se repite de una corrida a otra
+    static final Long SEMILLA = Long.getLong("feria.semilla");
+
+    // Objeto Scanner para leer las entradas de esta sesión (consola o conexión)
+    private final Scanner scanner;
+
+    // Salida de esta sesión
+    private final PrintStream out;
+
+    // Arma los tableros y los escribe de un solo golpe
+    private final Lienzo lienzo;
+
+    // Cuándo terminó la última lectura, para medir cuánto tarda cada jugada en responder
+    private long ultimaLectura;
+
+    // Azar de los juegos de esta sesión
+    private final SplittableRandom azar;
+
+    // Secuencia del último resultado que publicó esta sesión en TuberiaResultados
+    private long ultimoResultado = -1;
+
+    /**
+     * Crea una sesión de la feria con su propia entrada y salida.
+     * 
+     * @param entrada De donde se leen las opciones del jugador.
+     * @param salida A donde se escriben los menús y tableros.
+     */
+    Feria(InputStream entrada, PrintStream salida) {
+        this.scanner = new Scanner(entrada, StandardCharsets.UTF_8);
+        this.out = salida;
+        this.lienzo = new Lienzo(salida, ANSI);
+        this.azar = SEMILLA != null ? new SplittableRandom(SEMILLA) : new SplittableRandom();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // Con "--simular" juegan bots sin tocar los jugadores guardados ni la bitácora
+        if (args.length > 0 && args[0].equals("--simular")) {
+            MetricasFeria.iniciar();
+            SimuladorFeria.desdeArgumentos(args, 1).ejecutar();
+            System.out.println(MetricasFeria.resumen());
+            MetricasFeria.volcar();
+            return;
+        }
+
+        // Con "--analizar [carpeta]" se sacan estadísticas de las partidas archivadas
+        if (args.length > 0 && args[0].equals("--analizar")) {
+            AnalizadorPartidas.desdeArgumentos(args, 1).ejecutar();
+            return;
+        }
+
+        // Con "--exportar [carpeta]" se escriben todos los jugadores en CSV, JSON Lines o columnas
+        if (args.length > 0 && args[0].equals("--exportar")) {
+            ExportadorJugadores exportador = ExportadorJugadores.desdeArgumentos(args, 1);
+            cargarDatos(false);
+            exportador.ejecutar();
+            cerrarBitacora();
+            return;
+        }
+
+        // Con "--repetir guion..." se juegan sesiones sin consola con la entrada de los guiones,
+        // con jugadores y bitácora propios en una carpeta temporal
+        if (args.length > 0 && args[0].equals("--repetir")) {
+            RepeticionFeria repeticion = RepeticionFeria.desdeArgumentos(args, 1);
+            MetricasFeria.iniciar();
+            repeticion.ejecutar();
+            MetricasFeria.volcar();
+            return;
+        }
+
         // Carga los datos de los jugadores guardados en el archivo
-        cargarDatos(); 
-        
+        cargarDatos(true); 
+
+        // Publica las métricas por JMX (y en un archivo con -Dferia.metricas=...)
+        MetricasFeria.iniciar();
+
+        // Con "--servidor [puerto]" la feria atiende muchas sesiones por TCP
+        if (args.length > 0 && args[0].equals("--servidor")) {
+            int puerto = args.length > 1 ? Integer.parseInt(args[1]) : ServidorFeria.PUERTO_PREDETERMINADO;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                cerrarBitacora();
+                MetricasFeria.volcar();
+            }));
+            new ServidorFeria(puerto).ejecutar();
+            return;
+        }
+
+        // Sin argumentos se juega una sola sesión desde la consola
+        new Feria(System.in, System.out).ejecutar();
+        cerrarBitacora();
+        MetricasFeria.volcar();
+    }
+
+    /**
+     * Bucle principal de una sesión: muestra el menú y ejecuta las opciones
+     * hasta que el jugador decide guardar y salir.
+     */
+    void ejecutar() {
         // Bucle principal que mantiene en ejecución el menú de la feria
         while (true) {
             // Muestra el menú con las opciones
             mostrarMenu();
+            MetricasFeria.primerMenu();
             
             // Lee la opción seleccionada por el usuario
-            int opcion = scanner.nextInt();
-            scanner.nextLine(); // Limpiar el buffer
+            int opcion = leerEntero();
+            leerLinea(); // Limpiar el buffer
+            long inicio = System.nanoTime();
+
+            // Los premios de la última partida se aplican fuera de la sesión; antes de
+            // mostrar créditos o cobrar otra partida se espera a que ya estén aplicados
+            TuberiaResultados.esperar(ultimoResultado);
             
             // Ejecuta la opción seleccionada
-            switch (opcion) {
-                case 1:
-                    registrarJugador();  // Opción para registrar un jugador
-                    break;
-                case 2:
-                    iniciarJuego();      // Opción para iniciar un nuevo juego
-                    break;
-                case 3:
-                    verMejoresJugadores(); // Opción para ver los3 jugadores con mas creditos
-                    break;
-                case 4:
-                    verPuntosJugador();    // Opción para ver los creditos del jugador actual
-                    break;
-                case 5:
-                    guardarYSalir();      // Opción para guardar los datos y salir del programa
-                    return;
-                default:
-                    System.out.println("Opción no válida. Intenta nuevamente.");
+            try {
+                switch (opcion) {
+                    case 1:
+                        registrarJugador();  // Opción para registrar un jugador
+                        break;
+                    case 2:
+                        iniciarJuego();      // Opción para iniciar un nuevo juego
+                        continue;            // El tiempo de juego no cuenta como latencia del menú
+                    case 3:
+                        verMejoresJugadores(); // Opción para ver los3 jugadores con mas creditos
+                        break;
+                    case 4:
+                        verPuntosJugador();    // Opción para ver los creditos del jugador actual
+                        break;
+                    case 5:
+                        guardarYSalir();      // Opción para guardar los datos y salir del programa
+                        out.flush();
+                        return;
+                    default:
+                        out.println("Opción no válida. Intenta nuevamente.");
+                }
+            } catch (UncheckedIOException e) {
+                // La bitácora dejó de escribir: el cambio se rechazó o, si ya estaba hecho en memoria, se deshizo
+                out.println("Error al guardar los datos; el cambio no se hizo y por ahora no se aceptan cambios.");
             }
+            latenciaMenu.registrar(System.nanoTime() - inicio);
         }
     }
 
+    /**
+     * Lee un número entero de la entrada de la sesión. Antes de esperar
+     * se envía todo lo pendiente para que el jugador vea la pregunta.
+     * 
+     * @return El número leído.
+     */
+    int leerEntero() {
+        out.flush();
+        int numero = scanner.nextInt();
+        ultimaLectura = System.nanoTime();
+        return numero;
+    }
+
+    /**
+     * Lee una línea completa de la entrada de la sesión.
+     * 
+     * @return La línea leída, sin el salto de línea.
+     */
+    String leerLinea() {
+        out.flush();
+        String linea = scanner.nextLine();
+        ultimaLectura = System.nanoTime();
+        return linea;
+    }
+
+    /**
+     * Registra cuánto tardó en responder una jugada, desde que se leyó la
+     * última entrada del jugador.
+     *
+     * @param juego El juego que se está jugando.
+     */
+    void jugadaHecha(MetricasFeria.Juego juego) {
+        juego.jugadas.registrar(System.nanoTime() - ultimaLectura);
+    }
+
+    /**
+     * @return La salida de esta sesión.
+     */
+    PrintStream salida() {
+        return out;
+    }
+
+    /**
+     * @return El lienzo donde se dibujan los tableros de esta sesión.
+     */
+    Lienzo lienzo() {
+        return lienzo;
+    }
+
+    /**
+     * @return El azar de los juegos de esta sesión.
+     */
+    SplittableRandom azar() {
+        return azar;
+    }
+
     /**
      * Muestra el menú principal con las opciones disponibles.
      */
-    private static void mostrarMenu() {
-        System.out.println("\n--- ¡Bienvenido a la feria! ---");
-        System.out.println("1. Registrar jugador");
-        System.out.println("2. Iniciar nuevo juego");
-        System.out.println("3. Ver top 3 jugadores");
-        System.out.println("4. Ver tus creditos actualmente");
-        System.out.println("5. Guardar y salir");
-        System.out.print("Selecciona una opción: ");
+    private void mostrarMenu() {
+        out.println("\n--- ¡Bienvenido a la feria! ---");
+        out.println("1. Registrar jugador");
+        out.println("2. Iniciar nuevo juego");
+        out.println("3. Ver top 3 jugadores");
+        out.println("4. Ver tus creditos actualmente");
+        out.println("5. Guardar y salir");
+        out.print("Selecciona una opción: ");
     }
 
     /**
      * Permite registrar un nuevo jugador o saludar a uno ya registrado.
      */
-    private static void registrarJugador() {
-        System.out.print("Ingresa tu nombre: ");
-        String nombre = scanner.nextLine();
+    private void registrarJugador() {
+        out.print("Ingresa tu nombre: ");
+        String nombre = leerLinea();
         
-        // Verifica si el jugador ya está registrado
-        if (jugadores.containsKey(nombre)) {
-            System.out.println("¡Bienvenido de vuelta, " + nombre + "!");
-            System.out.println("Tienes " + jugadores.get(nombre).getCreditos() + " créditos disponibles");
-        } else {
-            // Si no está registrado, crea un nuevo jugador con crédito inicial
+        // El nombre tiene que caber en el registro del archivo de jugadores
+        if (!AlmacenJugadores.nombreValido(nombre)) {
+            out.println("El nombre es demasiado largo (máximo " + AlmacenJugadores.MAXIMO_NOMBRE + " bytes).");
+            return;
+        }
+        
+        Jugador existente = buscarJugador(nombre);
+        if (existente == null) {
+            // El registro se anota antes de agregarlo, así no queda un jugador que la
+            // bitácora no tiene; si otra sesión lo registra primero, al repetir la
+            // bitácora el segundo registro no cambia nada
+            if (bitacora != null) {
+                bitacora.anotarRegistro(nombre, CREDITO_INICIAL);
+            }
+            // Registra al jugador solo si nadie más lo registró antes (en esta u otra sesión)
             Jugador nuevoJugador = new Jugador(nombre, CREDITO_INICIAL);
-            jugadores.put(nombre, nuevoJugador);
-            System.out.println("¡Registro exitoso! Has sido registrado con " + CREDITO_INICIAL + " créditos");
+            existente = jugadores.putIfAbsent(nombre, nuevoJugador);
+            if (existente == null) {
+                // Si no estaba registrado, queda registrado con crédito inicial
+                Clasificacion.CREDITOS.marcarCambio(nuevoJugador);
+                Clasificacion.PUNTOS.marcarCambio(nuevoJugador);
+                esperarBitacora();
+                MetricasFeria.registros.increment();
+                out.println("¡Registro exitoso! Has sido registrado con " + CREDITO_INICIAL + " créditos");
+                return;
+            }
+        }
+        out.println("¡Bienvenido de vuelta, " + nombre + "!");
+        out.println("Tienes " + existente.getCreditos() + " créditos disponibles");
+    }
+
+    /**
+     * Busca un jugador registrado: primero entre los que ya están en memoria y,
+     * si no está, en el archivo de jugadores, de donde se carga la primera vez.
+     * 
+     * @param nombre El nombre del jugador.
+     * @return El jugador, o null si no está registrado.
+     */
+    static Jugador buscarJugador(String nombre) {
+        Jugador jugador = jugadores.get(nombre);
+        AlmacenJugadores almacen = bitacora == null ? null : bitacora.almacen();
+        if (jugador != null || almacen == null) {
+            return jugador;
         }
+        return jugadores.computeIfAbsent(nombre, almacen::buscar);
     }
 /**
  * Muestra los puntos y créditos del jugador actual.
  * Pide al jugador que ingrese su nombre y muestra sus créditos si está registrado.
  */
-private static void verPuntosJugador() {
-    System.out.print("Ingresa tu nombre: ");
-    String nombre = scanner.nextLine();
-
-    if (jugadores.containsKey(nombre)) {
-        Jugador jugador = jugadores.get(nombre);
-        System.out.println("Tienes " + jugador.getCreditos() + " créditos.");
+private void verPuntosJugador() {
+    out.print("Ingresa tu nombre: ");
+    String nombre = leerLinea();
+
+    Jugador jugador = buscarJugador(nombre);
+    if (jugador != null) {
+        out.println("Tienes " + jugador.getCreditos() + " créditos.");
+        out.println("Tu lugar en la clasificación es el " + Clasificacion.CREDITOS.posicion(nombre) + ".");
     } else {
-        System.out.println("Jugador no registrado.");
+        out.println("Jugador no registrado.");
     }
 }
 
     /**
-     * Inicia un nuevo juego. Permite seleccionar entre diferentes juegos disponibles.
+     * Inicia un nuevo juego. Muestra los juegos del {@link RegistroJuegos}
+     * con su costo, cobra el del juego elegido y juega la partida.
      */
-    private static void iniciarJuego() {
+    private void iniciarJuego() {
         // Muestra las opciones de juegos disponibles
-        System.out.println("\nSelecciona un juego para jugar:");
-        System.out.println("1. Cuadrado Mágico (Costo: 15 créditos)");
-        System.out.println("2. Conecta 4 (Costo: 5 créditos)");
-        System.out.println("3. Salvado (Costo: 15 créditos)");
-        System.out.println("4. Torres de Hanoi (Costo: 15 créditos)");
+        out.println("\nSelecciona un juego para jugar:");
+        for (int opcion = 1; opcion <= RegistroJuegos.cantidad(); opcion++) {
+            JuegoFeria disponible = RegistroJuegos.juego(opcion);
+            out.println(opcion + ". " + disponible.nombre() + " (Costo: " + disponible.costo() + " créditos)");
+        }
        
-        int opcionJuego = scanner.nextInt(); // Lee la opción del juego
-        scanner.nextLine(); // Limpiar el buffer
+        int opcionJuego = leerEntero(); // Lee la opción del juego
+        leerLinea(); // Limpiar el buffer
         
-        System.out.print("Ingresa tu nombre para continuar: ");
-        String nombreJugador = scanner.nextLine(); // Lee el nombre del jugador
+        out.print("Ingresa tu nombre para continuar: ");
+        String nombreJugador = leerLinea(); // Lee el nombre del jugador
+        
+        Jugador jugador = buscarJugador(nombreJugador); // Obtiene el objeto Jugador
         
         // Verifica si el jugador está registrado
-        if (!jugadores.containsKey(nombreJugador)) {
-            System.out.println("Jugador no registrado. Primero debes registrarte.");
+        if (jugador == null) {
+            out.println("Jugador no registrado. Primero debes registrarte.");
             return;  // Sale del método si el jugador no está registrado
         }
-        
-        Jugador jugador = jugadores.get(nombreJugador); // Obtiene el objeto Jugador
-        
-        // Verifica si el jugador tiene suficientes créditos para jugar
-        if (jugador.getCreditos() < COSTO_JUEGO) {
-            System.out.println("¡No tienes suficientes créditos para jugar! Tienes " + jugador.getCreditos() + " créditos.");
-            return;  // Sale del método si no tiene suficientes créditos
-        }
-        
-        // Si tiene créditos, se descuentan los créditos para participar en el juego
-        jugador.reducirCreditos(COSTO_JUEGO);
-        System.out.println("¡Bienvenido al juego!");
-        
-        // Llama al método correspondiente dependiendo del juego seleccionado
-        if (opcionJuego == 1) {
-            jugarCuadradoMagico();
-        } else if (opcionJuego == 2) {
-            jugarConecta4();
-        } else if (opcionJuego == 3) {
-            jugarSalvado();
-        } else if (opcionJuego == 4) { 
-            jugarTorresDeHanoi();
-        } else {
-            System.out.println("Opción de juego no válida.");
-        }
-    }
-// Juego Cuadrado Mágico
-/**
- * Inicia el juego "Cuadrado Mágico". El jugador debe completar el tablero
- * de manera que la suma de cada fila, cada columna y ambas diagonales sea
- * igual a la "suma mágica".
- */
-private static void jugarCuadradoMagico() {
-    int puntuacionJugador = 0;  // Inicializa la puntuación del jugador
-    Scanner scanner = new Scanner(System.in);
-    
-    // Inicializa el tablero y lo muestra
-    int[][] tablero = inicializarTablero();
-    mostrarTablero(tablero);
-    
-    System.out.println("Completa el tablero para que sea un cuadrado mágico.");
-    int numerosUsados = 0; // Cuenta cuántos números han sido colocados en el tablero
-    
-    // Bucle que permite al jugador colocar números hasta completar el tablero
-    while (numerosUsados < 16) {
-        System.out.print("Ingresa la fila (0-3): ");
-        int fila = scanner.nextInt(); // Lee la fila donde el jugador quiere colocar un número
-
-        System.out.print("Ingresa la columna (0-3): ");
-        int columna = scanner.nextInt(); // Lee la columna donde el jugador quiere colocar un número
-
-        // Verifica si la celda ya tiene un número o está ocupada
-        if (tablero[fila][columna] != 0) {
-            System.out.println("Esta celda ya tiene un valor fijo o ya has colocado un número aquí.");
-            continue;  // Si la celda está ocupada, pide al jugador que intente de nuevo
-        }
 
-        System.out.print("Ingresa el número que deseas colocar (1-16): ");
-        int numero = scanner.nextInt(); // Lee el número que el jugador desea colocar
-
-        // Verifica si el número ingresado es válido (entre 1 y 16 y no repetido)
-        if (numero < 1 || numero > 16 || contiene(tablero, numero)) {
-            System.out.println("Número inválido o ya utilizado. Intenta de nuevo.");
-            continue;  // Si el número es inválido, pide al jugador que intente de nuevo
+        // Una partida que quedó en pausa se termina antes de empezar otra
+        if (retomarPartida(jugador.getNombre())) {
+            return;
         }
 
-        // Coloca el número en el tablero y aumenta el contador de números usados
-        tablero[fila][columna] = numero;
-        numerosUsados++;
+        // Una opción que no es un juego no se cobra
+        JuegoFeria juego = RegistroJuegos.elegir(opcionJuego);
+        if (juego == null) {
+            out.println("Opción de juego no válida.");
+            return;
+        }
         
-        // Muestra el tablero actualizado
-        mostrarTablero(tablero);
+        // Descuenta el costo solo si le alcanza; la verificación y el descuento son una sola
+        // operación atómica, así dos sesiones del mismo jugador no pueden gastar dos veces
+        if (!LibroCreditos.debitar(jugador, juego.costo())) {
+            out.println("¡No tienes suficientes créditos para jugar! Tienes " + jugador.getCreditos() + " créditos.");
+            return;  // Sale del método si no tiene suficientes créditos
+        }
+        esperarBitacora();
+        out.println("¡Bienvenido al juego!");
+        
+        // El primer tablero del juego se dibuja completo
+        lienzo.reiniciar();
 
-        // Verifica si es posible completar el cuadrado mágico
-        if (!esPosibleCuadradoMagico(tablero)) {
-            System.out.println("No es posible completar el cuadrado mágico. ¡Has perdido!");
-            return;  // Termina el juego si no es posible completar el cuadrado mágico
+        if (juego.metrica() != null) {
+            juego.metrica().iniciados.increment();
         }
+        jugarPartida(jugador, opcionJuego, juego, null);
     }
 
-    // Si el tablero es un cuadrado mágico, se muestra un mensaje de felicitación
-    if (esCuadradoMagico(tablero)) {
-        System.out.println("¡Felicitaciones! Has completado el cuadrado mágico.");
-        puntuacionJugador += 10; // Suma puntos al jugador por completar el cuadrado mágico
-    } else {
-        System.out.println("El tablero no es un cuadrado mágico. Mejor suerte la próxima vez.");
+    /**
+     * Retoma, sin cobrarla otra vez, la partida más vieja que un jugador dejó en pausa.
+     *
+     * @param nombre El nombre del jugador.
+     * @return `true` si tenía una partida en pausa y ya se jugó.
+     */
+    boolean retomarPartida(String nombre) {
+        Jugador jugador = buscarJugador(nombre);
+        return jugador != null && retomarPartida(jugador, EstacionPartidas.sacar(jugador.getNombre()));
     }
 
-    // Muestra la puntuación final del jugador en este juego
-    System.out.println("Tu puntuación en este juego es: " + puntuacionJugador);
-}
+    /**
+     * Retoma, sin cobrarla otra vez, la partida que esta sesión dejó en pausa
+     * al quedarse inactiva, y no otra del mismo jugador.
+     *
+     * @param boleto Lo que llevaba la {@link SesionInactiva}.
+     * @return `true` si la partida seguía en pausa y ya se jugó.
+     */
+    boolean retomarPartida(EstacionPartidas.Boleto boleto) {
+        Jugador jugador = buscarJugador(boleto.nombre());
+        return jugador != null && retomarPartida(jugador, EstacionPartidas.sacar(boleto));
+    }
 
-/**
- * Verifica si el tablero cumple con las condiciones de un cuadrado mágico.
- * Un cuadrado mágico es una matriz en la que la suma de cada fila, cada columna
- * y ambas diagonales es igual a un valor constante conocido como la "suma mágica".
- * 
- * @param tablero El tablero del juego.
- * @return `true` si el tablero es un cuadrado mágico, `false` en caso contrario.
- */
-private static boolean esCuadradoMagico(int[][] tablero) {
-    int sumaMagica = N * (N * N + 1) / 2;  // La suma mágica para un cuadrado de tamaño N x N
-
-    // Verificar las filas
-    for (int i = 0; i < N; i++) {
-        int sumaFila = 0;
-        for (int j = 0; j < N; j++) {
-            sumaFila += tablero[i][j];
-        }
-        if (sumaFila != sumaMagica) {
-            return false;  // Si alguna fila no tiene la suma mágica, no es un cuadrado mágico
+    private boolean retomarPartida(Jugador jugador, EstacionPartidas.Estacionada estacionada) {
+        JuegoFeria juego = estacionada == null ? null : RegistroJuegos.elegir(estacionada.juego());
+        if (juego == null) {
+            return false;
         }
+        MetricasFeria.partidasRetomadas.increment();
+        out.println("Se retoma tu partida de " + juego.nombre() + " donde la dejaste.");
+        lienzo.reiniciar();
+        jugarPartida(jugador, estacionada.juego(), juego, estacionada.datos());
+        return true;
     }
 
-    // Verificar las columnas
-    for (int j = 0; j < N; j++) {
-        int sumaColumna = 0;
-        for (int i = 0; i < N; i++) {
-            sumaColumna += tablero[i][j];
-        }
-        if (sumaColumna != sumaMagica) {
-            return false;  // Si alguna columna no tiene la suma mágica, no es un cuadrado mágico
+    /**
+     * Juega una partida nueva o retomada. Si la sesión se queda inactiva a
+     * media partida, la partida se guarda en {@link EstacionPartidas} y la
+     * sesión se corta con {@link SesionInactiva}.
+     *
+     * @param jugador El jugador que pagó la partida.
+     * @param opcion La opción del juego en el menú.
+     * @param juego El juego.
+     * @param guardada La partida codificada si se retoma, o null si es nueva.
+     */
+    private void jugarPartida(Jugador jugador, int opcion, JuegoFeria juego, byte[] guardada) {
+        MetricasFeria.Juego metrica = juego.metrica();
+        long inicio = System.nanoTime();
+        PartidaFeria partida = juego.crear(this);
+        try {
+            if (guardada == null) {
+                partida.jugar(jugador);
+            } else {
+                partida.reanudar(jugador, guardada);
+            }
+        } catch (SesionInactiva e) {
+            Bits bits = new Bits();
+            partida.codificar(bits);
+            EstacionPartidas.Boleto boleto = EstacionPartidas.estacionar(jugador.getNombre(), opcion, bits.bytes());
+            if (boleto != null) {
+                MetricasFeria.partidasEnPausa.increment();
+            }
+            throw new SesionInactiva(boleto);
         }
-    }
 
-    // Verificar las diagonales
-    int sumaDiagonal1 = 0;
-    int sumaDiagonal2 = 0;
-    for (int i = 0; i < N; i++) {
-        sumaDiagonal1 += tablero[i][i];  // Diagonal principal
-        sumaDiagonal2 += tablero[i][N - 1 - i];  // Diagonal secundaria
-    }
-    if (sumaDiagonal1 != sumaMagica || sumaDiagonal2 != sumaMagica) {
-        return false;  // Si alguna de las diagonales no tiene la suma mágica, no es un cuadrado mágico
+        // Solo se publican las partidas que terminaron; si la sesión se cortó, no llega aquí
+        Jugador ganador = partida.ganador() != null ? partida.ganador() : jugador;
+        long secuencia = TuberiaResultados.publicar(ganador, metrica == null ? -1 : metrica.ordinal(),
+                partida.puntosGanados(), partida.creditosGanados(), System.nanoTime() - inicio,
+                partida.historial.registro(metrica, jugador.getNombre()));
+        ultimoResultado = Math.max(ultimoResultado, secuencia);
     }
 
-    return true;  // Si todas las sumas son iguales a la suma mágica, es un cuadrado mágico
-}
+    /**
+     * La entrada de la sesión pasó demasiado tiempo sin recibir nada. Quien
+     * atiende la conexión puede soltar la sesión y crear otra cuando llegue
+     * la siguiente entrada; si había una partida a medias, ya quedó guardada.
+     */
+    static final class SesionInactiva extends RuntimeException {
+        private static final long serialVersionUID = 1L;
 
-/**
- * Inicializa el tablero del juego Cuadrado Mágico con algunos valores fijos.
- * Este método asigna los primeros valores de manera predeterminada para facilitar
- * el inicio del juego.
- * 
- * @return Un tablero 4x4 con algunos valores fijos.
- */
-private static int[][] inicializarTablero() {
-    int[][] tablero = new int[N][N];
-    // Inicializa algunas celdas del tablero con valores predeterminados
-    tablero[0][0] = 1;
-    tablero[1][1] = 6;
-    tablero[2][2] = 11;
-    tablero[3][3] = 16;
-    return tablero;  // Devuelve el tablero inicializado
-}
+        private final EstacionPartidas.Boleto partidaEnPausa;
 
-/**
- * Muestra el tablero de juego en la consola.
- * Las celdas vacías se muestran como un guion bajo ("_"), mientras que los números
- * colocados por el jugador se muestran en su valor respectivo.
- * 
- * @param tablero El tablero a mostrar.
- */
-private static void mostrarTablero(int[][] tablero) {
-    for (int[] fila : tablero) {
-        for (int celda : fila) {
-            System.out.print((celda == 0 ? "_" : celda) + "\t");  // Muestra "_" para celdas vacías
+        /**
+         * @param partidaEnPausa El boleto de la partida que quedó en pausa, o null si no había partida.
+         */
+        SesionInactiva(EstacionPartidas.Boleto partidaEnPausa) {
+            super("Sesión inactiva", null, false, false);
+            this.partidaEnPausa = partidaEnPausa;
         }
-        System.out.println();  // Salto de línea después de cada fila
-    }
-}
 
-/**
- * Verifica si un número ya ha sido colocado en el tablero.
- * 
- * @param tablero El tablero en el que se busca el número.
- * @param numero El número a buscar en el tablero.
- * @return `true` si el número ya está en el tablero, `false` en caso contrario.
- */
-private static boolean contiene(int[][] tablero, int numero) {
-    for (int[] fila : tablero) {
-        for (int celda : fila) {
-            if (celda == numero) {
-                return true;  // Si el número ya está en el tablero, retorna `true`
-            }
+        /**
+         * @return El boleto de la partida que quedó en pausa, o null.
+         */
+        EstacionPartidas.Boleto partidaEnPausa() {
+            return partidaEnPausa;
         }
     }
-    return false;  // Si no se encuentra el número, retorna `false`
-}
 
 /**
- * Verifica si es posible completar el cuadrado mágico con los números actuales.
- * Realiza una evaluación preliminar de las sumas de filas, columnas y diagonales
- * para determinar si es posible seguir completando el cuadrado mágico.
- * 
- * @param tablero El tablero de juego.
- * @return `true` si es posible completar el cuadrado mágico, `false` en caso contrario.
+ * Clase que representa a un jugador en el juego. Un jugador tiene un nombre, un puntaje
+ * y una cantidad de créditos. Los créditos pueden ser reducidos y los puntos se suman
+ * a medida que el jugador participa en los juegos. Todos los cambios son atómicos
+ * porque el mismo jugador puede jugar en varias sesiones a la vez.
  */
-private static boolean esPosibleCuadradoMagico(int[][] tablero) {
-    int sumaMagica = N * (N * N + 1) / 2;  // La suma mágica para un cuadrado de tamaño N x N
-    int[] filas = new int[N];
-    int[] columnas = new int[N];
-    int diagonal1 = 0, diagonal2 = 0;
-
-    // Suma los valores de filas, columnas y diagonales
-    for (int i = 0; i < N; i++) {
-        for (int j = 0; j < N; j++) {
-            filas[i] += tablero[i][j];
-            columnas[j] += tablero[i][j];
-            if (i == j) diagonal1 += tablero[i][j];
-            if (i + j == N - 1) diagonal2 += tablero[i][j];
-        }
-    }
+static class Jugador {
+    // Permite hacer compare-and-set sobre los estados sin usar candados
+    private static final AtomicLongFieldUpdater<Jugador> CREDITOS =
+            AtomicLongFieldUpdater.newUpdater(Jugador.class, "estadoCreditos");
+    private static final AtomicLongFieldUpdater<Jugador> PUNTOS =
+            AtomicLongFieldUpdater.newUpdater(Jugador.class, "estadoPuntos");
 
-    // Verifica si alguna fila o columna excede la suma mágica
-    for (int i = 0; i < N; i++) {
-        if (filas[i] > sumaMagica || columnas[i] > sumaMagica) {
-            return false;  // Si alguna fila o columna es mayor que la suma mágica, no es posible
-        }
-    }
+    private final String nombre;  // Nombre del jugador
 
-    // Verifica si las diagonales también cumplen con la suma mágica
-    return diagonal1 <= sumaMagica && diagonal2 <= sumaMagica;
-}
-// Juego Conecta 4
-/**
- * Inicia el juego "Conecta 4". Los jugadores se alternan para colocar sus fichas
- * en las columnas de un tablero de 6x7. El objetivo es alinear 4 fichas del mismo
- * jugador en fila, columna o diagonal.
- */
-private static void jugarConecta4() {
-    int[][] tablero = new int[6][7];  // 6 filas y 7 columnas
-    int jugadorActual = 1;  // 1 para el jugador 1 (X), 2 para el jugador 2 (O)
-    boolean juegoTerminado = false;  // Estado del juego
-
-    // Bucle principal del juego que se repite hasta que termine
-    while (!juegoTerminado) {
-        // Mostrar el tablero actual
-        mostrarTableroConecta4(tablero);
-
-        // Solicitar al jugador que seleccione una columna
-        System.out.print("Jugador " + jugadorActual + ", selecciona una columna (0-6): ");
-        int columna = scanner.nextInt();
-
-        // Verificar si la columna es válida (dentro del rango y no llena)
-        if (columna < 0 || columna >= 7 || tablero[0][columna] != 0) {
-            System.out.println("Columna inválida o llena. Intenta de nuevo.");
-            continue;
-        }
+    // Cada estado guarda el valor en los 32 bits bajos y su versión en los 32 altos.
+    // La versión aumenta con cada cambio, así se puede auditar y ordenar cada movimiento.
+    private volatile long estadoCreditos;  // Créditos del jugador
+    private volatile long estadoPuntos;    // Puntos acumulados del jugador
 
-        // Obtener la fila disponible en la columna seleccionada
-        int fila = obtenerFilaDisponible(tablero, columna);
-        tablero[fila][columna] = jugadorActual;  // Colocar la ficha en el tablero
+    // El registro que lo sacó de memoria (ver CacheJugadores), o null si está en memoria
+    private volatile CacheJugadores desalojadoDe;
 
-        // Verificar si el jugador actual ha ganado
-        if (verificarVictoria(tablero, fila, columna, jugadorActual)) {
-            mostrarTableroConecta4(tablero);
-            System.out.println("¡Jugador " + jugadorActual + " gana!");  // Mensaje de victoria
-            juegoTerminado = true;  // Termina el juego
-        } else {
-            // Cambiar de jugador
-            jugadorActual = (jugadorActual == 1) ? 2 : 1;
-        }
+    /**
+     * Constructor de la clase Jugador.
+     * 
+     * @param nombre El nombre del jugador.
+     * @param creditos Los créditos iniciales del jugador.
+     */
+    public Jugador(String nombre, int creditos) {
+        this.nombre = nombre;
+        this.estadoCreditos = empaquetar(0, creditos);
+        this.estadoPuntos = empaquetar(0, 0);  // Inicialmente el jugador tiene 0 puntos
     }
-}
 
-/**
- * Muestra el tablero del juego Conecta 4 en la consola.
- * Utiliza "X" para el jugador 1, "O" para el jugador 2 y "." para las celdas vacías.
- * 
- * @param tablero El tablero de juego a mostrar.
- */
-private static void mostrarTableroConecta4(int[][] tablero) {
-    for (int i = 0; i < 6; i++) {  // Recorrer las filas del tablero
-        for (int j = 0; j < 7; j++) {  // Recorrer las columnas
-            // Mostrar "X" para el jugador 1, "O" para el jugador 2, y "." para las celdas vacías
-            System.out.print((tablero[i][j] == 0 ? "." : (tablero[i][j] == 1 ? "X" : "O")) + " ");
-        }
-        System.out.println();  // Salto de línea al final de cada fila
+    // Getter para obtener el nombre del jugador
+    public String getNombre() {
+        return nombre;
     }
-}
 
-/**
- * Obtiene la fila disponible en una columna específica.
- * La fila es la que está más cerca del fondo del tablero (fila 5 es la más baja).
- * 
- * @param tablero El tablero de juego.
- * @param columna La columna donde el jugador desea colocar su ficha.
- * @return El número de la fila donde la ficha será colocada.
- */
-private static int obtenerFilaDisponible(int[][] tablero, int columna) {
-    for (int i = 5; i >= 0; i--) {  // Comienza desde la fila más baja (5) y sube
-        if (tablero[i][columna] == 0) {  // Si la celda está vacía
-            return i;  // Retorna la fila disponible
-        }
+    // Getter para obtener los créditos del jugador
+    public int getCreditos() {
+        return valor(estado(BitacoraJugadores.CREDITOS));
     }
-    return -1;  // Columna llena (aunque no debe ocurrir debido a las validaciones previas)
-}
-
-/**
- * Verifica si un jugador ha ganado. Un jugador gana si tiene 4 fichas alineadas
- * en alguna de las direcciones: horizontal, vertical o diagonal.
- * 
- * @param tablero El tablero de juego.
- * @param fila La fila donde se ha colocado la última ficha.
- * @param columna La columna donde se ha colocado la última ficha.
- * @param jugador El jugador actual (1 o 2).
- * @return `true` si el jugador ha ganado, `false` en caso contrario.
- */
-private static boolean verificarVictoria(int[][] tablero, int fila, int columna, int jugador) {
-    // Comprobar en las 4 direcciones: horizontal, vertical, diagonal 1 y diagonal 2
-    return verificarDireccion(tablero, fila, columna, jugador, 1, 0) ||  // Horizontal
-           verificarDireccion(tablero, fila, columna, jugador, 0, 1) ||  // Vertical
-           verificarDireccion(tablero, fila, columna, jugador, 1, 1) ||  // Diagonal principal
-           verificarDireccion(tablero, fila, columna, jugador, 1, -1);   // Diagonal inversa
-}
 
-/**
- * Verifica si hay una secuencia de 4 fichas consecutivas en una dirección específica.
- * 
- * @param tablero El tablero de juego.
- * @param fila La fila de la última ficha colocada.
- * @param columna La columna de la última ficha colocada.
- * @param jugador El jugador actual (1 o 2).
- * @param dirX Dirección en el eje X (horizontal o diagonal).
- * @param dirY Dirección en el eje Y (vertical o diagonal).
- * @return `true` si se ha encontrado una secuencia de 4 fichas consecutivas en la dirección especificada.
- */
-private static boolean verificarDireccion(int[][] tablero, int fila, int columna, int jugador, int dirX, int dirY) {
-    int count = 1;  // Contador de fichas consecutivas (comienza con la última ficha colocada)
+    // Getter para obtener cuántas veces han cambiado los créditos del jugador
+    public int getVersionCreditos() {
+        return version(estado(BitacoraJugadores.CREDITOS));
+    }
 
-    // Comprobar en una dirección (dirX, dirY)
-    for (int i = 1; i < 4; i++) {  // Verificar hasta 3 posiciones en la dirección indicada
-        int x = fila + i * dirX;
-        int y = columna + i * dirY;
+    /**
+     * Reduce los créditos del jugador en la cantidad especificada, aunque queden negativos.
+     * Para cobrar una partida se usa {@link #debitarSiAlcanza(int)}.
+     * 
+     * @param cantidad La cantidad de créditos a reducir.
+     */
+    public void reducirCreditos(int cantidad) {
+        sumarCreditos(-cantidad);
+        MetricasFeria.creditosReducidos.add(cantidad);
+    }
 
-        // Verificar si la posición está fuera de los límites o si no tiene la ficha del jugador
-        if (x < 0 || x >= 6 || y < 0 || y >= 7 || tablero[x][y] != jugador) {
-            break;  // Si no es válida, salir del bucle
+    /**
+     * Descuenta créditos solo si el saldo alcanza, en una sola operación atómica.
+     * 
+     * @param cantidad La cantidad de créditos a descontar.
+     * @return El número de reintentos que hicieron falta por otras sesiones que
+     *         cambiaron el saldo al mismo tiempo, o -1 si el saldo no alcanza.
+     */
+    int debitarSiAlcanza(int cantidad) {
+        revisarBitacora();
+        int reintentos = 0;
+        while (true) {
+            long actual = estado(BitacoraJugadores.CREDITOS);
+            int saldo = valor(actual);
+            if (saldo < cantidad) {
+                return -1;
+            }
+            long nuevo = empaquetar(version(actual) + 1, saldo - cantidad);
+            if (cambiarEstado(BitacoraJugadores.CREDITOS, actual, nuevo)) {
+                cambiaron(BitacoraJugadores.CREDITOS, nuevo, -cantidad);
+                return reintentos;
+            }
+            reintentos++;
         }
-        count++;  // Incrementar el contador
     }
 
-    // Comprobar en la dirección opuesta (-dirX, -dirY)
-    for (int i = 1; i < 4; i++) {  // Verificar hasta 3 posiciones en la dirección opuesta
-        int x = fila - i * dirX;
-        int y = columna - i * dirY;
+    /**
+     * Suma (o resta, si es negativa) una cantidad a los créditos de forma atómica.
+     * 
+     * @param cantidad La cantidad de créditos a sumar.
+     * @return El número de reintentos que hicieron falta.
+     */
+    int sumarCreditos(int cantidad) {
+        return sumar(BitacoraJugadores.CREDITOS, cantidad);
+    }
 
-        // Verificar si la posición está fuera de los límites o si no tiene la ficha del jugador
-        if (x < 0 || x >= 6 || y < 0 || y >= 7 || tablero[x][y] != jugador) {
-            break;  // Si no es válida, salir del bucle
-        }
-        count++;  // Incrementar el contador
+    /**
+     * Agrega los puntos al puntaje del jugador y a las clasificaciones de hoy,
+     * la semana y la última hora.
+     * 
+     * @param puntos La cantidad de puntos a agregar.
+     */
+    public void agregarPuntos(int puntos) {
+        sumar(BitacoraJugadores.PUNTOS, puntos);
+        ClasificacionPeriodo.sumarATodas(nombre, puntos);
+        MetricasFeria.puntosOtorgados.add(puntos);
     }
 
-    return count >= 4;  // Si el contador es 4 o más, el jugador ha ganado
-}
+    // Getter para obtener los puntos acumulados por el jugador
+    public int getPuntos() {
+        return valor(estado(BitacoraJugadores.PUNTOS));
+    }
 
-/**
- * Inicia el juego de "Salvado". En este juego, el jugador debe adivinar cuál es la última silla
- * que quedará ocupada en un círculo de 100 personas. A medida que se eliminan personas,
- * el jugador debe adivinar correctamente la última persona que queda.
- */
-private static void jugarSalvado() {
-    System.out.println("Bienvenido al juego de Salvado: ¡adivina cuál es la última silla ocupada!");
+    // Getter para obtener cuántas veces han cambiado los puntos del jugador
+    public int getVersionPuntos() {
+        return version(estado(BitacoraJugadores.PUNTOS));
+    }
 
-    // Configuración inicial
-    Random rand = new Random();
-    int n = 100;  // Total de personas
-    int[] personas = new int[n];  // Arreglo para simular las personas en el círculo
-    for (int i = 0; i < n; i++) {
-        personas[i] = i + 1;  // Personas numeradas del 1 al 100
+    // Estados completos (versión y valor), para guardarlos sin mezclar dos cambios
+    long estadoCreditos() {
+        return estado(BitacoraJugadores.CREDITOS);
     }
 
-    // Elegir un número aleatorio i entre 1 y 100 (cantidad de pasos a avanzar)
-    int i = rand.nextInt(100) + 1;  // La cantidad de pasos a avanzar
-    System.out.println("Número de pasos a avanzar para eliminar: " + i);
+    long estadoPuntos() {
+        return estado(BitacoraJugadores.PUNTOS);
+    }
 
-    // Pedir al jugador que adivine la última silla ocupada
-    System.out.print("Adivina la última silla ocupada (entre 1 y 100): ");
-    Scanner scanner = new Scanner(System.in);
-    int respuestaJugador = scanner.nextInt();
+    /**
+     * Reemplaza ambos estados; solo se usa al cargar jugadores guardados.
+     */
+    void restaurar(long estadoCreditos, long estadoPuntos) {
+        ponerEstado(BitacoraJugadores.CREDITOS, estadoCreditos);
+        ponerEstado(BitacoraJugadores.PUNTOS, estadoPuntos);
+    }
 
-    // Eliminar personas hasta que quede una
-    int indiceEliminado = 0;  // Comenzamos desde la primera persona
-    List<Integer> listaPersonas = new ArrayList<>();
-    for (int j = 0; j < n; j++) {
-        listaPersonas.add(personas[j]);  // Llenar la lista con las personas
+    /**
+     * Aplica un valor de créditos guardado si es más nuevo que el actual.
+     */
+    void restaurarCreditos(int version, int valor) {
+        if (version > getVersionCreditos()) {
+            ponerEstado(BitacoraJugadores.CREDITOS, empaquetar(version, valor));
+        }
     }
 
-    // Proceso de eliminación de personas
-    while (listaPersonas.size() > 1) {
-        // Calcular el índice de la persona a eliminar
-        indiceEliminado = (indiceEliminado + i - 1) % listaPersonas.size();
-        listaPersonas.remove(indiceEliminado);  // Eliminar la persona en el índice calculado
+    /**
+     * Aplica un valor de puntos guardado si es más nuevo que el actual.
+     */
+    void restaurarPuntos(int version, int valor) {
+        if (version > getVersionPuntos()) {
+            ponerEstado(BitacoraJugadores.PUNTOS, empaquetar(version, valor));
+        }
     }
 
-    // La última persona es la que se salva
-    int ultimaSilla = listaPersonas.get(0);
+    /**
+     * Lee un estado completo. Los jugadores de una {@link TablaJugadores} no
+     * usan sus campos: este método y los dos siguientes van a sus columnas.
+     *
+     * @param tipo {@link BitacoraJugadores#CREDITOS} o {@link BitacoraJugadores#PUNTOS}.
+     */
+    long estado(byte tipo) {
+        return tipo == BitacoraJugadores.CREDITOS ? estadoCreditos : estadoPuntos;
+    }
 
-    // Verificar si la respuesta del jugador es correcta
-    if (respuestaJugador == ultimaSilla) {
-        System.out.println("¡Correcto! La silla que se salva es la número " + ultimaSilla + ".");
-    } else {
-        System.out.println("La silla que se salva es la número " + ultimaSilla + ".");
+    /**
+     * Cambia un estado solo si sigue siendo `actual`.
+     */
+    boolean cambiarEstado(byte tipo, long actual, long nuevo) {
+        return (tipo == BitacoraJugadores.CREDITOS ? CREDITOS : PUNTOS).compareAndSet(this, actual, nuevo);
     }
-}
-/**
- * Inicia el juego de Torres de Hanoi. En este juego, el objetivo es mover todos los discos
- * de la torre A (izquierda) a la torre C (derecha) siguiendo unas reglas:
- * 1. Solo se puede mover un disco a la vez.
- * 2. Un disco más grande no puede colocarse sobre un disco más pequeño.
- * 3. El número mínimo de movimientos es 63 si se hacen las jugadas correctas.
- */
-private static void jugarTorresDeHanoi() {
-    System.out.println("Bienvenido al juego de Torres de Hanoi.");
-    System.out.println("El objetivo es mover los discos de la torre A (izquierda) a la torre C (derecha).");
-    System.out.println("Reglas:");
-    System.out.println("- Puedes mover solo un disco a la vez.");
-    System.out.println("- Un disco más grande no puede colocarse sobre uno más pequeño.");
-    System.out.println("- El número mínimo de movimientos es 63 si haces las jugadas correctas.");
-    
-    System.out.print("Ingresa tu nombre: ");
-    String nombreJugador = scanner.nextLine();
 
-    // Verificar si el jugador está registrado
-    if (!jugadores.containsKey(nombreJugador)) {
-        System.out.println("Jugador no registrado. Primero debes registrarte.");
-        return;
+    /**
+     * Reemplaza un estado sin comparar.
+     */
+    void ponerEstado(byte tipo, long estado) {
+        if (tipo == BitacoraJugadores.CREDITOS) {
+            estadoCreditos = estado;
+        } else {
+            estadoPuntos = estado;
+        }
     }
 
-    Jugador jugador = jugadores.get(nombreJugador);
-    int movimientosRealizados = 0;
+    /**
+     * Suma una cantidad al valor de un estado y aumenta su versión con compare-and-set.
+     */
+    private int sumar(byte tipo, int cantidad) {
+        revisarBitacora();
+        int reintentos = 0;
+        while (true) {
+            long actual = estado(tipo);
+            long nuevo = empaquetar(version(actual) + 1, valor(actual) + cantidad);
+            if (cambiarEstado(tipo, actual, nuevo)) {
+                cambiaron(tipo, nuevo, cantidad);
+                return reintentos;
+            }
+            reintentos++;
+        }
+    }
 
-    // Inicializamos las tres torres
-    Stack<Integer> torreA = new Stack<>();
-    Stack<Integer> torreB = new Stack<>();
-    Stack<Integer> torreC = new Stack<>();
+    /**
+     * Marca al jugador como fuera de memoria, o de vuelta con null. Mientras
+     * esté fuera, cada cambio se devuelve también a la foto del registro.
+     *
+     * @param cache El registro que lo sacó, o null.
+     */
+    void desalojar(CacheJugadores cache) {
+        desalojadoDe = cache;
+    }
 
-    // Colocamos los discos en la torre A (de mayor a menor)
-    for (int i = 6; i > 0; i--) {
-        torreA.push(i);
+    CacheJugadores desalojadoDe() {
+        return desalojadoDe;
     }
 
-    // Jugamos hasta que el juego se complete
-    while (torreC.size() < 6) {
-        mostrarEstado(torreA, torreB, torreC);
+    /**
+     * Rechaza un cambio antes de hacerlo si la bitácora ya no puede escribir
+     * (ver {@link BitacoraJugadores#revisar()}).
+     */
+    private static void revisarBitacora() {
+        if (bitacora != null) {
+            bitacora.revisar();
+        }
+    }
 
-        // El jugador hace un movimiento
-        moverDisco(torreA, torreB, torreC);
-        movimientosRealizados++;
+    /**
+     * Avisa a la clasificación y a la bitácora que cambió un estado y, si el
+     * jugador ya salió de memoria, devuelve el estado nuevo a la foto. Si la
+     * bitácora no pudo anotarlo, el cambio se deshace antes de fallar.
+     *
+     * @param cantidad Lo que se sumó al valor (negativo si se restó).
+     */
+    private void cambiaron(byte tipo, long nuevo, int cantidad) {
+        (tipo == BitacoraJugadores.CREDITOS ? Clasificacion.CREDITOS : Clasificacion.PUNTOS).marcarCambio(this);
+        if (bitacora != null) {
+            try {
+                bitacora.anotar(tipo, nombre, version(nuevo), valor(nuevo));
+            } catch (UncheckedIOException e) {
+                deshacer(tipo, cantidad);
+                throw e;
+            }
+        }
+        CacheJugadores cache = desalojadoDe;
+        if (cache != null) {
+            cache.devolver(this);
+        }
+    }
 
-        // Verificamos si el juego ha terminado
-        if (torreC.size() == 6) {
-            System.out.println("¡Felicidades, has completado el juego de Torres de Hanoi!");
-            break;
+    /**
+     * Resta lo que sumó un cambio que no quedó anotado. Se resta la cantidad y
+     * no se vuelve al estado anterior, porque otro cambio pudo llegar después;
+     * ese tampoco se puede anotar y también se deshace.
+     */
+    private void deshacer(byte tipo, int cantidad) {
+        while (true) {
+            long actual = estado(tipo);
+            if (cambiarEstado(tipo, actual, empaquetar(version(actual) + 1, valor(actual) - cantidad))) {
+                break;
+            }
         }
+        (tipo == BitacoraJugadores.CREDITOS ? Clasificacion.CREDITOS : Clasificacion.PUNTOS).marcarCambio(this);
     }
 
-    // Determinamos la puntuación
-    int puntos = calcularPuntos(movimientosRealizados);
-    jugador.agregarPuntos(puntos);
-    System.out.println("¡Juego completado! Tu puntuación es: " + puntos);
-}
+    private static long empaquetar(int version, int valor) {
+        return ((long) version << 32) | (valor & 0xFFFFFFFFL);
+    }
 
-/**
- * Solicita al jugador un movimiento, pidiendo elegir las torres de origen y destino.
- * Verifica que el movimiento sea válido antes de realizarlo.
- * 
- * @param torreA La torre A (izquierda).
- * @param torreB La torre B (centro).
- * @param torreC La torre C (derecha).
- */
-private static void moverDisco(Stack<Integer> torreA, Stack<Integer> torreB, Stack<Integer> torreC) {
-    String origen, destino;
-
-    // Pedimos al jugador que seleccione un movimiento
-    System.out.print("Selecciona el poste de origen (A, B, C): ");
-    origen = scanner.nextLine().toUpperCase();
-    System.out.print("Selecciona el poste de destino (A, B, C): ");
-    destino = scanner.nextLine().toUpperCase();
-
-    // Determinamos las pilas correspondientes
-    Stack<Integer> torreOrigen = obtenerTorre(origen, torreA, torreB, torreC);
-    Stack<Integer> torreDestino = obtenerTorre(destino, torreA, torreB, torreC);
-
-    // Validamos que el movimiento sea posible
-    if (torreOrigen.isEmpty()) {
-        System.out.println("La torre de origen está vacía. Elige otra torre.");
-    } else if (!torreDestino.isEmpty() && torreDestino.peek() < torreOrigen.peek()) {
-        System.out.println("No puedes colocar un disco más grande sobre uno más pequeño.");
-    } else {
-        // Realizamos el movimiento
-        torreDestino.push(torreOrigen.pop());
-        System.out.println("Movimiento exitoso: Disco movido de " + origen + " a " + destino);
+    private static int version(long estado) {
+        return (int) (estado >>> 32);
     }
-}
 
+    static int valor(long estado) {
+        return (int) estado;
+    }
+}
 /**
- * Obtiene la torre correspondiente a un nombre (A, B o C).
- * 
- * @param nombreTorre El nombre de la torre (A, B o C).
- * @param torreA La torre A.
- * @param torreB La torre B.
- * @param torreC La torre C.
- * @return La torre correspondiente.
+ * Muestra los tres jugadores con más créditos en orden descendente y los tres
+ * que más puntos ganaron hoy, esta semana y en la última hora.
+ * Las clasificaciones ya están ordenadas, así que no se recorre a todos los jugadores.
  */
-private static Stack<Integer> obtenerTorre(String nombreTorre, Stack<Integer> torreA, Stack<Integer> torreB, Stack<Integer> torreC) {
-    switch (nombreTorre) {
-        case "A": return torreA;
-        case "B": return torreB;
-        case "C": return torreC;
-        default: return null;
+void verMejoresJugadores() {
+    List<Clasificacion.Entrada> mejores = Clasificacion.CREDITOS.mejores(3);
+
+    out.println("\nLos 3 mejores jugadores son:");
+    for (int i = 0; i < mejores.size(); i++) {
+        Clasificacion.Entrada entrada = mejores.get(i);
+        out.println((i + 1) + ". " + entrada.nombre() + " - " + entrada.valor() + " créditos");
+    }
+
+    long ahora = System.currentTimeMillis();
+    for (ClasificacionPeriodo periodo : ClasificacionPeriodo.TODAS) {
+        List<Clasificacion.Entrada> lugares = periodo.mejores(3, ahora);
+        if (lugares.isEmpty()) {
+            out.println("\nNadie ha ganado puntos " + periodo.nombre() + ".");
+            continue;
+        }
+        out.println("\nLos que más puntos ganaron " + periodo.nombre() + ":");
+        for (int i = 0; i < lugares.size(); i++) {
+            Clasificacion.Entrada entrada = lugares.get(i);
+            out.println((i + 1) + ". " + entrada.nombre() + " - " + entrada.valor() + " puntos");
+        }
     }
 }
 
 /**
- * Muestra el estado actual de las tres torres en la consola.
- * 
- * @param torreA La torre A.
- * @param torreB La torre B.
- * @param torreC La torre C.
+ * Guarda los datos de los jugadores. Cada cambio ya se anotó en la bitácora
+ * al momento de hacerse, así que solo falta esperar a que esté en disco.
  */
-private static void mostrarEstado(Stack<Integer> torreA, Stack<Integer> torreB, Stack<Integer> torreC) {
-    System.out.println("Estado actual:");
-    System.out.println("Torre A: " + torreA);
-    System.out.println("Torre B: " + torreB);
-    System.out.println("Torre C: " + torreC);
-    System.out.println();
+void guardarYSalir() {
+    long inicio = System.nanoTime();
+    boolean guardado = esperarBitacora();
+    MetricasFeria.guardar.registrar(System.nanoTime() - inicio);
+    if (guardado) {
+        out.println("Datos guardados correctamente.");
+    }
 }
 
 /**
- * Calcula la puntuación del jugador según el número de movimientos realizados.
+ * Espera a que los cambios anotados en la bitácora lleguen a disco.
  * 
- * @param movimientosRealizados El número de movimientos realizados por el jugador.
- * @return La puntuación del jugador.
+ * @return `true` si se guardaron, `false` si hubo un error al escribir.
  */
-private static int calcularPuntos(int movimientosRealizados) {
-    if (movimientosRealizados == 63) {
-        return 10;  // Puntuación perfecta
-    } else if (movimientosRealizados <= 73) {
-        return 5;   // Puntuación decente
-    } else {
-        return 2;   // Puntuación mínima
+private boolean esperarBitacora() {
+    if (bitacora == null) {
+        return true;
+    }
+    try {
+        bitacora.sincronizar();
+        return true;
+    } catch (IOException e) {
+        out.println("Error al guardar los datos.");
+        return false;
     }
 }
+
 /**
- * Clase que representa a un jugador en el juego. Un jugador tiene un nombre, un puntaje
- * y una cantidad de créditos. Los créditos pueden ser reducidos y los puntos se suman
- * a medida que el jugador participa en los juegos.
+ * Carga los datos de los jugadores: abre la última foto y repite encima de ella
+ * los eventos de la bitácora que se anotaron después. Los demás jugadores se
+ * cargan hasta que alguien los busca; la clasificación se llena en segundo plano.
+ * Si no se pueden cargar los datos, muestra un mensaje de error.
+ *
+ * @param clasificar `false` para no llenar la clasificación (al exportar no se usa).
  */
-static class Jugador {
-    private String nombre;  // Nombre del jugador
-    private int puntos;     // Puntos acumulados del jugador
-    private int creditos;   // Créditos del jugador
-
-    /**
-     * Constructor de la clase Jugador.
-     * 
-     * @param nombre El nombre del jugador.
-     * @param creditos Los créditos iniciales del jugador.
-     */
-    public Jugador(String nombre, int creditos) {
-        this.nombre = nombre;
-        this.creditos = creditos;
-        this.puntos = 0;  // Inicialmente el jugador tiene 0 puntos
-    }
-
-    // Getter para obtener el nombre del jugador
-    public String getNombre() {
-        return nombre;
-    }
-
-    // Getter para obtener los créditos del jugador
-    public int getCreditos() {
-        return creditos;
-    }
-
-    /**
-     * Reduce los créditos del jugador en la cantidad especificada.
-     * 
-     * @param cantidad La cantidad de créditos a reducir.
-     */
-    public void reducirCreditos(int cantidad) {
-        this.creditos -= cantidad;
+private static void cargarDatos(boolean clasificar) {
+    long inicio = System.nanoTime();
+    try {
+        bitacora = BitacoraJugadores.abrir(Paths.get(directorioDatos), ARCHIVO_JUGADORES, jugadores);
+    } catch (IOException e) {
+        System.out.println("No se pudo cargar los datos.");
+        return;
     }
-
-    /**
-     * Agrega los puntos al puntaje del jugador.
-     * 
-     * @param puntos La cantidad de puntos a agregar.
-     */
-    public void agregarPuntos(int puntos) {
-        this.puntos += puntos;
+    if (clasificar) {
+        for (Jugador jugador : jugadores.values()) {
+            Clasificacion.CREDITOS.marcarCambio(jugador);
+            Clasificacion.PUNTOS.marcarCambio(jugador);
+        }
     }
+    MetricasFeria.cargar.registrar(System.nanoTime() - inicio);
 
-    // Getter para obtener los puntos acumulados por el jugador
-    public int getPuntos() {
-        return puntos;
+    AlmacenJugadores almacen = bitacora.almacen();
+    if (clasificar && almacen != null) {
+        Thread hilo = new Thread(() -> almacen.recorrer((nombre, creditos, puntos) -> {
+            Clasificacion.CREDITOS.colocarSiFalta(nombre, Jugador.valor(creditos));
+            Clasificacion.PUNTOS.colocarSiFalta(nombre, Jugador.valor(puntos));
+        }), "clasificacion-inicial");
+        hilo.setDaemon(true);
+        hilo.start();
     }
 }
+
 /**
- * Muestra los tres jugadores con más créditos en orden descendente.
+ * Cierra los datos abiertos y empieza sin jugadores en otra carpeta, con su
+ * propia bitácora y su propio archivo de partidas. La repetición de guiones
+ * lo usa para no tocar los jugadores guardados; no debe haber sesiones en curso.
+ *
+ * @param directorio La carpeta nueva, vacía.
+ * @throws IOException Si no se pudo abrir la bitácora nueva.
  */
-private static void verMejoresJugadores() {
-    // Se obtiene la lista de jugadores y se ordena por los créditos en orden descendente
-    List<Jugador> listaJugadores = new ArrayList<>(jugadores.values());
-    listaJugadores.sort(Comparator.comparingInt(Jugador::getCreditos).reversed());
-
-    System.out.println("\nLos 3 mejores jugadores son:");
-    for (int i = 0; i < 3 && i < listaJugadores.size(); i++) {
-        Jugador jugador = listaJugadores.get(i);
-        System.out.println((i + 1) + ". " + jugador.getNombre() + " - " + jugador.getCreditos() + " créditos");
-    }
+static void empezarSinJugadores(Path directorio) throws IOException {
+    cerrarBitacora();
+    bitacora = null;
+    jugadores.clear();
+    Clasificacion.CREDITOS.limpiar();
+    Clasificacion.PUNTOS.limpiar();
+    for (ClasificacionPeriodo periodo : ClasificacionPeriodo.TODAS) {
+        periodo.limpiar();
+    }
+    directorioDatos = directorio.toString();
+    bitacora = BitacoraJugadores.abrir(directorio, ARCHIVO_JUGADORES, jugadores);
 }
 
 /**
- * Guarda los datos de los jugadores en un archivo utilizando serialización.
- * Guarda el mapa de jugadores en un archivo llamado `ARCHIVO_JUGADORES`.
+ * Aplica los resultados pendientes, cierra el segmento del archivo de
+ * partidas, toma una foto final de los jugadores y cierra la bitácora.
  */
-private static void guardarYSalir() {
-    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(ARCHIVO_JUGADORES))) {
-        out.writeObject(jugadores);  // Serializa el mapa de jugadores
-        System.out.println("Datos guardados correctamente.");
+static void cerrarBitacora() {
+    TuberiaResultados.vaciar();
+    ArchivoPartidas.cerrar();
+    if (bitacora == null) {
+        return;
+    }
+    try {
+        bitacora.close();
     } catch (IOException e) {
         System.out.println("Error al guardar los datos.");
     }
 }
-/**
- * Carga los datos de los jugadores desde un archivo utilizando deserialización.
- * Si no se puede cargar el archivo, muestra un mensaje de error.
- */
-@SuppressWarnings("unchecked")
-private static void cargarDatos() {
-    try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(ARCHIVO_JUGADORES))) {
-        jugadores = (Map<String, Jugador>) in.readObject();  // Deserializa el mapa de jugadores
-    } catch (IOException | ClassNotFoundException e) {
-        System.out.println("No se pudo cargar los datos.");
-    }
-}
 
 }
-
@@ -0,0 +1,144 @@
+/**
+ *  Solucionador de Frame-Stewart para las Torres de Hanoi con varios postes.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Movimientos mínimos para pasar n discos de un poste a otro con p postes
+ * según Frame-Stewart: se apartan los k discos de arriba en un poste
+ * intermedio usando los p postes, se mueven los n - k restantes sin tocar ese
+ * poste y se vuelven a poner encima los k discos:
+ *
+ * <pre>
+ *   FS(n, p) = mín sobre 1 &lt;= k &lt; n de 2 FS(k, p) + FS(n - k, p - 1)
+ *   FS(n, 3) = 2^n - 1
+ * </pre>
+ *
+ * Con 4 postes el resultado es el óptimo demostrado; con más postes es el
+ * mejor conocido. La tabla de costos y de la mejor k para cada (n, p) se
+ * calcula una sola vez, al usar la clase por primera vez, y la comparten
+ * todas las sesiones: puntuar una partida es una consulta a la tabla.
+ */
+class FrameStewart {
+    static final int MINIMO_POSTES = 3;
+    static final int MAXIMO_POSTES = 8;
+    static final int MAXIMO_DISCOS = 64;
+
+    // Costo mínimo por [postes][discos]; Long.MAX_VALUE si no cabe en un long
+    private static final long[][] COSTOS = new long[MAXIMO_POSTES + 1][MAXIMO_DISCOS + 1];
+
+    // Discos que se apartan primero (la k de la fórmula) por [postes][discos]
+    private static final byte[][] APARTAR = new byte[MAXIMO_POSTES + 1][MAXIMO_DISCOS + 1];
+
+    static {
+        for (int n = 1; n <= MAXIMO_DISCOS; n++) {
+            COSTOS[MINIMO_POSTES][n] = n >= 63 ? Long.MAX_VALUE : (1L << n) - 1;
+            APARTAR[MINIMO_POSTES][n] = (byte) (n - 1);
+        }
+        for (int p = MINIMO_POSTES + 1; p <= MAXIMO_POSTES; p++) {
+            COSTOS[p][1] = 1;
+            for (int n = 2; n <= MAXIMO_DISCOS; n++) {
+                long mejor = Long.MAX_VALUE;
+                int mejorK = 1;
+                for (int k = 1; k < n; k++) {
+                    long costo = sumar(sumar(COSTOS[p][k], COSTOS[p][k]), COSTOS[p - 1][n - k]);
+                    if (costo < mejor) {
+                        mejor = costo;
+                        mejorK = k;
+                    }
+                }
+                COSTOS[p][n] = mejor;
+                APARTAR[p][n] = (byte) mejorK;
+            }
+        }
+    }
+
+    private FrameStewart() {
+    }
+
+    /**
+     * @param discos De 0 a 64.
+     * @param postes De 3 a 8.
+     * @return Los movimientos mínimos, o Long.MAX_VALUE si no caben en un long
+     *         (3 postes con 63 o 64 discos).
+     */
+    static long minimo(int discos, int postes) {
+        return COSTOS[postes][discos];
+    }
+
+    /**
+     * @return Los bytes que ocupa la tabla compartida.
+     */
+    static long bytesTabla() {
+        return (long) COSTOS.length * COSTOS[0].length * (Long.BYTES + Byte.BYTES);
+    }
+
+    /**
+     * Recorre una solución de {@link #minimo(int, int)} movimientos que lleva
+     * todos los discos del poste 0 al último, calculando cada movimiento al
+     * pedirlo. Solo guarda una pila de subproblemas pendientes, nunca la lista
+     * de movimientos.
+     *
+     * @param discos De 1 a 64.
+     * @param postes De 3 a 8.
+     * @return Los movimientos, del primero al último.
+     */
+    static Iterator<EstadoHanoi.Movimiento> solucion(int discos, int postes) {
+        return new Solucion(discos, postes);
+    }
+
+    private static long sumar(long a, long b) {
+        long suma = a + b;
+        return suma < 0 ? Long.MAX_VALUE : suma;
+    }
+
+    /**
+     * Recorrido de la solución con una pila explícita. Un subproblema mueve los
+     * `discos` de arriba de `origen` a `destino` usando solo los postes de la
+     * máscara `libres`.
+     */
+    private static final class Solucion implements Iterator<EstadoHanoi.Movimiento> {
+        private final Deque<int[]> pendientes = new ArrayDeque<>();
+
+        // Discos en cada poste, para saber qué disco se mueve
+        private final long[] postes;
+
+        Solucion(int discos, int cantidadPostes) {
+            postes = new long[cantidadPostes];
+            postes[0] = discos == 64 ? -1L : (1L << discos) - 1;
+            pendientes.push(new int[] {discos, 0, cantidadPostes - 1, (1 << cantidadPostes) - 1});
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !pendientes.isEmpty();
+        }
+
+        @Override
+        public EstadoHanoi.Movimiento next() {
+            while (!pendientes.isEmpty()) {
+                int[] tarea = pendientes.pop();
+                int discos = tarea[0], origen = tarea[1], destino = tarea[2], libres = tarea[3];
+                if (discos == 1) {
+                    long disco = Long.lowestOneBit(postes[origen]);
+                    postes[origen] &= ~disco;
+                    postes[destino] |= disco;
+                    return new EstadoHanoi.Movimiento(Long.numberOfTrailingZeros(disco), origen, destino);
+                }
+                int cantidad = Integer.bitCount(libres);
+                int k = APARTAR[cantidad][discos];
+                int intermedio = Integer.numberOfTrailingZeros(libres & ~(1 << origen) & ~(1 << destino));
+                // Se apilan al revés: primero se apartan k, luego van los demás y al final se regresan los k
+                pendientes.push(new int[] {k, intermedio, destino, libres});
+                pendientes.push(new int[] {discos - k, origen, destino, libres & ~(1 << intermedio)});
+                pendientes.push(new int[] {k, origen, intermedio, libres});
+            }
+            throw new NoSuchElementException();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ *  Generador de acertijos de Cuadrado Mágico con solución única.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Genera acertijos de N x N (N de 3 a 8) que se completan de una sola forma.
+ * Se construye un cuadrado mágico (método siamés para N impar, el de
+ * complementos para múltiplos de 4 y el de Strachey para N = 6), se revuelve
+ * con transformaciones que conservan las sumas y luego se vacían casillas en
+ * orden aleatorio mientras {@link SolucionadorMagico} confirme que la solución
+ * sigue siendo única. Si el solucionador no lo confirma dentro de su
+ * presupuesto de nodos, la casilla se queda llena: el acertijo puede tener
+ * más pistas de las necesarias, pero nunca dos soluciones.
+ *
+ * Como verificar la unicidad es caro para N grande, unos hilos virtuales
+ * generan en segundo plano y dejan los acertijos en una cola acotada por
+ * tamaño; empezar una partida solo toma uno de la cola.
+ */
+class GeneradorMagico {
+    static final int TAMANO_MINIMO = 3;
+    static final int TAMANO_MAXIMO = 8;
+
+    // Acertijos listos que se guardan por cada tamaño
+    private static final int CAPACIDAD_COLA = 8;
+
+    // Nodos que puede visitar el solucionador para probar una casilla vacía
+    static final long PRESUPUESTO = 20_000;
+
+    /**
+     * Un acertijo y su única solución, ambos por filas.
+     *
+     * @param n El tamaño del cuadrado.
+     * @param celdas Los números iniciales; 0 es una casilla vacía.
+     * @param solucion El cuadrado mágico completo.
+     */
+    record Acertijo(int n, int[] celdas, int[] solucion) {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final BlockingQueue<Acertijo>[] colas = new BlockingQueue[TAMANO_MAXIMO + 1];
+
+    // Acertijos generados y tiempo de generación por tamaño
+    private static final LongAdder[] generados = new LongAdder[TAMANO_MAXIMO + 1];
+    private static final LongAdder[] nanos = new LongAdder[TAMANO_MAXIMO + 1];
+
+    static {
+        for (int n = TAMANO_MINIMO; n <= TAMANO_MAXIMO; n++) {
+            colas[n] = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+            generados[n] = new LongAdder();
+            nanos[n] = new LongAdder();
+        }
+    }
+
+    private static boolean iniciado;
+
+    private GeneradorMagico() {
+    }
+
+    /**
+     * Arranca los generadores en segundo plano: por cada tamaño, un hilo virtual
+     * por núcleo. Cada uno se duerme cuando la cola de su tamaño está llena.
+     */
+    static synchronized void iniciar() {
+        if (iniciado) {
+            return;
+        }
+        iniciado = true;
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        for (int n = TAMANO_MINIMO; n <= TAMANO_MAXIMO; n++) {
+            int tamano = n;
+            for (int i = 0; i < nucleos; i++) {
+                Thread.ofVirtual().name("generador-magico-" + n + "-" + i).start(() -> producir(tamano));
+            }
+        }
+    }
+
+    /**
+     * @return `true` si ya arrancaron los generadores en segundo plano.
+     */
+    static synchronized boolean iniciado() {
+        return iniciado;
+    }
+
+    /**
+     * Toma un acertijo listo sin esperar. Si la cola está vacía (por ejemplo,
+     * justo al arrancar), genera uno con pocas casillas vacías, que es rápido.
+     *
+     * @param n El tamaño del cuadrado, de 3 a 8.
+     * @return Un acertijo con solución única.
+     */
+    static Acertijo tomar(int n) {
+        Acertijo acertijo = colas[n].poll();
+        return acertijo != null ? acertijo : generar(n, PRESUPUESTO / 100);
+    }
+
+    /**
+     * @return Acertijos por segundo de un generador de cada tamaño (hay uno por
+     *         núcleo), cuántos hay listos y los núcleos disponibles.
+     */
+    static String resumen() {
+        StringBuilder texto = new StringBuilder();
+        for (int n = TAMANO_MINIMO; n <= TAMANO_MAXIMO; n++) {
+            long cuantos = generados[n].sum();
+            double segundos = Math.max(1, nanos[n].sum()) / 1e9;
+            texto.append(String.format("%dx%d: %.1f/s (%d listos)  ", n, n, cuantos / segundos, colas[n].size()));
+        }
+        return texto.append(Runtime.getRuntime().availableProcessors()).append(" núcleos").toString();
+    }
+
+    private static void producir(int n) {
+        try {
+            while (true) {
+                long inicio = System.nanoTime();
+                Acertijo acertijo = generar(n, PRESUPUESTO);
+                nanos[n].add(System.nanoTime() - inicio);
+                generados[n].increment();
+                colas[n].put(acertijo);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Genera un acertijo nuevo.
+     *
+     * @param n El tamaño del cuadrado, de 3 a 8.
+     * @param presupuesto Nodos que puede visitar el solucionador por casilla.
+     * @return Un acertijo con solución única.
+     */
+    static Acertijo generar(int n, long presupuesto) {
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        int[] solucion = revolver(construir(n), n, azar);
+        int[] celdas = solucion.clone();
+        SolucionadorMagico solucionador = new SolucionadorMagico(n);
+
+        int[] orden = new int[n * n];
+        for (int i = 0; i < orden.length; i++) {
+            orden[i] = i;
+        }
+        for (int i = orden.length - 1; i > 0; i--) {
+            int j = azar.nextInt(i + 1);
+            int t = orden[i];
+            orden[i] = orden[j];
+            orden[j] = t;
+        }
+        for (int casilla : orden) {
+            int numero = celdas[casilla];
+            celdas[casilla] = 0;
+            if (solucionador.contar(celdas, 2, presupuesto) != 1) {
+                celdas[casilla] = numero;
+            }
+        }
+        return new Acertijo(n, celdas, solucion);
+    }
+
+    /**
+     * Construye un cuadrado mágico de N x N.
+     */
+    static int[] construir(int n) {
+        if (n % 2 == 1) {
+            return siames(n);
+        } else if (n % 4 == 0) {
+            int[] cuadrado = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    int numero = i * n + j + 1;
+                    boolean complementar = i % 4 == j % 4 || i % 4 + j % 4 == 3;
+                    cuadrado[i * n + j] = complementar ? n * n + 1 - numero : numero;
+                }
+            }
+            return cuadrado;
+        }
+        return strachey(n);
+    }
+
+    /**
+     * Método siamés: cada número va arriba a la derecha del anterior, o abajo
+     * si esa casilla ya está ocupada.
+     */
+    private static int[] siames(int n) {
+        int[] cuadrado = new int[n * n];
+        int i = 0;
+        int j = n / 2;
+        for (int numero = 1; numero <= n * n; numero++) {
+            cuadrado[i * n + j] = numero;
+            int arriba = (i + n - 1) % n;
+            int derecha = (j + 1) % n;
+            if (cuadrado[arriba * n + derecha] != 0) {
+                i = (i + 1) % n;
+            } else {
+                i = arriba;
+                j = derecha;
+            }
+        }
+        return cuadrado;
+    }
+
+    /**
+     * Método de Strachey para N = 4k + 2: cuatro cuadrados siameses de N/2 y
+     * un intercambio de columnas entre la mitad de arriba y la de abajo.
+     */
+    private static int[] strachey(int n) {
+        int mitad = n / 2;
+        int k = (n - 2) / 4;
+        int bloque = mitad * mitad;
+        int[] base = siames(mitad);
+        int[] cuadrado = new int[n * n];
+        for (int i = 0; i < mitad; i++) {
+            for (int j = 0; j < mitad; j++) {
+                int numero = base[i * mitad + j];
+                cuadrado[i * n + j] = numero;
+                cuadrado[(i + mitad) * n + j + mitad] = numero + bloque;
+                cuadrado[i * n + j + mitad] = numero + 2 * bloque;
+                cuadrado[(i + mitad) * n + j] = numero + 3 * bloque;
+            }
+        }
+        for (int i = 0; i < mitad; i++) {
+            for (int j = 0; j < n; j++) {
+                boolean izquierda = i == mitad / 2 ? j >= 1 && j <= k : j < k;
+                boolean derecha = j >= n - k + 1;
+                if (izquierda || derecha) {
+                    int t = cuadrado[i * n + j];
+                    cuadrado[i * n + j] = cuadrado[(i + mitad) * n + j];
+                    cuadrado[(i + mitad) * n + j] = t;
+                }
+            }
+        }
+        return cuadrado;
+    }
+
+    /**
+     * Aplica transformaciones que conservan un cuadrado mágico: la misma
+     * permutación a filas y columnas, siempre que mande las posiciones
+     * simétricas (i, N-1-i) a posiciones simétricas; el complemento
+     * N*N + 1 - x; y la transpuesta.
+     */
+    private static int[] revolver(int[] cuadrado, int n, ThreadLocalRandom azar) {
+        int pares = n / 2;
+        int[] ordenPares = new int[pares];
+        for (int i = 0; i < pares; i++) {
+            ordenPares[i] = i;
+        }
+        for (int i = pares - 1; i > 0; i--) {
+            int j = azar.nextInt(i + 1);
+            int t = ordenPares[i];
+            ordenPares[i] = ordenPares[j];
+            ordenPares[j] = t;
+        }
+        int[] permutacion = new int[n];
+        for (int i = 0; i < pares; i++) {
+            boolean invertir = azar.nextBoolean();
+            int destino = ordenPares[i];
+            permutacion[i] = invertir ? n - 1 - destino : destino;
+            permutacion[n - 1 - i] = invertir ? destino : n - 1 - destino;
+        }
+        if (n % 2 == 1) {
+            permutacion[pares] = pares;
+        }
+
+        boolean complementar = azar.nextBoolean();
+        boolean transponer = azar.nextBoolean();
+        int[] resultado = new int[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int numero = cuadrado[i * n + j];
+                if (complementar) {
+                    numero = n * n + 1 - numero;
+                }
+                int fila = transponer ? permutacion[j] : permutacion[i];
+                int columna = transponer ? permutacion[i] : permutacion[j];
+                resultado[fila * n + columna] = numero;
+            }
+        }
+        return resultado;
+    }
+}
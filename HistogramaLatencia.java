@@ -0,0 +1,104 @@
+/**
+ *  Histograma de latencias sin candados para medir tiempos de respuesta.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cuenta latencias en nanosegundos agrupadas en cubetas logarítmicas.
+ * Cada potencia de dos se divide en 8 subcubetas, así que un percentil
+ * se reporta con un error menor al 12.5%. Registrar es un solo incremento
+ * atómico, por lo que muchas sesiones pueden registrar al mismo tiempo.
+ */
+class HistogramaLatencia {
+    // Bits de la mantisa que se usan para dividir cada potencia de dos
+    private static final int BITS_SUBCUBETA = 3;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+
+    // Conteo de mediciones por cubeta
+    private final AtomicLongArray cubetas = new AtomicLongArray(64 * SUBCUBETAS);
+
+    /**
+     * Registra una medición.
+     *
+     * @param nanos La latencia medida en nanosegundos.
+     */
+    void registrar(long nanos) {
+        cubetas.incrementAndGet(indice(Math.max(nanos, 0)));
+    }
+
+    /**
+     * Suma a este histograma todas las mediciones de otro.
+     *
+     * @param otro El histograma a combinar.
+     */
+    void fusionar(HistogramaLatencia otro) {
+        for (int i = 0; i < cubetas.length(); i++) {
+            long n = otro.cubetas.get(i);
+            if (n != 0) {
+                cubetas.addAndGet(i, n);
+            }
+        }
+    }
+
+    /**
+     * @return El número total de mediciones registradas.
+     */
+    long total() {
+        long total = 0;
+        for (int i = 0; i < cubetas.length(); i++) {
+            total += cubetas.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Calcula un percentil aproximado.
+     *
+     * @param percentil El percentil deseado, entre 0 y 100.
+     * @return El límite superior de la cubeta donde cae el percentil, en nanosegundos,
+     *         o 0 si no hay mediciones.
+     */
+    long percentil(double percentil) {
+        long total = total();
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = (long) Math.ceil(total * percentil / 100.0);
+        long acumulado = 0;
+        for (int i = 0; i < cubetas.length(); i++) {
+            acumulado += cubetas.get(i);
+            if (acumulado >= Math.max(objetivo, 1)) {
+                return limiteSuperior(i);
+            }
+        }
+        return limiteSuperior(cubetas.length() - 1);
+    }
+
+    /**
+     * Calcula la cubeta de un valor: los valores pequeños tienen cubeta propia
+     * y los demás se agrupan por exponente y los primeros bits de la mantisa.
+     */
+    private static int indice(long valor) {
+        if (valor < SUBCUBETAS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int mantisa = (int) (valor >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+        return (exponente - BITS_SUBCUBETA + 1) * SUBCUBETAS + mantisa;
+    }
+
+    /**
+     * Obtiene el mayor valor que cae en una cubeta.
+     */
+    private static long limiteSuperior(int indice) {
+        if (indice < SUBCUBETAS) {
+            return indice;
+        }
+        int exponente = indice / SUBCUBETAS + BITS_SUBCUBETA - 1;
+        long mantisa = indice % SUBCUBETAS;
+        long base = (SUBCUBETAS + mantisa) << (exponente - BITS_SUBCUBETA);
+        return base + (1L << (exponente - BITS_SUBCUBETA)) - 1;
+    }
+}
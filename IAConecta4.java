@@ -0,0 +1,385 @@
+/**
+ *  Oponente de computadora para Conecta 4.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Elige jugadas con negamax y poda alfa-beta sobre {@link TableroConecta4}.
+ * La búsqueda profundiza de a un nivel (iterative deepening) hasta agotar el
+ * tiempo o la profundidad de la dificultad y se queda con la mejor jugada del
+ * último nivel completo. Las columnas se prueban del centro hacia afuera,
+ * empezando por la mejor que recuerde la tabla de transposición.
+ *
+ * En la raíz la primera columna se busca sola para obtener una cota y las
+ * demás se reparten entre los núcleos con un ForkJoinPool; todos los hilos
+ * comparten una tabla de transposición de tamaño fijo y sin candados.
+ */
+class IAConecta4 {
+    /**
+     * Niveles de dificultad: profundidad máxima y tiempo por jugada.
+     */
+    enum Dificultad {
+        FACIL(2, 50),
+        MEDIO(8, 300),
+        DIFICIL(TableroConecta4.FILAS * TableroConecta4.COLUMNAS, 1500);
+
+        final int profundidad;
+        final long milisegundos;
+
+        Dificultad(int profundidad, long milisegundos) {
+            this.profundidad = profundidad;
+            this.milisegundos = milisegundos;
+        }
+    }
+
+    /**
+     * Resultado de una búsqueda.
+     *
+     * @param columna La columna elegida.
+     * @param nodos Cuántas posiciones se visitaron.
+     * @param nanos Cuánto tardó la búsqueda.
+     */
+    record Jugada(int columna, long nodos, long nanos) {
+    }
+
+    // Puntaje de ganar; se le resta el número de fichas para preferir ganar pronto
+    private static final int VICTORIA = 1000;
+    private static final int INFINITO = 1 << 20;
+
+    // Orden en que se prueban las columnas: del centro hacia afuera
+    private static final int[] ORDEN = {3, 2, 4, 1, 5, 0, 6};
+
+    // Hilos para repartir la búsqueda de la raíz, compartidos por todas las partidas
+    private static final ForkJoinPool HILOS = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // Tabla de transposición compartida por todas las partidas
+    private static final TablaTransposicion TABLA = new TablaTransposicion(20);
+
+    // Métricas de todas las búsquedas, para dimensionar el servidor
+    static final LongAdder nodosTotales = new LongAdder();
+    static final LongAdder jugadasTotales = new LongAdder();
+    static final LongAdder nanosTotales = new LongAdder();
+
+    private IAConecta4() {
+    }
+
+    /**
+     * Elige la columna para el jugador al que le toca.
+     *
+     * @param tablero El tablero actual; no se modifica.
+     * @param dificultad Límites de la búsqueda.
+     * @return La jugada elegida con sus métricas.
+     */
+    static Jugada elegir(TableroConecta4 tablero, Dificultad dificultad) {
+        long inicio = System.nanoTime();
+        Busqueda busqueda = new Busqueda(inicio + dificultad.milisegundos * 1_000_000);
+        int restantes = TableroConecta4.FILAS * TableroConecta4.COLUMNAS - tablero.movimientos();
+        int mejor = primeraLibre(tablero);
+
+        for (int profundidad = 1; profundidad <= Math.min(dificultad.profundidad, restantes); profundidad++) {
+            int columna = buscarRaiz(tablero, profundidad, busqueda);
+            if (busqueda.abortada) {
+                break;
+            }
+            mejor = columna;
+        }
+
+        long nanos = System.nanoTime() - inicio;
+        long nodos = busqueda.nodos.sum();
+        nodosTotales.add(nodos);
+        jugadasTotales.increment();
+        nanosTotales.add(nanos);
+        return new Jugada(mejor, nodos, nanos);
+    }
+
+    /**
+     * @return Las métricas acumuladas de todas las búsquedas en una línea.
+     */
+    static String resumen() {
+        long jugadas = Math.max(1, jugadasTotales.sum());
+        double segundos = Math.max(1, nanosTotales.sum()) / 1e9;
+        return String.format("%,.0f nodos/s, %.1f ms por jugada, %d jugadas",
+                nodosTotales.sum() / segundos, nanosTotales.sum() / 1e6 / jugadas, jugadasTotales.sum());
+    }
+
+    /**
+     * Busca todas las columnas a una profundidad: la primera sola y el resto en paralelo.
+     *
+     * @return La mejor columna (solo es válida si la búsqueda no se abortó).
+     */
+    private static int buscarRaiz(TableroConecta4 tablero, int profundidad, Busqueda busqueda) {
+        int[] columnas = ordenar(tablero, TABLA.mejorColumna(tablero.clave()));
+        int mejor = columnas[0];
+        TableroConecta4 copia = new TableroConecta4(tablero);
+        copia.jugar(mejor);
+        Hilo principal = new Hilo(busqueda);
+        int alfa = -negamax(copia, profundidad - 1, -INFINITO, INFINITO, principal);
+        principal.terminar();
+
+        List<ForkJoinTask<Integer>> tareas = new ArrayList<>();
+        for (int i = 1; i < columnas.length && columnas[i] >= 0; i++) {
+            int columna = columnas[i];
+            int cota = alfa;
+            tareas.add(HILOS.submit(() -> {
+                TableroConecta4 propia = new TableroConecta4(tablero);
+                propia.jugar(columna);
+                Hilo hilo = new Hilo(busqueda);
+                int puntaje = -negamax(propia, profundidad - 1, -INFINITO, -cota, hilo);
+                hilo.terminar();
+                return puntaje;
+            }));
+        }
+        for (int i = 0; i < tareas.size(); i++) {
+            int puntaje = tareas.get(i).join();
+            if (puntaje > alfa) {
+                alfa = puntaje;
+                mejor = columnas[i + 1];
+            }
+        }
+        if (!busqueda.abortada) {
+            TABLA.guardar(tablero.clave(), alfa, profundidad, TablaTransposicion.EXACTO, mejor);
+        }
+        return mejor;
+    }
+
+    /**
+     * Negamax con poda alfa-beta. El puntaje es desde el punto de vista del
+     * jugador al que le toca en `tablero`.
+     */
+    private static int negamax(TableroConecta4 tablero, int profundidad, int alfa, int beta, Hilo hilo) {
+        if (hilo.visitar()) {
+            return 0;
+        }
+        if (tablero.ultimoGano()) {
+            return -(VICTORIA - tablero.movimientos());
+        }
+        if (tablero.lleno()) {
+            return 0;
+        }
+        if (profundidad == 0) {
+            return evaluar(tablero);
+        }
+
+        long clave = tablero.clave();
+        long entrada = TABLA.leer(clave);
+        int mejorAnterior = -1;
+        if (entrada != TablaTransposicion.VACIA) {
+            mejorAnterior = TablaTransposicion.columna(entrada);
+            if (TablaTransposicion.profundidad(entrada) >= profundidad) {
+                int puntaje = TablaTransposicion.puntaje(entrada);
+                int cota = TablaTransposicion.cota(entrada);
+                if (cota == TablaTransposicion.EXACTO) {
+                    return puntaje;
+                } else if (cota == TablaTransposicion.INFERIOR) {
+                    alfa = Math.max(alfa, puntaje);
+                } else {
+                    beta = Math.min(beta, puntaje);
+                }
+                if (alfa >= beta) {
+                    return puntaje;
+                }
+            }
+        }
+
+        int alfaOriginal = alfa;
+        int mejor = -INFINITO;
+        int mejorColumna = -1;
+        for (int i = -1; i < ORDEN.length; i++) {
+            int columna = i < 0 ? mejorAnterior : ORDEN[i];
+            if (columna < 0 || (i >= 0 && columna == mejorAnterior) || !tablero.puedeJugar(columna)) {
+                continue;
+            }
+            tablero.jugar(columna);
+            int puntaje = -negamax(tablero, profundidad - 1, -beta, -alfa, hilo);
+            tablero.deshacer();
+            if (puntaje > mejor) {
+                mejor = puntaje;
+                mejorColumna = columna;
+            }
+            alfa = Math.max(alfa, puntaje);
+            if (alfa >= beta) {
+                break;
+            }
+        }
+
+        if (!hilo.busqueda.abortada) {
+            int cota = mejor <= alfaOriginal ? TablaTransposicion.SUPERIOR
+                    : mejor >= beta ? TablaTransposicion.INFERIOR : TablaTransposicion.EXACTO;
+            TABLA.guardar(clave, mejor, profundidad, cota, mejorColumna);
+        }
+        return mejor;
+    }
+
+    /**
+     * Evaluación de una posición sin terminar: casillas vacías que completarían
+     * cuatro en línea para quien juega menos las del rival.
+     */
+    private static int evaluar(TableroConecta4 tablero) {
+        long ocupadas = tablero.ocupadas();
+        long propias = tablero.fichasActuales();
+        long rivales = propias ^ ocupadas;
+        return Long.bitCount(amenazas(propias, ocupadas)) - Long.bitCount(amenazas(rivales, ocupadas));
+    }
+
+    /**
+     * Casillas vacías donde una ficha más haría cuatro en línea.
+     *
+     * @param b Las fichas de un jugador.
+     * @param ocupadas Todas las fichas.
+     */
+    private static long amenazas(long b, long ocupadas) {
+        // Vertical
+        long r = (b << 1) & (b << 2) & (b << 3);
+        // Horizontal y las dos diagonales
+        for (int d = 6; d <= 8; d++) {
+            long p = (b << d) & (b << 2 * d);
+            r |= p & (b << 3 * d);
+            r |= p & (b >>> d);
+            p = (b >>> d) & (b >>> 2 * d);
+            r |= p & (b << d);
+            r |= p & (b >>> 3 * d);
+        }
+        return r & (TableroConecta4.TABLERO ^ ocupadas);
+    }
+
+    /**
+     * @return Las columnas jugables, primero la sugerida y luego del centro hacia afuera;
+     *         las posiciones que sobran quedan en -1.
+     */
+    private static int[] ordenar(TableroConecta4 tablero, int sugerida) {
+        int[] columnas = new int[ORDEN.length];
+        int n = 0;
+        if (sugerida >= 0 && tablero.puedeJugar(sugerida)) {
+            columnas[n++] = sugerida;
+        }
+        for (int columna : ORDEN) {
+            if (columna != sugerida && tablero.puedeJugar(columna)) {
+                columnas[n++] = columna;
+            }
+        }
+        for (int i = n; i < columnas.length; i++) {
+            columnas[i] = -1;
+        }
+        return columnas;
+    }
+
+    private static int primeraLibre(TableroConecta4 tablero) {
+        for (int columna : ORDEN) {
+            if (tablero.puedeJugar(columna)) {
+                return columna;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Estado compartido por todos los hilos de una búsqueda.
+     */
+    private static final class Busqueda {
+        final long limite;
+        final LongAdder nodos = new LongAdder();
+        volatile boolean abortada;
+
+        Busqueda(long limite) {
+            this.limite = limite;
+        }
+    }
+
+    /**
+     * Lo que usa un solo hilo durante una búsqueda: cuenta sus nodos sin
+     * compartirlos hasta terminar.
+     */
+    private static final class Hilo {
+        final Busqueda busqueda;
+        long nodos;
+
+        Hilo(Busqueda busqueda) {
+            this.busqueda = busqueda;
+        }
+
+        /**
+         * Cuenta un nodo y cada 4096 revisa el reloj.
+         *
+         * @return `true` si se acabó el tiempo.
+         */
+        boolean visitar() {
+            if ((++nodos & 0xFFF) == 0 && System.nanoTime() > busqueda.limite) {
+                busqueda.abortada = true;
+            }
+            return busqueda.abortada;
+        }
+
+        void terminar() {
+            busqueda.nodos.add(nodos);
+        }
+    }
+
+    /**
+     * Tabla de transposición de tamaño fijo y sin candados. Cada entrada son dos
+     * longs: los datos y la clave combinada con los datos por XOR; si otro hilo
+     * escribió la mitad de una entrada, la clave no coincide y se ignora.
+     */
+    static final class TablaTransposicion {
+        static final long VACIA = 0;
+        static final int EXACTO = 1;
+        static final int INFERIOR = 2;
+        static final int SUPERIOR = 3;
+
+        private final AtomicLongArray claves;
+        private final AtomicLongArray datos;
+        private final int mascara;
+
+        TablaTransposicion(int bits) {
+            claves = new AtomicLongArray(1 << bits);
+            datos = new AtomicLongArray(1 << bits);
+            mascara = (1 << bits) - 1;
+        }
+
+        long leer(long clave) {
+            int i = indice(clave);
+            long dato = datos.get(i);
+            return (claves.get(i) ^ dato) == clave ? dato : VACIA;
+        }
+
+        void guardar(long clave, int puntaje, int profundidad, int cota, int columna) {
+            // puntaje (16 bits) | profundidad (8) | cota (2) | columna + 1 (4)
+            long dato = ((long) (puntaje & 0xFFFF) << 14) | ((long) profundidad << 6) | ((long) cota << 4) | (columna + 1);
+            int i = indice(clave);
+            datos.set(i, dato);
+            claves.set(i, clave ^ dato);
+        }
+
+        int mejorColumna(long clave) {
+            long entrada = leer(clave);
+            return entrada == VACIA ? -1 : columna(entrada);
+        }
+
+        static int puntaje(long dato) {
+            return (short) (dato >>> 14);
+        }
+
+        static int profundidad(long dato) {
+            return (int) (dato >>> 6) & 0xFF;
+        }
+
+        static int cota(long dato) {
+            return (int) (dato >>> 4) & 0x3;
+        }
+
+        static int columna(long dato) {
+            return (int) (dato & 0xF) - 1;
+        }
+
+        private int indice(long clave) {
+            long h = clave * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 40) & mascara;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ *  Problema de Josephus para el juego "Salvado".
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * En un círculo de n sillas numeradas desde 1 se avanza k lugares y se elimina
+ * a quien cae ahí, hasta que queda una sola silla.
+ *
+ * {@link #sobreviviente(long, long)} calcula la silla que queda sin simular el
+ * círculo: con la recurrencia J(m) = (J(m-1) + k) mod m en O(n), o, si el paso
+ * es chico comparado con el círculo, eliminando de una vuelta las n/k personas
+ * alcanzadas y corrigiendo el índice, en O(k log n).
+ * {@link #eliminaciones(int, int)} entrega el orden de eliminación completo de
+ * a una silla con un árbol de Fenwick, sin calcular las que no se piden.
+ */
+class Josephus {
+    // Máximo de tamaños que guarda el método O(k log n); si harían falta más, conviene O(n)
+    private static final int MAXIMO_PILA = 1 << 20;
+
+    private Josephus() {
+    }
+
+    /**
+     * Calcula la silla que se salva.
+     *
+     * @param n Sillas en el círculo, al menos 1.
+     * @param k Lugares que se avanza en cada eliminación, al menos 1.
+     * @return El número de la silla que queda, de 1 a n.
+     */
+    static long sobreviviente(long n, long k) {
+        if (n < 1 || k < 1) {
+            throw new IllegalArgumentException("El círculo y el paso deben ser positivos: n=" + n + ", k=" + k);
+        }
+        if (k == 1) {
+            return n;
+        }
+        // Vueltas que hace el método O(k log n): unas k ln(n/k) hasta llegar a 2k y unas k más
+        double vueltas = k * (Math.log(Math.max(1.0, n / (double) k)) + 1);
+        if (k >= n || vueltas > n || vueltas > MAXIMO_PILA) {
+            return recurrencia(n, k) + 1;
+        }
+
+        // Bajada: en cada vuelta se elimina a n/k personas
+        long[] pila = new long[(int) vueltas + 64];
+        int alto = 0;
+        long m = n;
+        while (m >= k) {
+            if (alto == pila.length) {
+                pila = Arrays.copyOf(pila, alto * 2);
+            }
+            pila[alto++] = m;
+            m -= m / k;
+        }
+
+        // Con menos de k personas se sigue con la recurrencia lineal
+        long indice = recurrencia(m, k);
+
+        // Subida: se traduce el índice del círculo chico al de la vuelta anterior
+        while (alto > 0) {
+            long tamano = pila[--alto];
+            indice -= tamano % k;
+            if (indice < 0) {
+                indice += tamano;
+            } else {
+                indice += indice / (k - 1);
+            }
+        }
+        return indice + 1;
+    }
+
+    /**
+     * J(m) = (J(m-1) + k) mod m desde J(1) = 0 hasta J(n).
+     */
+    private static long recurrencia(long n, long k) {
+        if (n <= Integer.MAX_VALUE) {
+            // Con un índice de 32 bits el módulo es bastante más rápido
+            int indice = 0;
+            for (int m = 2; m <= n; m++) {
+                indice = (int) ((indice + k) % m);
+            }
+            return indice;
+        }
+        long indice = 0;
+        for (long m = 2; m <= n; m++) {
+            indice = (indice + k) % m;
+        }
+        return indice;
+    }
+
+    /**
+     * Recorre las sillas en el orden en que se eliminan; la última que entrega
+     * es la que se salva. Crear el recorrido cuesta O(n) y cada silla
+     * O(log n).
+     *
+     * @param n Sillas en el círculo, al menos 1.
+     * @param k Lugares que se avanza en cada eliminación, al menos 1.
+     * @return Los números de silla, de 1 a n, en orden de eliminación.
+     */
+    static PrimitiveIterator.OfInt eliminaciones(int n, int k) {
+        if (n < 1 || k < 1) {
+            throw new IllegalArgumentException("El círculo y el paso deben ser positivos: n=" + n + ", k=" + k);
+        }
+        return new Eliminaciones(n, k);
+    }
+
+    /**
+     * Árbol de Fenwick con un 1 por cada silla que sigue en el círculo; la
+     * silla en la posición p es la p-ésima con un 1.
+     */
+    private static final class Eliminaciones implements PrimitiveIterator.OfInt {
+        private final int[] arbol;
+        private final int paso;
+        private final int potencia;
+        private int quedan;
+        private int posicion;
+
+        Eliminaciones(int n, int k) {
+            arbol = new int[n + 1];
+            for (int i = 1; i <= n; i++) {
+                // Con todas las sillas ocupadas, cada nodo cubre lowbit(i) sillas
+                arbol[i] = i & -i;
+            }
+            paso = k;
+            potencia = Integer.highestOneBit(n);
+            quedan = n;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return quedan > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (quedan == 0) {
+                throw new NoSuchElementException();
+            }
+            posicion = (int) ((posicion + (long) paso - 1) % quedan);
+            int silla = buscar(posicion + 1);
+            for (int i = silla; i < arbol.length; i += i & -i) {
+                arbol[i]--;
+            }
+            quedan--;
+            return silla;
+        }
+
+        /**
+         * @return La silla con el r-ésimo 1, bajando por potencias de dos.
+         */
+        private int buscar(int r) {
+            int silla = 0;
+            for (int salto = potencia; salto > 0; salto >>= 1) {
+                int siguiente = silla + salto;
+                if (siguiente < arbol.length && arbol[siguiente] < r) {
+                    silla = siguiente;
+                    r -= arbol[siguiente];
+                }
+            }
+            return silla + 1;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ *  Un juego que se puede agregar a la feria.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+
+/**
+ * Lo que la feria necesita saber de un juego para ponerlo en el menú: su
+ * nombre, cuánto cuesta y cómo crear una partida. Los juegos se encuentran
+ * con {@link java.util.ServiceLoader}: cada implementación se anota en el
+ * archivo META-INF/services/JuegoFeria (una por línea, en el orden del menú)
+ * y tiene que ser pública con un constructor sin argumentos.
+ *
+ * La implementación debe ser ligera: solo describe el juego. El código del
+ * juego va en una {@link PartidaFeria} aparte, que la JVM carga la primera
+ * vez que se elige el juego, así que agregar juegos no alarga el arranque.
+ * JuegoFeria vive en su propio archivo porque ServiceLoader solo acepta
+ * interfaces públicas.
+ */
+public interface JuegoFeria {
+    /**
+     * @return El nombre que se muestra en el menú.
+     */
+    String nombre();
+
+    /**
+     * @return Los créditos que se cobran por partida.
+     */
+    int costo();
+
+    /**
+     * @return Dónde se cuentan sus partidas y jugadas en {@link MetricasFeria},
+     *         o null si el juego no tiene métricas propias.
+     */
+    default MetricasFeria.Juego metrica() {
+        return null;
+    }
+
+    /**
+     * Prepara lo que el juego necesita (por ejemplo, trabajo en segundo plano).
+     * Se llama una sola vez, la primera vez que alguien elige el juego.
+     */
+    default void preparar() {
+    }
+
+    /**
+     * @param sesion La sesión donde se va a jugar.
+     * @return Una partida nueva, lista para jugarse en esa sesión.
+     */
+    PartidaFeria crear(Feria sesion);
+}
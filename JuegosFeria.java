@@ -0,0 +1,111 @@
+/**
+ *  Los cuatro juegos que trae la feria.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+
+/**
+ * Las descripciones de los juegos de la feria, anotadas en
+ * META-INF/services/JuegoFeria. Solo dicen nombre, costo y métricas; el
+ * código de cada juego está en su Partida y se carga al crear la primera.
+ */
+public final class JuegosFeria {
+    private JuegosFeria() {
+    }
+
+    public static final class CuadradoMagico implements JuegoFeria {
+        @Override
+        public String nombre() {
+            return "Cuadrado Mágico";
+        }
+
+        @Override
+        public int costo() {
+            return Feria.COSTO_JUEGO;
+        }
+
+        @Override
+        public MetricasFeria.Juego metrica() {
+            return MetricasFeria.Juego.CUADRADO_MAGICO;
+        }
+
+        /**
+         * Empieza a preparar acertijos en segundo plano.
+         */
+        @Override
+        public void preparar() {
+            GeneradorMagico.iniciar();
+        }
+
+        @Override
+        public PartidaFeria crear(Feria sesion) {
+            return new PartidaCuadradoMagico(sesion);
+        }
+    }
+
+    public static final class Conecta4 implements JuegoFeria {
+        @Override
+        public String nombre() {
+            return "Conecta 4";
+        }
+
+        @Override
+        public int costo() {
+            return Feria.COSTO_JUEGO;
+        }
+
+        @Override
+        public MetricasFeria.Juego metrica() {
+            return MetricasFeria.Juego.CONECTA_4;
+        }
+
+        @Override
+        public PartidaFeria crear(Feria sesion) {
+            return new PartidaConecta4(sesion);
+        }
+    }
+
+    public static final class Salvado implements JuegoFeria {
+        @Override
+        public String nombre() {
+            return "Salvado";
+        }
+
+        @Override
+        public int costo() {
+            return Feria.COSTO_JUEGO;
+        }
+
+        @Override
+        public MetricasFeria.Juego metrica() {
+            return MetricasFeria.Juego.SALVADO;
+        }
+
+        @Override
+        public PartidaFeria crear(Feria sesion) {
+            return new PartidaSalvado(sesion);
+        }
+    }
+
+    public static final class TorresDeHanoi implements JuegoFeria {
+        @Override
+        public String nombre() {
+            return "Torres de Hanoi";
+        }
+
+        @Override
+        public int costo() {
+            return Feria.COSTO_JUEGO;
+        }
+
+        @Override
+        public MetricasFeria.Juego metrica() {
+            return MetricasFeria.Juego.TORRES_DE_HANOI;
+        }
+
+        @Override
+        public PartidaFeria crear(Feria sesion) {
+            return new PartidaTorresDeHanoi(sesion);
+        }
+    }
+}
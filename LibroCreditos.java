@@ -0,0 +1,78 @@
+/**
+ *  Libro de créditos: cobros y premios atómicos con contadores de auditoría.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Todos los movimientos de créditos de la feria pasan por aquí. El saldo de
+ * cada jugador se cambia con compare-and-set sobre el propio jugador, así que
+ * no hay un candado global: dos sesiones solo compiten si usan al mismo jugador.
+ * Los contadores son {@link LongAdder} para que auditar no serialice a los hilos.
+ */
+class LibroCreditos {
+    // Número de cobros y de premios realizados
+    static final LongAdder debitos = new LongAdder();
+    static final LongAdder creditos = new LongAdder();
+
+    // Cobros que no se hicieron porque el saldo no alcanzaba
+    static final LongAdder debitosRechazados = new LongAdder();
+
+    // Suma de créditos cobrados y otorgados
+    static final LongAdder totalDebitado = new LongAdder();
+    static final LongAdder totalAcreditado = new LongAdder();
+
+    // Reintentos de compare-and-set por sesiones que tocaron el mismo saldo a la vez
+    static final LongAdder reintentos = new LongAdder();
+
+    private LibroCreditos() {
+    }
+
+    /**
+     * Cobra una cantidad al jugador si su saldo alcanza. Revisar el saldo y
+     * descontar es una sola operación, así el saldo nunca queda negativo.
+     *
+     * @param jugador El jugador al que se le cobra.
+     * @param cantidad Los créditos a cobrar.
+     * @return `true` si se cobró, `false` si el saldo no alcanzaba.
+     */
+    static boolean debitar(Feria.Jugador jugador, int cantidad) {
+        int intentos = jugador.debitarSiAlcanza(cantidad);
+        if (intentos < 0) {
+            debitosRechazados.increment();
+            return false;
+        }
+        if (intentos > 0) {
+            reintentos.add(intentos);
+        }
+        debitos.increment();
+        totalDebitado.add(cantidad);
+        return true;
+    }
+
+    /**
+     * Otorga créditos al jugador, por ejemplo al ganar un juego.
+     *
+     * @param jugador El jugador que recibe los créditos.
+     * @param cantidad Los créditos a otorgar.
+     */
+    static void acreditar(Feria.Jugador jugador, int cantidad) {
+        int intentos = jugador.sumarCreditos(cantidad);
+        if (intentos > 0) {
+            reintentos.add(intentos);
+        }
+        creditos.increment();
+        totalAcreditado.add(cantidad);
+    }
+
+    /**
+     * @return Un resumen de la auditoría en una línea.
+     */
+    static String resumen() {
+        return "débitos: " + debitos.sum() + " (" + totalDebitado.sum() + " créditos)"
+                + ", rechazados: " + debitosRechazados.sum()
+                + ", premios: " + creditos.sum() + " (" + totalAcreditado.sum() + " créditos)"
+                + ", reintentos: " + reintentos.sum();
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ *  Dibuja los tableros de los juegos de un solo golpe.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Arma cada cuadro (un tablero completo) en un búfer que se reutiliza y lo
+ * escribe con una sola llamada al flujo de salida, en lugar de una por
+ * casilla. Cada sesión tiene su propio lienzo.
+ *
+ * En modo ANSI el tablero se queda fijo arriba de la pantalla: el primer
+ * cuadro borra la pantalla y los siguientes solo reescriben los caracteres
+ * que cambiaron respecto al cuadro anterior, moviendo el cursor a cada tramo
+ * distinto; al final el cursor queda debajo del tablero y se borra lo que
+ * había ahí.
+ */
+class Lienzo {
+    private static final String ESC = "\u001B[";
+
+    // Métricas de todos los lienzos, para comparar con el dibujo casilla por casilla. No se cuentan
+    // escrituras: cada cuadro es una sola llamada a la sesión, y a la conexión llega al vaciarse la sesión
+    static final LongAdder cuadros = new LongAdder();
+    static final LongAdder caracteres = new LongAdder();
+
+    private final PrintStream out;
+    private final boolean ansi;
+
+    // Cuadro que se está armando
+    private final StringBuilder cuadro = new StringBuilder(256);
+
+    // Salida en modo ANSI y líneas del cuadro anterior
+    private final StringBuilder salida = new StringBuilder(256);
+    private final List<String> anteriores = new ArrayList<>();
+    private boolean hayAnterior;
+
+    /**
+     * @param out El flujo de la sesión.
+     * @param ansi `true` para redibujar solo lo que cambia con secuencias ANSI.
+     */
+    Lienzo(PrintStream out, boolean ansi) {
+        this.out = out;
+        this.ansi = ansi;
+    }
+
+    /**
+     * Olvida el cuadro anterior: el siguiente se dibuja completo. Se usa al
+     * empezar un juego, porque la pantalla ya no tiene el tablero de antes.
+     */
+    void reiniciar() {
+        cuadro.setLength(0);
+        hayAnterior = false;
+    }
+
+    /**
+     * Agrega texto al cuadro.
+     */
+    Lienzo texto(String texto) {
+        cuadro.append(texto);
+        return this;
+    }
+
+    /**
+     * Agrega un número al cuadro sin crear un String.
+     */
+    Lienzo numero(long numero) {
+        cuadro.append(numero);
+        return this;
+    }
+
+    /**
+     * Agrega una casilla alineada a la izquierda y rellena con espacios.
+     *
+     * @param texto El contenido de la casilla.
+     * @param ancho El ancho total de la casilla.
+     */
+    Lienzo celda(String texto, int ancho) {
+        cuadro.append(texto);
+        for (int i = texto.length(); i < ancho; i++) {
+            cuadro.append(' ');
+        }
+        return this;
+    }
+
+    /**
+     * Agrega una casilla con un número, alineada a la izquierda.
+     */
+    Lienzo celda(int numero, int ancho) {
+        int inicio = cuadro.length();
+        cuadro.append(numero);
+        for (int i = cuadro.length() - inicio; i < ancho; i++) {
+            cuadro.append(' ');
+        }
+        return this;
+    }
+
+    /**
+     * Termina la línea actual del cuadro.
+     */
+    Lienzo linea() {
+        cuadro.append('\n');
+        return this;
+    }
+
+    /**
+     * Escribe el cuadro armado con una sola llamada y deja el búfer listo para el siguiente.
+     */
+    void mostrar() {
+        CharSequence texto = ansi ? diferencias() : cuadro;
+        out.append(texto);
+        cuadros.increment();
+        caracteres.add(texto.length());
+        cuadro.setLength(0);
+    }
+
+    /**
+     * @return Resumen de las métricas de todos los lienzos.
+     */
+    static String resumen() {
+        long n = Math.max(1, cuadros.sum());
+        return String.format("%d cuadros, %.1f caracteres por cuadro", cuadros.sum(), caracteres.sum() / (double) n);
+    }
+
+    /**
+     * Compara el cuadro con el anterior y arma solo las secuencias necesarias.
+     */
+    private CharSequence diferencias() {
+        salida.setLength(0);
+        List<String> lineas = partir();
+        if (!hayAnterior || lineas.size() != anteriores.size()) {
+            // Primer cuadro: se borra la pantalla y se dibuja completo desde arriba
+            salida.append(ESC).append("H").append(ESC).append("2J").append(cuadro);
+        } else {
+            for (int fila = 0; fila < lineas.size(); fila++) {
+                redibujarLinea(fila, anteriores.get(fila), lineas.get(fila));
+            }
+            // El cursor queda debajo del tablero y se borra lo que se escribió ahí antes
+            salida.append(ESC).append(lineas.size() + 1).append(";1H").append(ESC).append('J');
+        }
+        anteriores.clear();
+        anteriores.addAll(lineas);
+        hayAnterior = true;
+        return salida;
+    }
+
+    /**
+     * Escribe solo los tramos de una línea que cambiaron.
+     */
+    private void redibujarLinea(int fila, String antes, String ahora) {
+        int comun = Math.min(antes.length(), ahora.length());
+        int i = 0;
+        while (i < comun) {
+            if (antes.charAt(i) == ahora.charAt(i)) {
+                i++;
+                continue;
+            }
+            int fin = i;
+            while (fin < comun && antes.charAt(fin) != ahora.charAt(fin)) {
+                fin++;
+            }
+            moverCursor(fila, i);
+            salida.append(ahora, i, fin);
+            i = fin;
+        }
+        if (ahora.length() > comun) {
+            moverCursor(fila, comun);
+            salida.append(ahora, comun, ahora.length());
+        } else if (antes.length() > comun) {
+            // La línea nueva es más corta: se borra el resto
+            moverCursor(fila, comun);
+            salida.append(ESC).append('K');
+        }
+    }
+
+    private void moverCursor(int fila, int columna) {
+        salida.append(ESC).append(fila + 1).append(';').append(columna + 1).append('H');
+    }
+
+    private List<String> partir() {
+        List<String> lineas = new ArrayList<>();
+        int inicio = 0;
+        for (int i = 0; i < cuadro.length(); i++) {
+            if (cuadro.charAt(i) == '\n') {
+                lineas.add(cuadro.substring(inicio, i));
+                inicio = i + 1;
+            }
+        }
+        if (inicio < cuadro.length()) {
+            lineas.add(cuadro.substring(inicio));
+        }
+        return lineas;
+    }
+}
@@ -0,0 +1,303 @@
+/**
+ *  Métricas de la feria: contadores y latencias de juegos, créditos y datos.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Junta lo que pasa en la feria mientras corre: partidas iniciadas y
+ * terminadas de cada juego, cuánto dura cada partida y cada jugada,
+ * registros, créditos y puntos que se mueven, cuánto tardan en aplicarse
+ * los resultados de las partidas y cuánto tarda guardar y cargar a los
+ * jugadores. Los contadores son {@link LongAdder} y las latencias van a
+ * {@link HistogramaLatencia}, así que registrar es un incremento sin
+ * candados y se puede dejar encendido dentro de los juegos.
+ *
+ * Las métricas se ven por JMX y, con -Dferia.metricas=archivo, se escriben
+ * en JSON a ese archivo cada {@value #SEGUNDOS_VOLCADO} segundos y al salir.
+ * El servidor y el modo repetición también imprimen el resumen en texto.
+ *
+ * También se anota cuánto tardó la feria en mostrar el primer menú desde que
+ * arrancó la JVM y cuántas clases había cargado para entonces, para comparar
+ * el arranque con y sin un archivo de clases compartidas (AppCDS).
+ */
+class MetricasFeria implements MetricasFeriaMXBean {
+    static final String NOMBRE_JMX = "feria:type=Metricas";
+
+    // Cada cuántos segundos se escribe el archivo de métricas
+    static final int SEGUNDOS_VOLCADO = 10;
+
+    // Archivo donde se escriben las métricas en JSON, o null para no escribirlas
+    private static final String ARCHIVO = System.getProperty("feria.metricas");
+
+    /**
+     * Los juegos incluidos en la feria que tienen métricas propias. Un juego
+     * cargado con ServiceLoader solo las tiene (y solo se archivan sus
+     * partidas) si se agrega aquí y lo devuelve en {@link JuegoFeria#metrica()}.
+     * El orden no es el del menú: el ordinal se guarda en el archivo de
+     * partidas, así que los juegos nuevos van al final.
+     */
+    enum Juego {
+        CUADRADO_MAGICO("cuadradoMagico"),
+        CONECTA_4("conecta4"),
+        SALVADO("salvado"),
+        TORRES_DE_HANOI("torresDeHanoi");
+
+        final String clave;
+
+        // Partidas y jugadas de este juego
+        final LongAdder iniciados = new LongAdder();
+        final LongAdder terminados = new LongAdder();
+        final HistogramaLatencia partidas = new HistogramaLatencia();
+        final HistogramaLatencia jugadas = new HistogramaLatencia();
+
+        Juego(String clave) {
+            this.clave = clave;
+        }
+    }
+
+    // Jugadores registrados desde que arrancó la feria
+    static final LongAdder registros = new LongAdder();
+
+    // Créditos quitados con reducirCreditos y puntos otorgados con agregarPuntos
+    static final LongAdder creditosReducidos = new LongAdder();
+    static final LongAdder puntosOtorgados = new LongAdder();
+
+    // Partidas que se pusieron en pausa por inactividad y que se retomaron
+    static final LongAdder partidasEnPausa = new LongAdder();
+    static final LongAdder partidasRetomadas = new LongAdder();
+
+    // Tiempo de "Guardar y salir" y de cargar los datos al arrancar
+    static final HistogramaLatencia guardar = new HistogramaLatencia();
+    static final HistogramaLatencia cargar = new HistogramaLatencia();
+
+    // Con -Dferia.arranque=true se imprime el tiempo hasta el primer menú
+    private static final boolean MOSTRAR_ARRANQUE = Boolean.getBoolean("feria.arranque");
+
+    // Milisegundos desde que arrancó la JVM hasta el primer menú (-1 si no se ha mostrado) y clases cargadas
+    private static volatile long msPrimerMenu = -1;
+    private static volatile long clasesPrimerMenu;
+
+    private static final long ARRANQUE = System.nanoTime();
+
+    private static final MetricasFeria INSTANCIA = new MetricasFeria();
+
+    private MetricasFeria() {
+    }
+
+    /**
+     * Registra las métricas en JMX y, si se pidió un archivo, empieza a
+     * escribirlo periódicamente.
+     */
+    static synchronized void iniciar() {
+        try {
+            ObjectName nombre = new ObjectName(NOMBRE_JMX);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(nombre)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCIA, nombre);
+            }
+        } catch (JMException e) {
+            System.out.println("No se pudieron publicar las métricas por JMX: " + e.getMessage());
+        }
+        if (ARCHIVO != null) {
+            ScheduledExecutorService volcados = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "metricas-feria");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            volcados.scheduleAtFixedRate(MetricasFeria::volcar, SEGUNDOS_VOLCADO, SEGUNDOS_VOLCADO, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Anota, solo la primera vez que se llama, el tiempo desde que arrancó la
+     * JVM y las clases cargadas. Se llama cada vez que se muestra el menú.
+     */
+    static void primerMenu() {
+        if (msPrimerMenu >= 0) {
+            return;
+        }
+        synchronized (MetricasFeria.class) {
+            if (msPrimerMenu >= 0) {
+                return;
+            }
+            clasesPrimerMenu = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+            msPrimerMenu = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        }
+        if (MOSTRAR_ARRANQUE) {
+            System.out.println("[arranque] primer menú a los " + msPrimerMenu + " ms, con "
+                    + clasesPrimerMenu + " clases cargadas");
+        }
+    }
+
+    /**
+     * Escribe las métricas en el archivo pedido, si hay uno. El archivo se
+     * reemplaza de un solo golpe, así quien lo lea nunca ve uno a medias.
+     */
+    static void volcar() {
+        if (ARCHIVO == null) {
+            return;
+        }
+        Path destino = Paths.get(ARCHIVO);
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try {
+            Files.writeString(temporal, INSTANCIA.getJson(), StandardCharsets.UTF_8);
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("No se pudieron escribir las métricas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Un resumen en texto, una línea por tema.
+     */
+    static String resumen() {
+        double segundos = segundosActivo();
+        StringBuilder texto = new StringBuilder("juegos (iniciados/terminados, p50 partida, p99 jugada):");
+        for (Juego juego : Juego.values()) {
+            texto.append(String.format(" %s %d/%d %s %s;", juego.clave, juego.iniciados.sum(), juego.terminados.sum(),
+                    duracion(juego.partidas.percentil(50)), duracion(juego.jugadas.percentil(99))));
+        }
+        texto.append(String.format("%nregistros: %d (%.2f/s), cobros: %d créditos, premios: %d créditos,"
+                        + " reducidos: %d, puntos: %d",
+                registros.sum(), registros.sum() / segundos, LibroCreditos.totalDebitado.sum(),
+                LibroCreditos.totalAcreditado.sum(), creditosReducidos.sum(), puntosOtorgados.sum()));
+        texto.append(String.format("%ncaché de jugadores: %d aciertos (%.1f%%), %d fallos, %d desalojados,"
+                        + " %d escrituras en la foto, %d recuperados",
+                CacheJugadores.aciertos.sum(), 100 * CacheJugadores.tasaAciertos(), CacheJugadores.fallos.sum(),
+                CacheJugadores.desalojos.sum(), CacheJugadores.escrituras.sum(), CacheJugadores.recuperados.sum()));
+        texto.append(String.format("%npartidas en pausa: %d (%d KB fuera del heap), pausadas: %d, retomadas: %d",
+                EstacionPartidas.cantidad(), EstacionPartidas.bytesFueraDelHeap() >> 10,
+                partidasEnPausa.sum(), partidasRetomadas.sum()));
+        texto.append(String.format("%nresultados: %d publicados, %d aplicados por la sesión (anillo lleno),"
+                        + " %d lotes, %d fallidos, retraso p50 %s p99 %s máx %s; archivadas: %d (%d KB)",
+                TuberiaResultados.publicados(), TuberiaResultados.directos.sum(), TuberiaResultados.lotes.sum(),
+                TuberiaResultados.fallidos.sum(),
+                duracion(TuberiaResultados.retraso.percentil(50)), duracion(TuberiaResultados.retraso.percentil(99)),
+                duracion(TuberiaResultados.retraso.percentil(100)), ArchivoPartidas.anotadas.sum(),
+                ArchivoPartidas.bytesAnotados.sum() >> 10));
+        texto.append(String.format("%nguardar: %d veces, p99 %s; cargar: %s; primer menú: %d ms (%d clases)",
+                guardar.total(), duracion(guardar.percentil(99)), duracion(cargar.percentil(100)),
+                msPrimerMenu, clasesPrimerMenu));
+        return texto.toString();
+    }
+
+    @Override
+    public Map<String, Long> getContadores() {
+        Map<String, Long> contadores = new LinkedHashMap<>();
+        for (Juego juego : Juego.values()) {
+            contadores.put(juego.clave + ".iniciados", juego.iniciados.sum());
+            contadores.put(juego.clave + ".terminados", juego.terminados.sum());
+        }
+        contadores.put("registros", registros.sum());
+        contadores.put("creditos.cobros", LibroCreditos.debitos.sum());
+        contadores.put("creditos.cobrosRechazados", LibroCreditos.debitosRechazados.sum());
+        contadores.put("creditos.cobrados", LibroCreditos.totalDebitado.sum());
+        contadores.put("creditos.premios", LibroCreditos.creditos.sum());
+        contadores.put("creditos.otorgados", LibroCreditos.totalAcreditado.sum());
+        contadores.put("creditos.reducidos", creditosReducidos.sum());
+        contadores.put("puntos.otorgados", puntosOtorgados.sum());
+        contadores.put("cache.aciertos", CacheJugadores.aciertos.sum());
+        contadores.put("cache.fallos", CacheJugadores.fallos.sum());
+        contadores.put("cache.desalojos", CacheJugadores.desalojos.sum());
+        contadores.put("cache.escrituras", CacheJugadores.escrituras.sum());
+        contadores.put("cache.recuperados", CacheJugadores.recuperados.sum());
+        contadores.put("pausa.pausadas", partidasEnPausa.sum());
+        contadores.put("pausa.retomadas", partidasRetomadas.sum());
+        contadores.put("pausa.guardadas", (long) EstacionPartidas.cantidad());
+        contadores.put("pausa.bytesFueraDelHeap", EstacionPartidas.bytesFueraDelHeap());
+        contadores.put("resultados.publicados", TuberiaResultados.publicados());
+        contadores.put("resultados.directos", TuberiaResultados.directos.sum());
+        contadores.put("resultados.lotes", TuberiaResultados.lotes.sum());
+        contadores.put("resultados.fallidos", TuberiaResultados.fallidos.sum());
+        contadores.put("archivo.partidas", ArchivoPartidas.anotadas.sum());
+        contadores.put("archivo.bytes", ArchivoPartidas.bytesAnotados.sum());
+        contadores.put("arranque.msPrimerMenu", msPrimerMenu);
+        contadores.put("arranque.clasesPrimerMenu", clasesPrimerMenu);
+        return contadores;
+    }
+
+    @Override
+    public Map<String, Long> getLatencias() {
+        Map<String, Long> latencias = new LinkedHashMap<>();
+        for (Map.Entry<String, HistogramaLatencia> entrada : histogramas().entrySet()) {
+            HistogramaLatencia histograma = entrada.getValue();
+            latencias.put(entrada.getKey() + ".total", histograma.total());
+            latencias.put(entrada.getKey() + ".p50", histograma.percentil(50) / 1000);
+            latencias.put(entrada.getKey() + ".p90", histograma.percentil(90) / 1000);
+            latencias.put(entrada.getKey() + ".p99", histograma.percentil(99) / 1000);
+        }
+        return latencias;
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder(2048);
+        json.append("{\n  \"segundos\": ").append(Math.round(segundosActivo()));
+        json.append(",\n  \"contadores\": {");
+        String separador = "\n    ";
+        for (Map.Entry<String, Long> contador : getContadores().entrySet()) {
+            json.append(separador).append('"').append(contador.getKey()).append("\": ").append(contador.getValue());
+            separador = ",\n    ";
+        }
+        json.append("\n  },\n  \"latenciasNanos\": {");
+        separador = "\n    ";
+        for (Map.Entry<String, HistogramaLatencia> entrada : histogramas().entrySet()) {
+            HistogramaLatencia histograma = entrada.getValue();
+            json.append(separador).append('"').append(entrada.getKey()).append("\": {\"total\": ")
+                    .append(histograma.total())
+                    .append(", \"p50\": ").append(histograma.percentil(50))
+                    .append(", \"p90\": ").append(histograma.percentil(90))
+                    .append(", \"p99\": ").append(histograma.percentil(99))
+                    .append(", \"max\": ").append(histograma.percentil(100)).append('}');
+            separador = ",\n    ";
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+
+    @Override
+    public String exportarJugadores(String carpeta, String formato, int hilos) throws IOException {
+        return new ExportadorJugadores(Paths.get(carpeta), ExportadorJugadores.Formato.desdeNombre(formato), hilos)
+                .exportarLaFeria().resumen();
+    }
+
+    private static Map<String, HistogramaLatencia> histogramas() {
+        Map<String, HistogramaLatencia> histogramas = new LinkedHashMap<>();
+        histogramas.put("menu", Feria.latenciaMenu);
+        for (Juego juego : Juego.values()) {
+            histogramas.put(juego.clave + ".partida", juego.partidas);
+            histogramas.put(juego.clave + ".jugada", juego.jugadas);
+        }
+        histogramas.put("resultados.retraso", TuberiaResultados.retraso);
+        histogramas.put("guardar", guardar);
+        histogramas.put("cargar", cargar);
+        return histogramas;
+    }
+
+    private static double segundosActivo() {
+        return Math.max(1e-9, (System.nanoTime() - ARRANQUE) / 1e9);
+    }
+
+    /**
+     * @return Una duración en la unidad más legible, como "850 µs" o "1.2 s".
+     */
+    private static String duracion(long nanos) {
+        if (nanos < 1_000_000) {
+            return (nanos / 1000) + " µs";
+        } else if (nanos < 1_000_000_000) {
+            return String.format("%.1f ms", nanos / 1e6);
+        }
+        return String.format("%.1f s", nanos / 1e9);
+    }
+}
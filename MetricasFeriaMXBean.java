@@ -0,0 +1,42 @@
+/**
+ *  Vista JMX de las métricas de la feria.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Lo que se ve de {@link MetricasFeria} desde JConsole o cualquier cliente
+ * JMX, con el nombre {@value MetricasFeria#NOMBRE_JMX}, y una operación para
+ * exportar a los jugadores con la feria corriendo. JMX solo acepta
+ * interfaces públicas, por eso esta vive en su propio archivo.
+ */
+public interface MetricasFeriaMXBean {
+    /**
+     * @return Cada contador por nombre, como "conecta4.iniciados".
+     */
+    Map<String, Long> getContadores();
+
+    /**
+     * @return Total y percentiles 50, 90 y 99 de cada latencia, en microsegundos,
+     *         como "conecta4.jugada.p99".
+     */
+    Map<String, Long> getLatencias();
+
+    /**
+     * @return Todas las métricas en JSON.
+     */
+    String getJson();
+
+    /**
+     * Exporta a todos los jugadores sin detener las sesiones (ver {@link ExportadorJugadores}).
+     *
+     * @param carpeta Dónde escribir los archivos.
+     * @param formato "csv", "jsonl" o "columnas".
+     * @param hilos Cuántos hilos (y archivos) como máximo.
+     * @return El resumen: jugadores, filas por segundo y pico del heap.
+     * @throws IOException Si no se pudo escribir algún archivo.
+     */
+    String exportarJugadores(String carpeta, String formato, int hilos) throws IOException;
+}
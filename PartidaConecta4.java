@@ -0,0 +1,222 @@
+/**
+ *  Partida de Conecta 4.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+
+/**
+ * Una partida de Conecta 4 entre dos personas o contra la computadora. Una
+ * vez elegido el modo se guarda en 51 bits: la dificultad y el tablero.
+ * En {@link ArchivoPartidas} se anota la dificultad (2 bits, 0 si juegan dos
+ * personas) y cada columna en 3 bits; el desenlace es el jugador que ganó
+ * (1 o 2), o 0 si fue empate.
+ */
+class PartidaConecta4 extends PartidaFeria {
+    // El tablero, o null mientras se elige el modo
+    private TableroConecta4 tablero;
+
+    // Dificultad de la computadora, o null si juegan dos personas
+    private IAConecta4.Dificultad dificultad;
+
+    PartidaConecta4(Feria sesion) {
+        super(sesion, MetricasFeria.Juego.CONECTA_4);
+    }
+
+    /**
+     * Inicia el juego "Conecta 4". Los jugadores se alternan para colocar sus fichas
+     * en las columnas de un tablero de 6x7. El objetivo es alinear 4 fichas del mismo
+     * jugador en fila, columna o diagonal. El jugador 2 puede ser la computadora.
+     *
+     * @param jugador El jugador que pagó la partida.
+     */
+    @Override
+    void jugar(Feria.Jugador jugador) {
+        // Elegir si el jugador 2 es otra persona o la computadora
+        out.println("1. Dos jugadores");
+        out.println("2. Contra la computadora");
+        out.print("Elige el modo: ");
+        if (leerEntero() == 2) {
+            out.print("Dificultad (1. Fácil, 2. Media, 3. Difícil): ");
+            int nivel = leerEntero();
+            IAConecta4.Dificultad[] niveles = IAConecta4.Dificultad.values();
+            dificultad = niveles[Math.max(0, Math.min(niveles.length - 1, nivel - 1))];
+        }
+        tablero = new TableroConecta4();  // 6 filas y 7 columnas
+        historial.encabezado(dificultad == null ? 0 : dificultad.ordinal() + 1, 2);
+        continuar();
+    }
+
+    @Override
+    void codificar(Bits bits) {
+        if (tablero != null) {
+            bits.escribir(dificultad == null ? 0 : dificultad.ordinal() + 1, 2);
+            tablero.codificar(bits);
+        }
+    }
+
+    @Override
+    void retomar(Feria.Jugador jugador, Bits bits) {
+        int nivel = (int) bits.leer(2);
+        dificultad = nivel == 0 ? null : IAConecta4.Dificultad.values()[nivel - 1];
+        tablero = TableroConecta4.decodificar(bits);
+        continuar();
+    }
+
+    /**
+     * Juega turnos hasta que alguien gane o se llene el tablero.
+     */
+    private void continuar() {
+        boolean juegoTerminado = false;  // Estado del juego
+        long nodosComputadora = 0;
+        long nanosComputadora = 0;
+        int jugadasComputadora = 0;
+
+        // Bucle principal del juego que se repite hasta que termine
+        while (!juegoTerminado) {
+            // Mostrar el tablero actual
+            mostrarTableroConecta4(tablero);
+            int jugadorActual = tablero.jugadorActual();  // 1 para el jugador 1 (X), 2 para el jugador 2 (O)
+
+            int columna;
+            if (dificultad != null && jugadorActual == 2) {
+                // Turno de la computadora
+                IAConecta4.Jugada jugada = IAConecta4.elegir(tablero, dificultad);
+                columna = jugada.columna();
+                nodosComputadora += jugada.nodos();
+                nanosComputadora += jugada.nanos();
+                jugadasComputadora++;
+                out.println("La computadora juega en la columna " + columna + ".");
+            } else {
+                // Solicitar al jugador que seleccione una columna
+                out.print("Jugador " + jugadorActual + ", selecciona una columna (0-6): ");
+                columna = leerEntero();
+            }
+
+            // Verificar si la columna es válida (dentro del rango y no llena)
+            if (!tablero.puedeJugar(columna)) {
+                out.println("Columna inválida o llena. Intenta de nuevo.");
+                continue;
+            }
+
+            // Colocar la ficha en el tablero (cae hasta la fila disponible)
+            tablero.jugar(columna);
+            historial.jugada(columna, 3);
+            jugadaHecha();
+
+            // Verificar si el jugador actual ha ganado
+            if (tablero.ultimoGano()) {
+                mostrarTableroConecta4(tablero);
+                out.println("¡Jugador " + jugadorActual + " gana!");  // Mensaje de victoria
+                historial.desenlace(jugadorActual);
+                juegoTerminado = true;  // Termina el juego
+            } else if (tablero.lleno()) {
+                mostrarTableroConecta4(tablero);
+                out.println("¡Empate! El tablero está lleno.");
+                juegoTerminado = true;
+            }
+        }
+
+        // Métricas de la búsqueda de la computadora en esta partida
+        if (jugadasComputadora > 0) {
+            out.printf("La computadora revisó %,.0f posiciones por segundo y tardó %.1f ms por jugada.%n",
+                    nodosComputadora / Math.max(1e-9, nanosComputadora / 1e9), nanosComputadora / 1e6 / jugadasComputadora);
+        }
+    }
+
+    /**
+     * Muestra el tablero del juego Conecta 4 en la consola.
+     * Utiliza "X" para el jugador 1, "O" para el jugador 2 y "." para las celdas vacías.
+     * 
+     * @param tablero El tablero de juego a mostrar.
+     */
+    void mostrarTableroConecta4(TableroConecta4 tablero) {
+        for (int i = 0; i < 6; i++) {  // Recorrer las filas del tablero
+            for (int j = 0; j < 7; j++) {  // Recorrer las columnas
+                // Mostrar "X" para el jugador 1, "O" para el jugador 2, y "." para las celdas vacías
+                int ficha = tablero.ficha(i, j);
+                lienzo.texto(ficha == 0 ? ". " : (ficha == 1 ? "X " : "O "));
+            }
+            lienzo.linea();  // Salto de línea al final de cada fila
+        }
+        lienzo.mostrar();
+    }
+
+    // Versión del tablero con arreglo int[6][7]. El juego ya usa TableroConecta4;
+    // estos métodos se conservan como referencia para comparar las dos versiones.
+
+    /**
+     * Obtiene la fila disponible en una columna específica.
+     * La fila es la que está más cerca del fondo del tablero (fila 5 es la más baja).
+     * 
+     * @param tablero El tablero de juego.
+     * @param columna La columna donde el jugador desea colocar su ficha.
+     * @return El número de la fila donde la ficha será colocada.
+     */
+    static int obtenerFilaDisponible(int[][] tablero, int columna) {
+        for (int i = 5; i >= 0; i--) {  // Comienza desde la fila más baja (5) y sube
+            if (tablero[i][columna] == 0) {  // Si la celda está vacía
+                return i;  // Retorna la fila disponible
+            }
+        }
+        return -1;  // Columna llena (aunque no debe ocurrir debido a las validaciones previas)
+    }
+
+    /**
+     * Verifica si un jugador ha ganado. Un jugador gana si tiene 4 fichas alineadas
+     * en alguna de las direcciones: horizontal, vertical o diagonal.
+     * 
+     * @param tablero El tablero de juego.
+     * @param fila La fila donde se ha colocado la última ficha.
+     * @param columna La columna donde se ha colocado la última ficha.
+     * @param jugador El jugador actual (1 o 2).
+     * @return `true` si el jugador ha ganado, `false` en caso contrario.
+     */
+    static boolean verificarVictoria(int[][] tablero, int fila, int columna, int jugador) {
+        // Comprobar en las 4 direcciones: horizontal, vertical, diagonal 1 y diagonal 2
+        return verificarDireccion(tablero, fila, columna, jugador, 1, 0) ||  // Horizontal
+               verificarDireccion(tablero, fila, columna, jugador, 0, 1) ||  // Vertical
+               verificarDireccion(tablero, fila, columna, jugador, 1, 1) ||  // Diagonal principal
+               verificarDireccion(tablero, fila, columna, jugador, 1, -1);   // Diagonal inversa
+    }
+
+    /**
+     * Verifica si hay una secuencia de 4 fichas consecutivas en una dirección específica.
+     * 
+     * @param tablero El tablero de juego.
+     * @param fila La fila de la última ficha colocada.
+     * @param columna La columna de la última ficha colocada.
+     * @param jugador El jugador actual (1 o 2).
+     * @param dirX Dirección en el eje X (horizontal o diagonal).
+     * @param dirY Dirección en el eje Y (vertical o diagonal).
+     * @return `true` si se ha encontrado una secuencia de 4 fichas consecutivas en la dirección especificada.
+     */
+    private static boolean verificarDireccion(int[][] tablero, int fila, int columna, int jugador, int dirX, int dirY) {
+        int count = 1;  // Contador de fichas consecutivas (comienza con la última ficha colocada)
+
+        // Comprobar en una dirección (dirX, dirY)
+        for (int i = 1; i < 4; i++) {  // Verificar hasta 3 posiciones en la dirección indicada
+            int x = fila + i * dirX;
+            int y = columna + i * dirY;
+
+            // Verificar si la posición está fuera de los límites o si no tiene la ficha del jugador
+            if (x < 0 || x >= 6 || y < 0 || y >= 7 || tablero[x][y] != jugador) {
+                break;  // Si no es válida, salir del bucle
+            }
+            count++;  // Incrementar el contador
+        }
+
+        // Comprobar en la dirección opuesta (-dirX, -dirY)
+        for (int i = 1; i < 4; i++) {  // Verificar hasta 3 posiciones en la dirección opuesta
+            int x = fila - i * dirX;
+            int y = columna - i * dirY;
+
+            // Verificar si la posición está fuera de los límites o si no tiene la ficha del jugador
+            if (x < 0 || x >= 6 || y < 0 || y >= 7 || tablero[x][y] != jugador) {
+                break;  // Si no es válida, salir del bucle
+            }
+            count++;  // Incrementar el contador
+        }
+
+        return count >= 4;  // Si el contador es 4 o más, el jugador ha ganado
+    }
+}
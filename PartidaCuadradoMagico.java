@@ -0,0 +1,165 @@
+/**
+ *  Partida de Cuadrado Mágico.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+
+/**
+ * Una partida de Cuadrado Mágico, clásico o con un acertijo generado. Una
+ * vez elegido el tamaño se guarda con {@link TableroMagico#codificar(Bits)}.
+ * En {@link ArchivoPartidas} se anota el tamaño (4 bits), si es el clásico
+ * (1 bit) y cada número puesto: la fila y la columna en {@link Bits#ancho}(n)
+ * bits cada una y el número menos 1 en {@link Bits#ancho}(n * n). El
+ * desenlace es 0 si el tablero dejó de tener solución, 1 si se llenó sin ser
+ * mágico y 2 si se ganó.
+ */
+class PartidaCuadradoMagico extends PartidaFeria {
+    // El tablero, o null mientras se elige el tamaño
+    private TableroMagico tablero;
+
+    PartidaCuadradoMagico(Feria sesion) {
+        super(sesion, MetricasFeria.Juego.CUADRADO_MAGICO);
+    }
+
+    /**
+     * Inicia el juego "Cuadrado Mágico". El jugador debe completar el tablero
+     * de manera que la suma de cada fila, cada columna y ambas diagonales sea
+     * igual a la "suma mágica". El tablero puede ser el clásico de 4x4 o un
+     * acertijo generado de 3x3 a 8x8 con una sola solución.
+     * 
+     * @param jugador El jugador que pagó la partida y recibe el premio si gana.
+     */
+    @Override
+    void jugar(Feria.Jugador jugador) {
+        // Elige el tamaño; los acertijos generados ya están listos en segundo plano
+        out.print("Tamaño del cuadrado (" + GeneradorMagico.TAMANO_MINIMO + "-" + GeneradorMagico.TAMANO_MAXIMO
+                + "), o 0 para el clásico de 4x4 con la diagonal 1, 6, 11, 16: ");
+        int tamano = leerEntero();
+        boolean generado = tamano >= GeneradorMagico.TAMANO_MINIMO && tamano <= GeneradorMagico.TAMANO_MAXIMO;
+        if (generado) {
+            tablero = new TableroMagico(GeneradorMagico.tomar(tamano));
+        } else {
+            tablero = new TableroMagico();
+        }
+        historial.encabezado(tablero.tamano(), 4);
+        historial.encabezado(generado ? 0 : 1, 1);
+
+        // Muestra el tablero
+        mostrarTablero(tablero);
+
+        out.println("Completa el tablero para que sea un cuadrado mágico.");
+        continuar(jugador);
+    }
+
+    @Override
+    void codificar(Bits bits) {
+        if (tablero != null) {
+            tablero.codificar(bits);
+        }
+    }
+
+    @Override
+    void retomar(Feria.Jugador jugador, Bits bits) {
+        tablero = TableroMagico.decodificar(bits);
+        mostrarTablero(tablero);
+        continuar(jugador);
+    }
+
+    /**
+     * Pide jugadas hasta que el tablero se llene o ya no tenga solución.
+     *
+     * @param jugador El jugador que recibe el premio si gana.
+     */
+    private void continuar(Feria.Jugador jugador) {
+        int puntuacionJugador = 0;  // Inicializa la puntuación del jugador
+        int ultima = tablero.tamano() - 1;
+        int mayor = tablero.tamano() * tablero.tamano();
+        int anchoFila = Bits.ancho(tablero.tamano());
+        int anchoNumero = Bits.ancho(mayor);
+
+        // Bucle que permite al jugador colocar números hasta completar el tablero
+        while (!tablero.lleno()) {
+            out.print("Ingresa la fila (0-" + ultima + "), o -1 para pedir una pista: ");
+            int fila = leerEntero(); // Lee la fila donde el jugador quiere colocar un número
+
+            // Sugiere una jugada que todavía lleva a un cuadrado mágico
+            if (fila == -1) {
+                int[] pista = tablero.pista();
+                out.println("Pista: coloca el " + pista[2] + " en la fila " + pista[0] + ", columna " + pista[1] + ".");
+                continue;
+            }
+
+            out.print("Ingresa la columna (0-" + ultima + "): ");
+            int columna = leerEntero(); // Lee la columna donde el jugador quiere colocar un número
+
+            // Verifica si la celda existe y está libre
+            if (!tablero.libre(fila, columna)) {
+                out.println("Esta celda no existe, tiene un valor fijo o ya has colocado un número aquí.");
+                continue;  // Si la celda está ocupada, pide al jugador que intente de nuevo
+            }
+
+            out.print("Ingresa el número que deseas colocar (1-" + mayor + "): ");
+            int numero = leerEntero(); // Lee el número que el jugador desea colocar
+
+            // Verifica si el número ingresado es válido (entre 1 y N*N y no repetido)
+            if (!tablero.disponible(numero)) {
+                out.println("Número inválido o ya utilizado. Intenta de nuevo.");
+                continue;  // Si el número es inválido, pide al jugador que intente de nuevo
+            }
+
+            // Coloca el número en el tablero
+            tablero.poner(fila, columna, numero);
+            historial.jugada(fila | columna << anchoFila | (long) (numero - 1) << 2 * anchoFila,
+                    2 * anchoFila + anchoNumero);
+
+            // Muestra el tablero actualizado
+            mostrarTablero(tablero);
+            jugadaHecha();
+
+            // Verifica si todavía es posible completar el cuadrado mágico
+            if (!tablero.esPosible()) {
+                out.println("No es posible completar el cuadrado mágico. ¡Has perdido!");
+                return;  // Termina el juego si no es posible completar el cuadrado mágico
+            }
+        }
+
+        // Si el tablero es un cuadrado mágico, se muestra un mensaje de felicitación
+        if (tablero.esMagico()) {
+            out.println("¡Felicitaciones! Has completado el cuadrado mágico.");
+            puntuacionJugador += 10; // Suma puntos al jugador por completar el cuadrado mágico
+            historial.desenlace(2);
+            otorgar(jugador, puntuacionJugador, Feria.PREMIO_VICTORIA);
+            out.println("Ganaste " + Feria.PREMIO_VICTORIA + " créditos.");
+        } else {
+            out.println("El tablero no es un cuadrado mágico. Mejor suerte la próxima vez.");
+            historial.desenlace(1);
+        }
+
+        // Muestra la puntuación final del jugador en este juego
+        out.println("Tu puntuación en este juego es: " + puntuacionJugador);
+    }
+
+    /**
+     * Muestra el tablero de juego en la consola.
+     * Las celdas vacías se muestran como un guion bajo ("_"), mientras que los números
+     * colocados por el jugador se muestran en su valor respectivo.
+     * 
+     * @param tablero El tablero a mostrar.
+     */
+    void mostrarTablero(TableroMagico tablero) {
+        // Cada casilla mide lo que el número más grande más dos espacios
+        int ancho = Integer.toString(tablero.tamano() * tablero.tamano()).length() + 2;
+        for (int i = 0; i < tablero.tamano(); i++) {
+            for (int j = 0; j < tablero.tamano(); j++) {
+                int celda = tablero.celda(i, j);
+                if (celda == 0) {
+                    lienzo.celda("_", ancho);  // Muestra "_" para celdas vacías
+                } else {
+                    lienzo.celda(celda, ancho);
+                }
+            }
+            lienzo.linea();  // Salto de línea después de cada fila
+        }
+        lienzo.mostrar();
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ *  Una partida de un juego dentro de una sesión de la feria.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.PrintStream;
+
+/**
+ * Base de las partidas: da acceso a la entrada y la salida de la sesión y
+ * cuenta cada jugada en las métricas del juego. Cada {@link JuegoFeria} crea
+ * una por partida y la feria la juega después de cobrarla.
+ */
+public abstract class PartidaFeria {
+    // La sesión donde se juega, su salida y su lienzo
+    final Feria sesion;
+    final PrintStream out;
+    final Lienzo lienzo;
+
+    // Dónde se cuentan las jugadas, o null si el juego no tiene métricas
+    private final MetricasFeria.Juego metrica;
+
+    // Lo que se ganó: quién lo recibe (null si nadie), puntos y créditos
+    private Feria.Jugador ganador;
+    private int puntosGanados;
+    private int creditosGanados;
+
+    // Las jugadas, para ArchivoPartidas; cada juego escribe su encabezado, sus jugadas y su desenlace
+    final ArchivoPartidas.Historial historial = new ArchivoPartidas.Historial();
+
+    /**
+     * @param sesion La sesión donde se juega.
+     * @param metrica Dónde se cuentan las jugadas, o null.
+     */
+    PartidaFeria(Feria sesion, MetricasFeria.Juego metrica) {
+        this.sesion = sesion;
+        this.out = sesion.salida();
+        this.lienzo = sesion.lienzo();
+        this.metrica = metrica;
+    }
+
+    /**
+     * Juega la partida completa; el costo ya se cobró.
+     *
+     * @param jugador El jugador que pagó la partida.
+     */
+    abstract void jugar(Feria.Jugador jugador);
+
+    /**
+     * Escribe en pocos bits lo necesario para seguir la partida donde va. Se
+     * llama cuando la sesión se queda inactiva a media partida, siempre
+     * mientras se espera una respuesta del jugador. Si no escribe nada, la
+     * partida se empieza de nuevo al retomarla; así es de manera predeterminada.
+     *
+     * @param bits Dónde se escribe.
+     */
+    void codificar(Bits bits) {
+    }
+
+    /**
+     * Sigue una partida que se guardó con {@link #codificar(Bits)} y que
+     * escribió algo, y la juega hasta el final.
+     *
+     * @param jugador El jugador que pagó la partida.
+     * @param bits Lo que se escribió.
+     */
+    void retomar(Feria.Jugador jugador, Bits bits) {
+        jugar(jugador);
+    }
+
+    /**
+     * Juega una partida guardada: la sigue donde iba o, si no se guardó nada,
+     * la empieza de nuevo. Una partida retomada no se archiva porque ya no
+     * se tienen las jugadas de antes de la pausa.
+     *
+     * @param jugador El jugador que pagó la partida.
+     * @param datos Lo que escribió {@link #codificar(Bits)}.
+     */
+    final void reanudar(Feria.Jugador jugador, byte[] datos) {
+        if (datos.length == 0) {
+            jugar(jugador);
+        } else {
+            historial.descartar();
+            retomar(jugador, new Bits(datos));
+        }
+    }
+
+    /**
+     * Anota lo que gana un jugador en esta partida. No se aplica aquí: cuando
+     * la partida termina, la feria publica el resultado en
+     * {@link TuberiaResultados}, que lo aplica fuera de la sesión.
+     *
+     * @param jugador Quien recibe los puntos y los créditos.
+     * @param puntos Los puntos ganados.
+     * @param creditos Los créditos ganados.
+     */
+    void otorgar(Feria.Jugador jugador, int puntos, int creditos) {
+        this.ganador = jugador;
+        this.puntosGanados = puntos;
+        this.creditosGanados = creditos;
+    }
+
+    /**
+     * @return Quien recibe lo ganado, o null si no se otorgó nada.
+     */
+    Feria.Jugador ganador() {
+        return ganador;
+    }
+
+    int puntosGanados() {
+        return puntosGanados;
+    }
+
+    int creditosGanados() {
+        return creditosGanados;
+    }
+
+    /**
+     * @return El siguiente número que escribe el jugador.
+     */
+    int leerEntero() {
+        return sesion.leerEntero();
+    }
+
+    /**
+     * @return La siguiente línea que escribe el jugador.
+     */
+    String leerLinea() {
+        return sesion.leerLinea();
+    }
+
+    /**
+     * Registra cuánto tardó en responder la jugada que se acaba de hacer.
+     */
+    void jugadaHecha() {
+        if (metrica != null) {
+            sesion.jugadaHecha(metrica);
+        }
+    }
+}
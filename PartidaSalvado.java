@@ -0,0 +1,96 @@
+/**
+ *  Partida de Salvado.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.*;
+
+/**
+ * Una partida de Salvado: adivinar la silla que se salva del círculo. En
+ * {@link ArchivoPartidas} se anotan el tamaño del círculo y los pasos (20 bits
+ * cada uno) y la respuesta como única jugada (32 bits); el desenlace es 1 si
+ * acertó.
+ */
+class PartidaSalvado extends PartidaFeria {
+    PartidaSalvado(Feria sesion) {
+        super(sesion, MetricasFeria.Juego.SALVADO);
+    }
+
+    /**
+     * Inicia el juego de "Salvado". En este juego, el jugador debe adivinar cuál es la última silla
+     * que quedará ocupada en un círculo de personas (100 si no se elige otro tamaño). A medida que
+     * se eliminan personas, el jugador debe adivinar correctamente la última persona que queda.
+     * 
+     * @param jugador El jugador que pagó la partida y recibe el premio si acierta.
+     */
+    @Override
+    void jugar(Feria.Jugador jugador) {
+        out.println("Bienvenido al juego de Salvado: ¡adivina cuál es la última silla ocupada!");
+
+        // Configuración inicial
+        out.print("Tamaño del círculo (2-" + Feria.MAXIMO_SALVADO + ", 0 para 100): ");
+        int n = leerEntero();  // Total de personas
+        if (n < 2 || n > Feria.MAXIMO_SALVADO) {
+            n = 100;
+        }
+
+        // Elegir un número aleatorio i entre 1 y n (cantidad de pasos a avanzar)
+        int i = sesion.azar().nextInt(n) + 1;  // La cantidad de pasos a avanzar
+        out.println("Círculo de " + n + " personas. Número de pasos a avanzar para eliminar: " + i);
+
+        // Pedir al jugador que adivine la última silla ocupada
+        out.print("Adivina la última silla ocupada (entre 1 y " + n + "): ");
+        int respuestaJugador = leerEntero();
+        historial.encabezado(n, 20);
+        historial.encabezado(i, 20);
+        historial.jugada(respuestaJugador, 32);
+
+        // La silla que se salva se calcula sin simular el círculo
+        long ultimaSilla = Josephus.sobreviviente(n, i);
+
+        // Las primeras eliminaciones se calculan solo las que se muestran
+        PrimitiveIterator.OfInt eliminadas = Josephus.eliminaciones(n, i);
+        StringBuilder orden = new StringBuilder("Orden de eliminación:");
+        for (int j = 0; j < Feria.ELIMINACIONES_MOSTRADAS && j < n - 1; j++) {
+            orden.append(j == 0 ? " " : ", ").append(eliminadas.nextInt());
+        }
+        out.println(n - 1 > Feria.ELIMINACIONES_MOSTRADAS ? orden.append(", ...") : orden);
+        jugadaHecha();
+
+        // Verificar si la respuesta del jugador es correcta
+        if (respuestaJugador == ultimaSilla) {
+            out.println("¡Correcto! La silla que se salva es la número " + ultimaSilla + ".");
+            otorgar(jugador, 0, Feria.PREMIO_VICTORIA);
+            historial.desenlace(1);
+            out.println("Ganaste " + Feria.PREMIO_VICTORIA + " créditos.");
+        } else {
+            out.println("La silla que se salva es la número " + ultimaSilla + ".");
+        }
+    }
+
+    // Versión anterior de Salvado, que quitaba personas de una lista. El juego ya usa
+    // Josephus; se conserva como referencia para comparar las dos versiones.
+
+    /**
+     * Simula el círculo quitando personas de una lista hasta que queda una.
+     *
+     * @param n Total de personas.
+     * @param i Cantidad de pasos a avanzar.
+     * @return La silla que se salva.
+     */
+    static int ultimaSillaConLista(int n, int i) {
+        int indiceEliminado = 0;  // Comenzamos desde la primera persona
+        List<Integer> listaPersonas = new ArrayList<>();
+        for (int j = 0; j < n; j++) {
+            listaPersonas.add(j + 1);  // Llenar la lista con las personas
+        }
+
+        // Proceso de eliminación de personas
+        while (listaPersonas.size() > 1) {
+            // Calcular el índice de la persona a eliminar
+            indiceEliminado = (indiceEliminado + i - 1) % listaPersonas.size();
+            listaPersonas.remove(indiceEliminado);  // Eliminar la persona en el índice calculado
+        }
+        return listaPersonas.get(0);
+    }
+}
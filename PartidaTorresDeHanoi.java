@@ -0,0 +1,367 @@
+/**
+ *  Partida de Torres de Hanoi.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Una partida de Torres de Hanoi, con tres postes o con más. Una vez que el
+ * jugador dio su nombre se guarda con el poste de cada disco, los movimientos
+ * que lleva y el nombre de quien recibe los puntos. En {@link ArchivoPartidas}
+ * se anotan los discos (7 bits), los postes (4 bits) y cada movimiento como
+ * origen y destino en {@link Bits#ancho}(postes) bits cada uno: 4 bits por
+ * movimiento con 3 o 4 postes. El desenlace es 1 si se terminó y 0 si el
+ * jugador se rindió.
+ */
+class PartidaTorresDeHanoi extends PartidaFeria {
+    // Las torres de tres postes o las de más postes; null mientras se configura la partida
+    private EstadoHanoi estado;
+    private EstadoHanoiPostes estadoPostes;
+
+    // Quién recibe los puntos y cuántos movimientos lleva
+    private Feria.Jugador jugador;
+    private long movimientosRealizados;
+
+    // Con más postes: si el jugador sigue la solución de referencia
+    private boolean enReferencia;
+
+    PartidaTorresDeHanoi(Feria sesion) {
+        super(sesion, MetricasFeria.Juego.TORRES_DE_HANOI);
+    }
+
+    /**
+     * Inicia el juego de Torres de Hanoi. En este juego, el objetivo es mover todos los discos
+     * de la torre A (izquierda) a la torre C (derecha) siguiendo unas reglas:
+     * 1. Solo se puede mover un disco a la vez.
+     * 2. Un disco más grande no puede colocarse sobre un disco más pequeño.
+     * 3. El número mínimo de movimientos es 2^n - 1 para n discos (63 con los 6 de siempre).
+     * Con más de tres postes se juega la variante de {@link #jugarHanoiVariosPostes(int, int)}.
+     *
+     * @param pagador El jugador que pagó la partida; los puntos son para el nombre que se escriba en el juego.
+     */
+    @Override
+    void jugar(Feria.Jugador pagador) {
+        out.println("Bienvenido al juego de Torres de Hanoi.");
+        out.print("¿Con cuántos postes quieres jugar? (" + FrameStewart.MINIMO_POSTES + "-" + FrameStewart.MAXIMO_POSTES
+                + ", 0 para 3): ");
+        int postes = leerEntero();
+        if (postes < FrameStewart.MINIMO_POSTES || postes > FrameStewart.MAXIMO_POSTES) {
+            postes = 3;
+        }
+        int maximoDiscos = postes == 3 ? EstadoHanoi.MAXIMO_DISCOS : FrameStewart.MAXIMO_DISCOS;
+        out.print("¿Con cuántos discos quieres jugar? (1-" + maximoDiscos + ", 0 para 6): ");
+        int discos = leerEntero();
+        if (discos < 1 || discos > maximoDiscos) {
+            discos = 6;
+        }
+        leerLinea(); // Limpiar el buffer
+        if (postes > 3) {
+            jugarHanoiVariosPostes(discos, postes);
+            return;
+        }
+        out.println("El objetivo es mover los discos de la torre A (izquierda) a la torre C (derecha).");
+
+        EstadoHanoi estado = new EstadoHanoi(discos);
+        out.println("Reglas:");
+        out.println("- Puedes mover solo un disco a la vez.");
+        out.println("- Un disco más grande no puede colocarse sobre uno más pequeño.");
+        out.println("- El número mínimo de movimientos es " + estado.minimoDesdeInicio() + " si haces las jugadas correctas.");
+
+        out.print("Ingresa tu nombre: ");
+        String nombreJugador = leerLinea();
+
+        // Verificar si el jugador está registrado
+        jugador = Feria.buscarJugador(nombreJugador);
+        if (jugador == null) {
+            out.println("Jugador no registrado. Primero debes registrarte.");
+            return;
+        }
+        this.estado = estado;
+        anotarEncabezado(discos, 3);
+        continuarTresPostes();
+    }
+
+    @Override
+    void codificar(Bits bits) {
+        if (jugador == null) {
+            return;
+        }
+        byte[] nombre = jugador.getNombre().getBytes(StandardCharsets.UTF_8);
+        bits.escribir(nombre.length, 6);
+        for (byte letra : nombre) {
+            bits.escribir(letra, 8);
+        }
+        bits.escribir(movimientosRealizados, 64);
+        if (estado != null) {
+            bits.escribir(0, 1);
+            estado.codificar(bits);
+        } else {
+            bits.escribir(1, 1).escribir(enReferencia ? 1 : 0, 1);
+            estadoPostes.codificar(bits);
+        }
+    }
+
+    @Override
+    void retomar(Feria.Jugador pagador, Bits bits) {
+        byte[] nombre = new byte[(int) bits.leer(6)];
+        for (int i = 0; i < nombre.length; i++) {
+            nombre[i] = (byte) bits.leer(8);
+        }
+        jugador = Feria.buscarJugador(new String(nombre, StandardCharsets.UTF_8));
+        if (jugador == null) {
+            jugador = pagador;
+        }
+        movimientosRealizados = bits.leer(64);
+        if (bits.leer(1) == 0) {
+            estado = EstadoHanoi.decodificar(bits);
+            continuarTresPostes();
+        } else {
+            enReferencia = bits.leer(1) == 1;
+            estadoPostes = EstadoHanoiPostes.decodificar(bits);
+            continuarVariosPostes();
+        }
+    }
+
+    /**
+     * Pide movimientos con tres postes hasta que el jugador termine o se rinda.
+     */
+    private void continuarTresPostes() {
+        // Jugamos hasta que el juego se complete
+        while (!estado.completo(2)) {
+            mostrarEstado(estado);
+
+            // El jugador hace un movimiento, pide una pista o se rinde
+            out.print("Selecciona el poste de origen (A, B, C), P para una pista o S para rendirte: ");
+            String origen = leerLinea().trim().toUpperCase();
+            if (origen.equals("S")) {
+                out.println("Te rendiste. Te faltaban al menos " + estado.distancia(2) + " movimientos.");
+                return;
+            }
+            if (origen.equals("P")) {
+                EstadoHanoi.Movimiento pista = estado.pista(2);
+                out.println("Pista: mueve el disco " + (pista.disco() + 1) + " de " + nombreTorre(pista.origen())
+                        + " a " + nombreTorre(pista.destino()) + ".");
+                continue;
+            }
+            out.print("Selecciona el poste de destino (A, B, C): ");
+            String destino = leerLinea().trim().toUpperCase();
+
+            if (moverDisco(estado, origen, destino)) {
+                movimientosRealizados++;
+                historial.jugada(obtenerTorre(origen, 3) | obtenerTorre(destino, 3) << 2, 4);
+                jugadaHecha();
+            }
+        }
+        out.println("¡Felicidades, has completado el juego de Torres de Hanoi!");
+        historial.desenlace(1);
+
+        // Determinamos la puntuación
+        int puntos = calcularPuntos(movimientosRealizados, estado.minimoDesdeInicio());
+        otorgar(jugador, puntos, 0);
+        out.println("Lo hiciste en " + movimientosRealizados + " movimientos (el mínimo es " + estado.minimoDesdeInicio() + ").");
+        out.println("¡Juego completado! Tu puntuación es: " + puntos);
+    }
+
+    /**
+     * Verifica que el movimiento elegido sea válido antes de realizarlo.
+     * 
+     * @param estado Las torres.
+     * @param origen El nombre de la torre de origen (A, B o C).
+     * @param destino El nombre de la torre de destino (A, B o C).
+     * @return `true` si el disco se movió.
+     */
+    boolean moverDisco(EstadoHanoi estado, String origen, String destino) {
+        int torreOrigen = obtenerTorre(origen, 3);
+        int torreDestino = obtenerTorre(destino, 3);
+
+        // Validamos que el movimiento sea posible
+        if (torreOrigen < 0 || torreDestino < 0 || torreOrigen == torreDestino) {
+            out.println("Elige dos torres distintas entre A, B y C.");
+        } else if (estado.enPoste(torreOrigen) == 0) {
+            out.println("La torre de origen está vacía. Elige otra torre.");
+        } else if (!estado.puedeMover(torreOrigen, torreDestino)) {
+            out.println("No puedes colocar un disco más grande sobre uno más pequeño.");
+        } else {
+            // Realizamos el movimiento
+            estado.mover(torreOrigen, torreDestino);
+            out.println("Movimiento exitoso: Disco movido de " + origen + " a " + destino);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Anota en el historial con cuántos discos y postes se juega.
+     */
+    private void anotarEncabezado(int discos, int postes) {
+        historial.encabezado(discos, 7);
+        historial.encabezado(postes, 4);
+    }
+
+    /**
+     * Obtiene el número de la torre correspondiente a un nombre (A, B, C...).
+     * 
+     * @param nombreTorre El nombre de la torre (A, B, C...).
+     * @param postes Cuántas torres hay.
+     * @return El número de la torre desde 0, o -1 si el nombre no es válido.
+     */
+    private static int obtenerTorre(String nombreTorre, int postes) {
+        if (nombreTorre.length() != 1) {
+            return -1;
+        }
+        int torre = nombreTorre.charAt(0) - 'A';
+        return torre >= 0 && torre < postes ? torre : -1;
+    }
+
+    /**
+     * @return El nombre (A, B o C) de una torre.
+     */
+    private static String nombreTorre(int torre) {
+        return String.valueOf((char) ('A' + torre));
+    }
+
+    /**
+     * Muestra el estado actual de las tres torres en la consola y cuánto falta,
+     * como mínimo, para terminar.
+     * 
+     * @param estado Las torres.
+     */
+    private void mostrarEstado(EstadoHanoi estado) {
+        lienzo.texto("Estado actual:").linea();
+        lienzo.texto("Torre A: ").texto(estado.describir(0)).linea();
+        lienzo.texto("Torre B: ").texto(estado.describir(1)).linea();
+        lienzo.texto("Torre C: ").texto(estado.describir(2)).linea();
+        lienzo.texto("Movimientos mínimos para terminar desde aquí: ").numero(estado.distancia(2)).linea();
+        lienzo.linea();
+        lienzo.mostrar();
+    }
+
+    /**
+     * Muestra el estado actual de todas las torres de la variante con más postes.
+     * 
+     * @param estado Las torres.
+     */
+    private void mostrarEstado(EstadoHanoiPostes estado) {
+        lienzo.texto("Estado actual:").linea();
+        for (int poste = 0; poste < estado.postes(); poste++) {
+            lienzo.texto("Torre ").texto(nombreTorre(poste)).texto(": ").texto(estado.describir(poste)).linea();
+        }
+        lienzo.linea();
+        lienzo.mostrar();
+    }
+
+    /**
+     * Variante de Torres de Hanoi con más de tres postes. Hay que pasar todos los
+     * discos de la torre A a la última; el mínimo de movimientos sale de la tabla
+     * de Frame-Stewart y la pista sigue su solución de referencia mientras el
+     * jugador no se aparte de ella.
+     *
+     * @param discos Cuántos discos.
+     * @param postes Cuántas torres, de 4 a 8.
+     */
+    private void jugarHanoiVariosPostes(int discos, int postes) {
+        EstadoHanoiPostes estado = new EstadoHanoiPostes(discos, postes);
+        String ultima = nombreTorre(postes - 1);
+        out.println("El objetivo es mover los discos de la torre A a la torre " + ultima + ".");
+        out.println("El número mínimo de movimientos es " + estado.minimoDesdeInicio() + " si haces las jugadas correctas.");
+
+        out.print("Ingresa tu nombre: ");
+        jugador = Feria.buscarJugador(leerLinea());
+        if (jugador == null) {
+            out.println("Jugador no registrado. Primero debes registrarte.");
+            return;
+        }
+
+        estadoPostes = estado;
+        enReferencia = true;
+        anotarEncabezado(discos, postes);
+        continuarVariosPostes();
+    }
+
+    /**
+     * Pide movimientos con más de tres postes hasta que el jugador termine o se rinda.
+     */
+    private void continuarVariosPostes() {
+        EstadoHanoiPostes estado = estadoPostes;
+        int postes = estado.postes();
+        int anchoPoste = Bits.ancho(postes);
+        String ultima = nombreTorre(postes - 1);
+
+        // Solución de referencia, que se recorre mientras el jugador la siga; se
+        // adelanta si la partida se retomó
+        Iterator<EstadoHanoi.Movimiento> referencia = FrameStewart.solucion(estado.discos(), postes);
+        EstadoHanoi.Movimiento siguiente = referencia.next();
+        for (long hechos = 0; enReferencia && hechos < movimientosRealizados; hechos++) {
+            siguiente = referencia.hasNext() ? referencia.next() : null;
+        }
+
+        while (!estado.completo()) {
+            mostrarEstado(estado);
+
+            out.print("Selecciona el poste de origen (A-" + ultima + "), P para una pista o S para rendirte: ");
+            String origen = leerLinea().trim().toUpperCase();
+            if (origen.equals("S")) {
+                out.println("Te rendiste después de " + movimientosRealizados + " movimientos.");
+                return;
+            }
+            if (origen.equals("P")) {
+                if (enReferencia) {
+                    out.println("Pista: mueve el disco " + (siguiente.disco() + 1) + " de " + nombreTorre(siguiente.origen())
+                            + " a " + nombreTorre(siguiente.destino()) + ".");
+                } else {
+                    out.println("Ya te apartaste de la solución de referencia; no hay pista.");
+                }
+                continue;
+            }
+            out.print("Selecciona el poste de destino (A-" + ultima + "): ");
+            String destino = leerLinea().trim().toUpperCase();
+
+            int torreOrigen = obtenerTorre(origen, postes);
+            int torreDestino = obtenerTorre(destino, postes);
+            if (torreOrigen < 0 || torreDestino < 0 || torreOrigen == torreDestino) {
+                out.println("Elige dos torres distintas entre A y " + ultima + ".");
+            } else if (estado.vacio(torreOrigen)) {
+                out.println("La torre de origen está vacía. Elige otra torre.");
+            } else if (!estado.puedeMover(torreOrigen, torreDestino)) {
+                out.println("No puedes colocar un disco más grande sobre uno más pequeño.");
+            } else {
+                estado.mover(torreOrigen, torreDestino);
+                movimientosRealizados++;
+                historial.jugada(torreOrigen | torreDestino << anchoPoste, 2 * anchoPoste);
+                jugadaHecha();
+                out.println("Movimiento exitoso: Disco movido de " + origen + " a " + destino);
+                if (enReferencia && siguiente.origen() == torreOrigen && siguiente.destino() == torreDestino) {
+                    siguiente = referencia.hasNext() ? referencia.next() : null;
+                } else {
+                    enReferencia = false;
+                }
+            }
+        }
+        out.println("¡Felicidades, has completado el juego de Torres de Hanoi!");
+        historial.desenlace(1);
+
+        int puntos = calcularPuntos(movimientosRealizados, estado.minimoDesdeInicio());
+        otorgar(jugador, puntos, 0);
+        out.println("Lo hiciste en " + movimientosRealizados + " movimientos (el mínimo es " + estado.minimoDesdeInicio() + ").");
+        out.println("¡Juego completado! Tu puntuación es: " + puntos);
+    }
+
+    /**
+     * Calcula la puntuación del jugador comparando sus movimientos con el mínimo.
+     * 
+     * @param movimientosRealizados El número de movimientos realizados por el jugador.
+     * @param minimo El número mínimo de movimientos para esta cantidad de discos.
+     * @return La puntuación del jugador.
+     */
+    static int calcularPuntos(long movimientosRealizados, long minimo) {
+        if (movimientosRealizados == minimo) {
+            return 10;  // Puntuación perfecta
+        } else if (movimientosRealizados <= minimo + minimo / 6) {
+            return 5;   // Puntuación decente: hasta un sexto más del mínimo (73 con 6 discos)
+        } else {
+            return 2;   // Puntuación mínima
+        }
+    }
+}
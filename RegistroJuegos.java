@@ -0,0 +1,98 @@
+/**
+ *  Registro de los juegos del menú.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Busca los juegos con {@link ServiceLoader} la primera vez que alguien abre
+ * el menú de juegos (no al arrancar la feria) y llama a
+ * {@link JuegoFeria#preparar()} de cada uno la primera vez que se elige.
+ *
+ * Si no se encuentra META-INF/services/JuegoFeria (por ejemplo, si las clases
+ * se compilaron a otra carpeta sin copiarlo) se usan los juegos que trae la
+ * feria, en el orden de siempre.
+ */
+final class RegistroJuegos {
+    /**
+     * Un juego registrado y si ya se preparó.
+     */
+    private static final class Registrado {
+        final JuegoFeria juego;
+        volatile boolean preparado;
+
+        Registrado(JuegoFeria juego) {
+            this.juego = juego;
+        }
+    }
+
+    // Se cargan al usarse por primera vez, cuando la JVM inicializa esta clase
+    private static final class Cargados {
+        static final List<Registrado> JUEGOS = cargar();
+    }
+
+    private RegistroJuegos() {
+    }
+
+    /**
+     * @return Cuántos juegos hay en el menú.
+     */
+    static int cantidad() {
+        return Cargados.JUEGOS.size();
+    }
+
+    /**
+     * @param opcion La opción del menú de juegos, desde 1.
+     * @return El juego, o null si la opción no existe.
+     */
+    static JuegoFeria juego(int opcion) {
+        List<Registrado> juegos = Cargados.JUEGOS;
+        return opcion >= 1 && opcion <= juegos.size() ? juegos.get(opcion - 1).juego : null;
+    }
+
+    /**
+     * Devuelve el juego elegido y, si es la primera vez, lo prepara antes.
+     *
+     * @param opcion La opción del menú de juegos, desde 1.
+     * @return El juego listo para crear partidas, o null si la opción no existe.
+     */
+    static JuegoFeria elegir(int opcion) {
+        List<Registrado> juegos = Cargados.JUEGOS;
+        if (opcion < 1 || opcion > juegos.size()) {
+            return null;
+        }
+        Registrado registrado = juegos.get(opcion - 1);
+        if (!registrado.preparado) {
+            synchronized (registrado) {
+                if (!registrado.preparado) {
+                    registrado.juego.preparar();
+                    registrado.preparado = true;
+                }
+            }
+        }
+        return registrado.juego;
+    }
+
+    private static List<Registrado> cargar() {
+        List<Registrado> juegos = new ArrayList<>();
+        try {
+            for (JuegoFeria juego : ServiceLoader.load(JuegoFeria.class, RegistroJuegos.class.getClassLoader())) {
+                juegos.add(new Registrado(juego));
+            }
+        } catch (ServiceConfigurationError e) {
+            System.out.println("No se pudieron cargar los juegos: " + e.getMessage());
+            juegos.clear();
+        }
+        if (juegos.isEmpty()) {
+            juegos.add(new Registrado(new JuegosFeria.CuadradoMagico()));
+            juegos.add(new Registrado(new JuegosFeria.Conecta4()));
+            juegos.add(new Registrado(new JuegosFeria.Salvado()));
+            juegos.add(new Registrado(new JuegosFeria.TorresDeHanoi()));
+        }
+        return List.copyOf(juegos);
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ *  Modo sin consola que repite guiones de entrada contra la feria.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Ejecuta sesiones completas de la feria (el menú y los juegos reales) con la
+ * entrada tomada de archivos de guion: cada línea del guion es lo que el
+ * jugador escribiría en la consola. Cada sesión corre en su propio hilo
+ * virtual y su salida no se imprime; solo se le saca una suma de
+ * verificación, así que las sesiones van tan rápido como da el procesador.
+ *
+ * Las sesiones no tocan los jugadores guardados: la repetición trabaja en una
+ * carpeta temporal, con jugadores, bitácora y archivo de partidas propios, y
+ * la borra al terminar. Antes de medir, cada guion se corre
+ * {@link #CORRIDAS_AISLADAS} veces, una tras otra y cada una sin jugadores,
+ * y se cuentan cuántas salidas distintas dio: un guion que no depende del azar
+ * debe dar siempre la misma. Con `--salida carpeta` se guarda la salida de la
+ * primera de esas corridas. Después se ejecutan las repeticiones todas a la
+ * vez y se imprime cuántas sesiones por segundo se ejecutaron; estas comparten
+ * los jugadores, como las sesiones del servidor, así que sus salidas no se
+ * comparan.
+ */
+class RepeticionFeria {
+    // Corridas de cada guion que empiezan sin jugadores, para comparar sus salidas
+    static final int CORRIDAS_AISLADAS = 2;
+
+    private final List<Path> guiones;
+    private final int veces;
+    private final Path carpetaSalida;
+
+    // Guiones ya leídos, para no tocar el disco en cada sesión
+    private final List<byte[]> contenidos = new ArrayList<>();
+
+    // Sumas de verificación de las salidas de cada guion
+    private final List<Set<Long>> salidas = new ArrayList<>();
+
+    private final LongAdder incompletas = new LongAdder();
+
+    /**
+     * @param guiones Los archivos de guion.
+     * @param veces Cuántas veces se repite cada guion.
+     * @param carpetaSalida Donde guardar la salida de la primera repetición, o `null`.
+     */
+    RepeticionFeria(List<Path> guiones, int veces, Path carpetaSalida) {
+        this.guiones = guiones;
+        this.veces = veces;
+        this.carpetaSalida = carpetaSalida;
+    }
+
+    /**
+     * Lee las opciones de la línea de comandos: `[--veces N] [--salida carpeta] guion...`.
+     *
+     * @param args Los argumentos del programa.
+     * @param desde Dónde empiezan las opciones de la repetición.
+     * @return La repetición configurada.
+     */
+    static RepeticionFeria desdeArgumentos(String[] args, int desde) {
+        List<Path> guiones = new ArrayList<>();
+        int veces = 1;
+        Path carpetaSalida = null;
+        for (int i = desde; i < args.length; i++) {
+            if (args[i].equals("--veces") && i + 1 < args.length) {
+                veces = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--salida") && i + 1 < args.length) {
+                carpetaSalida = Paths.get(args[++i]);
+            } else {
+                guiones.add(Paths.get(args[i]));
+            }
+        }
+        if (guiones.isEmpty()) {
+            throw new IllegalArgumentException("Uso: java Feria --repetir [--veces N] [--salida carpeta] guion...");
+        }
+        return new RepeticionFeria(guiones, veces, carpetaSalida);
+    }
+
+    /**
+     * Ejecuta todas las sesiones y espera a que terminen.
+     *
+     * @throws IOException Si no se puede leer un guion o escribir una salida.
+     */
+    void ejecutar() throws IOException {
+        for (Path guion : guiones) {
+            contenidos.add(Files.readAllBytes(guion));
+            salidas.add(new HashSet<>());
+        }
+        if (carpetaSalida != null) {
+            Files.createDirectories(carpetaSalida);
+        }
+        Path temporal = Files.createTempDirectory("feria-repeticion");
+        try {
+            verificar(temporal);
+            medir(temporal);
+        } finally {
+            Feria.cerrarBitacora();
+            borrar(temporal);
+        }
+    }
+
+    /**
+     * Corre cada guion varias veces, una tras otra y cada una sin jugadores, y
+     * junta las sumas de verificación de sus salidas.
+     */
+    private void verificar(Path temporal) throws IOException {
+        int corrida = 0;
+        for (int g = 0; g < guiones.size(); g++) {
+            for (int vez = 0; vez < CORRIDAS_AISLADAS; vez++) {
+                Feria.empezarSinJugadores(temporal.resolve("aislada-" + corrida++));
+                if (vez == 0 && carpetaSalida != null) {
+                    Path archivo = carpetaSalida.resolve(guiones.get(g).getFileName() + ".salida");
+                    try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(archivo))) {
+                        salidas.get(g).add(repetir(g, salida));
+                    }
+                } else {
+                    salidas.get(g).add(repetir(g, OutputStream.nullOutputStream()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Ejecuta todas las repeticiones a la vez sobre los mismos jugadores y
+     * muestra cuántas sesiones por segundo se ejecutaron.
+     */
+    private void medir(Path temporal) throws IOException {
+        Feria.empezarSinJugadores(temporal.resolve("repeticiones"));
+        incompletas.reset();
+        long inicio = System.nanoTime();
+        try (ExecutorService sesiones = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int vez = 0; vez < veces; vez++) {
+                for (int g = 0; g < guiones.size(); g++) {
+                    int guion = g;
+                    sesiones.submit(() -> repetir(guion, OutputStream.nullOutputStream()));
+                }
+            }
+        }
+        long nanos = System.nanoTime() - inicio;
+
+        long total = (long) veces * guiones.size();
+        System.out.printf("Repetidas %d sesiones en %.0f ms (%.0f sesiones/s); %d se quedaron sin guion antes de salir.%n",
+                total, nanos / 1e6, total / (nanos / 1e9), incompletas.sum());
+        for (int g = 0; g < guiones.size(); g++) {
+            System.out.printf("  %s: %d salida(s) distinta(s) en %d corridas sin jugadores%n",
+                    guiones.get(g), salidas.get(g).size(), CORRIDAS_AISLADAS);
+        }
+        TuberiaResultados.vaciar();
+        System.out.println(MetricasFeria.resumen());
+    }
+
+    /**
+     * Borra la carpeta temporal con todo lo que tiene.
+     */
+    private static void borrar(Path carpeta) throws IOException {
+        try (Stream<Path> archivos = Files.walk(carpeta)) {
+            for (Path archivo : archivos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta una sesión con el guion como entrada.
+     *
+     * @param guion El índice del guion.
+     * @param destino A donde va la salida, además de la suma de verificación.
+     * @return La suma de verificación de la salida.
+     */
+    private long repetir(int guion, OutputStream destino) {
+        CheckedOutputStream suma = new CheckedOutputStream(destino, new CRC32C());
+        PrintStream salida = new PrintStream(new BufferedOutputStream(suma), false, StandardCharsets.UTF_8);
+        try {
+            new Feria(new ByteArrayInputStream(contenidos.get(guion)), salida).ejecutar();
+        } catch (NoSuchElementException e) {
+            // El guion se acabó antes de elegir "Guardar y salir"
+            incompletas.increment();
+        }
+        salida.flush();
+        return suma.getChecksum().getValue();
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ *  Servidor TCP que atiende muchas sesiones de la feria al mismo tiempo.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Acepta conexiones y ejecuta el menú de la feria de cada una en su propio
+ * hilo virtual, así un solo proceso puede atender miles de jugadores.
+ * Cada cierto tiempo imprime cuántas sesiones por segundo se abren, el
+ * percentil 99 de la latencia del menú, la velocidad de búsqueda de la
+ * computadora en Conecta 4, cuántos acertijos de Cuadrado Mágico se generan,
+ * cuánto se escribe por cada tablero dibujado y las métricas de {@link MetricasFeria}.
+ *
+ * Una sesión que pasa {@link #SEGUNDOS_INACTIVIDAD} segundos sin recibir nada
+ * se suelta: si había una partida a medias queda guardada en
+ * {@link EstacionPartidas}, y la conexión pasa a la {@link SalaDeEspera}, donde
+ * un solo hilo espera la siguiente línea de todas las conexiones en pausa con
+ * un {@link Selector}. Al llegar, la conexión vuelve a tener un hilo virtual
+ * con una sesión nueva que retoma la partida. Mientras tanto la conexión no
+ * conserva el menú, el lector de la entrada, el tablero ni su hilo (la pila de
+ * un hilo virtual detenido ocupa varios KB del heap); solo el canal.
+ */
+class ServidorFeria {
+    // Puerto que se usa si no se indica otro
+    static final int PUERTO_PREDETERMINADO = 5000;
+
+    // Cada cuántos segundos se imprime el reporte de carga
+    private static final int SEGUNDOS_REPORTE = 10;
+
+    // Conexiones que pueden esperar a ser aceptadas
+    private static final int COLA_CONEXIONES = 1024;
+
+    // Segundos sin recibir nada tras los que se suelta la sesión (se cambia con -Dferia.inactividad=...)
+    static final int SEGUNDOS_INACTIVIDAD = Integer.getInteger("feria.inactividad", 60);
+
+    private final int puerto;
+
+    // Contadores de sesiones abiertas y cerradas
+    private final LongAdder sesionesIniciadas = new LongAdder();
+    private final LongAdder sesionesTerminadas = new LongAdder();
+
+    // Conexiones cuya sesión está en pausa esperando la siguiente línea
+    private final LongAdder sesionesEnPausa = new LongAdder();
+
+    // Se crea al abrir el puerto
+    private SalaDeEspera salaDeEspera;
+
+    /**
+     * @param puerto El puerto TCP donde se esperan las conexiones.
+     */
+    ServidorFeria(int puerto) {
+        this.puerto = puerto;
+    }
+
+    /**
+     * Acepta conexiones hasta que el proceso termine.
+     *
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    void ejecutar() throws IOException {
+        ScheduledExecutorService reportes = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "reporte-feria");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        reportes.scheduleAtFixedRate(new Reporte(), SEGUNDOS_REPORTE, SEGUNDOS_REPORTE, TimeUnit.SECONDS);
+
+        try (ServerSocketChannel servidor = ServerSocketChannel.open();
+             ExecutorService sesiones = Executors.newVirtualThreadPerTaskExecutor()) {
+            servidor.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            servidor.bind(new InetSocketAddress(puerto), COLA_CONEXIONES);
+            salaDeEspera = new SalaDeEspera(sesiones);
+            System.out.println("Feria escuchando en el puerto " + puerto);
+            while (true) {
+                SocketChannel conexion = servidor.accept();
+                sesionesIniciadas.increment();
+                sesiones.submit(() -> atender(conexion, null));
+            }
+        } finally {
+            reportes.shutdownNow();
+        }
+    }
+
+    /**
+     * Ejecuta una sesión de la feria sobre una conexión, hasta que el jugador
+     * sale o se queda inactivo; en ese caso la conexión pasa a la sala de
+     * espera y el hilo termina.
+     *
+     * @param conexion La conexión del jugador, en modo bloqueante.
+     * @param partidaEnPausa La partida que hay que retomar, o null.
+     */
+    private void atender(SocketChannel conexion, EstacionPartidas.Boleto partidaEnPausa) {
+        boolean enPausa = false;
+        try {
+            Socket socket = conexion.socket();
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(SEGUNDOS_INACTIVIDAD * 1000);
+            try {
+                jugar(new EntradaConEspera(socket.getInputStream()), socket.getOutputStream(), partidaEnPausa);
+                return;
+            } catch (Feria.SesionInactiva e) {
+                partidaEnPausa = e.partidaEnPausa();
+            }
+
+            // La sesión ya se soltó; la conexión espera a que el jugador vuelva sin hilo
+            String aviso = "\nSesión en pausa por inactividad. Escribe cualquier cosa para "
+                    + (partidaEnPausa != null ? "seguir con tu partida.\n" : "volver al menú.\n");
+            socket.getOutputStream().write(aviso.getBytes(StandardCharsets.UTF_8));
+            salaDeEspera.dejar(conexion, partidaEnPausa);
+            enPausa = true;
+        } catch (IOException | NoSuchElementException e) {
+            // El jugador cerró la conexión o envió algo que no se pudo leer; la sesión termina
+        } finally {
+            if (!enPausa) {
+                terminar(conexion);
+            }
+        }
+    }
+
+    /**
+     * Cierra una conexión que ya no tiene sesión ni está en pausa.
+     */
+    private void terminar(SocketChannel conexion) {
+        try {
+            conexion.close();
+        } catch (IOException e) {
+            // Ya estaba cerrada
+        }
+        sesionesTerminadas.increment();
+    }
+
+    /**
+     * Crea una sesión sobre la conexión, retoma la partida en pausa si hay una
+     * y sigue con el menú. La sesión vive solo dentro de este método.
+     *
+     * @param entrada La entrada de la conexión.
+     * @param salidaConexion La salida de la conexión, sin búfer.
+     * @param partidaEnPausa La partida que hay que retomar, o null.
+     */
+    private static void jugar(InputStream entrada, OutputStream salidaConexion,
+            EstacionPartidas.Boleto partidaEnPausa) {
+        PrintStream salida = new PrintStream(new BufferedOutputStream(salidaConexion), false, StandardCharsets.UTF_8);
+        Feria sesion = new Feria(entrada, salida);
+        if (partidaEnPausa != null) {
+            sesion.retomarPartida(partidaEnPausa);
+        }
+        sesion.ejecutar();
+    }
+
+    /**
+     * Una conexión en pausa y la partida que se retoma al volver, o null.
+     */
+    private record Pausa(SocketChannel conexion, EstacionPartidas.Boleto partidaEnPausa) {
+    }
+
+    /**
+     * Las conexiones en pausa, sin hilo cada una: un solo hilo las espera a
+     * todas con un {@link Selector}, lee y descarta lo que llega hasta el fin
+     * de la línea, una letra a la vez para no tomar nada de lo que sigue, y
+     * entonces devuelve la conexión, otra vez bloqueante, a un hilo virtual de
+     * {@link #atender}. Las conexiones que se cierran en pausa terminan aquí.
+     */
+    private final class SalaDeEspera implements Runnable {
+        private final Selector selector;
+        private final ExecutorService sesiones;
+
+        // Conexiones que llegan de las sesiones; se registran en el hilo de la sala
+        private final Queue<Pausa> llegadas = new ConcurrentLinkedQueue<>();
+
+        // Lo siguiente solo lo usa el hilo de la sala
+        private final List<Pausa> despiertas = new ArrayList<>();
+        private final ByteBuffer letra = ByteBuffer.allocate(1);
+
+        SalaDeEspera(ExecutorService sesiones) throws IOException {
+            this.selector = Selector.open();
+            this.sesiones = sesiones;
+            Thread hilo = new Thread(this, "sala-de-espera");
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+
+        /**
+         * Deja una conexión en pausa. No espera.
+         */
+        void dejar(SocketChannel conexion, EstacionPartidas.Boleto partidaEnPausa) {
+            sesionesEnPausa.increment();
+            llegadas.add(new Pausa(conexion, partidaEnPausa));
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select(this::leer);
+                    // Una llave cancelada sale del selector en la siguiente selección, y
+                    // hasta entonces su canal no puede volver a ser bloqueante
+                    while (!despiertas.isEmpty()) {
+                        List<Pausa> listas = new ArrayList<>(despiertas);
+                        despiertas.clear();
+                        selector.selectNow(this::leer);
+                        for (Pausa pausa : listas) {
+                            reanudar(pausa);
+                        }
+                    }
+                    Pausa llegada;
+                    while ((llegada = llegadas.poll()) != null) {
+                        registrar(llegada);
+                    }
+                } catch (IOException | ClosedSelectorException e) {
+                    System.err.println("La sala de espera del servidor falló: " + e);
+                    return;
+                }
+            }
+        }
+
+        private void registrar(Pausa pausa) {
+            try {
+                pausa.conexion().configureBlocking(false);
+                pausa.conexion().register(selector, SelectionKey.OP_READ, pausa);
+            } catch (IOException e) {
+                salir(pausa.conexion());
+            }
+        }
+
+        /**
+         * Lee lo que llegó a una conexión en pausa.
+         */
+        private void leer(SelectionKey llave) {
+            Pausa pausa = (Pausa) llave.attachment();
+            try {
+                int leidos;
+                while ((leidos = pausa.conexion().read(letra.clear())) > 0) {
+                    if (letra.get(0) == '\n') {
+                        llave.cancel();
+                        despiertas.add(pausa);
+                        return;
+                    }
+                }
+                if (leidos < 0) {
+                    salir(pausa.conexion());
+                }
+            } catch (IOException e) {
+                salir(pausa.conexion());
+            }
+        }
+
+        private void reanudar(Pausa pausa) {
+            try {
+                pausa.conexion().configureBlocking(true);
+                sesiones.submit(() -> atender(pausa.conexion(), pausa.partidaEnPausa()));
+                sesionesEnPausa.decrement();
+            } catch (IOException | RejectedExecutionException e) {
+                salir(pausa.conexion());
+            }
+        }
+
+        /**
+         * Termina una conexión en pausa (cerrarla también la quita del selector).
+         */
+        private void salir(SocketChannel conexion) {
+            sesionesEnPausa.decrement();
+            terminar(conexion);
+        }
+    }
+
+    /**
+     * Entrada de una conexión que avisa con {@link Feria.SesionInactiva} cuando
+     * se acaba el tiempo de espera. Scanner se traga las IOException como si la
+     * entrada se hubiera terminado, pero deja pasar esta excepción.
+     */
+    private static final class EntradaConEspera extends FilterInputStream {
+        EntradaConEspera(InputStream entrada) {
+            super(entrada);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (SocketTimeoutException e) {
+                throw new Feria.SesionInactiva(null);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int desde, int cuantos) throws IOException {
+            try {
+                return super.read(b, desde, cuantos);
+            } catch (SocketTimeoutException e) {
+                throw new Feria.SesionInactiva(null);
+            }
+        }
+    }
+
+    /**
+     * Tarea periódica que imprime la carga del servidor.
+     */
+    private class Reporte implements Runnable {
+        private long iniciadasAntes = 0;
+
+        @Override
+        public void run() {
+            long iniciadas = sesionesIniciadas.sum();
+            long activas = iniciadas - sesionesTerminadas.sum();
+            double porSegundo = (iniciadas - iniciadasAntes) / (double) SEGUNDOS_REPORTE;
+            iniciadasAntes = iniciadas;
+            System.out.printf("[feria] sesiones/s: %.1f, activas: %d (%d en pausa), p99 menú: %d µs%n",
+                    porSegundo, activas, sesionesEnPausa.sum(), Feria.latenciaMenu.percentil(99) / 1000);
+            System.out.println("[feria] tableros: " + Lienzo.resumen());
+            if (IAConecta4.jugadasTotales.sum() > 0) {
+                System.out.println("[feria] Conecta 4 (computadora): " + IAConecta4.resumen());
+            }
+            if (GeneradorMagico.iniciado()) {
+                System.out.println("[feria] acertijos de Cuadrado Mágico: " + GeneradorMagico.resumen());
+            }
+            for (String linea : MetricasFeria.resumen().split("\\R")) {
+                System.out.println("[feria] " + linea);
+            }
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/**
+ *  Simulador de carga con jugadores automáticos.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Crea jugadores automáticos (bots) y los pone a jugar los cuatro juegos a
+ * toda velocidad con las reglas y los tableros reales, sin consola: cada
+ * partida se cobra con {@link LibroCreditos} y su resultado se publica en
+ * {@link TuberiaResultados}, igual que en el juego. Antes de cobrarle otra
+ * partida a un bot se espera a que su último resultado ya esté aplicado.
+ *
+ * Cómo juega un bot:
+ * - Cuadrado Mágico: el tablero clásico, llenado al azar; la mitad de las
+ *   veces sigue la pista en lugar de elegir al azar.
+ * - Conecta 4: el bot gana si puede, si no evita jugadas que dejan ganar al
+ *   rival y si no elige al azar; el rival juega al azar.
+ * - Salvado: un círculo de 100 con pasos y respuesta al azar.
+ * - Torres de Hanoi: 6 discos con 3 a 5 postes, siguiendo la solución
+ *   óptima con algún rodeo de vez en cuando.
+ * Si a un bot ya no le alcanza para una partida, recarga el crédito inicial.
+ *
+ * Cada bot tiene su propio {@link SplittableRandom}, sacado de la semilla en
+ * orden, y juega siempre en el mismo hilo la misma cantidad de partidas, así
+ * que con la misma semilla, bots y partidas el resultado es el mismo sin
+ * importar cuántos hilos se usen; la "huella" del reporte lo resume para
+ * comparar versiones. Con `--compartir` cualquier hilo juega con cualquier
+ * bot para medir la competencia por los saldos, y el resultado ya no se
+ * repite exactamente. Con `--archivar` las jugadas de cada partida se anotan
+ * en {@link ArchivoPartidas} con el mismo formato que las del juego, para
+ * tener muchas partidas que analizar con {@link AnalizadorPartidas}.
+ */
+class SimuladorFeria {
+    // Discos y tamaño de círculo con los que juegan los bots
+    private static final int DISCOS = 6;
+    private static final int PERSONAS_SALVADO = 100;
+
+    // Probabilidad (1 entre N) de que un bot dé un rodeo en Hanoi
+    private static final int RODEO_HANOI = 64;
+
+    private final int bots;
+    private final long partidas;
+    private final int hilos;
+    private final long semilla;
+    private final boolean compartir;
+    private final boolean archivar;
+
+    // Partidas ganadas por juego y recargas de crédito
+    private final LongAdder[] ganadas = new LongAdder[MetricasFeria.Juego.values().length];
+    private final LongAdder recargas = new LongAdder();
+
+    /**
+     * Un jugador automático con su propia fuente de azar.
+     */
+    private static final class Bot {
+        final Feria.Jugador jugador;
+        final SplittableRandom azar;
+        long victorias;
+
+        // Lo que ganó en la partida en curso y la secuencia de su último resultado publicado
+        int puntos;
+        int creditos;
+        long ultimoResultado = -1;
+
+        Bot(Feria.Jugador jugador, SplittableRandom azar) {
+            this.jugador = jugador;
+            this.azar = azar;
+        }
+
+        void otorgar(int puntos, int creditos) {
+            this.puntos = puntos;
+            this.creditos = creditos;
+        }
+    }
+
+    /**
+     * @param bots Cuántos jugadores automáticos.
+     * @param partidas Cuántas partidas en total.
+     * @param hilos Cuántos hilos juegan a la vez.
+     * @param semilla La semilla de todo el azar.
+     * @param compartir `true` para que cualquier hilo juegue con cualquier bot.
+     * @param archivar `true` para anotar las jugadas en {@link ArchivoPartidas}.
+     */
+    SimuladorFeria(int bots, long partidas, int hilos, long semilla, boolean compartir, boolean archivar) {
+        this.bots = bots;
+        this.partidas = partidas;
+        this.hilos = hilos;
+        this.semilla = semilla;
+        this.compartir = compartir;
+        this.archivar = archivar;
+        for (int i = 0; i < ganadas.length; i++) {
+            ganadas[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Lee las opciones de la línea de comandos:
+     * `[--bots N] [--partidas N] [--hilos N] [--semilla N] [--compartir] [--archivar]`.
+     *
+     * @param args Los argumentos del programa.
+     * @param desde Dónde empiezan las opciones de la simulación.
+     * @return La simulación configurada.
+     */
+    static SimuladorFeria desdeArgumentos(String[] args, int desde) {
+        int bots = 1000;
+        long partidas = 1_000_000;
+        int hilos = Runtime.getRuntime().availableProcessors();
+        long semilla = 1;
+        boolean compartir = false;
+        boolean archivar = false;
+        for (int i = desde; i < args.length; i++) {
+            boolean hayValor = i + 1 < args.length;
+            if (args[i].equals("--bots") && hayValor) {
+                bots = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--partidas") && hayValor) {
+                partidas = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--hilos") && hayValor) {
+                hilos = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--semilla") && hayValor) {
+                semilla = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--compartir")) {
+                compartir = true;
+            } else if (args[i].equals("--archivar")) {
+                archivar = true;
+            } else {
+                throw new IllegalArgumentException("Uso: java Feria --simular [--bots N] [--partidas N]"
+                        + " [--hilos N] [--semilla N] [--compartir] [--archivar]");
+            }
+        }
+        if (bots < 1 || hilos < 1 || partidas < 0) {
+            throw new IllegalArgumentException("Se necesita al menos un bot y un hilo");
+        }
+        return new SimuladorFeria(bots, partidas, hilos, semilla, compartir, archivar);
+    }
+
+    /**
+     * Crea los bots, juega todas las partidas e imprime el reporte.
+     *
+     * @throws InterruptedException Si se interrumpe mientras espera a los hilos.
+     */
+    void ejecutar() throws InterruptedException {
+        SplittableRandom raiz = new SplittableRandom(semilla);
+        Bot[] todos = new Bot[bots];
+        for (int i = 0; i < bots; i++) {
+            todos[i] = new Bot(new Feria.Jugador("bot" + i, Feria.CREDITO_INICIAL), raiz.split());
+        }
+        long reintentosAntes = LibroCreditos.reintentos.sum();
+        long resultadosAntes = TuberiaResultados.publicados();
+        long directosAntes = TuberiaResultados.directos.sum();
+        long lotesAntes = TuberiaResultados.lotes.sum();
+        long rechazadosAntes = LibroCreditos.debitosRechazados.sum();
+        long cobrosAntes = LibroCreditos.debitos.sum();
+
+        long inicio = System.nanoTime();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            SplittableRandom azarHilo = raiz.split();
+            tareas.add(ejecutor.submit(() -> {
+                if (compartir) {
+                    jugarCompartido(todos, hilo, azarHilo);
+                } else {
+                    jugarPropios(todos, hilo);
+                }
+            }));
+        }
+        ejecutor.shutdown();
+        for (Future<?> tarea : tareas) {
+            try {
+                tarea.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Falló un hilo de la simulación", e.getCause());
+            }
+        }
+        TuberiaResultados.vaciar();
+        ArchivoPartidas.cerrar();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        long cobros = LibroCreditos.debitos.sum() - cobrosAntes;
+        long reintentos = LibroCreditos.reintentos.sum() - reintentosAntes;
+        System.out.printf("Simuladas %d partidas de %d bots en %d hilos en %.2f s: %.0f partidas/s%n",
+                partidas, bots, hilos, segundos, partidas / segundos);
+        StringBuilder juegos = new StringBuilder(" ");
+        for (MetricasFeria.Juego juego : MetricasFeria.Juego.values()) {
+            juegos.append(String.format(" %s: %d (%d ganadas);", juego.clave,
+                    juego.terminados.sum(), ganadas[juego.ordinal()].sum()));
+        }
+        System.out.println(juegos);
+        System.out.printf("  libro: %d cobros, %d reintentos de compare-and-set (%.3f por cada 1000 cobros),"
+                        + " %d rechazados, %d recargas%n",
+                cobros, reintentos, reintentos * 1000.0 / Math.max(1, cobros),
+                LibroCreditos.debitosRechazados.sum() - rechazadosAntes, recargas.sum());
+        long resultados = TuberiaResultados.publicados() - resultadosAntes;
+        long lotes = TuberiaResultados.lotes.sum() - lotesAntes;
+        long directos = TuberiaResultados.directos.sum() - directosAntes;
+        System.out.printf("  resultados: %d (%.0f/s), %d por lote en promedio, %d aplicados por el hilo del bot"
+                        + " (anillo de %d lleno); retraso p50 %.1f µs, p99 %.1f µs, máx %.1f µs%n",
+                resultados, resultados / segundos, (resultados - directos) / Math.max(1, lotes), directos,
+                TuberiaResultados.CAPACIDAD, TuberiaResultados.retraso.percentil(50) / 1e3,
+                TuberiaResultados.retraso.percentil(99) / 1e3, TuberiaResultados.retraso.percentil(100) / 1e3);
+        System.out.printf("  memoria: pico del heap %d MB, en uso al terminar %d MB%n",
+                picoHeap() >> 20, (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20);
+        System.out.printf("  huella: %016x (semilla %d%s)%n", huella(todos), semilla,
+                compartir ? "; con --compartir cambia de una corrida a otra" : "");
+    }
+
+    /**
+     * Juega todas las partidas de los bots de este hilo: el bot i es del hilo
+     * i % hilos y juega partidas / bots partidas (los primeros, una más).
+     */
+    private void jugarPropios(Bot[] todos, int hilo) {
+        List<Bot> propios = new ArrayList<>();
+        for (int i = hilo; i < todos.length; i += hilos) {
+            propios.add(todos[i]);
+        }
+        long porBot = partidas / bots;
+        long sobrantes = partidas % bots;
+        // Se reparten por turnos para que todos los bots avancen a la vez
+        for (long ronda = 0; ronda <= porBot; ronda++) {
+            for (int j = 0; j < propios.size(); j++) {
+                int indice = hilo + j * hilos;
+                if (ronda < porBot || indice < sobrantes) {
+                    Bot bot = propios.get(j);
+                    jugarPartida(bot, bot.azar);
+                }
+            }
+        }
+    }
+
+    /**
+     * Juega la parte de las partidas de este hilo con bots al azar de todos.
+     */
+    private void jugarCompartido(Bot[] todos, int hilo, SplittableRandom azar) {
+        long mias = partidas / hilos + (hilo < partidas % hilos ? 1 : 0);
+        for (long i = 0; i < mias; i++) {
+            jugarPartida(todos[azar.nextInt(todos.length)], azar);
+        }
+    }
+
+    /**
+     * Cobra y juega una partida de un juego al azar.
+     */
+    private void jugarPartida(Bot bot, SplittableRandom azar) {
+        MetricasFeria.Juego[] juegos = MetricasFeria.Juego.values();
+        MetricasFeria.Juego juego = juegos[azar.nextInt(juegos.length)];
+        TuberiaResultados.esperar(bot.ultimoResultado);
+        if (!LibroCreditos.debitar(bot.jugador, Feria.COSTO_JUEGO)) {
+            // El bot compra otra vez el crédito inicial
+            LibroCreditos.acreditar(bot.jugador, Feria.CREDITO_INICIAL);
+            recargas.increment();
+            if (!LibroCreditos.debitar(bot.jugador, Feria.COSTO_JUEGO)) {
+                return;
+            }
+        }
+        juego.iniciados.increment();
+        long inicio = System.nanoTime();
+        bot.otorgar(0, 0);
+        ArchivoPartidas.Historial historial = new ArchivoPartidas.Historial();
+        if (!archivar) {
+            historial.descartar();
+        }
+        boolean gano;
+        switch (juego) {
+            case CUADRADO_MAGICO: gano = cuadradoMagico(bot, azar, historial); break;
+            case CONECTA_4: gano = conecta4(azar, historial); break;
+            case SALVADO: gano = salvado(bot, azar, historial); break;
+            default: gano = torresDeHanoi(bot, azar, historial); break;
+        }
+        long secuencia = TuberiaResultados.publicar(bot.jugador, juego.ordinal(), bot.puntos, bot.creditos,
+                System.nanoTime() - inicio, historial.registro(juego, bot.jugador.getNombre()));
+        bot.ultimoResultado = Math.max(bot.ultimoResultado, secuencia);
+        if (gano) {
+            ganadas[juego.ordinal()].increment();
+            bot.victorias++;
+        }
+    }
+
+    /**
+     * Llena el tablero clásico; se pierde en cuanto ya no tiene solución.
+     */
+    private static boolean cuadradoMagico(Bot bot, SplittableRandom azar, ArchivoPartidas.Historial historial) {
+        TableroMagico tablero = new TableroMagico();
+        int n = tablero.tamano();
+        int anchoFila = Bits.ancho(n);
+        historial.encabezado(n, 4);
+        historial.encabezado(1, 1);
+        while (!tablero.lleno()) {
+            int[] pista = azar.nextBoolean() ? tablero.pista() : null;
+            if (pista != null) {
+                tablero.poner(pista[0], pista[1], pista[2]);
+                historial.jugada(pista[0] | pista[1] << anchoFila | (long) (pista[2] - 1) << 2 * anchoFila,
+                        2 * anchoFila + Bits.ancho(n * n));
+            } else {
+                int fila, columna, numero;
+                do {
+                    fila = azar.nextInt(n);
+                    columna = azar.nextInt(n);
+                } while (!tablero.libre(fila, columna));
+                do {
+                    numero = 1 + azar.nextInt(n * n);
+                } while (!tablero.disponible(numero));
+                tablero.poner(fila, columna, numero);
+                historial.jugada(fila | columna << anchoFila | (long) (numero - 1) << 2 * anchoFila,
+                        2 * anchoFila + Bits.ancho(n * n));
+            }
+            if (!tablero.esPosible()) {
+                return false;
+            }
+        }
+        if (tablero.esMagico()) {
+            bot.otorgar(10, Feria.PREMIO_VICTORIA);
+            historial.desenlace(2);
+            return true;
+        }
+        historial.desenlace(1);
+        return false;
+    }
+
+    /**
+     * El bot (jugador 1) contra un rival al azar.
+     *
+     * @return `true` si ganó el bot.
+     */
+    private static boolean conecta4(SplittableRandom azar, ArchivoPartidas.Historial historial) {
+        TableroConecta4 tablero = new TableroConecta4();
+        int[] columnas = new int[TableroConecta4.COLUMNAS];
+        historial.encabezado(0, 2);
+        while (true) {
+            int columna = tablero.jugadorActual() == 1 ? jugadaAvida(tablero, azar, columnas)
+                    : columnaAlAzar(tablero, azar);
+            tablero.jugar(columna);
+            historial.jugada(columna, 3);
+            if (tablero.ultimoGano()) {
+                historial.desenlace(3 - tablero.jugadorActual());
+                return tablero.jugadorActual() == 2;
+            }
+            if (tablero.lleno()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Gana si puede; si no, elige al azar entre las columnas que no le dejan
+     * una victoria inmediata al rival (o entre todas, si no hay ninguna).
+     */
+    private static int jugadaAvida(TableroConecta4 tablero, SplittableRandom azar, int[] seguras) {
+        int cuantas = 0;
+        for (int columna = 0; columna < TableroConecta4.COLUMNAS; columna++) {
+            if (!tablero.puedeJugar(columna)) {
+                continue;
+            }
+            tablero.jugar(columna);
+            boolean gana = tablero.ultimoGano();
+            boolean segura = !gana && !rivalGana(tablero);
+            tablero.deshacer();
+            if (gana) {
+                return columna;
+            }
+            if (segura) {
+                seguras[cuantas++] = columna;
+            }
+        }
+        return cuantas > 0 ? seguras[azar.nextInt(cuantas)] : columnaAlAzar(tablero, azar);
+    }
+
+    private static boolean rivalGana(TableroConecta4 tablero) {
+        for (int columna = 0; columna < TableroConecta4.COLUMNAS; columna++) {
+            if (tablero.puedeJugar(columna)) {
+                tablero.jugar(columna);
+                boolean gana = tablero.ultimoGano();
+                tablero.deshacer();
+                if (gana) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int columnaAlAzar(TableroConecta4 tablero, SplittableRandom azar) {
+        int columna;
+        do {
+            columna = azar.nextInt(TableroConecta4.COLUMNAS);
+        } while (!tablero.puedeJugar(columna));
+        return columna;
+    }
+
+    /**
+     * Adivina la silla que se salva; muestra las mismas eliminaciones que el juego.
+     */
+    private static boolean salvado(Bot bot, SplittableRandom azar, ArchivoPartidas.Historial historial) {
+        int pasos = azar.nextInt(PERSONAS_SALVADO) + 1;
+        int respuesta = azar.nextInt(PERSONAS_SALVADO) + 1;
+        historial.encabezado(PERSONAS_SALVADO, 20);
+        historial.encabezado(pasos, 20);
+        historial.jugada(respuesta, 32);
+        PrimitiveIterator.OfInt eliminadas = Josephus.eliminaciones(PERSONAS_SALVADO, pasos);
+        for (int j = 0; j < Feria.ELIMINACIONES_MOSTRADAS; j++) {
+            eliminadas.nextInt();
+        }
+        if (respuesta == Josephus.sobreviviente(PERSONAS_SALVADO, pasos)) {
+            bot.otorgar(0, Feria.PREMIO_VICTORIA);
+            historial.desenlace(1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sigue la solución óptima, a veces con un rodeo (mover el disco más chico
+     * y regresarlo), y recibe los puntos de calcularPuntos.
+     *
+     * @return `true` si lo hizo en el mínimo de movimientos.
+     */
+    private static boolean torresDeHanoi(Bot bot, SplittableRandom azar, ArchivoPartidas.Historial historial) {
+        int postes = FrameStewart.MINIMO_POSTES + azar.nextInt(3);
+        int ancho = Bits.ancho(postes);
+        long movimientos = 0;
+        long minimo;
+        historial.encabezado(DISCOS, 7);
+        historial.encabezado(postes, 4);
+        if (postes == 3) {
+            EstadoHanoi estado = new EstadoHanoi(DISCOS);
+            minimo = estado.minimoDesdeInicio();
+            Iterator<EstadoHanoi.Movimiento> solucion = estado.solucion(2);
+            while (solucion.hasNext()) {
+                EstadoHanoi.Movimiento movimiento = solucion.next();
+                if (azar.nextInt(RODEO_HANOI) == 0) {
+                    int chico = estado.poste(0);
+                    int otro = (chico + 1) % 3;
+                    estado.mover(chico, otro);
+                    estado.mover(otro, chico);
+                    historial.jugada(chico | otro << ancho, 2 * ancho);
+                    historial.jugada(otro | chico << ancho, 2 * ancho);
+                    movimientos += 2;
+                }
+                if (!estado.puedeMover(movimiento.origen(), movimiento.destino())) {
+                    throw new IllegalStateException("Movimiento inválido en la solución: " + movimiento);
+                }
+                estado.mover(movimiento.origen(), movimiento.destino());
+                historial.jugada(movimiento.origen() | movimiento.destino() << ancho, 2 * ancho);
+                movimientos++;
+            }
+        } else {
+            EstadoHanoiPostes estado = new EstadoHanoiPostes(DISCOS, postes);
+            minimo = estado.minimoDesdeInicio();
+            Iterator<EstadoHanoi.Movimiento> solucion = FrameStewart.solucion(DISCOS, postes);
+            while (solucion.hasNext()) {
+                EstadoHanoi.Movimiento movimiento = solucion.next();
+                if (!estado.puedeMover(movimiento.origen(), movimiento.destino())) {
+                    throw new IllegalStateException("Movimiento inválido en la solución: " + movimiento);
+                }
+                estado.mover(movimiento.origen(), movimiento.destino());
+                historial.jugada(movimiento.origen() | movimiento.destino() << ancho, 2 * ancho);
+                movimientos++;
+            }
+            if (azar.nextInt(RODEO_HANOI) == 0) {
+                // El rodeo se da al final: el disco más chico va a la torre A, ya vacía, y regresa
+                int vueltas = 1 + azar.nextInt(DISCOS);
+                for (int i = 0; i < vueltas; i++) {
+                    historial.jugada(postes - 1, 2 * ancho);
+                    historial.jugada((postes - 1) << ancho, 2 * ancho);
+                }
+                movimientos += 2 * vueltas;
+            }
+        }
+        bot.otorgar(PartidaTorresDeHanoi.calcularPuntos(movimientos, minimo), 0);
+        historial.desenlace(1);
+        return movimientos == minimo;
+    }
+
+    /**
+     * Combina el estado final de cada bot sin importar el orden en que jugaron.
+     */
+    private static long huella(Bot[] todos) {
+        long huella = 0;
+        for (int i = 0; i < todos.length; i++) {
+            Feria.Jugador jugador = todos[i].jugador;
+            long estado = (long) jugador.getCreditos() * 0x9E3779B97F4A7C15L
+                    ^ (long) jugador.getPuntos() * 0xC2B2AE3D27D4EB4FL
+                    ^ todos[i].victorias * 0x165667B19E3779F9L
+                    ^ i;
+            huella += mezclar(estado);
+        }
+        return huella;
+    }
+
+    private static long mezclar(long x) {
+        x = (x ^ (x >>> 33)) * 0xFF51AFD7ED558CCDL;
+        x = (x ^ (x >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return x ^ (x >>> 33);
+    }
+
+    /**
+     * @return La suma de los picos de uso de cada zona del heap, en bytes.
+     */
+    static long picoHeap() {
+        long pico = 0;
+        for (MemoryPoolMXBean memoria : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoria.getType() == MemoryType.HEAP) {
+                pico += memoria.getPeakUsage().getUsed();
+            }
+        }
+        return pico;
+    }
+}
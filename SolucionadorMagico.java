@@ -0,0 +1,251 @@
+/**
+ *  Solucionador de cuadrados mágicos incompletos con conjuntos de bits.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.Arrays;
+
+/**
+ * Cuenta las formas de completar un cuadrado mágico de N x N (N hasta 8) en el
+ * que algunas casillas ya tienen número. Los números libres y los candidatos de
+ * cada casilla son máscaras de 64 bits (el bit n - 1 es el número n).
+ *
+ * En cada nodo se calcula para cada línea el rango de valores posibles: si a
+ * la línea le faltan R para la suma mágica y le quedan k casillas, una casilla
+ * no puede tener menos que R menos los k - 1 números libres más grandes ni más
+ * que R menos los k - 1 más chicos. La casilla con menos candidatos se prueba
+ * primero; con una sola casilla libre en la línea el valor queda forzado.
+ *
+ * Cada instancia tiene su propio estado, así que se puede usar una por hilo.
+ */
+class SolucionadorMagico {
+    private final int n;
+    private final int casillas;
+
+    // Casillas de cada línea: N filas, N columnas y las dos diagonales
+    private final int[][] casillasDe;
+
+    // Líneas a las que pertenece cada casilla
+    private final int[][] lineasDe;
+
+    private final int[] celdas;
+    private final int[] restante;
+    private final int[] libres;
+
+    // Bit n - 1 encendido si el número n ya está en el tablero
+    private long usados;
+
+    // Sumas de los j números libres más chicos y más grandes, por nivel de búsqueda
+    private final int[][] menores;
+    private final int[][] mayores;
+    private final long[][] rangos;
+
+    private long nodos;
+    private long presupuesto;
+    private int soluciones;
+    private int limite;
+
+    SolucionadorMagico(int n) {
+        if (n < 3 || n > 8) {
+            throw new IllegalArgumentException("El tamaño debe estar entre 3 y 8: " + n);
+        }
+        this.n = n;
+        this.casillas = n * n;
+        int lineas = 2 * n + 2;
+        casillasDe = new int[lineas][n];
+        int[] cuenta = new int[casillas];
+        int[][] lineasTemporal = new int[casillas][4];
+        for (int linea = 0; linea < lineas; linea++) {
+            for (int k = 0; k < n; k++) {
+                int casilla = linea < n ? linea * n + k
+                        : linea < 2 * n ? k * n + (linea - n)
+                        : linea == 2 * n ? k * n + k
+                        : k * n + (n - 1 - k);
+                casillasDe[linea][k] = casilla;
+                lineasTemporal[casilla][cuenta[casilla]++] = linea;
+            }
+        }
+        lineasDe = new int[casillas][];
+        for (int c = 0; c < casillas; c++) {
+            lineasDe[c] = Arrays.copyOf(lineasTemporal[c], cuenta[c]);
+        }
+        celdas = new int[casillas];
+        restante = new int[lineas];
+        libres = new int[lineas];
+        menores = new int[casillas + 1][n + 1];
+        mayores = new int[casillas + 1][n + 1];
+        rangos = new long[casillas + 1][lineas];
+    }
+
+    /**
+     * @return La suma mágica de un cuadrado de N x N.
+     */
+    static int sumaMagica(int n) {
+        return n * (n * n + 1) / 2;
+    }
+
+    /**
+     * Cuenta las formas de completar un tablero, hasta un límite.
+     *
+     * @param tablero Las casillas por filas; 0 es una casilla vacía. No se modifica.
+     * @param limite Se deja de buscar al encontrar tantas soluciones.
+     * @param presupuesto Máximo de nodos que se pueden visitar.
+     * @return Las soluciones encontradas (a lo más `limite`), o -1 si se agotó el presupuesto.
+     */
+    int contar(int[] tablero, int limite, long presupuesto) {
+        this.limite = limite;
+        this.presupuesto = presupuesto;
+        this.nodos = 0;
+        this.soluciones = 0;
+        usados = 0;
+        int suma = sumaMagica(n);
+        for (int linea = 0; linea < casillasDe.length; linea++) {
+            restante[linea] = suma;
+            libres[linea] = n;
+        }
+        for (int c = 0; c < casillas; c++) {
+            int numero = tablero[c];
+            celdas[c] = numero;
+            if (numero != 0) {
+                if (numero < 1 || numero > casillas || (usados & bit(numero)) != 0) {
+                    return 0;
+                }
+                usados |= bit(numero);
+                for (int linea : lineasDe[c]) {
+                    restante[linea] -= numero;
+                    libres[linea]--;
+                }
+            }
+        }
+        for (int linea = 0; linea < casillasDe.length; linea++) {
+            if (libres[linea] == 0 && restante[linea] != 0) {
+                return 0;
+            }
+        }
+        return buscar() ? soluciones : -1;
+    }
+
+    /**
+     * @return Cuántos nodos visitó la última llamada a {@link #contar(int[], int, long)}.
+     */
+    long nodos() {
+        return nodos;
+    }
+
+    /**
+     * @return `false` si se agotó el presupuesto.
+     */
+    private boolean buscar() {
+        if (++nodos > presupuesto) {
+            return false;
+        }
+        long todos = casillas == 64 ? -1L : (1L << casillas) - 1;
+        long disponibles = todos & ~usados;
+        int nivel = Long.bitCount(disponibles);
+        if (nivel == 0) {
+            soluciones++;
+            return true;
+        }
+
+        // Sumas de los j números libres más chicos y más grandes
+        int[] chicos = menores[nivel];
+        int[] grandes = mayores[nivel];
+        long resto = disponibles;
+        for (int j = 1; j <= n && j <= nivel; j++) {
+            int menor = Long.numberOfTrailingZeros(resto) + 1;
+            resto &= resto - 1;
+            chicos[j] = chicos[j - 1] + menor;
+        }
+        resto = disponibles;
+        for (int j = 1; j <= n && j <= nivel; j++) {
+            int mayor = 64 - Long.numberOfLeadingZeros(resto);
+            resto &= ~(1L << (mayor - 1));
+            grandes[j] = grandes[j - 1] + mayor;
+        }
+
+        // Valores posibles en cada línea
+        long[] rango = rangos[nivel];
+        for (int linea = 0; linea < rango.length; linea++) {
+            int k = libres[linea];
+            if (k == 0) {
+                rango[linea] = -1L;
+                continue;
+            }
+            rango[linea] = mascara(restante[linea] - grandes[k - 1], restante[linea] - chicos[k - 1]);
+        }
+
+        // La casilla vacía con menos candidatos
+        int elegida = -1;
+        long candidatosElegida = 0;
+        int menos = Integer.MAX_VALUE;
+        for (int c = 0; c < casillas; c++) {
+            if (celdas[c] != 0) {
+                continue;
+            }
+            long candidatos = disponibles;
+            for (int linea : lineasDe[c]) {
+                candidatos &= rango[linea];
+            }
+            int cuantos = Long.bitCount(candidatos);
+            if (cuantos == 0) {
+                return true;
+            }
+            if (cuantos < menos) {
+                menos = cuantos;
+                elegida = c;
+                candidatosElegida = candidatos;
+                if (cuantos == 1) {
+                    break;
+                }
+            }
+        }
+
+        for (long pendientes = candidatosElegida; pendientes != 0; pendientes &= pendientes - 1) {
+            int numero = Long.numberOfTrailingZeros(pendientes) + 1;
+            poner(elegida, numero);
+            boolean seguir = buscar();
+            quitar(elegida, numero);
+            if (!seguir) {
+                return false;
+            }
+            if (soluciones >= limite) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private void poner(int casilla, int numero) {
+        celdas[casilla] = numero;
+        usados |= bit(numero);
+        for (int linea : lineasDe[casilla]) {
+            restante[linea] -= numero;
+            libres[linea]--;
+        }
+    }
+
+    private void quitar(int casilla, int numero) {
+        celdas[casilla] = 0;
+        usados &= ~bit(numero);
+        for (int linea : lineasDe[casilla]) {
+            restante[linea] += numero;
+            libres[linea]++;
+        }
+    }
+
+    private static long bit(int numero) {
+        return 1L << (numero - 1);
+    }
+
+    /**
+     * @return Los números de `desde` a `hasta` (recortados a 1..64) como máscara.
+     */
+    private static long mascara(int desde, int hasta) {
+        desde = Math.max(desde, 1);
+        hasta = Math.min(hasta, 64);
+        if (desde > hasta) {
+            return 0;
+        }
+        return (-1L >>> (64 - (hasta - desde + 1))) << (desde - 1);
+    }
+}
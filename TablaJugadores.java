@@ -0,0 +1,485 @@
+/**
+ *  Registro de jugadores guardado por columnas.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Registro para decenas de millones de jugadores. En lugar de un objeto
+ * {@link Feria.Jugador}, su nombre y una entrada de mapa por jugador, cada
+ * dato vive en una columna:
+ *
+ * <pre>
+ *   créditos, puntos   long por fila (versión y valor, igual que en Feria.Jugador),
+ *                      en bloques de 64 K filas, en el heap o en memoria directa
+ *   posición           int por fila: dónde empieza su nombre
+ *   nombres            UTF-8 uno tras otro en trozos de 1 MB, cada uno con su largo en un byte
+ *   índice             direccionamiento abierto: fila + 1 por ranura (0 = vacía)
+ * </pre>
+ *
+ * El recolector de basura ve unos cuantos arreglos grandes en lugar de cuatro
+ * objetos por jugador. {@link #get(Object)} devuelve una vista del jugador que
+ * lee y cambia sus columnas con compare-and-set, así que las sesiones, el
+ * libro de créditos, la bitácora y la clasificación la usan como a cualquier
+ * jugador. Las vistas no se guardan: cada búsqueda crea una nueva, y como
+ * cualquier jugador recién creado, la que se pasa a {@link #put} o
+ * {@link #putIfAbsent} se copia a la tabla y ya no se usa.
+ *
+ * Buscar no usa candados. Registrar toma el candado de la tabla, escribe el
+ * nombre y los saldos y al final publica la fila en el índice. Los jugadores
+ * no se borran.
+ */
+final class TablaJugadores extends AbstractMap<String, Feria.Jugador>
+        implements ConcurrentMap<String, Feria.Jugador> {
+    // Filas por bloque de las columnas
+    private static final int BITS_BLOQUE = 16;
+    private static final int FILAS_POR_BLOQUE = 1 << BITS_BLOQUE;
+
+    // Bytes por trozo de nombres; con la posición en un int caben 2048 trozos
+    private static final int BITS_TROZO = 20;
+    private static final int TROZO = 1 << BITS_TROZO;
+    private static final int MAXIMO_TROZOS = 1 << (31 - BITS_TROZO);
+
+    private static final int CAPACIDAD_INICIAL = 1 << 10;
+
+    // Lecturas y escrituras ordenadas de las ranuras del índice
+    private static final VarHandle RANURA = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final Columna creditos;
+    private final Columna puntos;
+
+    // Lo siguiente solo se cambia con el candado de la tabla
+    private volatile int[][] posiciones = new int[0][];
+    private volatile byte[][] nombres = new byte[0][];
+    private volatile int[] indice = new int[CAPACIDAD_INICIAL];
+    private volatile int filas;
+    private int libreEnTrozo = TROZO;
+
+    /**
+     * @param fueraDelHeap `true` para guardar créditos y puntos en memoria directa.
+     */
+    TablaJugadores(boolean fueraDelHeap) {
+        this.creditos = fueraDelHeap ? new ColumnaDirecta() : new ColumnaEnHeap();
+        this.puntos = fueraDelHeap ? new ColumnaDirecta() : new ColumnaEnHeap();
+    }
+
+    /**
+     * Crea el registro de jugadores de la feria según -Dferia.registro.
+     *
+     * @param tipo "mapa" (un objeto por jugador), "columnas", "fueraDelHeap" o
+     *             "cache" (solo los más usados en memoria, ver {@link CacheJugadores}).
+     * @return El registro vacío.
+     */
+    static Map<String, Feria.Jugador> crear(String tipo) {
+        switch (tipo) {
+            case "columnas": return new TablaJugadores(false);
+            case "fueraDelHeap": return new TablaJugadores(true);
+            case "cache": return new CacheJugadores(CacheJugadores.CAPACIDAD);
+            case "mapa": return new ConcurrentHashMap<>();
+            default:
+                System.out.println("Registro de jugadores desconocido: " + tipo + "; se usa el mapa.");
+                return new ConcurrentHashMap<>();
+        }
+    }
+
+    @Override
+    public int size() {
+        return filas;
+    }
+
+    @Override
+    public boolean containsKey(Object nombre) {
+        return nombre instanceof String texto && buscarFila(texto.getBytes(StandardCharsets.UTF_8)) >= 0;
+    }
+
+    /**
+     * @return Una vista nueva del jugador, o null si no está registrado.
+     */
+    @Override
+    public Feria.Jugador get(Object nombre) {
+        if (!(nombre instanceof String texto)) {
+            return null;
+        }
+        int fila = buscarFila(texto.getBytes(StandardCharsets.UTF_8));
+        return fila < 0 ? null : new Fila(texto, fila);
+    }
+
+    /**
+     * Registra al jugador o, si ya estaba, reemplaza sus saldos por los del jugador dado.
+     */
+    @Override
+    public synchronized Feria.Jugador put(String nombre, Feria.Jugador jugador) {
+        byte[] bytes = nombre.getBytes(StandardCharsets.UTF_8);
+        int fila = buscarFila(bytes);
+        if (fila < 0) {
+            agregar(bytes, jugador.estadoCreditos(), jugador.estadoPuntos());
+            return null;
+        }
+        Fila anterior = new Fila(nombre, fila);
+        anterior.restaurar(jugador.estadoCreditos(), jugador.estadoPuntos());
+        return anterior;
+    }
+
+    @Override
+    public synchronized Feria.Jugador putIfAbsent(String nombre, Feria.Jugador jugador) {
+        byte[] bytes = nombre.getBytes(StandardCharsets.UTF_8);
+        int fila = buscarFila(bytes);
+        if (fila >= 0) {
+            return new Fila(nombre, fila);
+        }
+        agregar(bytes, jugador.estadoCreditos(), jugador.estadoPuntos());
+        return null;
+    }
+
+    /**
+     * Igual que en un mapa concurrente, pero devuelve la vista del jugador
+     * guardado y no el objeto que creó la función.
+     */
+    @Override
+    public Feria.Jugador computeIfAbsent(String nombre, Function<? super String, ? extends Feria.Jugador> funcion) {
+        Feria.Jugador jugador = get(nombre);
+        if (jugador != null) {
+            return jugador;
+        }
+        Feria.Jugador nuevo = funcion.apply(nombre);
+        if (nuevo == null) {
+            return null;
+        }
+        byte[] bytes = nombre.getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            int fila = buscarFila(bytes);
+            if (fila < 0) {
+                fila = agregar(bytes, nuevo.estadoCreditos(), nuevo.estadoPuntos());
+            }
+            return new Fila(nombre, fila);
+        }
+    }
+
+    @Override
+    public boolean remove(Object nombre, Object jugador) {
+        throw new UnsupportedOperationException("Los jugadores no se borran");
+    }
+
+    @Override
+    public boolean replace(String nombre, Feria.Jugador anterior, Feria.Jugador nuevo) {
+        throw new UnsupportedOperationException("Los jugadores se cambian con sus propios métodos");
+    }
+
+    @Override
+    public Feria.Jugador replace(String nombre, Feria.Jugador jugador) {
+        throw new UnsupportedOperationException("Los jugadores se cambian con sus propios métodos");
+    }
+
+    @Override
+    public synchronized void clear() {
+        filas = 0;
+        indice = new int[CAPACIDAD_INICIAL];
+        posiciones = new int[0][];
+        nombres = new byte[0][];
+        libreEnTrozo = TROZO;
+        creditos.vaciar();
+        puntos.vaciar();
+    }
+
+    /**
+     * Recorre las filas registradas hasta el momento de empezar, con una vista por fila.
+     */
+    @Override
+    public Set<Map.Entry<String, Feria.Jugador>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return filas;
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, Feria.Jugador>> iterator() {
+                int total = filas;
+                return new Iterator<>() {
+                    private int fila;
+
+                    @Override
+                    public boolean hasNext() {
+                        return fila < total;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Feria.Jugador> next() {
+                        if (fila >= total) {
+                            throw new NoSuchElementException();
+                        }
+                        String nombre = leerNombre(fila);
+                        return new AbstractMap.SimpleImmutableEntry<>(nombre, new Fila(nombre, fila++));
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Recorre una parte de las filas leyendo las columnas directamente, sin
+     * crear vistas, para repartir la tabla entre hilos.
+     *
+     * @param desde La primera fila.
+     * @param hasta La fila siguiente a la última; a lo más {@link #size()}.
+     * @param visitante Quien recibe el nombre y los estados de cada fila.
+     */
+    void recorrer(int desde, int hasta, AlmacenJugadores.Visitante visitante) {
+        for (int fila = desde; fila < hasta; fila++) {
+            visitante.visitar(leerNombre(fila), creditos.leer(fila), puntos.leer(fila));
+        }
+    }
+
+    /**
+     * @return La fila del nombre, o -1 si no está registrado.
+     */
+    private int buscarFila(byte[] nombre) {
+        int[] ranuras = indice;
+        int mascara = ranuras.length - 1;
+        for (int ranura = hash(nombre, 0, nombre.length) & mascara; ; ranura = (ranura + 1) & mascara) {
+            int fila = (int) RANURA.getAcquire(ranuras, ranura) - 1;
+            if (fila < 0) {
+                return -1;
+            }
+            if (mismoNombre(fila, nombre)) {
+                return fila;
+            }
+        }
+    }
+
+    /**
+     * Agrega una fila y la publica en el índice; se llama con el candado de la tabla.
+     *
+     * @return La fila nueva.
+     */
+    private int agregar(byte[] nombre, long estadoCreditos, long estadoPuntos) {
+        int fila = filas;
+        if (fila == Integer.MAX_VALUE) {
+            throw new IllegalStateException("La tabla de jugadores está llena");
+        }
+        if ((fila & (FILAS_POR_BLOQUE - 1)) == 0) {
+            int[][] bloques = Arrays.copyOf(posiciones, posiciones.length + 1);
+            bloques[bloques.length - 1] = new int[FILAS_POR_BLOQUE];
+            posiciones = bloques;
+            creditos.agregarBloque();
+            puntos.agregarBloque();
+        }
+        posiciones[fila >>> BITS_BLOQUE][fila & (FILAS_POR_BLOQUE - 1)] = escribirNombre(nombre);
+        creditos.poner(fila, estadoCreditos);
+        puntos.poner(fila, estadoPuntos);
+
+        // El índice se mantiene a lo más a la mitad, así las búsquedas recorren pocas ranuras
+        if ((long) (fila + 1) * 2 > indice.length) {
+            int[] nuevo = new int[indice.length * 2];
+            for (int anterior = 0; anterior < fila; anterior++) {
+                colocar(nuevo, anterior);
+            }
+            indice = nuevo;
+        }
+        colocar(indice, fila);
+        filas = fila + 1;
+        return fila;
+    }
+
+    /**
+     * Pone una fila en la primera ranura vacía de su nombre.
+     */
+    private void colocar(int[] ranuras, int fila) {
+        int posicion = posicionNombre(fila);
+        byte[] trozo = nombres[posicion >>> BITS_TROZO];
+        int inicio = posicion & (TROZO - 1);
+        int mascara = ranuras.length - 1;
+        int ranura = hash(trozo, inicio + 1, trozo[inicio] & 0xFF) & mascara;
+        while ((int) RANURA.getAcquire(ranuras, ranura) != 0) {
+            ranura = (ranura + 1) & mascara;
+        }
+        RANURA.setRelease(ranuras, ranura, fila + 1);
+    }
+
+    /**
+     * Copia un nombre al final del último trozo, o a uno nuevo si ya no cabe.
+     *
+     * @return La posición: el número de trozo en los bits altos y el byte dentro del trozo.
+     */
+    private int escribirNombre(byte[] nombre) {
+        if (nombre.length > 0xFF) {
+            throw new IllegalArgumentException("Nombre demasiado largo: " + nombre.length + " bytes");
+        }
+        if (libreEnTrozo + 1 + nombre.length > TROZO) {
+            if (nombres.length == MAXIMO_TROZOS) {
+                throw new IllegalStateException("No caben más nombres en la tabla de jugadores");
+            }
+            byte[][] trozos = Arrays.copyOf(nombres, nombres.length + 1);
+            trozos[trozos.length - 1] = new byte[TROZO];
+            nombres = trozos;
+            libreEnTrozo = 0;
+        }
+        byte[] trozo = nombres[nombres.length - 1];
+        int inicio = libreEnTrozo;
+        trozo[inicio] = (byte) nombre.length;
+        System.arraycopy(nombre, 0, trozo, inicio + 1, nombre.length);
+        libreEnTrozo += 1 + nombre.length;
+        return (nombres.length - 1) << BITS_TROZO | inicio;
+    }
+
+    private int posicionNombre(int fila) {
+        return posiciones[fila >>> BITS_BLOQUE][fila & (FILAS_POR_BLOQUE - 1)];
+    }
+
+    private boolean mismoNombre(int fila, byte[] nombre) {
+        int posicion = posicionNombre(fila);
+        byte[] trozo = nombres[posicion >>> BITS_TROZO];
+        int inicio = (posicion & (TROZO - 1)) + 1;
+        return (trozo[inicio - 1] & 0xFF) == nombre.length
+                && Arrays.equals(trozo, inicio, inicio + nombre.length, nombre, 0, nombre.length);
+    }
+
+    private String leerNombre(int fila) {
+        int posicion = posicionNombre(fila);
+        byte[] trozo = nombres[posicion >>> BITS_TROZO];
+        int inicio = posicion & (TROZO - 1);
+        return new String(trozo, inicio + 1, trozo[inicio] & 0xFF, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * FNV-1a de 32 bits, como en {@link AlmacenJugadores}.
+     */
+    private static int hash(byte[] bytes, int desde, int largo) {
+        int h = 0x811C9DC5;
+        for (int i = desde; i < desde + largo; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Un jugador de la tabla: su nombre y su fila. Los saldos se leen y se
+     * cambian directamente en las columnas.
+     */
+    private final class Fila extends Feria.Jugador {
+        private final int fila;
+
+        Fila(String nombre, int fila) {
+            super(nombre, 0);
+            this.fila = fila;
+        }
+
+        @Override
+        long estado(byte tipo) {
+            return columna(tipo).leer(fila);
+        }
+
+        @Override
+        boolean cambiarEstado(byte tipo, long actual, long nuevo) {
+            return columna(tipo).cambiar(fila, actual, nuevo);
+        }
+
+        @Override
+        void ponerEstado(byte tipo, long estado) {
+            columna(tipo).poner(fila, estado);
+        }
+
+        private Columna columna(byte tipo) {
+            return tipo == BitacoraJugadores.CREDITOS ? creditos : puntos;
+        }
+    }
+
+    /**
+     * Una columna de longs en bloques de {@link #FILAS_POR_BLOQUE} filas. Los
+     * bloques se agregan con el candado de la tabla; leer y cambiar no lo usan.
+     */
+    private abstract static class Columna {
+        abstract long leer(int fila);
+
+        abstract void poner(int fila, long estado);
+
+        abstract boolean cambiar(int fila, long actual, long nuevo);
+
+        abstract void agregarBloque();
+
+        abstract void vaciar();
+    }
+
+    /**
+     * Columna en arreglos del heap.
+     */
+    private static final class ColumnaEnHeap extends Columna {
+        private static final VarHandle ESTADO = MethodHandles.arrayElementVarHandle(long[].class);
+
+        private volatile long[][] bloques = new long[0][];
+
+        @Override
+        long leer(int fila) {
+            return (long) ESTADO.getVolatile(bloques[fila >>> BITS_BLOQUE], fila & (FILAS_POR_BLOQUE - 1));
+        }
+
+        @Override
+        void poner(int fila, long estado) {
+            ESTADO.setVolatile(bloques[fila >>> BITS_BLOQUE], fila & (FILAS_POR_BLOQUE - 1), estado);
+        }
+
+        @Override
+        boolean cambiar(int fila, long actual, long nuevo) {
+            return ESTADO.compareAndSet(bloques[fila >>> BITS_BLOQUE], fila & (FILAS_POR_BLOQUE - 1), actual, nuevo);
+        }
+
+        @Override
+        void agregarBloque() {
+            long[][] nuevos = Arrays.copyOf(bloques, bloques.length + 1);
+            nuevos[nuevos.length - 1] = new long[FILAS_POR_BLOQUE];
+            bloques = nuevos;
+        }
+
+        @Override
+        void vaciar() {
+            bloques = new long[0][];
+        }
+    }
+
+    /**
+     * Columna en bloques de memoria directa, fuera del heap.
+     */
+    private static final class ColumnaDirecta extends Columna {
+        private static final VarHandle ESTADO =
+                MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+        private volatile ByteBuffer[] bloques = new ByteBuffer[0];
+
+        @Override
+        long leer(int fila) {
+            return (long) ESTADO.getVolatile(bloques[fila >>> BITS_BLOQUE], (fila & (FILAS_POR_BLOQUE - 1)) << 3);
+        }
+
+        @Override
+        void poner(int fila, long estado) {
+            ESTADO.setVolatile(bloques[fila >>> BITS_BLOQUE], (fila & (FILAS_POR_BLOQUE - 1)) << 3, estado);
+        }
+
+        @Override
+        boolean cambiar(int fila, long actual, long nuevo) {
+            return ESTADO.compareAndSet(bloques[fila >>> BITS_BLOQUE], (fila & (FILAS_POR_BLOQUE - 1)) << 3,
+                    actual, nuevo);
+        }
+
+        @Override
+        void agregarBloque() {
+            ByteBuffer[] nuevos = Arrays.copyOf(bloques, bloques.length + 1);
+            nuevos[nuevos.length - 1] = ByteBuffer.allocateDirect(FILAS_POR_BLOQUE * Long.BYTES);
+            bloques = nuevos;
+        }
+
+        @Override
+        void vaciar() {
+            bloques = new ByteBuffer[0];
+        }
+    }
+}
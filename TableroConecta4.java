@@ -0,0 +1,232 @@
+/**
+ *  Tablero de Conecta 4 representado con bitboards.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+
+/**
+ * Tablero de 6 filas y 7 columnas guardado en dos enteros de 64 bits, uno por
+ * jugador. Cada columna ocupa 7 bits (6 casillas y un bit centinela siempre
+ * vacío), de abajo hacia arriba:
+ *
+ * <pre>
+ *   .  .  .  .  .  .  .      6 13 20 27 34 41 48   (centinela)
+ *   5 12 19 26 33 40 47
+ *   4 11 18 25 32 39 46
+ *   3 10 17 24 31 38 45
+ *   2  9 16 23 30 37 44
+ *   1  8 15 22 29 36 43
+ *   0  7 14 21 28 35 42
+ * </pre>
+ *
+ * Poner o quitar una ficha y saber si hay cuatro en línea son unas cuantas
+ * operaciones de bits sin ciclos; el tablero no crea objetos mientras se juega,
+ * así que sirve de base para buscar jugadas.
+ */
+class TableroConecta4 {
+    static final int FILAS = 6;
+    static final int COLUMNAS = 7;
+
+    // Bits por columna: las casillas más el centinela
+    private static final int ALTO = FILAS + 1;
+
+    // Un bit en la casilla de abajo de cada columna
+    static final long FONDO = 0b0000001_0000001_0000001_0000001_0000001_0000001_0000001L;
+
+    // Todas las casillas jugables
+    static final long TABLERO = FONDO * ((1L << FILAS) - 1);
+
+    // Fichas de cada jugador; el índice 0 es el jugador 1 (X)
+    private final long[] fichas = new long[2];
+
+    // Siguiente bit libre de cada columna
+    private final int[] alturas = new int[COLUMNAS];
+
+    // Columnas jugadas, para poder deshacer
+    private final int[] jugadas = new int[FILAS * COLUMNAS];
+    private int movimientos;
+
+    TableroConecta4() {
+        for (int c = 0; c < COLUMNAS; c++) {
+            alturas[c] = c * ALTO;
+        }
+    }
+
+    /**
+     * Crea una copia independiente de otro tablero.
+     *
+     * @param otro El tablero a copiar.
+     */
+    TableroConecta4(TableroConecta4 otro) {
+        System.arraycopy(otro.fichas, 0, fichas, 0, fichas.length);
+        System.arraycopy(otro.alturas, 0, alturas, 0, alturas.length);
+        System.arraycopy(otro.jugadas, 0, jugadas, 0, otro.movimientos);
+        movimientos = otro.movimientos;
+    }
+
+    /**
+     * @return El jugador al que le toca: 1 (X) o 2 (O).
+     */
+    int jugadorActual() {
+        return (movimientos & 1) + 1;
+    }
+
+    /**
+     * @return Cuántas fichas hay en el tablero.
+     */
+    int movimientos() {
+        return movimientos;
+    }
+
+    /**
+     * @return `true` si ya no cabe ninguna ficha.
+     */
+    boolean lleno() {
+        return movimientos == FILAS * COLUMNAS;
+    }
+
+    /**
+     * @param columna Una columna cualquiera.
+     * @return `true` si la columna existe y no está llena.
+     */
+    boolean puedeJugar(int columna) {
+        return columna >= 0 && columna < COLUMNAS && alturas[columna] < columna * ALTO + FILAS;
+    }
+
+    /**
+     * Pone una ficha del jugador actual en una columna; antes hay que revisar
+     * {@link #puedeJugar(int)}.
+     *
+     * @param columna La columna donde cae la ficha.
+     * @return La fila donde quedó, contando desde arriba (0) como en el tablero en pantalla.
+     */
+    int jugar(int columna) {
+        int bit = alturas[columna]++;
+        fichas[movimientos & 1] |= 1L << bit;
+        jugadas[movimientos++] = columna;
+        return FILAS - 1 - (bit - columna * ALTO);
+    }
+
+    /**
+     * Quita la última ficha que se puso.
+     */
+    void deshacer() {
+        int columna = jugadas[--movimientos];
+        fichas[movimientos & 1] ^= 1L << --alturas[columna];
+    }
+
+    /**
+     * @param jugador 1 o 2.
+     * @return `true` si ese jugador tiene cuatro fichas en línea.
+     */
+    boolean gano(int jugador) {
+        return hayCuatro(fichas[jugador - 1]);
+    }
+
+    /**
+     * @return `true` si la última ficha que se puso hizo cuatro en línea.
+     */
+    boolean ultimoGano() {
+        return movimientos > 0 && hayCuatro(fichas[(movimientos - 1) & 1]);
+    }
+
+    /**
+     * @param fila La fila contando desde arriba, como en pantalla.
+     * @param columna La columna.
+     * @return 0 si la casilla está vacía, o el jugador (1 o 2) que tiene ficha ahí.
+     */
+    int ficha(int fila, int columna) {
+        long bit = 1L << (columna * ALTO + FILAS - 1 - fila);
+        if ((fichas[0] & bit) != 0) {
+            return 1;
+        }
+        return (fichas[1] & bit) != 0 ? 2 : 0;
+    }
+
+    /**
+     * @return Las fichas del jugador al que le toca.
+     */
+    long fichasActuales() {
+        return fichas[movimientos & 1];
+    }
+
+    /**
+     * @return Todas las casillas ocupadas.
+     */
+    long ocupadas() {
+        return fichas[0] | fichas[1];
+    }
+
+    /**
+     * Clave única de la posición: las fichas de quien juega más todas las
+     * ocupadas. La suma deja en cada columna un bit extra arriba de la última
+     * ficha, así dos posiciones distintas nunca comparten clave.
+     *
+     * @return La clave de la posición.
+     */
+    long clave() {
+        return fichasActuales() + ocupadas();
+    }
+
+    /**
+     * Escribe el tablero en 49 bits: su {@link #clave()}, que ya dice dónde
+     * está cada ficha y a quién le toca. Las jugadas para deshacer no se guardan.
+     *
+     * @param bits Dónde se escribe.
+     */
+    void codificar(Bits bits) {
+        bits.escribir(clave(), COLUMNAS * ALTO);
+    }
+
+    /**
+     * Lee un tablero escrito con {@link #codificar(Bits)}. En cada columna la
+     * clave vale 2^h - 1 más las fichas de quien juega, donde h es la altura.
+     * Las jugadas anteriores no se pueden deshacer en el tablero leído.
+     *
+     * @param bits De dónde se lee.
+     * @return El tablero.
+     */
+    static TableroConecta4 decodificar(Bits bits) {
+        long clave = bits.leer(COLUMNAS * ALTO);
+        TableroConecta4 tablero = new TableroConecta4();
+        long actuales = 0;
+        long ocupadas = 0;
+        for (int c = 0; c < COLUMNAS; c++) {
+            long columna = clave >>> (c * ALTO) & ((1L << ALTO) - 1);
+            int altura = 63 - Long.numberOfLeadingZeros(columna + 1);
+            long llenas = (1L << altura) - 1;
+            actuales |= (columna - llenas) << (c * ALTO);
+            ocupadas |= llenas << (c * ALTO);
+            tablero.alturas[c] += altura;
+            tablero.movimientos += altura;
+        }
+        tablero.fichas[tablero.movimientos & 1] = actuales;
+        tablero.fichas[(tablero.movimientos + 1) & 1] = ocupadas ^ actuales;
+        return tablero;
+    }
+
+    /**
+     * Busca cuatro bits seguidos en alguna dirección. Desplazar 1 recorre
+     * la columna, 7 la fila y 6 u 8 las diagonales; el centinela evita que una
+     * línea pase de una columna a la siguiente.
+     *
+     * @param b Las fichas de un jugador.
+     * @return `true` si hay cuatro en línea.
+     */
+    static boolean hayCuatro(long b) {
+        long m = b & (b >>> ALTO);                 // Horizontal
+        if ((m & (m >>> (2 * ALTO))) != 0) {
+            return true;
+        }
+        m = b & (b >>> (ALTO - 1));                // Diagonal \
+        if ((m & (m >>> (2 * (ALTO - 1)))) != 0) {
+            return true;
+        }
+        m = b & (b >>> (ALTO + 1));                // Diagonal /
+        if ((m & (m >>> (2 * (ALTO + 1)))) != 0) {
+            return true;
+        }
+        m = b & (b >>> 1);                         // Vertical
+        return (m & (m >>> 2)) != 0;
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ *  Tablero del Cuadrado Mágico con sumas y números usados al día.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estado de una partida de Cuadrado Mágico de N x N. Cada jugada actualiza en
+ * O(1) la suma de su fila, su columna y sus diagonales, y una máscara de bits
+ * de los números usados.
+ *
+ * Saber si el tablero todavía puede completarse es exacto. En el tablero
+ * clásico de 4x4 que empieza con la diagonal 1, 6, 11, 16, un índice con todos
+ * los cuadrados mágicos que tienen esa diagonal guarda, para cada casilla y
+ * número, el conjunto de cuadrados que lo tienen ahí; el tablero conserva la
+ * intersección de los conjuntos de sus jugadas y, si queda vacía, ya no hay
+ * solución. Un acertijo de {@link GeneradorMagico} tiene una sola solución,
+ * así que basta con contar las jugadas que no coinciden con ella. En los dos
+ * casos de ahí salen también las pistas.
+ */
+class TableroMagico {
+    // Tamaño del tablero clásico
+    static final int N = 4;
+
+    // Valores de la diagonal principal con los que empieza el tablero clásico
+    static final int[] DIAGONAL_INICIAL = {1, 6, 11, 16};
+
+    private final int n;
+    private final int casillas;
+    private final int sumaMagica;
+    private final int[] celdas;
+
+    // Suma de cada línea: N filas, N columnas, la diagonal principal y la secundaria
+    private final int[] sumas;
+
+    // Bit n - 1 encendido si el número n ya está en el tablero
+    private long usados;
+    private int ocupadas;
+
+    // Tablero clásico: cuadrados del índice que siguen siendo compatibles
+    private final long[] candidatos;
+
+    // Acertijo generado: su única solución y cuántas jugadas no coinciden con ella
+    private final int[] solucion;
+    private int errores;
+
+    /**
+     * Crea el tablero clásico de 4x4 con la diagonal 1, 6, 11, 16.
+     */
+    TableroMagico() {
+        this(N, Indice.TODOS.clone(), null);
+        for (int i = 0; i < N; i++) {
+            poner(i, i, DIAGONAL_INICIAL[i]);
+        }
+    }
+
+    /**
+     * Crea un tablero a partir de un acertijo generado.
+     *
+     * @param acertijo El acertijo, con su única solución.
+     */
+    TableroMagico(GeneradorMagico.Acertijo acertijo) {
+        this(acertijo.n(), null, acertijo.solucion());
+        for (int casilla = 0; casilla < casillas; casilla++) {
+            if (acertijo.celdas()[casilla] != 0) {
+                poner(casilla / n, casilla % n, acertijo.celdas()[casilla]);
+            }
+        }
+    }
+
+    private TableroMagico(int n, long[] candidatos, int[] solucion) {
+        this.n = n;
+        this.casillas = n * n;
+        this.sumaMagica = SolucionadorMagico.sumaMagica(n);
+        this.celdas = new int[casillas];
+        this.sumas = new int[2 * n + 2];
+        this.candidatos = candidatos;
+        this.solucion = solucion;
+    }
+
+    /**
+     * @return El tamaño del tablero.
+     */
+    int tamano() {
+        return n;
+    }
+
+    /**
+     * @return El número en una casilla, o 0 si está vacía.
+     */
+    int celda(int fila, int columna) {
+        return celdas[fila * n + columna];
+    }
+
+    /**
+     * @return `true` si la casilla existe y está vacía.
+     */
+    boolean libre(int fila, int columna) {
+        return fila >= 0 && fila < n && columna >= 0 && columna < n && celdas[fila * n + columna] == 0;
+    }
+
+    /**
+     * @return `true` si el número está entre 1 y N*N y no se ha usado.
+     */
+    boolean disponible(int numero) {
+        return numero >= 1 && numero <= casillas && (usados & (1L << (numero - 1))) == 0;
+    }
+
+    /**
+     * @return `true` si ya no quedan casillas vacías.
+     */
+    boolean lleno() {
+        return ocupadas == casillas;
+    }
+
+    /**
+     * Coloca un número; antes hay que revisar {@link #libre(int, int)} y
+     * {@link #disponible(int)}.
+     */
+    void poner(int fila, int columna, int numero) {
+        int casilla = fila * n + columna;
+        celdas[casilla] = numero;
+        usados |= 1L << (numero - 1);
+        ocupadas++;
+        sumas[fila] += numero;
+        sumas[n + columna] += numero;
+        if (fila == columna) {
+            sumas[2 * n] += numero;
+        }
+        if (fila + columna == n - 1) {
+            sumas[2 * n + 1] += numero;
+        }
+        if (candidatos != null) {
+            long[] compatibles = Indice.CON[casilla * (Indice.CASILLAS + 1) + numero];
+            for (int i = 0; i < candidatos.length; i++) {
+                candidatos[i] &= compatibles[i];
+            }
+        } else if (solucion[casilla] != numero) {
+            errores++;
+        }
+    }
+
+    /**
+     * Escribe el tablero en pocos bits: el tamaño, si es el clásico, un bit
+     * por número usado y la casilla de cada número usado con los bits justos
+     * (4 en el de 4x4, así el clásico cabe en 11 bytes). Un acertijo agrega
+     * la casilla de cada número en su solución.
+     *
+     * @param bits Dónde se escribe.
+     */
+    void codificar(Bits bits) {
+        int ancho = Bits.ancho(casillas);
+        int[] lugares = new int[casillas];
+        for (int casilla = 0; casilla < casillas; casilla++) {
+            if (celdas[casilla] != 0) {
+                lugares[celdas[casilla] - 1] = casilla;
+            }
+        }
+        bits.escribir(n, 4).escribir(candidatos != null ? 1 : 0, 1).escribir(usados, casillas);
+        for (int numero = 1; numero <= casillas; numero++) {
+            if ((usados & (1L << (numero - 1))) != 0) {
+                bits.escribir(lugares[numero - 1], ancho);
+            }
+        }
+        if (solucion != null) {
+            for (int casilla = 0; casilla < casillas; casilla++) {
+                lugares[solucion[casilla] - 1] = casilla;
+            }
+            for (int numero = 1; numero <= casillas; numero++) {
+                bits.escribir(lugares[numero - 1], ancho);
+            }
+        }
+    }
+
+    /**
+     * Lee un tablero escrito con {@link #codificar(Bits)}; las sumas, el
+     * índice y los errores se recalculan poniendo los números otra vez.
+     *
+     * @param bits De dónde se lee.
+     * @return El tablero.
+     */
+    static TableroMagico decodificar(Bits bits) {
+        int n = (int) bits.leer(4);
+        boolean clasico = bits.leer(1) == 1;
+        int casillas = n * n;
+        int ancho = Bits.ancho(casillas);
+        long usados = bits.leer(casillas);
+        int[] lugares = new int[casillas];
+        for (int numero = 1; numero <= casillas; numero++) {
+            lugares[numero - 1] = (usados & (1L << (numero - 1))) != 0 ? (int) bits.leer(ancho) : -1;
+        }
+        int[] solucion = null;
+        if (!clasico) {
+            solucion = new int[casillas];
+            for (int numero = 1; numero <= casillas; numero++) {
+                solucion[(int) bits.leer(ancho)] = numero;
+            }
+        }
+        TableroMagico tablero = new TableroMagico(n, clasico ? Indice.TODOS.clone() : null, solucion);
+        for (int numero = 1; numero <= casillas; numero++) {
+            if (lugares[numero - 1] >= 0) {
+                tablero.poner(lugares[numero - 1] / n, lugares[numero - 1] % n, numero);
+            }
+        }
+        return tablero;
+    }
+
+    /**
+     * @return `true` si existe al menos una forma de completar el tablero.
+     */
+    boolean esPosible() {
+        return candidatos != null ? primerCandidato() >= 0 : errores == 0;
+    }
+
+    /**
+     * @return `true` si todas las filas, columnas y diagonales suman la suma mágica.
+     */
+    boolean esMagico() {
+        if (!lleno()) {
+            return false;
+        }
+        for (int suma : sumas) {
+            if (suma != sumaMagica) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sugiere una jugada que sigue llevando a un cuadrado mágico.
+     *
+     * @return {fila, columna, número}, o `null` si el tablero ya no tiene solución
+     *         o está lleno.
+     */
+    int[] pista() {
+        int cuadrado = -1;
+        if (candidatos != null) {
+            cuadrado = primerCandidato();
+            if (cuadrado < 0) {
+                return null;
+            }
+        } else if (errores > 0) {
+            return null;
+        }
+        for (int casilla = 0; casilla < casillas; casilla++) {
+            if (celdas[casilla] == 0) {
+                int numero = candidatos != null ? Indice.valor(cuadrado, casilla) : solucion[casilla];
+                return new int[] {casilla / n, casilla % n, numero};
+            }
+        }
+        return null;
+    }
+
+    private int primerCandidato() {
+        for (int i = 0; i < candidatos.length; i++) {
+            if (candidatos[i] != 0) {
+                return i * 64 + Long.numberOfTrailingZeros(candidatos[i]);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Índice de todos los cuadrados mágicos de 4x4 con la diagonal inicial.
+     * Se construye la primera vez que se usa el tablero.
+     */
+    static final class Indice {
+        static final int CASILLAS = N * N;
+        private static final int SUMA_MAGICA = SolucionadorMagico.sumaMagica(N);
+        private static final int LINEAS = 2 * N + 2;
+
+        // Cada cuadrado en 64 bits: 4 bits por casilla con el número menos 1
+        static final long[] CUADRADOS = enumerar();
+
+        // Conjunto de bits con todos los cuadrados
+        static final long[] TODOS = new long[(CUADRADOS.length + 63) / 64];
+
+        // Para cada casilla y número (casilla * 17 + número), los cuadrados que lo tienen ahí
+        static final long[][] CON = new long[CASILLAS * (CASILLAS + 1)][TODOS.length];
+
+        static {
+            for (int s = 0; s < CUADRADOS.length; s++) {
+                TODOS[s >>> 6] |= 1L << s;
+                for (int casilla = 0; casilla < CASILLAS; casilla++) {
+                    CON[casilla * (CASILLAS + 1) + valor(s, casilla)][s >>> 6] |= 1L << s;
+                }
+            }
+        }
+
+        private Indice() {
+        }
+
+        static int valor(int cuadrado, int casilla) {
+            return (int) (CUADRADOS[cuadrado] >>> (4 * casilla) & 0xF) + 1;
+        }
+
+        /**
+         * Llena las casillas en orden; la última casilla libre de una línea
+         * queda determinada por la suma mágica, así que no se prueba.
+         */
+        private static long[] enumerar() {
+            int[] celdas = new int[CASILLAS];
+            for (int i = 0; i < N; i++) {
+                celdas[i * N + i] = DIAGONAL_INICIAL[i];
+            }
+            List<Long> encontrados = new ArrayList<>();
+            llenar(celdas, 0, usadosDe(celdas), encontrados);
+            long[] resultado = new long[encontrados.size()];
+            for (int i = 0; i < resultado.length; i++) {
+                resultado[i] = encontrados.get(i);
+            }
+            return resultado;
+        }
+
+        private static long usadosDe(int[] celdas) {
+            long usados = 0;
+            for (int celda : celdas) {
+                usados |= 1L << celda;
+            }
+            return usados & ~1L;
+        }
+
+        private static void llenar(int[] celdas, int casilla, long usados, List<Long> encontrados) {
+            while (casilla < CASILLAS && celdas[casilla] != 0) {
+                casilla++;
+            }
+            if (casilla == CASILLAS) {
+                if (lineasPosibles(celdas)) {
+                    long cuadrado = 0;
+                    for (int i = 0; i < CASILLAS; i++) {
+                        cuadrado |= (long) (celdas[i] - 1) << (4 * i);
+                    }
+                    encontrados.add(cuadrado);
+                }
+                return;
+            }
+            int forzado = forzado(celdas, casilla);
+            if (forzado < 0) {
+                return;
+            }
+            int desde = forzado > 0 ? forzado : 1;
+            int hasta = forzado > 0 ? forzado : CASILLAS;
+            for (int numero = desde; numero <= hasta; numero++) {
+                if ((usados & (1L << numero)) != 0) {
+                    continue;
+                }
+                celdas[casilla] = numero;
+                if (lineasPosibles(celdas)) {
+                    llenar(celdas, casilla + 1, usados | (1L << numero), encontrados);
+                }
+                celdas[casilla] = 0;
+            }
+        }
+
+        /**
+         * @return El número que debe ir en la casilla si es la última libre de su
+         *         fila o columna, -1 si eso no es posible, o 0 si no está forzada.
+         */
+        private static int forzado(int[] celdas, int casilla) {
+            int fila = casilla / N;
+            int columna = casilla % N;
+            int libresFila = 0, sumaFila = 0, libresColumna = 0, sumaColumna = 0;
+            for (int k = 0; k < N; k++) {
+                int f = celdas[fila * N + k];
+                int c = celdas[k * N + columna];
+                libresFila += f == 0 ? 1 : 0;
+                sumaFila += f;
+                libresColumna += c == 0 ? 1 : 0;
+                sumaColumna += c;
+            }
+            if (libresFila != 1 && libresColumna != 1) {
+                return 0;
+            }
+            int resto = libresFila == 1 ? SUMA_MAGICA - sumaFila : SUMA_MAGICA - sumaColumna;
+            return resto >= 1 && resto <= CASILLAS ? resto : -1;
+        }
+
+        /**
+         * @return `false` si alguna línea ya se pasó de la suma o quedó completa sin alcanzarla.
+         */
+        private static boolean lineasPosibles(int[] celdas) {
+            for (int linea = 0; linea < LINEAS; linea++) {
+                int suma = 0;
+                boolean completa = true;
+                for (int k = 0; k < N; k++) {
+                    int celda = celdas[casillaDeLinea(linea, k)];
+                    suma += celda;
+                    completa &= celda != 0;
+                }
+                if (suma > SUMA_MAGICA || (completa && suma != SUMA_MAGICA)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int casillaDeLinea(int linea, int k) {
+            if (linea < N) {
+                return linea * N + k;
+            } else if (linea < 2 * N) {
+                return k * N + (linea - N);
+            } else if (linea == 2 * N) {
+                return k * N + k;
+            }
+            return k * N + (N - 1 - k);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ *  Resultados de las partidas que se aplican fuera de la sesión.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cada partida que termina publica aquí un resultado: quién lo recibe, el
+ * juego, los puntos, los créditos ganados y cuánto duró. Los resultados van a
+ * un anillo de {@link #CAPACIDAD} casillas apartado desde el arranque (un
+ * arreglo por campo, así publicar no crea objetos) y un solo hilo los toma por
+ * lotes y los aplica: premios con {@link LibroCreditos}, puntos con
+ * {@link Feria.Jugador#agregarPuntos(int)} (que avisan a la clasificación y
+ * anotan en la bitácora), las métricas del juego y las jugadas en
+ * {@link ArchivoPartidas}, que se manda al disco cuando no hay más pendientes.
+ *
+ * Publicar nunca espera: se aparta una casilla con compare-and-set y se
+ * llenan sus campos. Si el anillo está lleno, la sesión aplica su resultado
+ * ella misma, así que un resultado espera a lo más a que se apliquen los
+ * {@link #CAPACIDAD} anteriores. Los premios y puntos son sumas, de modo que el
+ * orden en que se aplican no cambia el saldo final.
+ *
+ * Quien quiera leer sus propios resultados (la sesión antes de mostrar el
+ * menú, el simulador antes de cobrarle otra partida a un bot) espera con
+ * {@link #esperar(long)} la secuencia que le devolvió {@link #publicar}.
+ * Con -Dferia.anilloResultados=N se cambia la capacidad (se redondea a
+ * potencia de 2).
+ */
+final class TuberiaResultados {
+    // Casillas del anillo
+    static final int CAPACIDAD =
+            Integer.highestOneBit(Math.max(2, Integer.getInteger("feria.anilloResultados", 1 << 12)));
+    private static final int MASCARA = CAPACIDAD - 1;
+
+    // Máximo de resultados que el consumidor toma de una vez
+    private static final int LOTE = 256;
+
+    // Vueltas de espera activa antes de dormir un poco en esperar()
+    private static final int VUELTAS = 100;
+    private static final long PAUSA_ESPERA = 50_000;
+
+    // La secuencia publicada en cada casilla (-1 si nunca se usó), con lecturas y escrituras ordenadas
+    private static final VarHandle SECUENCIA = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Los campos de cada resultado, uno por arreglo
+    private static final long[] SECUENCIAS = new long[CAPACIDAD];
+    private static final Feria.Jugador[] JUGADORES = new Feria.Jugador[CAPACIDAD];
+    private static final int[] JUEGOS = new int[CAPACIDAD];
+    private static final int[] PUNTOS = new int[CAPACIDAD];
+    private static final int[] CREDITOS = new int[CAPACIDAD];
+    private static final long[] DURACIONES = new long[CAPACIDAD];
+    private static final long[] PUBLICADOS = new long[CAPACIDAD];
+    private static final byte[][] HISTORIALES = new byte[CAPACIDAD][];
+
+    private static final MetricasFeria.Juego[] METRICAS = MetricasFeria.Juego.values();
+
+    // Siguiente secuencia por apartar y cuántas ya se aplicaron (todas las menores)
+    private static final AtomicLong siguiente = new AtomicLong();
+    private static volatile long aplicados;
+
+    // El consumidor avisa que va a dormirse para que quien publique lo despierte
+    private static volatile boolean durmiendo;
+
+    // Resultados aplicados por la misma sesión porque el anillo estaba lleno
+    static final LongAdder directos = new LongAdder();
+
+    // Lotes aplicados por el consumidor
+    static final LongAdder lotes = new LongAdder();
+
+    // Resultados que fallaron al aplicarse; se cuentan como aplicados para no detener a nadie
+    static final LongAdder fallidos = new LongAdder();
+
+    // Desde que se publica un resultado hasta que queda aplicado
+    static final HistogramaLatencia retraso = new HistogramaLatencia();
+
+    private static final Thread CONSUMIDOR;
+
+    static {
+        Arrays.fill(SECUENCIAS, -1);
+        CONSUMIDOR = new Thread(TuberiaResultados::consumir, "resultados-partidas");
+        CONSUMIDOR.setDaemon(true);
+        CONSUMIDOR.start();
+    }
+
+    private TuberiaResultados() {
+    }
+
+    /**
+     * Publica el resultado de una partida terminada. No espera a que se aplique.
+     *
+     * @param jugador Quien recibe los puntos y los créditos.
+     * @param juego El juego en {@link MetricasFeria.Juego} (su ordinal), o -1 si no tiene métricas.
+     * @param puntos Los puntos ganados.
+     * @param creditos Los créditos ganados (el costo ya se cobró al empezar).
+     * @param duracion Cuánto duró la partida, en nanosegundos.
+     * @param historial Las jugadas para {@link ArchivoPartidas#anotar(byte[])}, o null.
+     * @return La secuencia del resultado para {@link #esperar(long)}, o -1 si ya se aplicó.
+     */
+    static long publicar(Feria.Jugador jugador, int juego, int puntos, int creditos, long duracion,
+            byte[] historial) {
+        long secuencia;
+        do {
+            secuencia = siguiente.get();
+            if (secuencia - aplicados >= CAPACIDAD) {
+                directos.increment();
+                aplicar(jugador, juego, puntos, creditos, duracion, historial);
+                return -1;
+            }
+        } while (!siguiente.compareAndSet(secuencia, secuencia + 1));
+
+        int casilla = (int) secuencia & MASCARA;
+        JUGADORES[casilla] = jugador;
+        JUEGOS[casilla] = juego;
+        PUNTOS[casilla] = puntos;
+        CREDITOS[casilla] = creditos;
+        DURACIONES[casilla] = duracion;
+        HISTORIALES[casilla] = historial;
+        PUBLICADOS[casilla] = System.nanoTime();
+        SECUENCIA.setVolatile(SECUENCIAS, casilla, secuencia);
+        if (durmiendo) {
+            LockSupport.unpark(CONSUMIDOR);
+        }
+        return secuencia;
+    }
+
+    /**
+     * Espera a que se aplique un resultado (y todos los anteriores).
+     *
+     * @param secuencia Lo que devolvió {@link #publicar}; con -1 no espera.
+     */
+    static void esperar(long secuencia) {
+        for (int vueltas = 0; aplicados <= secuencia; vueltas++) {
+            if (vueltas < VUELTAS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PAUSA_ESPERA);
+            }
+        }
+    }
+
+    /**
+     * Espera a que se apliquen todos los resultados publicados hasta ahora.
+     */
+    static void vaciar() {
+        esperar(siguiente.get() - 1);
+    }
+
+    /**
+     * @return Cuántos resultados se han publicado, en el anillo o aplicados directamente.
+     */
+    static long publicados() {
+        return siguiente.get() + directos.sum();
+    }
+
+    /**
+     * Bucle del consumidor: toma los resultados publicados en orden, hasta
+     * {@link #LOTE} a la vez, y se duerme cuando no hay.
+     */
+    private static void consumir() {
+        long leido = 0;
+        while (true) {
+            long hasta = leido;
+            while (hasta - leido < LOTE && (long) SECUENCIA.getVolatile(SECUENCIAS, (int) hasta & MASCARA) == hasta) {
+                hasta++;
+            }
+            if (hasta == leido) {
+                try {
+                    ArchivoPartidas.vaciar();
+                } catch (Throwable e) {
+                    System.err.println("No se pudo vaciar el archivo de partidas: " + e);
+                }
+                durmiendo = true;
+                if ((long) SECUENCIA.getVolatile(SECUENCIAS, (int) leido & MASCARA) != leido) {
+                    LockSupport.park();
+                }
+                durmiendo = false;
+                continue;
+            }
+            for (long secuencia = leido; secuencia < hasta; secuencia++) {
+                int casilla = (int) secuencia & MASCARA;
+                aplicar(JUGADORES[casilla], JUEGOS[casilla], PUNTOS[casilla], CREDITOS[casilla], DURACIONES[casilla],
+                        HISTORIALES[casilla]);
+                JUGADORES[casilla] = null;
+                HISTORIALES[casilla] = null;
+            }
+            long ahora = System.nanoTime();
+            for (long secuencia = leido; secuencia < hasta; secuencia++) {
+                retraso.registrar(ahora - PUBLICADOS[(int) secuencia & MASCARA]);
+            }
+            lotes.increment();
+            leido = hasta;
+            aplicados = hasta;
+        }
+    }
+
+    /**
+     * Aplica un resultado. Cualquier falla, también un {@link Error}, se
+     * cuenta en {@link #fallidos} y se anota en la salida de errores, y el
+     * resultado se da por aplicado: si el consumidor muriera nadie avanzaría
+     * {@link #aplicados} y cada sesión se quedaría en {@link #esperar(long)}.
+     */
+    private static void aplicar(Feria.Jugador jugador, int juego, int puntos, int creditos, long duracion,
+            byte[] historial) {
+        try {
+            if (creditos != 0) {
+                LibroCreditos.acreditar(jugador, creditos);
+            }
+            if (puntos != 0) {
+                jugador.agregarPuntos(puntos);
+            }
+            if (juego >= 0) {
+                METRICAS[juego].terminados.increment();
+                METRICAS[juego].partidas.registrar(duracion);
+            }
+            if (historial != null) {
+                ArchivoPartidas.anotar(historial);
+            }
+        } catch (Throwable e) {
+            fallidos.increment();
+            System.err.println("No se pudo aplicar el resultado de " + jugador.getNombre() + ": " + e);
+        }
+    }
+}
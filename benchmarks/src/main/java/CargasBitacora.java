@@ -0,0 +1,123 @@
+/**
+ *  Cargas de los benchmarks de guardar y cargar a los jugadores.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Las cargas de `BitacoraBenchmark`, con `tamano` jugadores en un directorio
+ * temporal que se borra al cerrar la carga.
+ */
+public final class CargasBitacora {
+
+    private CargasBitacora() {
+    }
+
+    /**
+     * Un premio a un jugador al azar y luego "Guardar y salir", que espera a que
+     * la bitácora esté en disco. Usa la bitácora y el mapa de jugadores de la
+     * feria.
+     */
+    public static final class GuardarYSalir implements Carga {
+        private final Path directorio;
+        private final Feria.Jugador[] jugadores;
+        private final int[] indices;
+        private final Feria sesion = CargasFeria.sesionSinSalida();
+
+        public GuardarYSalir(int cantidad) throws IOException {
+            directorio = CargasFeria.directorioTemporal();
+            Feria.jugadores.clear();
+            Feria.bitacora = BitacoraJugadores.abrir(directorio, Feria.ARCHIVO_JUGADORES, Feria.jugadores);
+            jugadores = new Feria.Jugador[cantidad];
+            for (int i = 0; i < cantidad; i++) {
+                jugadores[i] = new Feria.Jugador("jugador" + i, Feria.CREDITO_INICIAL);
+                Feria.jugadores.put(jugadores[i].getNombre(), jugadores[i]);
+                Feria.bitacora.anotarRegistro(jugadores[i].getNombre(), Feria.CREDITO_INICIAL);
+            }
+            Feria.bitacora.sincronizar();
+            indices = CargasFeria.indicesAlAzar(CargasFeria.azar(), cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            Feria.Jugador jugador = jugadores[indices[i]];
+            LibroCreditos.acreditar(jugador, 1);
+            sesion.guardarYSalir();
+            return jugador.getVersionCreditos();
+        }
+
+        @Override
+        public void close() throws IOException {
+            Feria.bitacora.close();
+            Feria.bitacora = null;
+            Feria.jugadores.clear();
+            Clasificacion.CREDITOS.limpiar();
+            CargasFeria.borrar(directorio);
+        }
+    }
+
+    /**
+     * Lo que hace cargarDatos con un archivo de `cantidad` jugadores: mapear la
+     * foto y llenar la clasificación recorriéndola.
+     */
+    public static final class CargarDatos implements Carga {
+        private final Path foto;
+
+        public CargarDatos(int cantidad) throws IOException {
+            foto = CargasFeria.fotoTemporal(cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            try {
+                AlmacenJugadores almacen = AlmacenJugadores.abrir(foto);
+                Clasificacion clasificacion = new Clasificacion(Feria.Jugador::getCreditos);
+                almacen.recorrer((nombre, creditos, puntos) ->
+                        clasificacion.colocarSiFalta(nombre, Feria.Jugador.valor(creditos)));
+                return clasificacion.tamano();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            CargasFeria.borrar(foto.getParent());
+        }
+    }
+
+    /**
+     * Escribir la foto de `cantidad` jugadores, como al compactar la bitácora.
+     */
+    public static final class Foto implements Carga {
+        private final Path foto;
+        private final Map<String, Feria.Jugador> jugadores;
+
+        public Foto(int cantidad) throws IOException {
+            foto = CargasFeria.directorioTemporal().resolve(Feria.ARCHIVO_JUGADORES);
+            jugadores = CargasFeria.mapaJugadores(cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            try {
+                AlmacenJugadores.escribir(foto, 0, null, jugadores);
+                return Files.size(foto);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            CargasFeria.borrar(foto.getParent());
+        }
+    }
+}
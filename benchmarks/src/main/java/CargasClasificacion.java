@@ -0,0 +1,105 @@
+/**
+ *  Cargas de los benchmarks de "Ver top 3 jugadores".
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.*;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Las cargas de `ClasificacionBenchmark`, con `tamano` jugadores.
+ */
+public final class CargasClasificacion {
+    // Orden de "Ver top 3 jugadores" antes de la clasificación incremental
+    private static final Comparator<Feria.Jugador> POR_CREDITOS =
+            Comparator.comparingInt(Feria.Jugador::getCreditos).reversed();
+
+    private CargasClasificacion() {
+    }
+
+    /**
+     * Un premio a un jugador al azar y luego "Ver top 3 jugadores" con la
+     * clasificación incremental (usa {@link Clasificacion#CREDITOS}).
+     */
+    public static final class VerMejoresJugadores implements Carga {
+        private final Feria.Jugador[] jugadores;
+        private final int[] indices;
+        private final Feria sesion = CargasFeria.sesionSinSalida();
+
+        public VerMejoresJugadores(int cantidad) {
+            Random azar = CargasFeria.azar();
+            jugadores = CargasFeria.crearJugadores(azar, cantidad, 1_000_000);
+            indices = CargasFeria.indicesAlAzar(azar, cantidad);
+            Clasificacion.CREDITOS.limpiar();
+            for (Feria.Jugador jugador : jugadores) {
+                Clasificacion.CREDITOS.colocar(jugador.getNombre(), jugador.getCreditos());
+            }
+        }
+
+        @Override
+        public long medir(int i) {
+            Feria.Jugador jugador = jugadores[indices[i]];
+            LibroCreditos.acreditar(jugador, 1);
+            sesion.verMejoresJugadores();
+            return jugador.getCreditos();
+        }
+
+        @Override
+        public void close() {
+            Clasificacion.CREDITOS.limpiar();
+        }
+    }
+
+    /**
+     * Lo mismo que {@link VerMejoresJugadores} con la versión anterior:
+     * copiar y ordenar a todos los jugadores en cada consulta.
+     */
+    public static final class Ordenar implements Carga {
+        private final Feria.Jugador[] jugadores;
+        private final int[] indices;
+
+        public Ordenar(int cantidad) {
+            Random azar = CargasFeria.azar();
+            jugadores = CargasFeria.crearJugadores(azar, cantidad, 1_000_000);
+            indices = CargasFeria.indicesAlAzar(azar, cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            Feria.Jugador jugador = jugadores[indices[i]];
+            // Sin clasificación que avisar: solo cambia el saldo
+            jugador.restaurarCreditos(jugador.getVersionCreditos() + 1, jugador.getCreditos() + 1);
+            List<Feria.Jugador> lista = new ArrayList<>(Arrays.asList(jugadores));
+            lista.sort(POR_CREDITOS);
+            return lista.get(0).getCreditos() + lista.get(Math.min(2, jugadores.length - 1)).getCreditos();
+        }
+    }
+
+    /**
+     * Puntos a un jugador al azar seguidos del top 3 de hoy, esta semana y la
+     * última hora, con `cantidad` jugadores que ya ganaron puntos en el periodo.
+     */
+    public static final class Periodo implements Carga {
+        private final String[] nombres;
+
+        public Periodo(int cantidad) {
+            Random azar = CargasFeria.azar();
+            for (int i = 0; i < cantidad; i++) {
+                ClasificacionPeriodo.sumarATodas("jugador" + i, 1 + azar.nextInt(1000));
+            }
+            nombres = CargasFeria.nombresAlAzar(azar, cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            ClasificacionPeriodo.sumarATodas(nombres[i], 10);
+            long ahora = System.currentTimeMillis();
+            long total = 0;
+            for (ClasificacionPeriodo periodo : ClasificacionPeriodo.TODAS) {
+                total += periodo.mejores(3, ahora).get(0).valor();
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ *  Cargas de los benchmarks de Conecta 4.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.Random;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Las cargas de `ConectaCuatroBenchmark`, sobre posiciones al azar.
+ */
+public final class CargasConecta4 {
+
+    private CargasConecta4() {
+    }
+
+    /**
+     * Posiciones al azar de Conecta 4, con la última jugada de cada una
+     * también en el formato del tablero int[6][7].
+     */
+    private static final class Posiciones {
+        final TableroConecta4[] tableros = new TableroConecta4[Carga.DATOS];
+        final int[][][] arreglos = new int[Carga.DATOS][][];
+        final int[] filas = new int[Carga.DATOS];
+        final int[] columnas = new int[Carga.DATOS];
+        final int[] jugadores = new int[Carga.DATOS];
+
+        /**
+         * @param terminadas `false` para quedarse solo con partidas que siguen en juego.
+         */
+        Posiciones(boolean terminadas) {
+            Random azar = CargasFeria.azar();
+            for (int i = 0; i < Carga.DATOS; i++) {
+                TableroConecta4 tablero;
+                do {
+                    tablero = new TableroConecta4();
+                    int jugadas = 1 + azar.nextInt(TableroConecta4.FILAS * TableroConecta4.COLUMNAS);
+                    while (jugadas-- > 0 && !tablero.ultimoGano() && !tablero.lleno()) {
+                        int columna;
+                        do {
+                            columna = azar.nextInt(TableroConecta4.COLUMNAS);
+                        } while (!tablero.puedeJugar(columna));
+                        jugadores[i] = tablero.jugadorActual();
+                        filas[i] = tablero.jugar(columna);
+                        columnas[i] = columna;
+                    }
+                } while (!terminadas && (tablero.ultimoGano() || tablero.lleno()));
+                tableros[i] = tablero;
+                arreglos[i] = new int[TableroConecta4.FILAS][TableroConecta4.COLUMNAS];
+                for (int fila = 0; fila < TableroConecta4.FILAS; fila++) {
+                    for (int columna = 0; columna < TableroConecta4.COLUMNAS; columna++) {
+                        arreglos[i][fila][columna] = tablero.ficha(fila, columna);
+                    }
+                }
+            }
+        }
+    }
+
+    public static final class VerificarVictoria implements Carga {
+        private final Posiciones posiciones = new Posiciones(true);
+
+        public VerificarVictoria(int tamano) {
+        }
+
+        @Override
+        public long medir(int i) {
+            return PartidaConecta4.verificarVictoria(posiciones.arreglos[i], posiciones.filas[i],
+                    posiciones.columnas[i], posiciones.jugadores[i]) ? 1 : 0;
+        }
+    }
+
+    public static final class ObtenerFilaDisponible implements Carga {
+        private final Posiciones posiciones = new Posiciones(true);
+
+        public ObtenerFilaDisponible(int tamano) {
+        }
+
+        @Override
+        public long medir(int i) {
+            return PartidaConecta4.obtenerFilaDisponible(posiciones.arreglos[i], i % TableroConecta4.COLUMNAS);
+        }
+    }
+
+    public static final class UltimoGano implements Carga {
+        private final Posiciones posiciones = new Posiciones(true);
+
+        public UltimoGano(int tamano) {
+        }
+
+        @Override
+        public long medir(int i) {
+            return posiciones.tableros[i].ultimoGano() ? 1 : 0;
+        }
+    }
+
+    /**
+     * Lo que hace el juego en lugar de obtenerFilaDisponible: revisar la
+     * columna y dejar caer la ficha (aquí se deshace para no llenar el tablero).
+     */
+    public static final class Jugar implements Carga {
+        private final Posiciones posiciones = new Posiciones(false);
+
+        public Jugar(int tamano) {
+        }
+
+        @Override
+        public long medir(int i) {
+            TableroConecta4 tablero = posiciones.tableros[i];
+            int columna = i % TableroConecta4.COLUMNAS;
+            if (!tablero.puedeJugar(columna)) {
+                return -1;
+            }
+            int fila = tablero.jugar(columna);
+            tablero.deshacer();
+            return fila;
+        }
+    }
+
+    public static final class Ia implements Carga {
+        private final Posiciones posiciones = new Posiciones(false);
+
+        public Ia(int tamano) {
+        }
+
+        @Override
+        public long medir(int i) {
+            TableroConecta4 tablero = new TableroConecta4(posiciones.tableros[i]);
+            return IAConecta4.elegir(tablero, IAConecta4.Dificultad.FACIL).nodos();
+        }
+    }
+
+    /**
+     * Dibujar el tablero; con -Dferia.ansi=true en la JVM se mide la versión ANSI.
+     */
+    public static final class Mostrar implements Carga {
+        private final Posiciones posiciones = new Posiciones(true);
+        private final PartidaConecta4 partida = new PartidaConecta4(CargasFeria.sesionSinSalida());
+
+        public Mostrar(int tamano) {
+        }
+
+        @Override
+        public long medir(int i) {
+            partida.mostrarTableroConecta4(posiciones.tableros[i]);
+            return i;
+        }
+    }
+}
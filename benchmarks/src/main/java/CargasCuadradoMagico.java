@@ -0,0 +1,133 @@
+/**
+ *  Cargas de los benchmarks del Cuadrado Mágico.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.Random;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Las cargas de `CuadradoMagicoBenchmark` y `GeneradorMagicoBenchmark`.
+ */
+public final class CargasCuadradoMagico {
+
+    private CargasCuadradoMagico() {
+    }
+
+    /**
+     * Tableros clásicos de 4x4 con algunas jugadas al azar encima de la diagonal inicial.
+     */
+    private static TableroMagico[] tablerosClasicos() {
+        Random azar = CargasFeria.azar();
+        TableroMagico[] tableros = new TableroMagico[Carga.DATOS];
+        int n = TableroMagico.N;
+        for (int i = 0; i < Carga.DATOS; i++) {
+            TableroMagico tablero = new TableroMagico();
+            int jugadas = azar.nextInt(n * n - n);
+            while (jugadas-- > 0) {
+                int fila, columna, numero;
+                do {
+                    fila = azar.nextInt(n);
+                    columna = azar.nextInt(n);
+                } while (!tablero.libre(fila, columna));
+                do {
+                    numero = 1 + azar.nextInt(n * n);
+                } while (!tablero.disponible(numero));
+                tablero.poner(fila, columna, numero);
+            }
+            tableros[i] = tablero;
+        }
+        return tableros;
+    }
+
+    public static final class EsPosible implements Carga {
+        private final TableroMagico[] tableros = tablerosClasicos();
+
+        public EsPosible(int tamano) {
+        }
+
+        @Override
+        public long medir(int i) {
+            return tableros[i].esPosible() ? 1 : 0;
+        }
+    }
+
+    public static final class Pista implements Carga {
+        private final TableroMagico[] tableros = tablerosClasicos();
+
+        public Pista(int tamano) {
+        }
+
+        @Override
+        public long medir(int i) {
+            int[] pista = tableros[i].pista();
+            return pista == null ? -1 : pista[2];
+        }
+    }
+
+    /**
+     * Tableros de 4x4 llenos: la mitad son cuadrados mágicos y en la otra mitad
+     * se intercambiaron dos casillas.
+     */
+    public static final class EsMagico implements Carga {
+        private final TableroMagico[] tableros = new TableroMagico[Carga.DATOS];
+
+        public EsMagico(int tamano) {
+            Random azar = CargasFeria.azar();
+            int n = TableroMagico.N;
+            for (int i = 0; i < Carga.DATOS; i++) {
+                int[] solucion = GeneradorMagico.generar(n, 1).solucion();
+                int[] celdas = solucion.clone();
+                if (i % 2 == 1) {
+                    int a = azar.nextInt(n * n);
+                    int b = (a + 1 + azar.nextInt(n * n - 1)) % (n * n);
+                    int t = celdas[a];
+                    celdas[a] = celdas[b];
+                    celdas[b] = t;
+                }
+                tableros[i] = new TableroMagico(new GeneradorMagico.Acertijo(n, celdas, solucion));
+            }
+        }
+
+        @Override
+        public long medir(int i) {
+            return tableros[i].esMagico() ? 1 : 0;
+        }
+    }
+
+    public static final class Mostrar implements Carga {
+        private final TableroMagico[] tableros = tablerosClasicos();
+        private final PartidaCuadradoMagico partida = new PartidaCuadradoMagico(CargasFeria.sesionSinSalida());
+
+        public Mostrar(int tamano) {
+        }
+
+        @Override
+        public long medir(int i) {
+            partida.mostrarTablero(tableros[i]);
+            return i;
+        }
+    }
+
+    /**
+     * Generar un acertijo de `n`x`n`; se cuentan las casillas que se dan.
+     */
+    public static final class Generar implements Carga {
+        private final int n;
+
+        public Generar(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public long medir(int i) {
+            int[] celdas = GeneradorMagico.generar(n, GeneradorMagico.PRESUPUESTO).celdas();
+            long dadas = 0;
+            for (int celda : celdas) {
+                dadas += celda != 0 ? 1 : 0;
+            }
+            return dadas;
+        }
+    }
+}
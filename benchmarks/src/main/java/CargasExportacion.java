@@ -0,0 +1,68 @@
+/**
+ *  Cargas de los benchmarks de exportar a los jugadores.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Las cargas de `ExportacionBenchmark`: exportar a los `tamano` jugadores de
+ * una foto en un solo hilo, como `java Feria --exportar` recién arrancada
+ * (nadie en memoria).
+ */
+public final class CargasExportacion {
+
+    private CargasExportacion() {
+    }
+
+    private abstract static class Exportar implements Carga {
+        private final Path foto;
+        private final AlmacenJugadores almacen;
+        private final ExportadorJugadores exportador;
+        private final Map<String, Feria.Jugador> memoria = new HashMap<>();
+
+        Exportar(int cantidad, ExportadorJugadores.Formato formato) throws IOException {
+            foto = CargasFeria.fotoTemporal(cantidad);
+            almacen = AlmacenJugadores.abrir(foto);
+            exportador = new ExportadorJugadores(foto.resolveSibling("exportacion"), formato, 1);
+        }
+
+        @Override
+        public long medir(int i) {
+            try {
+                return exportador.exportar(memoria, almacen).bytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            CargasFeria.borrar(foto.getParent());
+        }
+    }
+
+    public static final class Csv extends Exportar {
+        public Csv(int cantidad) throws IOException {
+            super(cantidad, ExportadorJugadores.Formato.CSV);
+        }
+    }
+
+    public static final class JsonLines extends Exportar {
+        public JsonLines(int cantidad) throws IOException {
+            super(cantidad, ExportadorJugadores.Formato.JSON_LINES);
+        }
+    }
+
+    public static final class Columnas extends Exportar {
+        public Columnas(int cantidad) throws IOException {
+            super(cantidad, ExportadorJugadores.Formato.COLUMNAS);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ *  Datos y utilidades de las cargas de los benchmarks.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Lo que comparten las cargas de los benchmarks (ver {@link Carga}): los
+ * jugadores de prueba, los índices al azar, una sesión que no escribe nada y
+ * los directorios temporales. Las cargas están en el paquete sin nombre,
+ * como la feria, para llamar a su código directamente.
+ */
+public final class CargasFeria {
+
+    private CargasFeria() {
+    }
+
+    /**
+     * @return Un generador con la semilla de las cargas.
+     */
+    static Random azar() {
+        return new Random(Carga.SEMILLA);
+    }
+
+    static Feria.Jugador[] crearJugadores(Random azar, int cantidad, int creditosMaximos) {
+        Feria.Jugador[] jugadores = new Feria.Jugador[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            jugadores[i] = new Feria.Jugador("jugador" + i, azar.nextInt(creditosMaximos));
+        }
+        return jugadores;
+    }
+
+    static int[] indicesAlAzar(Random azar, int cantidad) {
+        int[] indices = new int[Carga.DATOS];
+        for (int i = 0; i < Carga.DATOS; i++) {
+            indices[i] = azar.nextInt(cantidad);
+        }
+        return indices;
+    }
+
+    /**
+     * @return Nombres al azar de entre los `cantidad` jugadores de {@link #crearJugadores}.
+     */
+    static String[] nombresAlAzar(Random azar, int cantidad) {
+        String[] nombres = new String[Carga.DATOS];
+        for (int i = 0; i < Carga.DATOS; i++) {
+            nombres[i] = "jugador" + azar.nextInt(cantidad);
+        }
+        return nombres;
+    }
+
+    static Map<String, Feria.Jugador> mapaJugadores(int cantidad) {
+        Map<String, Feria.Jugador> jugadores = new HashMap<>();
+        for (Feria.Jugador jugador : crearJugadores(azar(), cantidad, 1_000_000)) {
+            jugadores.put(jugador.getNombre(), jugador);
+        }
+        return jugadores;
+    }
+
+    /**
+     * Escribe en un directorio temporal la foto de `cantidad` jugadores.
+     *
+     * @return La ruta de la foto.
+     */
+    static Path fotoTemporal(int cantidad) throws IOException {
+        Path foto = directorioTemporal().resolve(Feria.ARCHIVO_JUGADORES);
+        AlmacenJugadores.escribir(foto, 0, null, mapaJugadores(cantidad));
+        return foto;
+    }
+
+    static Path directorioTemporal() throws IOException {
+        return Files.createTempDirectory("feria-rendimiento");
+    }
+
+    /**
+     * @return Una sesión que no lee nada y descarta todo lo que escribe.
+     */
+    static Feria sesionSinSalida() {
+        return new Feria(InputStream.nullInputStream(),
+                new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+    }
+
+    static void borrar(Path directorio) throws IOException {
+        try (Stream<Path> archivos = Files.walk(directorio)) {
+            for (Path archivo : archivos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ *  Cargas de los benchmarks de las Torres de Hanoi.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.Iterator;
+import java.util.Random;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Las cargas de `HanoiBenchmark`, con `tamano` discos.
+ */
+public final class CargasHanoi {
+    // Máximo de discos para guardar la solución completa (2^20 - 1 movimientos)
+    private static final int MAXIMO_DISCOS_GUARDADOS = 20;
+
+    private static final String[] TORRES = {"A", "B", "C"};
+
+    private CargasHanoi() {
+    }
+
+    /**
+     * Juega la solución óptima con moverDisco, un movimiento por llamada, y
+     * vuelve a empezar al terminar.
+     */
+    public static final class MoverDisco implements Carga {
+        private final int discos;
+        private final byte[] origenes;
+        private final byte[] destinos;
+        private final PartidaTorresDeHanoi partida = new PartidaTorresDeHanoi(CargasFeria.sesionSinSalida());
+        private EstadoHanoi estado;
+        private int paso;
+
+        public MoverDisco(int discos) {
+            if (discos < 1 || discos > MAXIMO_DISCOS_GUARDADOS) {
+                throw new IllegalArgumentException("Los discos deben estar entre 1 y " + MAXIMO_DISCOS_GUARDADOS);
+            }
+            this.discos = discos;
+            origenes = new byte[(1 << discos) - 1];
+            destinos = new byte[origenes.length];
+            Iterator<EstadoHanoi.Movimiento> solucion = new EstadoHanoi(discos).solucion(2);
+            for (int i = 0; solucion.hasNext(); i++) {
+                EstadoHanoi.Movimiento movimiento = solucion.next();
+                origenes[i] = (byte) movimiento.origen();
+                destinos[i] = (byte) movimiento.destino();
+            }
+            estado = new EstadoHanoi(discos);
+        }
+
+        @Override
+        public long medir(int i) {
+            if (paso == origenes.length) {
+                estado = new EstadoHanoi(discos);
+                paso = 0;
+            }
+            boolean movio = partida.moverDisco(estado, TORRES[origenes[paso]], TORRES[destinos[paso]]);
+            paso++;
+            return movio ? paso : -paso;
+        }
+    }
+
+    public static final class CalcularPuntos implements Carga {
+        private final long minimo;
+        private final long[] movimientos = new long[Carga.DATOS];
+
+        public CalcularPuntos(int discos) {
+            Random azar = CargasFeria.azar();
+            minimo = new EstadoHanoi(discos).minimoDesdeInicio();
+            for (int i = 0; i < Carga.DATOS; i++) {
+                movimientos[i] = minimo + (i % 4 == 0 ? 0 : Math.floorMod(azar.nextLong(), minimo / 3 + 1));
+            }
+        }
+
+        @Override
+        public long medir(int i) {
+            return PartidaTorresDeHanoi.calcularPuntos(movimientos[i], minimo);
+        }
+    }
+
+    /**
+     * La distancia a la solución desde estados a medio jugar, después de
+     * movimientos válidos al azar.
+     */
+    public static final class Distancia implements Carga {
+        private final EstadoHanoi[] estados = new EstadoHanoi[Carga.DATOS];
+
+        public Distancia(int discos) {
+            Random azar = CargasFeria.azar();
+            for (int i = 0; i < Carga.DATOS; i++) {
+                EstadoHanoi estado = new EstadoHanoi(discos);
+                int movimientos = azar.nextInt(4 * discos + 1);
+                while (movimientos-- > 0) {
+                    int origen, destino;
+                    do {
+                        origen = azar.nextInt(3);
+                        destino = azar.nextInt(3);
+                    } while (!estado.puedeMover(origen, destino));
+                    estado.mover(origen, destino);
+                }
+                estados[i] = estado;
+            }
+        }
+
+        @Override
+        public long medir(int i) {
+            return estados[i].distancia(2);
+        }
+    }
+
+    public static final class MinimoFrameStewart implements Carga {
+        private final int discos;
+        private final int[] postes = new int[Carga.DATOS];
+
+        public MinimoFrameStewart(int discos) {
+            Random azar = CargasFeria.azar();
+            this.discos = discos;
+            for (int i = 0; i < Carga.DATOS; i++) {
+                postes[i] = FrameStewart.MINIMO_POSTES + 1
+                        + azar.nextInt(FrameStewart.MAXIMO_POSTES - FrameStewart.MINIMO_POSTES);
+            }
+        }
+
+        @Override
+        public long medir(int i) {
+            return FrameStewart.minimo(discos, postes[i]);
+        }
+    }
+
+    /**
+     * Recorre la solución completa de Frame-Stewart con 4 postes.
+     */
+    public static final class SolucionFrameStewart implements Carga {
+        private final int discos;
+
+        public SolucionFrameStewart(int discos) {
+            this.discos = discos;
+        }
+
+        @Override
+        public long medir(int i) {
+            Iterator<EstadoHanoi.Movimiento> solucion = FrameStewart.solucion(discos, 4);
+            long suma = 0;
+            while (solucion.hasNext()) {
+                suma += solucion.next().disco();
+            }
+            return suma;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ *  Cargas de los benchmarks del libro de créditos.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.Arrays;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Las cargas de `LibroCreditosBenchmark`: cobros de un crédito a uno de
+ * `tamano` jugadores, compartidos por todos los hilos de la medición.
+ */
+public final class CargasLibroCreditos {
+
+    private CargasLibroCreditos() {
+    }
+
+    /**
+     * Cobros con {@link LibroCreditos}; con un solo jugador todos los hilos
+     * compiten por el mismo saldo.
+     */
+    public static final class Debitar implements Carga {
+        private final Feria.Jugador[] jugadores;
+        private final int[] indices;
+
+        public Debitar(int cantidad) {
+            jugadores = new Feria.Jugador[cantidad];
+            for (int i = 0; i < cantidad; i++) {
+                jugadores[i] = new Feria.Jugador("jugador" + i, Integer.MAX_VALUE);
+            }
+            indices = CargasFeria.indicesAlAzar(CargasFeria.azar(), cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            return LibroCreditos.debitar(jugadores[indices[i]], 1) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Los mismos cobros con un solo candado para todos los saldos, como
+     * referencia para {@link Debitar}.
+     */
+    public static final class Sincronizado implements Carga {
+        private final int[] saldos;
+        private final int[] indices;
+
+        public Sincronizado(int cantidad) {
+            saldos = new int[cantidad];
+            Arrays.fill(saldos, Integer.MAX_VALUE);
+            indices = CargasFeria.indicesAlAzar(CargasFeria.azar(), cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            int jugador = indices[i];
+            synchronized (saldos) {
+                if (saldos[jugador] < 1) {
+                    return 0;
+                }
+                saldos[jugador]--;
+                return 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ *  Cargas de los benchmarks del registro de jugadores.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Las cargas de `RegistroBenchmark`: buscar a un jugador al azar por nombre
+ * y cobrarle un crédito, como al iniciar un juego, en un registro de
+ * `tamano` jugadores.
+ */
+public final class CargasRegistro {
+
+    private CargasRegistro() {
+    }
+
+    /**
+     * Con un registro del tipo dado (ver {@link TablaJugadores#crear(String)}).
+     */
+    private abstract static class BuscarYCobrar implements Carga {
+        private final Map<String, Feria.Jugador> registro;
+        private final String[] nombres;
+
+        BuscarYCobrar(int cantidad, String tipo) {
+            registro = TablaJugadores.crear(tipo);
+            for (int i = 0; i < cantidad; i++) {
+                String nombre = "jugador" + i;
+                registro.put(nombre, new Feria.Jugador(nombre, Integer.MAX_VALUE));
+            }
+            nombres = CargasFeria.nombresAlAzar(CargasFeria.azar(), cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            return LibroCreditos.debitar(registro.get(nombres[i]), 1) ? 1 : 0;
+        }
+
+        @Override
+        public void close() {
+            Clasificacion.CREDITOS.limpiar();
+        }
+    }
+
+    public static final class Mapa extends BuscarYCobrar {
+        public Mapa(int cantidad) {
+            super(cantidad, "mapa");
+        }
+    }
+
+    public static final class Columnas extends BuscarYCobrar {
+        public Columnas(int cantidad) {
+            super(cantidad, "columnas");
+        }
+    }
+
+    public static final class FueraDelHeap extends BuscarYCobrar {
+        public FueraDelHeap(int cantidad) {
+            super(cantidad, "fueraDelHeap");
+        }
+    }
+
+    /**
+     * Lo mismo con {@link CacheJugadores}: los `cantidad` jugadores están en
+     * una foto y a memoria llegan solo los que se buscan, como en
+     * {@link Feria#buscarJugador(String)}. Los nombres que se buscan caben en
+     * el caché, así que después del calentamiento se mide lo que cuesta
+     * encontrar a un jugador que ya está en memoria.
+     */
+    public static final class Cache implements Carga {
+        private final Path foto;
+        private final AlmacenJugadores almacen;
+        private final CacheJugadores registro = new CacheJugadores(CacheJugadores.CAPACIDAD);
+        private final String[] nombres;
+
+        public Cache(int cantidad) throws IOException {
+            foto = CargasFeria.fotoTemporal(cantidad);
+            almacen = AlmacenJugadores.abrir(foto);
+            registro.usarAlmacen(almacen);
+            nombres = CargasFeria.nombresAlAzar(CargasFeria.azar(), cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            String nombre = nombres[i];
+            Feria.Jugador jugador = registro.get(nombre);
+            if (jugador == null) {
+                jugador = registro.computeIfAbsent(nombre, almacen::buscar);
+            }
+            return LibroCreditos.debitar(jugador, 1) ? 1 : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Clasificacion.CREDITOS.limpiar();
+            CargasFeria.borrar(foto.getParent());
+        }
+    }
+}
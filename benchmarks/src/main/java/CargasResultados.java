@@ -0,0 +1,76 @@
+/**
+ *  Cargas de los benchmarks de la tubería de resultados.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.Random;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Las cargas de `ResultadosBenchmark`: el resultado de una partida (un
+ * premio y puntos) para uno de `tamano` jugadores, compartidos por todos los
+ * hilos de la medición.
+ */
+public final class CargasResultados {
+
+    private CargasResultados() {
+    }
+
+    /**
+     * Publicar el resultado para que lo aplique el hilo de
+     * {@link TuberiaResultados}, como al terminar un juego.
+     */
+    public static final class Publicar implements Carga {
+        private final Feria.Jugador[] jugadores;
+        private final int[] indices;
+
+        public Publicar(int cantidad) {
+            Random azar = CargasFeria.azar();
+            jugadores = CargasFeria.crearJugadores(azar, cantidad, 1_000_000);
+            indices = CargasFeria.indicesAlAzar(azar, cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            return TuberiaResultados.publicar(jugadores[indices[i]],
+                    MetricasFeria.Juego.SALVADO.ordinal(), 1, Feria.PREMIO_VICTORIA, 0, null);
+        }
+
+        @Override
+        public void close() {
+            TuberiaResultados.vaciar();
+            Clasificacion.CREDITOS.limpiar();
+            Clasificacion.PUNTOS.limpiar();
+        }
+    }
+
+    /**
+     * Aplicar el mismo resultado en el hilo que juega, como antes de la
+     * tubería de resultados.
+     */
+    public static final class Directo implements Carga {
+        private final Feria.Jugador[] jugadores;
+        private final int[] indices;
+
+        public Directo(int cantidad) {
+            Random azar = CargasFeria.azar();
+            jugadores = CargasFeria.crearJugadores(azar, cantidad, 1_000_000);
+            indices = CargasFeria.indicesAlAzar(azar, cantidad);
+        }
+
+        @Override
+        public long medir(int i) {
+            Feria.Jugador jugador = jugadores[indices[i]];
+            LibroCreditos.acreditar(jugador, Feria.PREMIO_VICTORIA);
+            jugador.agregarPuntos(1);
+            return jugador.getVersionPuntos();
+        }
+
+        @Override
+        public void close() {
+            Clasificacion.CREDITOS.limpiar();
+            Clasificacion.PUNTOS.limpiar();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ *  Cargas de los benchmarks de Salvado.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import feria.benchmarks.Carga;
+
+/**
+ * Las cargas de `SalvadoBenchmark`: un círculo de `tamano` personas y un
+ * paso al azar por dato.
+ */
+public final class CargasSalvado {
+
+    private CargasSalvado() {
+    }
+
+    private static int[] pasos(int personas) {
+        Random azar = CargasFeria.azar();
+        int[] pasos = new int[Carga.DATOS];
+        for (int i = 0; i < Carga.DATOS; i++) {
+            pasos[i] = 1 + azar.nextInt(personas);
+        }
+        return pasos;
+    }
+
+    public static final class ConLista implements Carga {
+        private final int personas;
+        private final int[] pasos;
+
+        public ConLista(int personas) {
+            this.personas = personas;
+            pasos = pasos(personas);
+        }
+
+        @Override
+        public long medir(int i) {
+            return PartidaSalvado.ultimaSillaConLista(personas, pasos[i]);
+        }
+    }
+
+    public static final class ConJosephus implements Carga {
+        private final int personas;
+        private final int[] pasos;
+
+        public ConJosephus(int personas) {
+            this.personas = personas;
+            pasos = pasos(personas);
+        }
+
+        @Override
+        public long medir(int i) {
+            return Josephus.sobreviviente(personas, pasos[i]);
+        }
+    }
+
+    /**
+     * Las eliminaciones que muestra el juego, calculadas con el árbol de Fenwick.
+     */
+    public static final class Eliminaciones implements Carga {
+        private final int personas;
+        private final int[] pasos;
+
+        public Eliminaciones(int personas) {
+            this.personas = personas;
+            pasos = pasos(personas);
+        }
+
+        @Override
+        public long medir(int i) {
+            PrimitiveIterator.OfInt eliminadas = Josephus.eliminaciones(personas, pasos[i]);
+            long suma = 0;
+            for (int j = 0; j < Feria.ELIMINACIONES_MOSTRADAS && eliminadas.hasNext(); j++) {
+                suma += eliminadas.nextInt();
+            }
+            return suma;
+        }
+    }
+}
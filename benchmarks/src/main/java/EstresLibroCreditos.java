@@ -0,0 +1,135 @@
+/**
+ *  Prueba de estrés del libro de créditos.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Varios hilos cobran y premian a un solo jugador a la vez con
+ * {@link LibroCreditos}, con un saldo cerca de cero para que muchos cobros
+ * se rechacen, y al final se revisa que:
+ * <ul>
+ *   <li>el saldo sea el inicial más lo acreditado menos lo debitado según
+ *       los contadores de auditoría;</li>
+ *   <li>no se perdió ningún cambio: los contadores cuentan lo mismo que los
+ *       hilos y la versión del saldo avanzó una vez por cada cobro y premio;</li>
+ *   <li>el saldo nunca fue negativo, ni al final ni en lo que vio un hilo
+ *       que lo lee sin parar mientras los demás lo cambian.</li>
+ * </ul>
+ * Se corre después de armar el módulo:
+ * <pre>
+ *   java -cp benchmarks/target/benchmarks.jar EstresLibroCreditos [hilos] [operaciones por hilo]
+ * </pre>
+ * Termina con código 1 si alguna revisión falla.
+ */
+public final class EstresLibroCreditos {
+    // Saldo inicial; con cobros de 3 y premios de 1 o 2 el saldo se queda cerca de cero
+    private static final int SALDO_INICIAL = 10;
+    private static final int COBRO = 3;
+
+    private EstresLibroCreditos() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int operaciones = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        Feria.Jugador jugador = new Feria.Jugador("estres", SALDO_INICIAL);
+        int versionInicial = jugador.getVersionCreditos();
+        long debitosAntes = LibroCreditos.debitos.sum();
+        long creditosAntes = LibroCreditos.creditos.sum();
+        long debitadoAntes = LibroCreditos.totalDebitado.sum();
+        long acreditadoAntes = LibroCreditos.totalAcreditado.sum();
+
+        long[] cobros = new long[hilos];
+        long[] premios = new long[hilos];
+        long[] acreditado = new long[hilos];
+        CountDownLatch salida = new CountDownLatch(1);
+        Thread[] trabajadores = new Thread[hilos];
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            trabajadores[h] = new Thread(() -> {
+                esperar(salida);
+                for (int i = 0; i < operaciones; i++) {
+                    // Cada tercera operación es un premio de 1 o 2, las demás cobros
+                    if (i % 3 == hilo % 3) {
+                        int cantidad = 1 + (i & 1);
+                        LibroCreditos.acreditar(jugador, cantidad);
+                        premios[hilo]++;
+                        acreditado[hilo] += cantidad;
+                    } else if (LibroCreditos.debitar(jugador, COBRO)) {
+                        cobros[hilo]++;
+                    }
+                }
+            }, "estres-" + h);
+            trabajadores[h].start();
+        }
+
+        // Un hilo más lee el saldo sin parar mientras los demás lo cambian
+        AtomicBoolean terminado = new AtomicBoolean();
+        long[] minimo = {Long.MAX_VALUE};
+        Thread vigia = new Thread(() -> {
+            esperar(salida);
+            while (!terminado.get()) {
+                minimo[0] = Math.min(minimo[0], jugador.getCreditos());
+            }
+        }, "estres-vigia");
+        vigia.start();
+
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Thread trabajador : trabajadores) {
+            trabajador.join();
+        }
+        long nanos = System.nanoTime() - inicio;
+        terminado.set(true);
+        vigia.join();
+
+        long totalCobros = 0;
+        long totalPremios = 0;
+        long totalAcreditado = 0;
+        for (int h = 0; h < hilos; h++) {
+            totalCobros += cobros[h];
+            totalPremios += premios[h];
+            totalAcreditado += acreditado[h];
+        }
+        long debitos = LibroCreditos.debitos.sum() - debitosAntes;
+        long creditos = LibroCreditos.creditos.sum() - creditosAntes;
+        long debitado = LibroCreditos.totalDebitado.sum() - debitadoAntes;
+        long acreditadoAuditado = LibroCreditos.totalAcreditado.sum() - acreditadoAntes;
+        long saldo = jugador.getCreditos();
+        long cambios = jugador.getVersionCreditos() - versionInicial;
+
+        System.out.printf("%d hilos, %d operaciones en %.2f s: %d cobros, %d premios, saldo final %d%n",
+                hilos, (long) hilos * operaciones, nanos / 1e9, totalCobros, totalPremios, saldo);
+        System.out.println("Auditoría: " + LibroCreditos.resumen());
+
+        boolean bien = revisar("el saldo es el inicial más lo acreditado menos lo debitado según la auditoría",
+                saldo == SALDO_INICIAL + acreditadoAuditado - debitado);
+        bien &= revisar("la auditoría cuenta los mismos cobros y premios que los hilos",
+                debitos == totalCobros && creditos == totalPremios
+                        && debitado == totalCobros * COBRO && acreditadoAuditado == totalAcreditado);
+        bien &= revisar("la versión del saldo avanzó una vez por cada cobro y premio (ningún cambio perdido)",
+                cambios == totalCobros + totalPremios);
+        bien &= revisar("el saldo nunca fue negativo (mínimo visto: " + Math.min(minimo[0], saldo) + ")",
+                minimo[0] >= 0 && saldo >= 0);
+        if (!bien) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean revisar(String descripcion, boolean cumple) {
+        System.out.println((cumple ? "  bien: " : "  FALLA: ") + descripcion);
+        return cumple;
+    }
+
+    private static void esperar(CountDownLatch salida) {
+        try {
+            salida.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ *  Base de los benchmarks de la feria.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Cada benchmark recibe dos estados: la {@link Carga} que mide, una por
+ * corrida y compartida por todos los hilos, y el {@link Cursor} del hilo, que
+ * elige el dato de cada llamada. Cada carga tiene su subclase de
+ * {@link Estado} dentro de la clase de su benchmark. Si la clase tiene un
+ * parámetro `tamano`, se le pasa a la carga.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class BenchmarkFeria {
+
+    /**
+     * El siguiente dato de un hilo. Cada hilo empieza en otra parte de los
+     * datos, así que con varios hilos no van todos sobre el mismo dato.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int siguiente;
+
+        @Setup(Level.Trial)
+        public void preparar(ThreadParams hilo) {
+            siguiente = hilo.getThreadIndex() * (Carga.DATOS / hilo.getThreadCount());
+        }
+
+        /**
+         * @return El índice del siguiente dato.
+         */
+        public int siguiente() {
+            return siguiente++ & (Carga.DATOS - 1);
+        }
+    }
+
+    /**
+     * Una carga preparada para la corrida.
+     */
+    @State(Scope.Benchmark)
+    public abstract static class Estado {
+        private final String clase;
+        private Carga carga;
+
+        /**
+         * @param clase El nombre de la clase de la carga, como "CargasConecta4$VerificarVictoria".
+         */
+        protected Estado(String clase) {
+            this.clase = clase;
+        }
+
+        @Setup(Level.Trial)
+        public void preparar(BenchmarkParams params) throws Exception {
+            String tamano = params.getParam("tamano");
+            carga = (Carga) Class.forName(clase).getConstructor(int.class)
+                    .newInstance(tamano == null ? 0 : Integer.parseInt(tamano));
+        }
+
+        /**
+         * @return El resultado de la operación sobre el siguiente dato del hilo.
+         */
+        public long medir(Cursor cursor) {
+            return carga.medir(cursor.siguiente());
+        }
+
+        @TearDown(Level.Trial)
+        public void cerrar() throws Exception {
+            carga.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ *  Benchmarks de guardar y cargar a los jugadores.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * "Guardar y salir" después de un cambio (esperar el fsync de la bitácora),
+ * cargar la foto de los jugadores como al arrancar y escribir una foto nueva,
+ * para varias cantidades de jugadores. Los archivos van a un directorio
+ * temporal que se borra al terminar.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BitacoraBenchmark extends BenchmarkFeria {
+    @Param({"1000", "100000", "1000000"})
+    public int tamano;
+
+    public static class GuardarYSalir extends Estado {
+        public GuardarYSalir() {
+            super("CargasBitacora$GuardarYSalir");
+        }
+    }
+
+    public static class CargarDatos extends Estado {
+        public CargarDatos() {
+            super("CargasBitacora$CargarDatos");
+        }
+    }
+
+    public static class Foto extends Estado {
+        public Foto() {
+            super("CargasBitacora$Foto");
+        }
+    }
+
+    @Benchmark
+    public long guardarYSalir(GuardarYSalir carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long cargarDatos(CargarDatos carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long foto(Foto carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}
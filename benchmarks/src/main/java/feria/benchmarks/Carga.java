@@ -0,0 +1,45 @@
+/**
+ *  Una carga de trabajo de los benchmarks.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import java.io.IOException;
+
+/**
+ * Una operación de la feria que se mide. Las cargas están en el paquete sin
+ * nombre de este módulo, junto a las clases de la feria que llaman (JMH no
+ * acepta benchmarks ahí y desde un paquete con nombre no se ven esas clases),
+ * así que cada estado de {@link BenchmarkFeria} crea la suya por nombre una
+ * sola vez por corrida.
+ *
+ * Una carga tiene un constructor público que recibe el parámetro `tamano`
+ * del benchmark (jugadores, discos, personas...; 0 si no tiene) y prepara
+ * ahí sus datos con la semilla {@link #SEMILLA}. La comparten todos los
+ * hilos de la medición; en cada llamada hace una operación sobre el dato que
+ * le toca al hilo y devuelve un resultado para que el JIT no pueda quitar el
+ * trabajo.
+ */
+public interface Carga extends AutoCloseable {
+    // Datos preparados por carga; potencia de 2 para recorrerlos con una máscara
+    int DATOS = 1024;
+
+    // Semilla fija para que cada corrida mida los mismos datos
+    long SEMILLA = 20241210L;
+
+    /**
+     * Hace una operación.
+     *
+     * @param dato El índice del dato, entre 0 y {@link #DATOS} - 1.
+     * @return Un resultado de la operación.
+     */
+    long medir(int dato);
+
+    /**
+     * Borra los archivos y deshace el estado global que haya cambiado la carga.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ *  Benchmarks de "Ver top 3 jugadores".
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Un premio a un jugador al azar seguido del top 3: con la clasificación
+ * incremental del juego y ordenando a todos los jugadores como antes; y
+ * puntos seguidos del top 3 de hoy, la semana y la última hora. Con
+ * 10 millones de jugadores hacen falta unos 4 GB de memoria; para una
+ * corrida corta se puede elegir el tamaño con `-p tamano=10000`.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ClasificacionBenchmark extends BenchmarkFeria {
+    @Param({"10000", "1000000", "10000000"})
+    public int tamano;
+
+    public static class VerMejoresJugadores extends Estado {
+        public VerMejoresJugadores() {
+            super("CargasClasificacion$VerMejoresJugadores");
+        }
+    }
+
+    public static class Ordenar extends Estado {
+        public Ordenar() {
+            super("CargasClasificacion$Ordenar");
+        }
+    }
+
+    public static class Periodo extends Estado {
+        public Periodo() {
+            super("CargasClasificacion$Periodo");
+        }
+    }
+
+    @Benchmark
+    public long verMejoresJugadores(VerMejoresJugadores carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long ordenar(Ordenar carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long periodo(Periodo carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ *  Benchmarks de Conecta 4.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * El tablero int[6][7] de antes (verificarVictoria, obtenerFilaDisponible)
+ * contra el tablero de bits del juego (ultimoGano, jugar), una jugada de la
+ * computadora en fácil y el dibujo del tablero, normal y con ANSI.
+ */
+public class ConectaCuatroBenchmark extends BenchmarkFeria {
+    public static class VerificarVictoria extends Estado {
+        public VerificarVictoria() {
+            super("CargasConecta4$VerificarVictoria");
+        }
+    }
+
+    public static class UltimoGano extends Estado {
+        public UltimoGano() {
+            super("CargasConecta4$UltimoGano");
+        }
+    }
+
+    public static class ObtenerFilaDisponible extends Estado {
+        public ObtenerFilaDisponible() {
+            super("CargasConecta4$ObtenerFilaDisponible");
+        }
+    }
+
+    public static class Jugar extends Estado {
+        public Jugar() {
+            super("CargasConecta4$Jugar");
+        }
+    }
+
+    public static class Ia extends Estado {
+        public Ia() {
+            super("CargasConecta4$Ia");
+        }
+    }
+
+    public static class Mostrar extends Estado {
+        public Mostrar() {
+            super("CargasConecta4$Mostrar");
+        }
+    }
+
+    @Benchmark
+    public long verificarVictoria(VerificarVictoria carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long ultimoGano(UltimoGano carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long obtenerFilaDisponible(ObtenerFilaDisponible carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long jugar(Jugar carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long ia(Ia carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long mostrar(Mostrar carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dferia.ansi=true")
+    public long mostrarAnsi(Mostrar carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ *  Benchmarks del Cuadrado Mágico clásico.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Revisar si un tablero de 4x4 todavía tiene solución o ya es mágico, pedir
+ * una pista y dibujar el tablero.
+ */
+public class CuadradoMagicoBenchmark extends BenchmarkFeria {
+    public static class EsPosible extends Estado {
+        public EsPosible() {
+            super("CargasCuadradoMagico$EsPosible");
+        }
+    }
+
+    public static class EsMagico extends Estado {
+        public EsMagico() {
+            super("CargasCuadradoMagico$EsMagico");
+        }
+    }
+
+    public static class Pista extends Estado {
+        public Pista() {
+            super("CargasCuadradoMagico$Pista");
+        }
+    }
+
+    public static class Mostrar extends Estado {
+        public Mostrar() {
+            super("CargasCuadradoMagico$Mostrar");
+        }
+    }
+
+    @Benchmark
+    public long esPosible(EsPosible carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long esMagico(EsMagico carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long pista(Pista carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long mostrar(Mostrar carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}
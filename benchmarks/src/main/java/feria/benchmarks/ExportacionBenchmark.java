@@ -0,0 +1,56 @@
+/**
+ *  Benchmarks de exportar a los jugadores.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Exportar a todos los jugadores de una foto en CSV, JSON Lines y columnas,
+ * en un solo hilo, para varias cantidades de jugadores. Los archivos van a un
+ * directorio temporal que se borra al terminar.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExportacionBenchmark extends BenchmarkFeria {
+    @Param({"1000", "100000", "1000000"})
+    public int tamano;
+
+    public static class Csv extends Estado {
+        public Csv() {
+            super("CargasExportacion$Csv");
+        }
+    }
+
+    public static class JsonLines extends Estado {
+        public JsonLines() {
+            super("CargasExportacion$JsonLines");
+        }
+    }
+
+    public static class Columnas extends Estado {
+        public Columnas() {
+            super("CargasExportacion$Columnas");
+        }
+    }
+
+    @Benchmark
+    public long csv(Csv carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long jsonl(JsonLines carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long columnas(Columnas carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}
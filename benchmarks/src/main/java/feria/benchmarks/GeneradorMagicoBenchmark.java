@@ -0,0 +1,33 @@
+/**
+ *  Benchmark del generador de acertijos del Cuadrado Mágico.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Generar un acertijo con solución única, con el presupuesto que usan los
+ * hilos del generador, para cada tamaño.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GeneradorMagicoBenchmark extends BenchmarkFeria {
+    @Param({"3", "4", "5", "6", "7", "8"})
+    public int tamano;
+
+    public static class Generar extends Estado {
+        public Generar() {
+            super("CargasCuadradoMagico$Generar");
+        }
+    }
+
+    @Benchmark
+    public long generar(Generar carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ *  Benchmarks de las Torres de Hanoi.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Un movimiento con moverDisco (validar y mover), la puntuación, la
+ * distancia a la solución desde un estado a medio jugar y Frame-Stewart
+ * con varios postes, para cada cantidad de discos.
+ */
+public class HanoiBenchmark extends BenchmarkFeria {
+    @Param({"6", "20"})
+    public int tamano;
+
+    public static class MoverDisco extends Estado {
+        public MoverDisco() {
+            super("CargasHanoi$MoverDisco");
+        }
+    }
+
+    public static class CalcularPuntos extends Estado {
+        public CalcularPuntos() {
+            super("CargasHanoi$CalcularPuntos");
+        }
+    }
+
+    public static class Distancia extends Estado {
+        public Distancia() {
+            super("CargasHanoi$Distancia");
+        }
+    }
+
+    public static class MinimoFrameStewart extends Estado {
+        public MinimoFrameStewart() {
+            super("CargasHanoi$MinimoFrameStewart");
+        }
+    }
+
+    public static class SolucionFrameStewart extends Estado {
+        public SolucionFrameStewart() {
+            super("CargasHanoi$SolucionFrameStewart");
+        }
+    }
+
+    @Benchmark
+    public long moverDisco(MoverDisco carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long calcularPuntos(CalcularPuntos carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long distancia(Distancia carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long minimoFrameStewart(MinimoFrameStewart carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long solucionFrameStewart(SolucionFrameStewart carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}
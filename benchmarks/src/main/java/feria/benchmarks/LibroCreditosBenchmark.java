@@ -0,0 +1,43 @@
+/**
+ *  Benchmarks del libro de créditos.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cobros de un crédito con el libro (compare-and-set por jugador) contra un
+ * solo candado para todos los saldos, con cuatro hilos. Con un jugador todos
+ * los hilos compiten por el mismo saldo; con mil casi nunca coinciden.
+ */
+@Threads(4)
+public class LibroCreditosBenchmark extends BenchmarkFeria {
+    @Param({"1", "1000"})
+    public int tamano;
+
+    public static class Debitar extends Estado {
+        public Debitar() {
+            super("CargasLibroCreditos$Debitar");
+        }
+    }
+
+    public static class Sincronizado extends Estado {
+        public Sincronizado() {
+            super("CargasLibroCreditos$Sincronizado");
+        }
+    }
+
+    @Benchmark
+    public long debitar(Debitar carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long sincronizado(Sincronizado carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}
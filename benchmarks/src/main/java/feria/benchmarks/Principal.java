@@ -0,0 +1,38 @@
+/**
+ *  Punto de entrada de benchmarks.jar.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Corre JMH con las mismas opciones de línea de comandos de siempre, pero si
+ * no se pide otro formato deja los resultados en JSON en
+ * `resultados-jmh.json`, para comparar corridas y encontrar regresiones.
+ */
+public class Principal {
+    static final String RESULTADOS = "resultados-jmh.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions linea = new CommandLineOptions(args);
+        if (linea.shouldHelp() || linea.shouldList() || linea.shouldListWithParams()
+                || linea.shouldListProfilers() || linea.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder opciones = new OptionsBuilder().parent(linea);
+        if (!linea.getResultFormat().hasValue()) {
+            opciones.resultFormat(ResultFormatType.JSON);
+        }
+        if (!linea.getResult().hasValue()) {
+            opciones.result(RESULTADOS);
+        }
+        new Runner(opciones.build()).run();
+    }
+}
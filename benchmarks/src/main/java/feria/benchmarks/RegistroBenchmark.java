@@ -0,0 +1,68 @@
+/**
+ *  Benchmarks del registro de jugadores.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Buscar a un jugador por nombre y cobrarle un crédito con el registro de
+ * siempre (un objeto por jugador en un mapa concurrente) y con la tabla por
+ * columnas, con los saldos en el heap o en memoria directa, y con el caché
+ * que guarda en memoria solo a los más usados y lee a los demás de la foto.
+ * Con 10 millones de jugadores el mapa necesita unos 1.3 GB, la tabla unos
+ * 0.5 GB y el caché lo mismo con mil que con diez millones (unos 10 MB llenos).
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RegistroBenchmark extends BenchmarkFeria {
+    @Param({"10000", "1000000", "10000000"})
+    public int tamano;
+
+    public static class Mapa extends Estado {
+        public Mapa() {
+            super("CargasRegistro$Mapa");
+        }
+    }
+
+    public static class Columnas extends Estado {
+        public Columnas() {
+            super("CargasRegistro$Columnas");
+        }
+    }
+
+    public static class FueraDelHeap extends Estado {
+        public FueraDelHeap() {
+            super("CargasRegistro$FueraDelHeap");
+        }
+    }
+
+    public static class Cache extends Estado {
+        public Cache() {
+            super("CargasRegistro$Cache");
+        }
+    }
+
+    @Benchmark
+    public long mapa(Mapa carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long columnas(Columnas carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long fueraDelHeap(FueraDelHeap carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long cache(Cache carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ *  Benchmarks de la tubería de resultados.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Lo que le cuesta a la sesión el resultado de una partida: publicarlo en el
+ * anillo para que otro hilo lo aplique, o aplicarlo ella misma (premio con el
+ * libro de créditos y puntos), con cuatro hilos jugando a la vez.
+ */
+@Threads(4)
+public class ResultadosBenchmark extends BenchmarkFeria {
+    @Param({"1000"})
+    public int tamano;
+
+    public static class Publicar extends Estado {
+        public Publicar() {
+            super("CargasResultados$Publicar");
+        }
+    }
+
+    public static class Directo extends Estado {
+        public Directo() {
+            super("CargasResultados$Directo");
+        }
+    }
+
+    @Benchmark
+    public long publicar(Publicar carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long directo(Directo carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ *  Benchmarks de Salvado.
+ *  @author Diego Hernandez Vazquez
+ *  @version 2.0
+ */
+package feria.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * La silla que se salva con la lista de antes contra {@link #josephus()}, y
+ * las eliminaciones que muestra el juego, para varios tamaños del círculo.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SalvadoBenchmark extends BenchmarkFeria {
+    @Param({"100", "10000", "100000"})
+    public int tamano;
+
+    public static class ConLista extends Estado {
+        public ConLista() {
+            super("CargasSalvado$ConLista");
+        }
+    }
+
+    public static class ConJosephus extends Estado {
+        public ConJosephus() {
+            super("CargasSalvado$ConJosephus");
+        }
+    }
+
+    public static class Eliminaciones extends Estado {
+        public Eliminaciones() {
+            super("CargasSalvado$Eliminaciones");
+        }
+    }
+
+    @Benchmark
+    public long lista(ConLista carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long josephus(ConJosephus carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+
+    @Benchmark
+    public long eliminaciones(Eliminaciones carga, Cursor cursor) {
+        return carga.medir(cursor);
+    }
+}